@@ -20,8 +20,12 @@ package org.apache.commons.digester3;
  */
 
 import static java.lang.String.format;
-import static org.apache.commons.beanutils.MethodUtils.invokeExactMethod;
-import static org.apache.commons.beanutils.MethodUtils.invokeMethod;
+import static org.apache.commons.beanutils.MethodUtils.getAccessibleMethod;
+import static org.apache.commons.beanutils.MethodUtils.getMatchingAccessibleMethod;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.xml.sax.Attributes;
 
@@ -61,6 +65,46 @@ public abstract class AbstractMethodRule
      */
     protected boolean fireOnBegin = false;
 
+    /**
+     * The class named {@link #paramTypeName}, as loaded by {@link #paramTypeClassLoader}.
+     */
+    private Class<?> loadedParamType;
+
+    /**
+     * The class loader {@link #loadedParamType} has been loaded with.
+     */
+    private ClassLoader paramTypeClassLoader;
+
+    /**
+     * The methods invoked so far, keyed by the class of the target object and then by the parameter type.
+     */
+    private final Map<Class<?>, Map<Class<?>, Method>> methods = new HashMap<Class<?>, Map<Class<?>, Method>>();
+
+    /**
+     * The method name the cached methods have been resolved for.
+     */
+    private String methodsName;
+
+    /**
+     * The match policy the cached methods have been resolved with.
+     */
+    private boolean methodsExactMatch;
+
+    /**
+     * The class of the target object the method has been last invoked on.
+     */
+    private Class<?> lastTargetType;
+
+    /**
+     * The parameter type of the method last invoked.
+     */
+    private Class<?> lastParamType;
+
+    /**
+     * The method last invoked.
+     */
+    private Method lastMethod;
+
     /**
      * Construct a "set next" rule with the specified method name. The method's argument type is assumed to be the class
      * of the child object.
@@ -226,24 +270,98 @@ public abstract class AbstractMethodRule
         }
 
         // Call the specified method
-        final Class<?> paramTypes[] = new Class<?>[1];
-        if ( paramType != null )
+        final Class<?> paramType;
+        if ( this.paramType != null )
         {
-            paramTypes[0] = getDigester().getClassLoader().loadClass( paramTypeName );
+            paramType = getParamType();
         }
         else
         {
-            paramTypes[0] = child.getClass();
+            paramType = DeferredObject.typeOf( child );
         }
 
-        if ( useExactMatch )
+        final Method method = getMethod( DeferredObject.typeOf( parent ), paramType );
+        final Object[] args = new Object[] { DeferredObject.resolve( child ) };
+        final Object target = DeferredObject.resolve( parent );
+        if ( !DeferredObject.defer( method, target, args ) )
         {
-            invokeExactMethod( parent, methodName, new Object[] { child }, paramTypes );
+            method.invoke( target, args );
         }
-        else
+    }
+
+    /**
+     * Returns the class named {@link #paramTypeName}, loaded by the digester class loader the first time.
+     *
+     * @return the class named {@link #paramTypeName}
+     * @throws ClassNotFoundException if the class can not be loaded
+     */
+    private Class<?> getParamType()
+        throws ClassNotFoundException
+    {
+        final ClassLoader classLoader = getDigester().getClassLoader();
+        if ( loadedParamType == null || classLoader != paramTypeClassLoader
+            || !loadedParamType.getName().equals( paramTypeName ) )
+        {
+            loadedParamType = classLoader.loadClass( paramTypeName );
+            paramTypeClassLoader = classLoader;
+        }
+        return loadedParamType;
+    }
+
+    /**
+     * Returns the method to be invoked on an instance of the given class, looking it up through
+     * <code>MethodUtils</code> only the first time.
+     *
+     * @param targetType the class of the object the method is invoked on
+     * @param paramType the type of the method parameter
+     * @return the method to be invoked
+     * @throws NoSuchMethodException if there is no such accessible method
+     */
+    private Method getMethod( final Class<?> targetType, final Class<?> paramType )
+        throws NoSuchMethodException
+    {
+        if ( methodName != methodsName || useExactMatch != methodsExactMatch )
+        {
+            methods.clear();
+            methodsName = methodName;
+            methodsExactMatch = useExactMatch;
+            lastMethod = null;
+        }
+        else if ( lastMethod != null && targetType == lastTargetType && paramType == lastParamType )
         {
-            invokeMethod( parent, methodName, new Object[] { child }, paramTypes );
+            return lastMethod;
         }
+
+        Map<Class<?>, Method> targetMethods = methods.get( targetType );
+        if ( targetMethods == null )
+        {
+            targetMethods = new HashMap<Class<?>, Method>();
+            methods.put( targetType, targetMethods );
+        }
+        Method method = targetMethods.get( paramType );
+        if ( method == null )
+        {
+            final Class<?>[] paramTypes = new Class<?>[] { paramType };
+            if ( useExactMatch )
+            {
+                method = getAccessibleMethod( targetType, methodName, paramTypes );
+            }
+            else
+            {
+                method = getMatchingAccessibleMethod( targetType, methodName, paramTypes );
+            }
+            if ( method == null )
+            {
+                throw new NoSuchMethodException( "No such accessible method: " + methodName + "() on object: "
+                    + targetType.getName() );
+            }
+            targetMethods.put( paramType, method );
+        }
+
+        lastTargetType = targetType;
+        lastParamType = paramType;
+        lastMethod = method;
+        return method;
     }
 
     /**
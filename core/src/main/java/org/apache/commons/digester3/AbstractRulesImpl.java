@@ -19,6 +19,7 @@ package org.apache.commons.digester3;
  * under the License.
  */
 
+import org.xml.sax.Attributes;
 
 /**
  * <p>
@@ -115,4 +116,39 @@ public abstract class AbstractRulesImpl
      */
     protected abstract void registerRule( String pattern, Rule rule );
 
+    /**
+     * Checks whether {@link #match(String, String, String, Attributes)} is implemented by the given class, that is, it
+     * has not been redefined by a subclass.
+     *
+     * @param type the class expected to implement the <code>match</code> method
+     * @return true, if the <code>match</code> method is implemented by the given class
+     * @since 3.3
+     */
+    final boolean isMatchDeclaredBy( final Class<?> type )
+    {
+        return isMatchDeclaredBy( this, type );
+    }
+
+    /**
+     * Checks whether {@link Rules#match(String, String, String, Attributes)} is implemented by the given class for the
+     * given rules, that is, it has not been redefined by a subclass.
+     *
+     * @param rules the rules whose <code>match</code> method is checked
+     * @param type the class expected to implement the <code>match</code> method
+     * @return true, if the <code>match</code> method of the rules is implemented by the given class
+     * @since 3.3
+     */
+    static boolean isMatchDeclaredBy( final Rules rules, final Class<?> type )
+    {
+        try
+        {
+            return rules.getClass().getMethod( "match", String.class, String.class, String.class, Attributes.class )
+                                   .getDeclaringClass() == type;
+        }
+        catch ( final NoSuchMethodException e )
+        {
+            return false;
+        }
+    }
+
 }
@@ -0,0 +1,141 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Unsynchronized, array backed stack used for the internal stacks of the {@link Digester}.
+ * Unlike <code>java.util.Stack</code>, no monitor is taken on any operation, and reading past the bottom of the stack
+ * returns <code>null</code> instead of throwing an exception: callers that allow <code>null</code> elements have to
+ * check the {@link #size()} first.
+ *
+ * @param <E> the type of the stacked elements
+ * @since 3.3
+ */
+final class ArrayStack<E>
+{
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Pushes the given element onto the top of the stack.
+     *
+     * @param element the element to be pushed, may be null
+     */
+    public void push( final E element )
+    {
+        if ( size == elements.length )
+        {
+            elements = Arrays.copyOf( elements, size * 2 );
+        }
+        elements[size++] = element;
+    }
+
+    /**
+     * Removes the top element of the stack and returns it.
+     *
+     * @return the top element of the stack, or <code>null</code> if the stack is empty
+     */
+    public E pop()
+    {
+        if ( size == 0 )
+        {
+            return null;
+        }
+        final E element = elementAt( --size );
+        elements[size] = null;
+        return element;
+    }
+
+    /**
+     * Returns the top element of the stack, without removing it.
+     *
+     * @return the top element of the stack, or <code>null</code> if the stack is empty
+     */
+    public E peek()
+    {
+        return ( size == 0 ) ? null : elementAt( size - 1 );
+    }
+
+    /**
+     * Returns the n'th element down the stack, where 0 is the top element.
+     *
+     * @param n the index of the element, from the top of the stack
+     * @return the n'th element down the stack, or <code>null</code> if there is no such element
+     */
+    public E peek( final int n )
+    {
+        final int index = ( size - 1 ) - n;
+        return ( index < 0 || index >= size ) ? null : elementAt( index );
+    }
+
+    /**
+     * Returns the element at the given index, where 0 is the bottom element.
+     *
+     * @param index the index of the element, from the bottom of the stack
+     * @return the element at the given index, or <code>null</code> if there is no such element
+     */
+    public E get( final int index )
+    {
+        return ( index < 0 || index >= size ) ? null : elementAt( index );
+    }
+
+    /**
+     * Returns the number of elements in the stack.
+     *
+     * @return the number of elements in the stack
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns true if the stack does not contain any element.
+     *
+     * @return true if the stack does not contain any element
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the elements of the stack.
+     */
+    public void clear()
+    {
+        Arrays.fill( elements, 0, size, null );
+        size = 0;
+    }
+
+    private E elementAt( final int index )
+    {
+        @SuppressWarnings( "unchecked" ) // only E instances are pushed
+        final E element = (E) elements[index];
+        return element;
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.xml.sax.Attributes;
+
+/**
+ * <p>
+ * Optional extension of the {@link Rules} interface for matching policies that can declare their results independent
+ * of the attributes of the matched element.
+ * </p>
+ * <p>
+ * When {@link #isAttributesIndependent()} returns true, {@link Rules#match(String, String, String, Attributes)} always
+ * returns the same rules for the same namespace URI and nesting pattern, as long as no rule is added or removed, so
+ * that the results can be safely memoized, for example by {@link CachingRules}.
+ * </p>
+ *
+ * @since 3.3
+ */
+public interface AttributesIndependentRules
+    extends Rules
+{
+
+    /**
+     * Returns true if the rules matched by this instance only depend on the namespace URI and on the nesting pattern of
+     * the element, and not on its attributes.
+     *
+     * @return true if the matched rules do not depend on the element attributes
+     */
+    boolean isAttributesIndependent();
+
+}
@@ -187,6 +187,13 @@ public class BeanPropertySetterRule
                                                      bodyText ) );
         }
 
+        if ( top instanceof DeferredObject )
+        {
+            // the property is checked and set once the object has been constructed
+            ( (DeferredObject) top ).setProperty( property, bodyText, DeferredObject.PropertyCheck.EXISTING );
+            return;
+        }
+
         // Force an exception if the property does not exist
         // (BeanUtils.setProperty() silently returns in this case)
         if ( top instanceof DynaBean )
@@ -0,0 +1,425 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+
+/**
+ * <p>
+ * <code>Rules</code> <em>Decorator</em> that memoizes the rules matched by the wrapped implementation.
+ * </p>
+ * <p>
+ * The same element paths are usually met many times while parsing a document, and each time the wrapped
+ * implementation computes the same matches again. This decorator keeps the matches of the most recently used paths,
+ * keyed by namespace URI and path, up to a maximum number of entries; when the maximum is reached the least recently
+ * used entry is evicted. The memoized matches are discarded every time a rule is added or the rules are cleared.
+ * </p>
+ * <p>
+ * Matches are memoized only when the wrapped implementation is an {@link AttributesIndependentRules} declaring its
+ * matches independent of the element attributes, otherwise every call is delegated to the wrapped implementation.
+ * </p>
+ * <p>
+ * For example,
+ *
+ * <pre>
+ *   CachingRules rules = new CachingRules( new ExtendedBaseRules(), 500 );
+ *   ...
+ *   digester.setRules( rules );
+ *   ...
+ * </pre>
+ * </p>
+ * <p>
+ * Rules added directly to the wrapped implementation, rather than through this decorator, are not seen until
+ * {@link #clearCache()} is called. The lists returned by {@link #match(String, String, String, Attributes)} are shared
+ * and cannot be modified.
+ * </p>
+ * <p>
+ * <code>CachingRules</code> follows the <em>Decorator</em> pattern.
+ * </p>
+ *
+ * @since 3.3
+ */
+public class CachingRules
+    implements AttributesIndependentRules, PruningRules
+{
+
+    // --------------------------------------------------------- Fields
+
+    /** The default maximum number of memoized matches. */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /** The Rules implementation that this class wraps. */
+    private final Rules wrappedRules;
+
+    /** The maximum number of memoized matches. */
+    private final int maxSize;
+
+    /** The memoized matches, in access order. */
+    private final Map<MatchKey, List<Rule>> cache;
+
+    /** Whether the wrapped implementation can be memoized, evaluated the first time it is needed. */
+    private Boolean cacheable;
+
+    /** The number of matches returned from the cache. */
+    private long hitCount;
+
+    /** The number of matches computed by the wrapped implementation and memoized. */
+    private long missCount;
+
+    /** The number of memoized matches evicted to respect the maximum size. */
+    private long evictionCount;
+
+    /**
+     * Whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the first
+     * time it is needed.
+     */
+    private Boolean ownMatch;
+
+    // --------------------------------------------------------- Constructor
+
+    /**
+     * Creates a new decorator memoizing at most {@link #DEFAULT_MAX_SIZE} matches.
+     *
+     * @param wrappedRules the wrapped <code>Rules</code> implementation, not null
+     */
+    public CachingRules( final Rules wrappedRules )
+    {
+        this( wrappedRules, DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * Creates a new decorator memoizing at most the given number of matches.
+     *
+     * @param wrappedRules the wrapped <code>Rules</code> implementation, not null
+     * @param maxSize the maximum number of memoized matches, must be positive
+     */
+    public CachingRules( final Rules wrappedRules, final int maxSize )
+    {
+        if ( wrappedRules == null )
+        {
+            throw new IllegalArgumentException( "Wrapped rules must not be null" );
+        }
+        if ( maxSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Maximum cache size must be positive" );
+        }
+        this.wrappedRules = wrappedRules;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<MatchKey, List<Rule>>( 16, 0.75f, true )
+        {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<MatchKey, List<Rule>> eldest )
+            {
+                if ( size() > CachingRules.this.maxSize )
+                {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+
+        };
+    }
+
+    // --------------------------------------------------------- Properties
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Digester getDigester()
+    {
+        return wrappedRules.getDigester();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDigester( final Digester digester )
+    {
+        wrappedRules.setDigester( digester );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI()
+    {
+        return wrappedRules.getNamespaceURI();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceURI( final String namespaceURI )
+    {
+        wrappedRules.setNamespaceURI( namespaceURI );
+    }
+
+    /**
+     * Gets the wrapped <code>Rules</code> implementation.
+     *
+     * @return the wrapped <code>Rules</code> implementation
+     */
+    public Rules getWrappedRules()
+    {
+        return wrappedRules;
+    }
+
+    /**
+     * Gets the maximum number of memoized matches.
+     *
+     * @return the maximum number of memoized matches
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of currently memoized matches.
+     *
+     * @return the number of currently memoized matches
+     */
+    public int getSize()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Gets the number of matches returned from the cache.
+     *
+     * @return the number of matches returned from the cache
+     */
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of matches that had to be computed by the wrapped implementation, while memoization was enabled.
+     *
+     * @return the number of matches computed by the wrapped implementation
+     */
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of memoized matches evicted because the maximum size was reached.
+     *
+     * @return the number of evicted matches
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Returns true if the matches of the wrapped implementation are memoized, that is, the wrapped implementation
+     * declares its matches independent of the element attributes.
+     *
+     * @return true if the matches of the wrapped implementation are memoized
+     */
+    public boolean isCaching()
+    {
+        if ( cacheable == null )
+        {
+            cacheable = ( wrappedRules instanceof AttributesIndependentRules )
+                && ( (AttributesIndependentRules) wrappedRules ).isAttributesIndependent();
+        }
+        return cacheable;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAttributesIndependent()
+    {
+        return isOwnMatch() && isCaching();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canMatchDescendants( final String pattern )
+    {
+        return !isOwnMatch() || !( wrappedRules instanceof PruningRules )
+            || ( (PruningRules) wrappedRules ).canMatchDescendants( pattern );
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> match( final String namespaceURI, final String pattern, final String name, final Attributes attributes )
+    {
+        if ( !isCaching() )
+        {
+            return wrappedRules.match( namespaceURI, pattern, name, attributes );
+        }
+
+        final MatchKey key = new MatchKey( namespaceURI, pattern );
+        List<Rule> matches = cache.get( key );
+        if ( matches != null )
+        {
+            hitCount++;
+            return matches;
+        }
+
+        missCount++;
+        final List<Rule> wrappedMatches = wrappedRules.match( namespaceURI, pattern, name, attributes );
+        if ( wrappedMatches == null || wrappedMatches.isEmpty() )
+        {
+            matches = Collections.emptyList();
+        }
+        else
+        {
+            // copied, the wrapped implementation may return its own mutable lists
+            matches = Collections.unmodifiableList( new ArrayList<Rule>( wrappedMatches ) );
+        }
+        cache.put( key, matches );
+        return matches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> rules()
+    {
+        return wrappedRules.rules();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        wrappedRules.clear();
+        clearCache();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add( final String pattern, final Rule rule )
+    {
+        wrappedRules.add( pattern, rule );
+        clearCache();
+    }
+
+    /**
+     * Discards all the memoized matches, for example after rules have been added directly to the wrapped
+     * implementation. The hit, miss and eviction counters are not reset.
+     */
+    public void clearCache()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics()
+    {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    // --------------------------------------------------------- Private Methods
+
+    /**
+     * Checks whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the
+     * first time it is needed.
+     *
+     * @return true, if the <code>match</code> method is implemented by this class
+     */
+    private boolean isOwnMatch()
+    {
+        if ( ownMatch == null )
+        {
+            ownMatch = AbstractRulesImpl.isMatchDeclaredBy( this, CachingRules.class );
+        }
+        return ownMatch;
+    }
+
+    // --------------------------------------------------------- Inner Classes
+
+    /**
+     * The key of a memoized match: namespace URI and element path.
+     */
+    private static final class MatchKey
+    {
+
+        private final String namespaceURI;
+
+        private final String pattern;
+
+        private final int hash;
+
+        MatchKey( final String namespaceURI, final String pattern )
+        {
+            this.namespaceURI = namespaceURI;
+            this.pattern = pattern;
+            this.hash = 31 * ( namespaceURI == null ? 0 : namespaceURI.hashCode() ) + pattern.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals( final Object obj )
+        {
+            if ( !( obj instanceof MatchKey ) )
+            {
+                return false;
+            }
+            final MatchKey other = (MatchKey) obj;
+            return pattern.equals( other.pattern )
+                && ( namespaceURI == null ? other.namespaceURI == null : namespaceURI.equals( other.namespaceURI ) );
+        }
+
+    }
+
+}
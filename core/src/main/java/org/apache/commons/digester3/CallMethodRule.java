@@ -22,11 +22,14 @@ package org.apache.commons.digester3;
 import static java.lang.System.arraycopy;
 import static java.lang.String.format;
 import static java.util.Arrays.fill;
-import static org.apache.commons.beanutils.ConvertUtils.convert;
-import static org.apache.commons.beanutils.MethodUtils.invokeExactMethod;
-import static org.apache.commons.beanutils.MethodUtils.invokeMethod;
+import static org.apache.commons.beanutils.MethodUtils.getAccessibleMethod;
+import static org.apache.commons.beanutils.MethodUtils.getMatchingAccessibleMethod;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Formatter;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -40,7 +43,8 @@ import org.xml.sax.SAXException;
  * By using {@link #CallMethodRule(String methodName)} a method call can be made to a method which accepts no arguments.
  * </p>
  * <p>
- * Incompatible method parameter types are converted using <code>org.apache.commons.beanutils.ConvertUtils</code>.
+ * Incompatible method parameter types are converted using <code>org.apache.commons.beanutils.ConvertUtils</code>, or
+ * the {@link Digester#getConversionRegistry() ConversionRegistry} of the digester if any.
  * </p>
  * <p>
  * This rule now uses {@link org.apache.commons.beanutils.MethodUtils#invokeMethod} by default.
@@ -87,6 +91,11 @@ public class CallMethodRule
     extends Rule
 {
 
+    /**
+     * The parameters of the methods invoked without parameters.
+     */
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -288,6 +297,36 @@ public class CallMethodRule
      */
     private boolean useExactMatch = false;
 
+    /**
+     * The methods invoked so far, keyed by the class of the target object.
+     */
+    private final Map<Class<?>, Method> methods = new HashMap<Class<?>, Method>();
+
+    /**
+     * The method name the cached methods have been resolved for.
+     */
+    private String methodsName;
+
+    /**
+     * The parameter types the cached methods have been resolved for.
+     */
+    private Class<?>[] methodsParamTypes;
+
+    /**
+     * The match policy the cached methods have been resolved with.
+     */
+    private boolean methodsExactMatch;
+
+    /**
+     * The values the method is invoked with, reused by every invocation that is not deferred.
+     */
+    private Object[] reusedValues;
+
+    /**
+     * The body text passed as the only parameter, reused by every invocation.
+     */
+    private final Object[] bodyParameters = new Object[1];
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -348,9 +387,7 @@ public class CallMethodRule
         // Push an array to capture the parameter values if necessary
         if ( paramCount > 0 )
         {
-            final Object parameters[] = new Object[paramCount];
-            fill( parameters, null );
-            getDigester().pushParams( parameters );
+            getDigester().pushNewParams( paramCount );
         }
     }
 
@@ -367,6 +404,16 @@ public class CallMethodRule
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isBodyTextConsumer()
+    {
+        // the body text is the method parameter only when there are no parameters rules, unless a subclass uses it
+        return paramCount == 0 || getBodyDeclaringClass() != CallMethodRule.class;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -420,7 +467,8 @@ public class CallMethodRule
                 return;
             }
 
-            parameters = new Object[] { bodyText };
+            bodyParameters[0] = bodyText;
+            parameters = bodyParameters;
             if ( paramTypes.length == 0 )
             {
                 paramTypes = new Class[] { String.class };
@@ -431,28 +479,44 @@ public class CallMethodRule
             // When paramCount is zero and paramTypes.length is zero it
             // means that we truly are calling a method with no parameters.
             // Nothing special needs to be done here.
-            parameters = new Object[0];
-            paramTypes = new Class<?>[0];
+            parameters = NO_PARAMETERS;
+            if ( paramTypes == null )
+            {
+                paramTypes = new Class<?>[0];
+            }
         }
 
         // Construct the parameter values array we will need
         // We only do the conversion if the param value is a String and
         // the specified paramType is not String.
-        final Object[] paramValues = new Object[paramTypes.length];
-        for ( int i = 0; i < paramTypes.length; i++ )
+        final ConversionRegistry conversions = getDigester().getConversionRegistry();
+        if ( reusedValues == null || reusedValues.length != paramTypes.length )
         {
-            // convert nulls and convert stringy parameters
-            // for non-stringy param types
-            if ( parameters[i] == null
-                || ( parameters[i] instanceof String && !String.class.isAssignableFrom( paramTypes[i] ) ) )
-            {
-                paramValues[i] = convert( (String) parameters[i], paramTypes[i] );
-            }
-            else
+            reusedValues = new Object[paramTypes.length];
+        }
+        final Object[] paramValues = reusedValues;
+        try
+        {
+            for ( int i = 0; i < paramTypes.length; i++ )
             {
-                paramValues[i] = parameters[i];
+                // convert nulls and convert stringy parameters
+                // for non-stringy param types
+                if ( parameters[i] == null
+                    || ( parameters[i] instanceof String && !String.class.isAssignableFrom( paramTypes[i] ) ) )
+                {
+                    paramValues[i] = ConversionRegistry.convert( conversions, (String) parameters[i], paramTypes[i] );
+                }
+                else
+                {
+                    paramValues[i] = parameters[i];
+                }
             }
         }
+        finally
+        {
+            // the body text has been copied into the values, whether the invocation is deferred or not
+            bodyParameters[0] = null;
+        }
 
         // Determine the target object for the method call
         Object target;
@@ -487,22 +551,73 @@ public class CallMethodRule
             getDigester().getLogger().debug( formatter.toString() );
         }
 
-        Object result = null;
-        if ( useExactMatch )
+        final Method method = getMethod( DeferredObject.typeOf( target ) );
+        if ( DeferredObject.resolveAll( paramValues ) || target instanceof DeferredObject )
         {
-            // invoke using exact match
-            result = invokeExactMethod( target, methodName, paramValues, paramTypes );
+            // invoked once the objects involved have been constructed, the result is not available; the values are
+            // kept until then, so they can not be reused
+            DeferredObject.defer( method, target, paramValues.clone() );
+            fill( paramValues, null );
+            return;
+        }
 
+        final Object result;
+        try
+        {
+            result = method.invoke( target, paramValues );
         }
-        else
+        finally
         {
-            // invoke using fuzzier match
-            result = invokeMethod( target, methodName, paramValues, paramTypes );
+            // the reused array must not retain the parsed objects
+            fill( paramValues, null );
         }
 
         processMethodCallResult( result );
     }
 
+    /**
+     * Returns the method to be invoked on an instance of the given class, looking it up through
+     * <code>MethodUtils</code> only the first time.
+     *
+     * @param targetType the class of the object the method is invoked on
+     * @return the method to be invoked
+     * @throws NoSuchMethodException if there is no such accessible method
+     */
+    private Method getMethod( final Class<?> targetType )
+        throws NoSuchMethodException
+    {
+        if ( methodName != methodsName || useExactMatch != methodsExactMatch
+            || !Arrays.equals( paramTypes, methodsParamTypes ) )
+        {
+            methods.clear();
+            methodsName = methodName;
+            methodsExactMatch = useExactMatch;
+            methodsParamTypes = paramTypes.clone();
+        }
+
+        Method method = methods.get( targetType );
+        if ( method == null )
+        {
+            if ( useExactMatch )
+            {
+                // invoke using exact match
+                method = getAccessibleMethod( targetType, methodName, paramTypes );
+            }
+            else
+            {
+                // invoke using fuzzier match
+                method = getMatchingAccessibleMethod( targetType, methodName, paramTypes );
+            }
+            if ( method == null )
+            {
+                throw new NoSuchMethodException( "No such accessible method: " + methodName + "() on object: "
+                    + targetType.getName() );
+            }
+            methods.put( targetType, method );
+        }
+        return method;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -199,6 +199,15 @@ public class CallParamRule
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isBodyTextConsumer()
+    {
+        return ( attributeName == null && !fromStack ) || getBodyDeclaringClass() != CallParamRule.class;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,53 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * <p>
+ * Optional interface for the {@link Rule}s able to process the body text of the matching elements straight from the
+ * characters accumulated by the {@link Digester}, without a <code>String</code> being created.
+ * </p>
+ * <p>
+ * The {@link Digester} calls {@link #body(String, String, char[], int, int)} in place of
+ * {@link Rule#body(String, String, String)} when no {@link Substitutor} is set; otherwise the body text is substituted
+ * first, and its characters are passed. The array is owned by the {@link Digester}, and reused for the next elements:
+ * implementations must not retain it, nor modify it.
+ * </p>
+ *
+ * @since 3.3
+ */
+public interface CharacterBodyRule
+{
+
+    /**
+     * This method is called when the body of a matching XML element is encountered.
+     *
+     * @param namespace the namespace URI of the matching element, or an empty string if the parser is not namespace
+     *            aware or the element has no namespace
+     * @param name the local name if the parser is namespace aware, or just the element name otherwise
+     * @param text the characters of the body text, not to be retained nor modified
+     * @param start the index of the first character of the body text
+     * @param length the number of characters of the body text
+     * @throws Exception if any error occurs
+     */
+    void body( String namespace, String name, char[] text, int start, int length )
+        throws Exception;
+
+}
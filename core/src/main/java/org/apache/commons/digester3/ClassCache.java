@@ -0,0 +1,196 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Shared cache of the classes loaded by name through the class loaders of the digesters, so that the rules creating
+ * objects of classes named in the document, or in an attribute of the element, do not go through the class loader for
+ * every element.
+ * </p>
+ * <p>
+ * Classes are cached per class loader, up to {@link #MAX_CLASSES} names each, the least recently used ones being
+ * evicted. Both the class loaders and the classes are only weakly referenced, so that they can still be unloaded. The
+ * names that can not be loaded are not cached.
+ * </p>
+ * <p>
+ * This class is thread safe. The classes of a class loader are looked up without locking, only finding the classes of
+ * a class loader other than the last one used takes a lock.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class ClassCache
+{
+
+    /**
+     * The maximum number of class names cached for each class loader.
+     */
+    static final int MAX_CLASSES = 256;
+
+    /**
+     * The loaded classes, keyed by class loader.
+     */
+    private static final Map<ClassLoader, LoaderClasses> CLASSES = new WeakHashMap<ClassLoader, LoaderClasses>();
+
+    /**
+     * The classes of the class loader used last, found without locking {@link #CLASSES}.
+     */
+    private static volatile LoaderClasses lastClasses;
+
+    private ClassCache()
+    {
+        // static methods only
+    }
+
+    /**
+     * Returns the class with the given name, as loaded by the given class loader.
+     *
+     * @param classLoader the class loader to be used
+     * @param className the name of the class to be loaded
+     * @return the class with the given name
+     * @throws ClassNotFoundException if the class was not found
+     */
+    static Class<?> loadClass( final ClassLoader classLoader, final String className )
+        throws ClassNotFoundException
+    {
+        final LoaderClasses classes = getClasses( classLoader );
+        Class<?> clazz = classes.get( className );
+        if ( clazz == null )
+        {
+            clazz = classLoader.loadClass( className );
+            classes.put( className, clazz );
+        }
+        return clazz;
+    }
+
+    private static LoaderClasses getClasses( final ClassLoader classLoader )
+    {
+        LoaderClasses classes = lastClasses;
+        if ( classes != null && classes.classLoader.get() == classLoader )
+        {
+            return classes;
+        }
+
+        synchronized ( CLASSES )
+        {
+            classes = CLASSES.get( classLoader );
+            if ( classes == null )
+            {
+                classes = new LoaderClasses( classLoader );
+                CLASSES.put( classLoader, classes );
+            }
+        }
+        lastClasses = classes;
+        return classes;
+    }
+
+    /**
+     * The classes loaded by a class loader, keyed by name. The least recently used one is evicted when there are more
+     * than {@link ClassCache#MAX_CLASSES}.
+     */
+    private static final class LoaderClasses
+    {
+
+        /**
+         * The class loader, weakly referenced since it is the key of these classes in {@link ClassCache#CLASSES}.
+         */
+        final WeakReference<ClassLoader> classLoader;
+
+        private final ConcurrentMap<String, CachedClass> classes = new ConcurrentHashMap<String, CachedClass>();
+
+        /**
+         * Incremented every time a class is looked up, to order the cached classes by last use.
+         */
+        private final AtomicLong clock = new AtomicLong();
+
+        LoaderClasses( final ClassLoader classLoader )
+        {
+            this.classLoader = new WeakReference<ClassLoader>( classLoader );
+        }
+
+        Class<?> get( final String className )
+        {
+            final CachedClass cached = classes.get( className );
+            if ( cached == null )
+            {
+                return null;
+            }
+            cached.lastUsed = clock.incrementAndGet();
+            return cached.clazz.get();
+        }
+
+        void put( final String className, final Class<?> clazz )
+        {
+            classes.put( className, new CachedClass( clazz, clock.incrementAndGet() ) );
+            if ( classes.size() > MAX_CLASSES )
+            {
+                evict();
+            }
+        }
+
+        private synchronized void evict()
+        {
+            while ( classes.size() > MAX_CLASSES )
+            {
+                Map.Entry<String, CachedClass> eldest = null;
+                for ( final Map.Entry<String, CachedClass> entry : classes.entrySet() )
+                {
+                    if ( eldest == null || entry.getValue().lastUsed < eldest.getValue().lastUsed )
+                    {
+                        eldest = entry;
+                    }
+                }
+                if ( eldest == null )
+                {
+                    return;
+                }
+                classes.remove( eldest.getKey(), eldest.getValue() );
+            }
+        }
+
+    }
+
+    /**
+     * A class, weakly referenced, with the time it was last looked up.
+     */
+    private static final class CachedClass
+    {
+
+        final WeakReference<Class<?>> clazz;
+
+        volatile long lastUsed;
+
+        CachedClass( final Class<?> clazz, final long lastUsed )
+        {
+            this.clazz = new WeakReference<Class<?>>( clazz );
+            this.lastUsed = lastUsed;
+        }
+
+    }
+
+}
@@ -0,0 +1,172 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import static java.lang.String.format;
+
+import java.lang.reflect.Method;
+
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Rule implementation that hands the object on the top of the stack to an {@link ObjectConsumer} when the end of the
+ * element is reached, instead of linking it to its parent as {@link SetNextRule} does.
+ * </p>
+ * <p>
+ * Since the object is not referenced by the object graph, it is released as soon as it is popped from the stack and
+ * the consumer has done with it: documents holding any number of records can be processed in constant memory.
+ * </p>
+ * <p>
+ * When the object has not been constructed yet, because its constructor arguments are still being collected without
+ * a proxy, it is handed to the consumer right after its construction.
+ * </p>
+ *
+ * @since 3.3
+ */
+public class ConsumeObjectRule
+    extends Rule
+{
+
+    /**
+     * The method invoked on the rule when the object has been constructed.
+     */
+    private static final Method CONSUME;
+
+    static
+    {
+        try
+        {
+            CONSUME = ConsumeObjectRule.class.getDeclaredMethod( "consume", Object.class );
+        }
+        catch ( final NoSuchMethodException e )
+        {
+            throw new ExceptionInInitializerError( e );
+        }
+    }
+
+    /**
+     * The type of the objects consumed.
+     */
+    private final Class<?> type;
+
+    /**
+     * The consumer the completed objects are handed to.
+     */
+    private final ObjectConsumer<?> consumer;
+
+    /**
+     * Construct a "consume object" rule that hands the completed objects to the specified consumer.
+     *
+     * @param <T> the type of the objects consumed
+     * @param type the type of the objects consumed, any other object aborts the parse
+     * @param consumer the consumer the completed objects are handed to
+     */
+    public <T> ConsumeObjectRule( final Class<T> type, final ObjectConsumer<? super T> consumer )
+    {
+        if ( type == null )
+        {
+            throw new IllegalArgumentException( "Type must not be null." );
+        }
+        if ( consumer == null )
+        {
+            throw new IllegalArgumentException( "ObjectConsumer must not be null." );
+        }
+        this.type = type;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Returns the type of the objects consumed.
+     *
+     * @return the type of the objects consumed
+     */
+    public Class<?> getType()
+    {
+        return type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void end( final String namespace, final String name )
+        throws Exception
+    {
+        final Object peeked = getDigester().peek();
+        final Object top = DeferredObject.resolve( peeked );
+        if ( top == null )
+        {
+            throw new SAXException( format( "[ConsumeObjectRule]{%s} No object to consume",
+                                            getDigester().getMatch() ) );
+        }
+
+        if ( getDigester().getLogger().isDebugEnabled() )
+        {
+            getDigester().getLogger().debug( format( "[ConsumeObjectRule]{%s} Consume %s",
+                                                     getDigester().getMatch(),
+                                                     DeferredObject.typeOf( top ).getName() ) );
+        }
+
+        if ( DeferredObject.defer( CONSUME, this, new Object[] { top } ) )
+        {
+            // consumed once constructed
+            return;
+        }
+        consume( top );
+    }
+
+    /**
+     * Hands the given object to the consumer.
+     *
+     * @param object the completed object
+     * @throws Exception if the object is not of the expected type, or the consumer fails
+     */
+    void consume( final Object object )
+        throws Exception
+    {
+        if ( !type.isInstance( object ) )
+        {
+            throw new SAXException( format( "[ConsumeObjectRule]{%s} Expected an instance of %s, found %s",
+                                            getDigester().getMatch(),
+                                            type.getName(),
+                                            object.getClass().getName() ) );
+        }
+        consume( consumer, object );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return format( "ConsumeObjectRule[type=%s]", type.getName() );
+    }
+
+    @SuppressWarnings( "unchecked" ) // the type of the object has been checked
+    private static <T> void consume( final ObjectConsumer<T> consumer, final Object object )
+        throws Exception
+    {
+        consumer.consume( (T) object );
+    }
+
+}
@@ -0,0 +1,441 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+
+/**
+ * <p>
+ * Converts the strings taken from the parsed document to the types expected by the rules, such as the parameters of
+ * the methods invoked by {@link CallMethodRule} or the constructor arguments of {@link ObjectCreateRule}.
+ * </p>
+ * <p>
+ * By default the rules rely on the static <code>ConvertUtils.convert()</code>, that looks the converter up each time in
+ * a registry shared by all the digesters of the context class loader. A registry can be set on a single
+ * {@link Digester}, or on a <code>DigesterLoader</code>, instead: the converter of each target type is resolved the
+ * first time it is needed, in order among
+ * </p>
+ * <ol>
+ * <li>the converters {@link #register(Class, Converter) registered} on the registry;</li>
+ * <li>the built-in parsers of <code>int</code>, <code>long</code>, <code>double</code>, <code>boolean</code> and their
+ * wrappers, that parse the value directly, and only resort to <code>ConvertUtils</code> for the values they do not
+ * accept, such as <code>null</code>, so that the results are the same as the default <code>ConvertUtils</code>
+ * converters;</li>
+ * <li><code>ConvertUtils</code>, for any other type.</li>
+ * </ol>
+ * <p>
+ * Converters have to be registered before the registry is used, a registry can then be shared by digesters running
+ * on different threads.
+ * </p>
+ *
+ * @since 3.3
+ */
+public class ConversionRegistry
+{
+
+    /** Resorts to the static <code>ConvertUtils</code>. */
+    private static final StringConverter DELEGATING = new StringConverter();
+
+    private static final StringConverter INT = new StringConverter()
+    {
+
+        @Override
+        Object convert( final String value, final Class<?> type )
+        {
+            if ( isNumber( value ) )
+            {
+                try
+                {
+                    return Integer.valueOf( Integer.parseInt( value.trim() ) );
+                }
+                catch ( final NumberFormatException e )
+                {
+                    // let ConvertUtils decide
+                }
+            }
+            return super.convert( value, type );
+        }
+
+        @Override
+        int toInt( final String value, final Class<?> type )
+        {
+            if ( isNumber( value ) )
+            {
+                try
+                {
+                    return Integer.parseInt( value.trim() );
+                }
+                catch ( final NumberFormatException e )
+                {
+                    // let ConvertUtils decide
+                }
+            }
+            return ( (Number) super.convert( value, type ) ).intValue();
+        }
+
+    };
+
+    private static final StringConverter LONG = new StringConverter()
+    {
+
+        @Override
+        Object convert( final String value, final Class<?> type )
+        {
+            if ( isNumber( value ) )
+            {
+                try
+                {
+                    return Long.valueOf( Long.parseLong( value.trim() ) );
+                }
+                catch ( final NumberFormatException e )
+                {
+                    // let ConvertUtils decide
+                }
+            }
+            return super.convert( value, type );
+        }
+
+        @Override
+        long toLong( final String value, final Class<?> type )
+        {
+            if ( isNumber( value ) )
+            {
+                try
+                {
+                    return Long.parseLong( value.trim() );
+                }
+                catch ( final NumberFormatException e )
+                {
+                    // let ConvertUtils decide
+                }
+            }
+            return ( (Number) super.convert( value, type ) ).longValue();
+        }
+
+    };
+
+    private static final StringConverter DOUBLE = new StringConverter()
+    {
+
+        @Override
+        Object convert( final String value, final Class<?> type )
+        {
+            if ( isNumber( value ) )
+            {
+                try
+                {
+                    return Double.valueOf( Double.parseDouble( value.trim() ) );
+                }
+                catch ( final NumberFormatException e )
+                {
+                    // let ConvertUtils decide
+                }
+            }
+            return super.convert( value, type );
+        }
+
+        @Override
+        double toDouble( final String value, final Class<?> type )
+        {
+            if ( isNumber( value ) )
+            {
+                try
+                {
+                    return Double.parseDouble( value.trim() );
+                }
+                catch ( final NumberFormatException e )
+                {
+                    // let ConvertUtils decide
+                }
+            }
+            return ( (Number) super.convert( value, type ) ).doubleValue();
+        }
+
+    };
+
+    private static final StringConverter BOOLEAN = new StringConverter()
+    {
+
+        @Override
+        Object convert( final String value, final Class<?> type )
+        {
+            if ( "true".equalsIgnoreCase( value ) )
+            {
+                return Boolean.TRUE;
+            }
+            if ( "false".equalsIgnoreCase( value ) )
+            {
+                return Boolean.FALSE;
+            }
+            return super.convert( value, type );
+        }
+
+        @Override
+        boolean toBoolean( final String value, final Class<?> type )
+        {
+            if ( "true".equalsIgnoreCase( value ) )
+            {
+                return true;
+            }
+            if ( "false".equalsIgnoreCase( value ) )
+            {
+                return false;
+            }
+            return ( (Boolean) super.convert( value, type ) ).booleanValue();
+        }
+
+    };
+
+    private static final Map<Class<?>, StringConverter> BUILT_IN = new HashMap<Class<?>, StringConverter>();
+
+    static
+    {
+        BUILT_IN.put( int.class, INT );
+        BUILT_IN.put( Integer.class, INT );
+        BUILT_IN.put( long.class, LONG );
+        BUILT_IN.put( Long.class, LONG );
+        BUILT_IN.put( double.class, DOUBLE );
+        BUILT_IN.put( Double.class, DOUBLE );
+        BUILT_IN.put( boolean.class, BOOLEAN );
+        BUILT_IN.put( Boolean.class, BOOLEAN );
+    }
+
+    /** The converters registered by the user. */
+    private final Map<Class<?>, Converter> converters = new HashMap<Class<?>, Converter>();
+
+    /** The converters resolved so far, keyed by target type. */
+    private final Map<Class<?>, StringConverter> resolved = new ConcurrentHashMap<Class<?>, StringConverter>();
+
+    /**
+     * Registers the converter to be used for the given target type, replacing the built-in one if any.
+     *
+     * @param type the target type
+     * @param converter the converter to be used
+     * @return this registry instance, useful to chain methods
+     */
+    public ConversionRegistry register( final Class<?> type, final Converter converter )
+    {
+        if ( type == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'type' must not be null" );
+        }
+        if ( converter == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'converter' must not be null" );
+        }
+        converters.put( type, converter );
+        resolved.clear();
+        return this;
+    }
+
+    /**
+     * Removes the converter registered for the given target type, if any.
+     *
+     * @param type the target type
+     * @return this registry instance, useful to chain methods
+     */
+    public ConversionRegistry deregister( final Class<?> type )
+    {
+        converters.remove( type );
+        resolved.clear();
+        return this;
+    }
+
+    /**
+     * Checks whether a converter has been registered for the given target type.
+     *
+     * @param type the target type
+     * @return true if a converter has been registered for the given target type
+     */
+    boolean isRegistered( final Class<?> type )
+    {
+        return converters.containsKey( type );
+    }
+
+    /**
+     * Converts the given value to the given type.
+     *
+     * @param value the value to be converted, may be null
+     * @param type the target type
+     * @return the converted value
+     */
+    public Object convert( final String value, final Class<?> type )
+    {
+        return lookup( type ).convert( value, type );
+    }
+
+    /**
+     * Converts the given value to an <code>int</code>, without boxing it unless a converter has been registered for
+     * the <code>int</code> type.
+     *
+     * @param value the value to be converted, may be null
+     * @return the converted value
+     */
+    public int toInt( final String value )
+    {
+        return lookup( int.class ).toInt( value, int.class );
+    }
+
+    /**
+     * Converts the given value to a <code>long</code>, without boxing it unless a converter has been registered for
+     * the <code>long</code> type.
+     *
+     * @param value the value to be converted, may be null
+     * @return the converted value
+     */
+    public long toLong( final String value )
+    {
+        return lookup( long.class ).toLong( value, long.class );
+    }
+
+    /**
+     * Converts the given value to a <code>double</code>, without boxing it unless a converter has been registered for
+     * the <code>double</code> type.
+     *
+     * @param value the value to be converted, may be null
+     * @return the converted value
+     */
+    public double toDouble( final String value )
+    {
+        return lookup( double.class ).toDouble( value, double.class );
+    }
+
+    /**
+     * Converts the given value to a <code>boolean</code>, without boxing it unless a converter has been registered for
+     * the <code>boolean</code> type.
+     *
+     * @param value the value to be converted, may be null
+     * @return the converted value
+     */
+    public boolean toBoolean( final String value )
+    {
+        return lookup( boolean.class ).toBoolean( value, boolean.class );
+    }
+
+    /**
+     * Converts the given value to the given type, through the given registry if not null, or else through
+     * <code>ConvertUtils</code>.
+     *
+     * @param registry the registry to be used, may be null
+     * @param value the value to be converted, may be null
+     * @param type the target type
+     * @return the converted value
+     */
+    public static Object convert( final ConversionRegistry registry, final String value, final Class<?> type )
+    {
+        if ( registry == null )
+        {
+            return ConvertUtils.convert( value, type );
+        }
+        return registry.convert( value, type );
+    }
+
+    private StringConverter lookup( final Class<?> type )
+    {
+        StringConverter converter = resolved.get( type );
+        if ( converter == null )
+        {
+            final Converter registered = converters.get( type );
+            if ( registered != null )
+            {
+                converter = new RegisteredConverter( registered );
+            }
+            else
+            {
+                converter = BUILT_IN.get( type );
+                if ( converter == null )
+                {
+                    converter = DELEGATING;
+                }
+            }
+            resolved.put( type, converter );
+        }
+        return converter;
+    }
+
+    /**
+     * Checks whether the given value may be parsed as a number, <code>ConvertUtils</code> takes care of the others.
+     */
+    private static boolean isNumber( final String value )
+    {
+        return value != null && value.length() > 0;
+    }
+
+    /**
+     * Converts strings to a given type.
+     */
+    private static class StringConverter
+    {
+
+        Object convert( final String value, final Class<?> type )
+        {
+            return ConvertUtils.convert( value, type );
+        }
+
+        int toInt( final String value, final Class<?> type )
+        {
+            return ( (Number) convert( value, type ) ).intValue();
+        }
+
+        long toLong( final String value, final Class<?> type )
+        {
+            return ( (Number) convert( value, type ) ).longValue();
+        }
+
+        double toDouble( final String value, final Class<?> type )
+        {
+            return ( (Number) convert( value, type ) ).doubleValue();
+        }
+
+        boolean toBoolean( final String value, final Class<?> type )
+        {
+            return ( (Boolean) convert( value, type ) ).booleanValue();
+        }
+
+    }
+
+    /**
+     * Adapts a converter registered by the user.
+     */
+    private static final class RegisteredConverter
+        extends StringConverter
+    {
+
+        private final Converter converter;
+
+        RegisteredConverter( final Converter converter )
+        {
+            this.converter = converter;
+        }
+
+        @Override
+        Object convert( final String value, final Class<?> type )
+        {
+            return converter.convert( type, value );
+        }
+
+    }
+
+}
@@ -0,0 +1,288 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.PropertyUtils;
+
+/**
+ * <p>
+ * Stands for an object whose construction is deferred by an {@link ObjectCreateRule} not
+ * {@link ObjectCreateRule#isUsingProxy() using a proxy}, until its constructor arguments have all been collected.
+ * </p>
+ * <p>
+ * The placeholder is pushed onto the object stack in place of the object, the property assignments and the method
+ * calls the standard rules perform on it, or pass it to, are buffered in a flat array and applied in the same order
+ * once the object has been constructed.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class DeferredObject
+{
+
+    /**
+     * The check performed on a property before it is set.
+     */
+    enum PropertyCheck
+    {
+
+        /** The property is skipped if it does not exist, as <code>BeanUtils.populate()</code> does. */
+        NONE,
+
+        /** The property has to exist, as <code>PropertyUtils.getPropertyDescriptor()</code> reports. */
+        EXISTING,
+
+        /** The property has to be writeable, as <code>PropertyUtils.isWriteable()</code> reports. */
+        WRITEABLE
+
+    }
+
+    /** The buffered operations are made of 3 slots each. */
+    private static final int STRIDE = 3;
+
+    private final Class<?> type;
+
+    private final Constructor<?> constructor;
+
+    private final Object[] constructorArguments;
+
+    private final PropertySetterCache setters;
+
+    private final ConversionRegistry conversions;
+
+    /**
+     * The buffered operations, either a property assignment, as (name, value, {@link PropertyCheck}), or a method
+     * call, as ({@link Method}, target, arguments).
+     */
+    private Object[] operations = new Object[4 * STRIDE];
+
+    private int size;
+
+    private Object instance;
+
+    /**
+     * Creates a placeholder for an object to be constructed with the given arguments.
+     *
+     * @param constructor the constructor to be invoked
+     * @param constructorArguments the constructor arguments, to be collected before the object is constructed
+     * @param setters the setters shared by the objects created by the same rule
+     * @param conversions the registry the constructor arguments and the properties are converted with, may be null
+     */
+    DeferredObject( final Constructor<?> constructor, final Object[] constructorArguments,
+                    final PropertySetterCache setters, final ConversionRegistry conversions )
+    {
+        this.type = constructor.getDeclaringClass();
+        this.constructor = constructor;
+        this.constructorArguments = constructorArguments;
+        this.setters = setters;
+        this.conversions = conversions;
+    }
+
+    /**
+     * Returns the class of the given object, or of the object the given placeholder stands for.
+     *
+     * @param object an object, or a placeholder
+     * @return the class of the given object
+     */
+    static Class<?> typeOf( final Object object )
+    {
+        if ( object instanceof DeferredObject )
+        {
+            return ( (DeferredObject) object ).type;
+        }
+        return object.getClass();
+    }
+
+    /**
+     * Returns the given object, or the object the given placeholder stands for if it has been already constructed.
+     *
+     * @param object an object, or a placeholder
+     * @return the object to be used in place of the given one
+     */
+    static Object resolve( final Object object )
+    {
+        if ( object instanceof DeferredObject && ( (DeferredObject) object ).instance != null )
+        {
+            return ( (DeferredObject) object ).instance;
+        }
+        return object;
+    }
+
+    /**
+     * Replaces the already constructed placeholders in the given arguments with their objects.
+     *
+     * @param args the method arguments, modified in place
+     * @return true if some of the arguments still stands for an object not yet constructed
+     */
+    static boolean resolveAll( final Object[] args )
+    {
+        boolean pending = false;
+        for ( int i = 0; i < args.length; i++ )
+        {
+            args[i] = resolve( args[i] );
+            pending |= args[i] instanceof DeferredObject;
+        }
+        return pending;
+    }
+
+    /**
+     * Buffers the given method call if the target or some argument stands for an object not yet constructed, the call
+     * is performed as soon as all of them have been constructed.
+     *
+     * @param method the method to be invoked
+     * @param target the target object, or a placeholder, already {@link #resolve(Object) resolved}
+     * @param args the method arguments, already {@link #resolveAll(Object[]) resolved}
+     * @return true if the call has been buffered, false if it can be performed immediately
+     */
+    static boolean defer( final Method method, final Object target, final Object[] args )
+    {
+        if ( target instanceof DeferredObject )
+        {
+            ( (DeferredObject) target ).add( method, target, args );
+            return true;
+        }
+        for ( final Object arg : args )
+        {
+            if ( arg instanceof DeferredObject )
+            {
+                ( (DeferredObject) arg ).add( method, target, args );
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Buffers the assignment of the given property.
+     *
+     * @param name the property name
+     * @param value the property value, to be converted
+     * @param check the check to be performed on the property before it is set
+     */
+    void setProperty( final String name, final String value, final PropertyCheck check )
+    {
+        add( name, value, check );
+    }
+
+    /**
+     * Returns the object this placeholder stands for, <code>null</code> if it has not been constructed yet.
+     *
+     * @return the object this placeholder stands for, <code>null</code> if it has not been constructed yet
+     */
+    Object getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Constructs the object with the collected arguments, then applies the buffered operations in order.
+     *
+     * @return the constructed object
+     * @throws Exception if any error occurs
+     */
+    Object construct()
+        throws Exception
+    {
+        ObjectCreateRule.convertTo( constructor.getParameterTypes(), constructorArguments, conversions );
+        instance = constructor.newInstance( constructorArguments );
+
+        final BeanUtilsBean beanUtils = BeanUtilsBean.getInstance();
+        for ( int i = 0; i < size; i += STRIDE )
+        {
+            if ( operations[i] instanceof Method )
+            {
+                final Method method = (Method) operations[i];
+                final Object target = resolve( operations[i + 1] );
+                final Object[] args = (Object[]) operations[i + 2];
+                resolveAll( args );
+                if ( !defer( method, target, args ) )
+                {
+                    method.invoke( target, args );
+                }
+            }
+            else
+            {
+                final String name = (String) operations[i];
+                final String value = (String) operations[i + 1];
+                final PropertySetter setter = setters.get( beanUtils, instance, name );
+                switch ( (PropertyCheck) operations[i + 2] )
+                {
+                    case WRITEABLE:
+                        if ( !setter.isWriteable( instance, name ) )
+                        {
+                            throw new NoSuchMethodException( "Property " + name + " can't be set" );
+                        }
+                        break;
+                    case EXISTING:
+                        checkExisting( name );
+                        break;
+                    default:
+                        break;
+                }
+                setter.set( beanUtils, conversions, instance, name, value );
+            }
+        }
+        operations = null;
+        return instance;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "Deferred " + type.getName() + ( instance != null ? "[" + instance + "]" : "" );
+    }
+
+    private void checkExisting( final String name )
+        throws Exception
+    {
+        if ( instance instanceof DynaBean )
+        {
+            if ( ( (DynaBean) instance ).getDynaClass().getDynaProperty( name ) == null )
+            {
+                throw new NoSuchMethodException( "Bean has no property named " + name );
+            }
+        }
+        else if ( PropertyUtils.getPropertyDescriptor( instance, name ) == null )
+        {
+            throw new NoSuchMethodException( "Bean has no property named " + name );
+        }
+    }
+
+    private void add( final Object first, final Object second, final Object third )
+    {
+        if ( size == operations.length )
+        {
+            operations = Arrays.copyOf( operations, size * 2 );
+        }
+        operations[size++] = first;
+        operations[size++] = second;
+        operations[size++] = third;
+    }
+
+}
@@ -31,6 +31,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EmptyStackException;
 import java.util.HashMap;
@@ -44,6 +45,8 @@ import java.util.concurrent.Future;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.validation.Schema;
 
 import org.apache.commons.logging.Log;
@@ -132,14 +135,20 @@ public class Digester
     // --------------------------------------------------- Instance Variables
 
     /**
-     * The body text of the current element.
+     * The body text of the current element, <code>null</code> if none of the rules matching the current element
+     * consumes it.
      */
     private StringBuilder bodyText = new StringBuilder();
 
     /**
      * The stack of body text string buffers for surrounding elements.
      */
-    private final Stack<StringBuilder> bodyTexts = new Stack<StringBuilder>();
+    private final ArrayStack<StringBuilder> bodyTexts = new ArrayStack<StringBuilder>();
+
+    /**
+     * The characters of the body text passed to the {@link CharacterBodyRule}s, reused for all the elements.
+     */
+    private char[] bodyChars = new char[64];
 
     /**
      * Stack whose elements are List objects, each containing a list of Rule objects as returned from Rules.getMatch().
@@ -149,7 +158,13 @@ public class Digester
      *
      * @since 1.6
      */
-    private final Stack<List<Rule>> matches = new Stack<List<Rule>>();
+    private final ArrayStack<List<Rule>> matches = new ArrayStack<List<Rule>>();
+
+    /**
+     * The Stack returned by {@link #getMatches()}, holding the matches instead of {@link #matches} once it has been
+     * requested, so that it follows the parse.
+     */
+    private Stack<List<Rule>> matchesStack;
 
     /**
      * The class loader to use for instantiating application objects. If not specified, the context class loader, or the
@@ -189,15 +204,62 @@ public class Digester
     private Locator locator = null;
 
     /**
-     * The current match pattern for nested element processing.
+     * The names of the elements currently being processed, one per nesting level.
      */
-    private String match = "";
+    private String[] elementNames = new String[16];
+
+    /**
+     * The match patterns of the elements currently being processed, one per nesting level. Patterns are computed only
+     * when needed, so entries may be <code>null</code>.
+     */
+    private String[] elementMatches = new String[16];
+
+    /**
+     * The {@link IncrementalRules} states of the elements currently being processed, one per nesting level.
+     */
+    private int[] elementStates = new int[16];
+
+    /**
+     * The current nesting level, that is the number of elements currently being processed.
+     */
+    private int elementDepth = 0;
+
+    /**
+     * The {@link IncrementalRules} instance which returned the states in {@link #elementStates}.
+     */
+    private IncrementalRules elementStatesOwner = null;
 
     /**
      * Do we want a "namespace aware" parser.
      */
     private boolean namespaceAware = false;
 
+    /**
+     * Do we want to skip the content of the elements whose descendants can not be matched by any rule.
+     */
+    private boolean subtreePruning = false;
+
+    /**
+     * The depth of the current element in the subtree being skipped, 1 being the element whose content is skipped,
+     * or 0 if no subtree is being skipped.
+     */
+    private int prunedDepth = 0;
+
+    /**
+     * Do we want the rules to look up the attributes through an index.
+     */
+    private boolean attributeIndexing = false;
+
+    /**
+     * The attributes index, filled again for every element whose rules are fired.
+     */
+    private IndexedAttributes indexedAttributes;
+
+    /**
+     * Do we want the input sources to be read with a StAX parser.
+     */
+    private boolean pullParsing = false;
+
     /**
      * The executor service to run asynchronous parse method.
      * @since 3.1
@@ -210,7 +272,7 @@ public class Digester
      * the most current one. (This architecture is required because documents can declare nested uses of the same prefix
      * for different Namespace URIs).
      */
-    private final HashMap<String, Stack<String>> namespaces = new HashMap<String, Stack<String>>();
+    private final HashMap<String, ArrayStack<String>> namespaces = new HashMap<String, ArrayStack<String>>();
 
     /**
      * Do we want a "XInclude aware" parser.
@@ -222,7 +284,13 @@ public class Digester
      *
      * @since 2.0
      */
-    private final Stack<Object[]> params = new Stack<Object[]>();
+    private final ArrayStack<Object[]> params = new ArrayStack<Object[]>();
+
+    /**
+     * The parameter arrays created by {@link #pushNewParams(int)}, indexed by their depth in the parameters stack,
+     * reused by the next arrays of the same size pushed at the same depth.
+     */
+    private Object[][] paramFrames = new Object[16][];
 
     /**
      * The SAXParser we will use to parse the input stream.
@@ -239,6 +307,11 @@ public class Digester
      */
     private XMLReader reader = null;
 
+    /**
+     * The factory of the StAX readers used to iterate over the documents.
+     */
+    private XMLInputFactory inputFactory = null;
+
     /**
      * The "root" element of the stack (in other words, the last object that was popped.
      */
@@ -260,7 +333,7 @@ public class Digester
     /**
      * The object stack being constructed.
      */
-    private final Stack<Object> stack = new Stack<Object>();
+    private final ArrayStack<Object> stack = new ArrayStack<Object>();
 
     /**
      * Do we want to use the Context ClassLoader when loading classes for instantiating new objects. Default is
@@ -294,8 +367,13 @@ public class Digester
      */
     private Substitutor substitutor;
 
+    /**
+     * The registry converting the strings taken from the document, if null <code>ConvertUtils</code> is used.
+     */
+    private ConversionRegistry conversionRegistry;
+
     /** Stacks used for interrule communication, indexed by name String */
-    private final HashMap<String, Stack<Object>> stacksByName = new HashMap<String, Stack<Object>>();
+    private final HashMap<String, ArrayStack<Object>> stacksByName = new HashMap<String, ArrayStack<Object>>();
 
     /**
      * If not null, then calls by the parser to this object's characters, startElement, endElement and
@@ -322,19 +400,12 @@ public class Digester
      */
     public String findNamespaceURI( final String prefix )
     {
-        final Stack<String> nsStack = namespaces.get( prefix );
+        final ArrayStack<String> nsStack = namespaces.get( prefix );
         if ( nsStack == null )
         {
             return null;
         }
-        try
-        {
-            return ( nsStack.peek() );
-        }
-        catch ( final EmptyStackException e )
-        {
-            return null;
-        }
+        return ( nsStack.peek() );
     }
 
     /**
@@ -393,13 +464,11 @@ public class Digester
      */
     public String getCurrentElementName()
     {
-        String elementName = match;
-        final int lastSlash = elementName.lastIndexOf( '/' );
-        if ( lastSlash >= 0 )
+        if ( elementDepth == 0 )
         {
-            elementName = elementName.substring( lastSlash + 1 );
+            return "";
         }
-        return ( elementName );
+        return elementNames[elementDepth - 1];
     }
 
     /**
@@ -526,7 +595,26 @@ public class Digester
      */
     public String getMatch()
     {
-        return match;
+        if ( elementDepth == 0 )
+        {
+            return "";
+        }
+
+        // patterns are built lazily, starting from the deepest ancestor that already has one
+        int level = elementDepth - 1;
+        while ( level > 0 && elementMatches[level - 1] == null )
+        {
+            level--;
+        }
+        for ( ; level < elementDepth; level++ )
+        {
+            if ( elementMatches[level] == null )
+            {
+                elementMatches[level] =
+                    ( level == 0 ) ? elementNames[0] : elementMatches[level - 1] + '/' + elementNames[level];
+            }
+        }
+        return elementMatches[elementDepth - 1];
     }
 
     /**
@@ -539,7 +627,33 @@ public class Digester
      */
     public Stack<List<Rule>> getMatches()
     {
-        return matches;
+        if ( matchesStack == null )
+        {
+            // from now on, the matches are pushed and popped on the returned Stack
+            matchesStack = new Stack<List<Rule>>();
+            for ( int i = 0; i < matches.size(); i++ )
+            {
+                matchesStack.push( matches.get( i ) );
+            }
+            matches.clear();
+        }
+        return matchesStack;
+    }
+
+    /**
+     * Return the list of Rule objects matching the current element, as returned from Rules.getMatch(), or
+     * <code>null</code> if no element is being processed.
+     *
+     * @return the list of Rule objects matching the current element
+     * @since 3.3
+     */
+    public List<Rule> getCurrentMatches()
+    {
+        if ( matchesStack != null )
+        {
+            return matchesStack.isEmpty() ? null : matchesStack.peek();
+        }
+        return matches.peek();
     }
 
     /**
@@ -562,6 +676,82 @@ public class Digester
         this.namespaceAware = namespaceAware;
     }
 
+    /**
+     * Return the subtree pruning flag.
+     *
+     * @return the subtree pruning flag
+     * @since 3.3
+     */
+    public boolean getSubtreePruning()
+    {
+        return subtreePruning;
+    }
+
+    /**
+     * Set the subtree pruning flag. When enabled, and the current <code>Rules</code> implementation is a
+     * {@link PruningRules}, the content of the elements whose descendants can not be matched by any rule is skipped:
+     * no pattern is computed, no rule is fired and no body text is collected for the nested elements. The elements
+     * themselves, and their own body text, are still processed as usual.
+     *
+     * @param subtreePruning The new subtree pruning flag
+     * @since 3.3
+     */
+    public void setSubtreePruning( final boolean subtreePruning )
+    {
+        this.subtreePruning = subtreePruning;
+    }
+
+    /**
+     * Return the attribute indexing flag.
+     *
+     * @return the attribute indexing flag
+     * @since 3.3
+     */
+    public boolean getAttributeIndexing()
+    {
+        return attributeIndexing;
+    }
+
+    /**
+     * Set the attribute indexing flag. When enabled, the attributes of every element some rules are fired for are
+     * indexed once, after the substitution if any, and the rules receive an {@link IndexedAttributes} view that finds
+     * an attribute by name in constant time. It pays off when several rules look up attributes by name on elements
+     * having many attributes. The same view is reused for all the elements, so rules must not keep a reference to the
+     * attributes they receive.
+     *
+     * @param attributeIndexing The new attribute indexing flag
+     * @since 3.3
+     */
+    public void setAttributeIndexing( final boolean attributeIndexing )
+    {
+        this.attributeIndexing = attributeIndexing;
+    }
+
+    /**
+     * Return the pull parsing flag.
+     *
+     * @return the pull parsing flag
+     * @since 3.3
+     */
+    public boolean getPullParsing()
+    {
+        return pullParsing;
+    }
+
+    /**
+     * Set the pull parsing flag. When enabled, the input sources are read with a StAX parser created by the
+     * {@link #getXMLInputFactory() XMLInputFactory} instead of the SAX {@link #getXMLReader() XMLReader}, the rules
+     * being fired exactly the same way. StAX parsers do not validate, and report the errors throwing them rather than
+     * to an {@link ErrorHandler}.
+     *
+     * @param pullParsing The new pull parsing flag
+     * @since 3.3
+     */
+    public void setPullParsing( final boolean pullParsing )
+    {
+        this.pullParsing = pullParsing;
+    }
+
     /**
      * Return the XInclude-aware flag for parsers we create. XInclude functionality additionally requires
      * namespace-awareness.
@@ -825,6 +1015,38 @@ public class Digester
         return reader;
     }
 
+    /**
+     * Return the factory of the StAX parsers used to read the input sources when {@link #setPullParsing(boolean) pull
+     * parsing} is enabled, or to {@link #iterate(InputSource, String, Class) iterate} over them. A new factory is
+     * created the first time it is needed, if none has been set, according to the namespace aware flag at that time.
+     *
+     * @return the factory of the StAX parsers
+     * @since 3.3
+     */
+    public XMLInputFactory getXMLInputFactory()
+    {
+        if ( inputFactory == null )
+        {
+            inputFactory = StaxEventSource.configure( XMLInputFactory.newInstance(), namespaceAware );
+        }
+        return inputFactory;
+    }
+
+    /**
+     * Set the factory of the StAX parsers used to read the input sources. Its namespace awareness, according to the
+     * current namespace aware flag, coalescing and resolver properties are set once, by this method, and left
+     * unchanged while parsing: the same factory can then be set on several digesters, used on several threads, as
+     * long as they share the same namespace aware flag. The external entities are still resolved by the
+     * {@link #getEntityResolver() EntityResolver} of the Digester reading the document.
+     *
+     * @param inputFactory the factory of the StAX parsers
+     * @since 3.3
+     */
+    public void setXMLInputFactory( final XMLInputFactory inputFactory )
+    {
+        this.inputFactory = inputFactory == null ? null : StaxEventSource.configure( inputFactory, namespaceAware );
+    }
+
     /**
      * Gets the <code>Substitutor</code> used to convert attributes and body text.
      *
@@ -847,6 +1069,30 @@ public class Digester
         this.substitutor = substitutor;
     }
 
+    /**
+     * Gets the <code>ConversionRegistry</code> the rules convert the strings taken from the document with.
+     *
+     * @return the <code>ConversionRegistry</code> the rules convert the strings taken from the document with, null if
+     *         <code>ConvertUtils</code> is used
+     * @since 3.3
+     */
+    public ConversionRegistry getConversionRegistry()
+    {
+        return conversionRegistry;
+    }
+
+    /**
+     * Sets the <code>ConversionRegistry</code> the rules convert the strings taken from the document with.
+     *
+     * @param conversionRegistry the <code>ConversionRegistry</code> the rules convert the strings taken from the
+     *            document with, or null if <code>ConvertUtils</code> has to be used
+     * @since 3.3
+     */
+    public void setConversionRegistry( final ConversionRegistry conversionRegistry )
+    {
+        this.conversionRegistry = conversionRegistry;
+    }
+
     /**
      * returns the custom SAX ContentHandler where events are redirected.
      *
@@ -936,7 +1182,7 @@ public class Digester
             log.warn( "Digester is not namespace aware" );
         }
         final Map<String, String> currentNamespaces = new HashMap<String, String>();
-        for ( final Map.Entry<String, Stack<String>> nsEntry : namespaces.entrySet() )
+        for ( final Map.Entry<String, ArrayStack<String>> nsEntry : namespaces.entrySet() )
         {
             try
             {
@@ -990,12 +1236,21 @@ public class Digester
             return;
         }
 
+        if ( prunedDepth > 1 )
+        {
+            // text nested in a skipped element
+            return;
+        }
+
         if ( saxLog.isDebugEnabled() )
         {
             saxLog.debug( "characters(" + new String( buffer, start, length ) + ")" );
         }
 
-        bodyText.append( buffer, start, length );
+        if ( bodyText != null )
+        {
+            bodyText.append( buffer, start, length );
+        }
     }
 
     /**
@@ -1017,8 +1272,11 @@ public class Digester
             }
         }
 
-        // Fire "finish" events for all defined rules
-        for ( final Rule rule : getRules().rules() )
+        // Fire "finish" events for all defined rules, the ones created so far if the rules are created lazily
+        final Rules currentRules = getRules();
+        final List<Rule> finishedRules = currentRules instanceof LazyRules
+                        ? ( (LazyRules) currentRules ).createdRules() : currentRules.rules();
+        for ( final Rule rule : finishedRules )
         {
             try
             {
@@ -1054,6 +1312,15 @@ public class Digester
             return;
         }
 
+        if ( prunedDepth > 1 )
+        {
+            // end of an element nested in a skipped element
+            prunedDepth--;
+            return;
+        }
+        // end of the element whose content was skipped, if any
+        prunedDepth = 0;
+
         final boolean debug = log.isDebugEnabled();
 
         if ( debug )
@@ -1062,7 +1329,7 @@ public class Digester
             {
                 saxLog.debug( "endElement(" + namespaceURI + "," + localName + "," + qName + ")" );
             }
-            log.debug( "  match='" + match + "'" );
+            log.debug( "  match='" + getMatch() + "'" );
             log.debug( "  bodyText='" + bodyText + "'" );
         }
 
@@ -1075,15 +1342,12 @@ public class Digester
         }
 
         // Fire "body" events for all relevant rules
-        final List<Rule> rules = matches.pop();
+        final List<Rule> rules = ( matchesStack != null ) ? matchesStack.pop() : matches.pop();
         if ( ( rules != null ) && ( rules.size() > 0 ) )
         {
-            String bodyText = this.bodyText.toString();
-            final Substitutor substitutor = getSubstitutor();
-            if ( substitutor != null )
-            {
-                bodyText = substitutor.substitute( bodyText );
-            }
+            // the text is only created if some rule needs it
+            String bodyText = null;
+            int bodyLength = -1;
             for (final Rule rule : rules) {
                 try
                 {
@@ -1091,7 +1355,33 @@ public class Digester
                     {
                         log.debug( "  Fire body() for " + rule );
                     }
-                    rule.body( namespaceURI, name, bodyText );
+                    if ( rule instanceof CharacterBodyRule && this.bodyText != null && getSubstitutor() == null )
+                    {
+                        if ( bodyLength < 0 )
+                        {
+                            bodyLength = this.bodyText.length();
+                            if ( bodyChars.length < bodyLength )
+                            {
+                                bodyChars = new char[Math.max( bodyLength, 2 * bodyChars.length )];
+                            }
+                            this.bodyText.getChars( 0, bodyLength, bodyChars, 0 );
+                        }
+                        ( (CharacterBodyRule) rule ).body( namespaceURI, name, bodyChars, 0, bodyLength );
+                        continue;
+                    }
+                    if ( bodyText == null )
+                    {
+                        bodyText = getBodyText();
+                    }
+                    if ( rule instanceof CharacterBodyRule )
+                    {
+                        final char[] substituted = bodyText.toCharArray();
+                        ( (CharacterBodyRule) rule ).body( namespaceURI, name, substituted, 0, substituted.length );
+                    }
+                    else
+                    {
+                        rule.body( namespaceURI, name, bodyText );
+                    }
                 }
                 catch ( final Exception e )
                 {
@@ -1109,7 +1399,7 @@ public class Digester
         {
             if ( debug )
             {
-                log.debug( "  No rules found matching '" + match + "'." );
+                log.debug( "  No rules found matching '" + getMatch() + "'." );
             }
         }
 
@@ -1117,7 +1407,7 @@ public class Digester
         bodyText = bodyTexts.pop();
         if ( debug )
         {
-            log.debug( "  Popping body text '" + bodyText.toString() + "'" );
+            log.debug( "  Popping body text '" + bodyText + "'" );
         }
 
         // Fire "end" events for all relevant rules in reverse order
@@ -1149,15 +1439,9 @@ public class Digester
         }
 
         // Recover the previous match expression
-        final int slash = match.lastIndexOf( '/' );
-        if ( slash >= 0 )
-        {
-            match = match.substring( 0, slash );
-        }
-        else
-        {
-            match = "";
-        }
+        elementDepth--;
+        elementNames[elementDepth] = null;
+        elementMatches[elementDepth] = null;
     }
 
     /**
@@ -1173,22 +1457,19 @@ public class Digester
         }
 
         // Deregister this prefix mapping
-        final Stack<String> stack = namespaces.get( prefix );
+        final ArrayStack<String> stack = namespaces.get( prefix );
         if ( stack == null )
         {
             return;
         }
-        try
+        if ( stack.isEmpty() )
         {
-            stack.pop();
-            if ( stack.empty() )
-            {
-                namespaces.remove( prefix );
-            }
+            throw createSAXException( "endPrefixMapping popped too many times" );
         }
-        catch ( final EmptyStackException e )
+        stack.pop();
+        if ( stack.isEmpty() )
         {
-            throw createSAXException( "endPrefixMapping popped too many times" );
+            namespaces.remove( prefix );
         }
     }
 
@@ -1302,6 +1583,13 @@ public class Digester
             return;
         }
 
+        if ( prunedDepth > 0 )
+        {
+            // element nested in a skipped element
+            prunedDepth++;
+            return;
+        }
+
         if ( saxLog.isDebugEnabled() )
         {
             saxLog.debug( "startElement(" + namespaceURI + "," + localName + "," + qName + ")" );
@@ -1311,9 +1599,8 @@ public class Digester
         bodyTexts.push( bodyText );
         if ( debug )
         {
-            log.debug( "  Pushing body text '" + bodyText.toString() + "'" );
+            log.debug( "  Pushing body text '" + bodyText + "'" );
         }
-        bodyText = new StringBuilder();
 
         // the actual element name is either in localName or qName, depending
         // on whether the parser is namespace aware
@@ -1324,21 +1611,33 @@ public class Digester
         }
 
         // Compute the current matching rule
-        final StringBuilder sb = new StringBuilder( match );
-        if ( match.length() > 0 )
-        {
-            sb.append( '/' );
-        }
-        sb.append( name );
-        match = sb.toString();
+        final Rules currentRules = getRules();
+        final int state = pushElement( currentRules, name );
         if ( debug )
         {
-            log.debug( "  New match='" + match + "'" );
+            log.debug( "  New match='" + getMatch() + "'" );
         }
 
         // Fire "begin" events for all relevant rules
-        final List<Rule> rules = getRules().match( namespaceURI, match, localName, list );
-        matches.push( rules );
+        final List<Rule> rules;
+        if ( state != IncrementalRules.UNKNOWN_STATE )
+        {
+            rules = ( (IncrementalRules) currentRules ).match( state, namespaceURI, localName, list );
+        }
+        else
+        {
+            rules = currentRules.match( namespaceURI, getMatch(), localName, list );
+        }
+        if ( matchesStack != null )
+        {
+            matchesStack.push( rules );
+        }
+        else
+        {
+            matches.push( rules );
+        }
+        // collect the body text only if some rule is going to use it
+        bodyText = isBodyTextConsumed( rules ) ? new StringBuilder() : null;
         if ( ( rules != null ) && ( rules.size() > 0 ) )
         {
             final Substitutor substitutor = getSubstitutor();
@@ -1346,6 +1645,14 @@ public class Digester
             {
                 list = substitutor.substitute( list );
             }
+            if ( attributeIndexing )
+            {
+                if ( indexedAttributes == null )
+                {
+                    indexedAttributes = new IndexedAttributes();
+                }
+                list = indexedAttributes.index( list );
+            }
             for (final Rule rule : rules) {
                 try
                 {
@@ -1371,9 +1678,62 @@ public class Digester
         {
             if ( debug )
             {
-                log.debug( "  No rules found matching '" + match + "'." );
+                log.debug( "  No rules found matching '" + getMatch() + "'." );
+            }
+        }
+
+        // skip the content, unless a rule took control of it
+        if ( subtreePruning && customContentHandler == null && getRules() == currentRules
+            && currentRules instanceof PruningRules
+            && !( (PruningRules) currentRules ).canMatchDescendants( getMatch() ) )
+        {
+            if ( debug )
+            {
+                log.debug( "  Skipping the content of '" + getMatch() + "'." );
+            }
+            prunedDepth = 1;
+        }
+    }
+
+    /**
+     * Returns the body text of the current element, after substitution.
+     *
+     * @return the body text of the current element, an empty string if it has not been collected
+     */
+    private String getBodyText()
+    {
+        if ( this.bodyText == null )
+        {
+            return "";
+        }
+        final String text = this.bodyText.toString();
+        final Substitutor substitutor = getSubstitutor();
+        if ( substitutor != null )
+        {
+            return substitutor.substitute( text );
+        }
+        return text;
+    }
+
+    /**
+     * Checks whether any of the given rules consumes the body text of the matching element.
+     *
+     * @param rules the rules matching the element, may be null
+     * @return true if any of the given rules consumes the body text
+     */
+    private static boolean isBodyTextConsumed( final List<Rule> rules )
+    {
+        if ( rules != null )
+        {
+            for ( int i = 0; i < rules.size(); i++ )
+            {
+                if ( rules.get( i ).isBodyTextConsumer() )
+                {
+                    return true;
+                }
             }
         }
+        return false;
     }
 
     /**
@@ -1389,10 +1749,10 @@ public class Digester
         }
 
         // Register this prefix mapping
-        Stack<String> stack = namespaces.get( prefix );
+        ArrayStack<String> stack = namespaces.get( prefix );
         if ( stack == null )
         {
-            stack = new Stack<String>();
+            stack = new ArrayStack<String>();
             namespaces.put( prefix, stack );
         }
         stack.push( namespaceURI );
@@ -1631,9 +1991,11 @@ public class Digester
             systemId = "(already loaded from stream)";
         }
 
+        final EventSource source = pullParsing ? newStaxEventSource( input, this )
+                        : new SaxEventSource( getXMLReader(), input );
         try
         {
-            getXMLReader().parse( input );
+            parse( source );
         }
         catch ( final IOException e )
         {
@@ -1641,10 +2003,83 @@ public class Digester
                        e );
             throw e;
         }
-        cleanup();
         return this.<T> getRoot();
     }
 
+    /**
+     * Parse the content of the specified StAX reader using this Digester, from its current event to the end of the
+     * document. Returns the root element from the object stack (if any). The reader is not closed.
+     * <p>
+     * The external entities are resolved by the {@link #getEntityResolver() EntityResolver} of this Digester only if
+     * the reader has been created by the {@link #getXMLInputFactory() XMLInputFactory} of a Digester, otherwise they
+     * are resolved as set up by the factory of the reader.
+     * </p>
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param reader the StAX reader of the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     * @since 3.3
+     */
+    public <T> T parse( final XMLStreamReader reader )
+        throws IOException, SAXException
+    {
+        if ( reader == null )
+        {
+            throw new IllegalArgumentException( "XMLStreamReader to parse is null" );
+        }
+
+        configure();
+
+        parse( new StaxEventSource( reader, entityResolver == null ? this : entityResolver, this ) );
+        return this.<T> getRoot();
+    }
+
+    /**
+     * Delivers all the events of the given source, then cleans up.
+     *
+     * @param source the source of the events of the document to be parsed
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     */
+    private void parse( final EventSource source )
+        throws IOException, SAXException
+    {
+        try
+        {
+            while ( source.next() )
+            {
+                // every call delivers the next events
+            }
+        }
+        finally
+        {
+            source.close();
+        }
+        cleanup();
+    }
+
+    /**
+     * Creates a source pulling the events of the given document with a StAX parser.
+     *
+     * @param input the document to be read
+     * @param handler the handler the events are delivered to
+     * @return a source pulling the events of the given document with a StAX parser
+     * @throws IOException if the document can not be opened
+     * @throws SAXException if the StAX parser can not be created, or the Digester is validating
+     */
+    private EventSource newStaxEventSource( final InputSource input, final ContentHandler handler )
+        throws IOException, SAXException
+    {
+        if ( validating || schema != null )
+        {
+            throw new SAXException( "Documents can not be validated by StAX parsers" );
+        }
+        return new StaxEventSource( getXMLInputFactory(), input, entityResolver == null ? this : entityResolver,
+                                    handler );
+    }
+
     /**
      * Creates a Callable instance that parse the content of the specified reader using this Digester.
      *
@@ -1669,6 +2104,73 @@ public class Digester
         } );
     }
 
+    /**
+     * <p>
+     * Returns an iterator over the objects of the given type completed at the given pattern in the content of the
+     * specified input source, reading the document with a StAX parser only as far as needed to return the next object:
+     * the whole document is never held in memory, and a consumer can stop reading it at any time closing the iterator.
+     * </p>
+     * <p>
+     * All the rules are fired as usual, an object is returned once it has been popped from the stack at the end of the
+     * element it has been created for. The root is available once the iterator has been exhausted.
+     * </p>
+     * <p>
+     * StAX parsers do not validate, so the Digester must neither be validating nor have an XML schema set.
+     * </p>
+     *
+     * @param <T> the type of the objects returned
+     * @param input Input source containing the XML data to be parsed
+     * @param pattern the pattern the objects are completed at
+     * @param type the type of the objects returned, the other objects completed at the pattern are skipped
+     * @return an iterator over the objects of the given type completed at the given pattern
+     * @throws IOException if the input source can not be opened
+     * @throws SAXException if the StAX parser can not be created
+     * @since 3.3
+     */
+    public <T> DigesterIterator<T> iterate( final InputSource input, final String pattern, final Class<T> type )
+        throws IOException, SAXException
+    {
+        if ( input == null )
+        {
+            throw new IllegalArgumentException( "InputSource to parse is null" );
+        }
+        if ( pattern == null )
+        {
+            throw new IllegalArgumentException( "Pattern to iterate over is null" );
+        }
+        if ( type == null )
+        {
+            throw new IllegalArgumentException( "Type to iterate over is null" );
+        }
+
+        configure();
+
+        final DigesterIterator<T> iterator = new DigesterIterator<T>( this, pattern, type );
+        iterator.setSource( newStaxEventSource( input, iterator.getHandler() ) );
+        return iterator;
+    }
+
+    /**
+     * Starts parsing a document whose bytes will be pushed as they are received, without blocking any thread while
+     * waiting for them: see {@link DigesterSession}.
+     *
+     * @return a new session, the bytes of the document have to be fed to
+     * @throws SAXException if this Digester is validating, documents fed incrementally can not be validated
+     * @since 3.3
+     */
+    public DigesterSession newSession()
+        throws SAXException
+    {
+        if ( validating || schema != null )
+        {
+            throw new SAXException( "Documents fed incrementally can not be validated" );
+        }
+
+        configure();
+
+        return new DigesterSession( this, namespaceAware );
+    }
+
     /**
      * Parse the content of the specified input stream using this Digester. Returns the root element from the object
      * stack (if any).
@@ -2477,6 +2979,22 @@ public class Digester
         addRule( pattern, new SetNextRule( methodName, paramType ) );
     }
 
+    /**
+     * Add a "consume object" rule for the specified parameters.
+     *
+     * @param <T> the type of the objects consumed
+     * @param pattern Element matching pattern
+     * @param type the type of the objects consumed
+     * @param consumer the consumer the objects completed at the pattern are handed to
+     * @see ConsumeObjectRule
+     * @since 3.3
+     */
+    public <T> void addConsumeObject( final String pattern, final Class<T> type,
+                                      final ObjectConsumer<? super T> consumer )
+    {
+        addRule( pattern, new ConsumeObjectRule( type, consumer ) );
+    }
+
     /**
      * Add {@link SetRootRule} with the specified parameters.
      *
@@ -2597,9 +3115,20 @@ public class Digester
      */
     public void clear()
     {
-        match = "";
+        Arrays.fill( elementNames, null );
+        Arrays.fill( elementMatches, null );
+        elementDepth = 0;
+        elementStatesOwner = null;
+        prunedDepth = 0;
         bodyTexts.clear();
         params.clear();
+        for ( final Object[] frame : paramFrames )
+        {
+            if ( frame != null )
+            {
+                Arrays.fill( frame, null );
+            }
+        }
         publicId = null;
         stack.clear();
         stacksByName.clear();
@@ -2616,15 +3145,12 @@ public class Digester
      */
     public <T> T peek()
     {
-        try
-        {
-            return this.<T> npeSafeCast( stack.peek() );
-        }
-        catch ( final EmptyStackException e )
+        if ( stack.isEmpty() )
         {
             log.warn( "Empty stack (returning null)" );
             return ( null );
         }
+        return this.<T> npeSafeCast( stack.peek() );
     }
 
     /**
@@ -2638,20 +3164,12 @@ public class Digester
     public <T> T peek( final int n )
     {
         final int index = ( stack.size() - 1 ) - n;
-        if ( index < 0 )
-        {
-            log.warn( "Empty stack (returning null)" );
-            return ( null );
-        }
-        try
-        {
-            return this.<T> npeSafeCast( stack.get( index ) );
-        }
-        catch ( final EmptyStackException e )
+        if ( index < 0 || index >= stack.size() )
         {
             log.warn( "Empty stack (returning null)" );
             return ( null );
         }
+        return this.<T> npeSafeCast( stack.get( index ) );
     }
 
     /**
@@ -2663,20 +3181,17 @@ public class Digester
      */
     public <T> T pop()
     {
-        try
-        {
-            T popped = this.<T> npeSafeCast( stack.pop() );
-            if ( stackAction != null )
-            {
-                popped = stackAction.onPop( this, null, popped );
-            }
-            return popped;
-        }
-        catch ( final EmptyStackException e )
+        if ( stack.isEmpty() )
         {
             log.warn( "Empty stack (returning null)" );
             return ( null );
         }
+        T popped = this.<T> npeSafeCast( stack.pop() );
+        if ( stackAction != null )
+        {
+            popped = stackAction.onPop( this, null, popped );
+        }
+        return popped;
     }
 
     /**
@@ -2715,10 +3230,10 @@ public class Digester
             value = stackAction.onPush( this, stackName, value );
         }
 
-        Stack<Object> namedStack = stacksByName.get( stackName );
+        ArrayStack<Object> namedStack = stacksByName.get( stackName );
         if ( namedStack == null )
         {
-            namedStack = new Stack<Object>();
+            namedStack = new ArrayStack<Object>();
             stacksByName.put( stackName, namedStack );
         }
         namedStack.push( value );
@@ -2740,8 +3255,8 @@ public class Digester
      */
     public <T> T pop( final String stackName )
     {
-        final Stack<Object> namedStack = stacksByName.get( stackName );
-        if ( namedStack == null )
+        final ArrayStack<Object> namedStack = stacksByName.get( stackName );
+        if ( namedStack == null || namedStack.isEmpty() )
         {
             if ( log.isDebugEnabled() )
             {
@@ -2795,7 +3310,7 @@ public class Digester
     public <T> T peek( final String stackName, final int n )
     {
         T result;
-        final Stack<Object> namedStack = stacksByName.get( stackName );
+        final ArrayStack<Object> namedStack = stacksByName.get( stackName );
         if ( namedStack == null )
         {
             if ( log.isDebugEnabled() )
@@ -2806,7 +3321,7 @@ public class Digester
         }
 
         final int index = ( namedStack.size() - 1 ) - n;
-        if ( index < 0 )
+        if ( index < 0 || index >= namedStack.size() )
         {
             throw new EmptyStackException();
         }
@@ -2830,7 +3345,7 @@ public class Digester
     public boolean isEmpty( final String stackName )
     {
         boolean result = true;
-        final Stack<Object> namedStack = stacksByName.get( stackName );
+        final ArrayStack<Object> namedStack = stacksByName.get( stackName );
         if ( namedStack != null )
         {
             result = namedStack.isEmpty();
@@ -2877,6 +3392,21 @@ public class Digester
         root = null;
     }
 
+    /**
+     * Replaces the root object with the given object, if the root object is the given placeholder.
+     *
+     * @param placeholder the object pushed onto the stack in place of the given object
+     * @param object the object the placeholder stands for
+     * @since 3.3
+     */
+    void replaceRoot( final Object placeholder, final Object object )
+    {
+        if ( root == placeholder )
+        {
+            root = object;
+        }
+    }
+
     // ------------------------------------------------ Parameter Stack Methods
 
     // ------------------------------------------------------ Protected Methods
@@ -2995,15 +3525,12 @@ public class Digester
      */
     public Object[] peekParams()
     {
-        try
-        {
-            return ( params.peek() );
-        }
-        catch ( final EmptyStackException e )
+        if ( params.isEmpty() )
         {
             log.warn( "Empty stack (returning null)" );
             return ( null );
         }
+        return ( params.peek() );
     }
 
     /**
@@ -3021,20 +3548,12 @@ public class Digester
     public Object[] peekParams( final int n )
     {
         final int index = ( params.size() - 1 ) - n;
-        if ( index < 0 )
-        {
-            log.warn( "Empty stack (returning null)" );
-            return ( null );
-        }
-        try
-        {
-            return ( params.get( index ) );
-        }
-        catch ( final EmptyStackException e )
+        if ( index < 0 || index >= params.size() )
         {
             log.warn( "Empty stack (returning null)" );
             return ( null );
         }
+        return ( params.get( index ) );
     }
 
     /**
@@ -3050,19 +3569,16 @@ public class Digester
      */
     public Object[] popParams()
     {
-        try
-        {
-            if ( log.isTraceEnabled() )
-            {
-                log.trace( "Popping params" );
-            }
-            return ( params.pop() );
-        }
-        catch ( final EmptyStackException e )
+        if ( params.isEmpty() )
         {
             log.warn( "Empty stack (returning null)" );
             return ( null );
         }
+        if ( log.isTraceEnabled() )
+        {
+            log.trace( "Popping params" );
+        }
+        return ( params.pop() );
     }
 
     /**
@@ -3084,6 +3600,45 @@ public class Digester
         params.push( object );
     }
 
+    /**
+     * <p>
+     * Push onto the top of the parameters stack an array of the given size, whose elements are all <code>null</code>,
+     * and return it.
+     * </p>
+     * <p>
+     * The arrays are recycled: once popped, the array is handed out again by the next call pushing an array of the
+     * same size at the same depth of the parameters stack, so it must not be referenced after that.
+     * </p>
+     * <p>
+     * The parameters stack is used to store <code>CallMethodRule</code> parameters. See {@link #params}.
+     * </p>
+     *
+     * @param count the number of parameters
+     * @return the array pushed onto the parameters stack
+     * @since 3.3
+     */
+    public Object[] pushNewParams( final int count )
+    {
+        final int depth = params.size();
+        if ( depth >= paramFrames.length )
+        {
+            paramFrames = Arrays.copyOf( paramFrames, Math.max( 2 * paramFrames.length, depth + 1 ) );
+        }
+
+        Object[] frame = paramFrames[depth];
+        if ( frame == null || frame.length != count )
+        {
+            frame = new Object[count];
+            paramFrames[depth] = frame;
+        }
+        else
+        {
+            Arrays.fill( frame, null );
+        }
+        pushParams( frame );
+        return frame;
+    }
+
     /**
      * Create a SAX exception which also understands about the location in the digester file where the exception occurs
      *
@@ -3149,6 +3704,58 @@ public class Digester
         return createSAXException( message, null );
     }
 
+    /**
+     * Enters a new nesting level for the element with the given name and, if the given rules can be matched
+     * incrementally, computes the state of the element.
+     *
+     * @param currentRules the rules the element will be matched against
+     * @param name the local name if the parser is namespace aware, or just the element name otherwise
+     * @return the element state, or {@link IncrementalRules#UNKNOWN_STATE} if the element has to be matched through
+     *         its pattern
+     */
+    private int pushElement( final Rules currentRules, final String name )
+    {
+        if ( elementDepth == elementNames.length )
+        {
+            final int newLength = elementDepth * 2;
+            elementNames = Arrays.copyOf( elementNames, newLength );
+            elementMatches = Arrays.copyOf( elementMatches, newLength );
+            elementStates = Arrays.copyOf( elementStates, newLength );
+        }
+        elementNames[elementDepth] = name;
+        elementMatches[elementDepth] = null;
+        elementDepth++;
+
+        int state = IncrementalRules.UNKNOWN_STATE;
+        if ( currentRules instanceof IncrementalRules )
+        {
+            final IncrementalRules incrementalRules = (IncrementalRules) currentRules;
+            if ( elementStatesOwner != incrementalRules )
+            {
+                // rules have been replaced, the states of the ancestors have to be computed again
+                int parentState = IncrementalRules.ROOT_STATE;
+                for ( int level = 0; level < elementDepth - 1; level++ )
+                {
+                    if ( parentState != IncrementalRules.UNKNOWN_STATE )
+                    {
+                        parentState = incrementalRules.nextState( parentState, elementNames[level] );
+                    }
+                    elementStates[level] = parentState;
+                }
+                elementStatesOwner = incrementalRules;
+            }
+
+            final int parentState =
+                ( elementDepth == 1 ) ? IncrementalRules.ROOT_STATE : elementStates[elementDepth - 2];
+            if ( parentState != IncrementalRules.UNKNOWN_STATE )
+            {
+                state = incrementalRules.nextState( parentState, name );
+            }
+        }
+        elementStates[elementDepth - 1] = state;
+        return state;
+    }
+
     /**
      * Helps casting the input object to given type, avoiding NPEs.
      *
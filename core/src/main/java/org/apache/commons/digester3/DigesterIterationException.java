@@ -0,0 +1,45 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+/**
+ * Thrown by a {@link DigesterIterator} when the document can not be read or parsed; the cause is the
+ * {@link java.io.IOException} or the {@link org.xml.sax.SAXException} the parse failed with.
+ *
+ * @since 3.3
+ */
+public class DigesterIterationException
+    extends RuntimeException
+{
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new exception with the specified cause.
+     *
+     * @param cause the cause
+     */
+    public DigesterIterationException( final Throwable cause )
+    {
+        super( cause );
+    }
+
+}
@@ -0,0 +1,312 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Iterates over the objects completed at a pattern while a document is parsed by a {@link Digester}, reading the
+ * document only as far as needed to return the next object.
+ * </p>
+ * <p>
+ * An object is returned once the end of the element it has been created for has been processed, and it has been
+ * popped from the stack: all its rules, and the rules of its nested elements, have been fired. Only the objects of the
+ * expected type are returned. Since the objects are also handled by the rules as usual, they should not be linked to
+ * the rest of the object graph when the document is too large to be kept in memory.
+ * </p>
+ * <p>
+ * The iterator must be {@link #close() closed} when the document is not read to its end; parse errors are thrown as
+ * {@link DigesterIterationException}, after the iterator has been closed. Iterators are not thread safe, and the
+ * Digester must not be used for anything else until the iteration is over.
+ * </p>
+ *
+ * @param <T> the type of the objects returned
+ * @see Digester#iterate(org.xml.sax.InputSource, String, Class)
+ * @since 3.3
+ */
+public final class DigesterIterator<T>
+    implements Iterator<T>, Closeable
+{
+
+    private final Digester digester;
+
+    private final Class<T> type;
+
+    /**
+     * Matches the pattern of the objects returned with the {@link RulesBase} matching policy.
+     */
+    private final RulesBase pattern = new RulesBase();
+
+    /**
+     * The objects completed and not returned yet.
+     */
+    private final ArrayDeque<T> completed = new ArrayDeque<T>();
+
+    private EventSource source;
+
+    private boolean finished;
+
+    /**
+     * Creates a new iterator, the source has to be {@link #setSource(EventSource) set} before it is used.
+     *
+     * @param digester the digester the document is parsed with
+     * @param pattern the pattern the objects are completed at
+     * @param type the type of the objects returned
+     */
+    DigesterIterator( final Digester digester, final String pattern, final Class<T> type )
+    {
+        this.digester = digester;
+        this.type = type;
+        this.pattern.add( pattern, new Rule()
+        {
+            // marks the pattern
+        } );
+    }
+
+    /**
+     * Sets the source delivering the events of the document.
+     *
+     * @param source the source delivering the events of the document
+     */
+    void setSource( final EventSource source )
+    {
+        this.source = source;
+    }
+
+    /**
+     * Returns the handler the events of the document have to be delivered to.
+     *
+     * @return the handler the events of the document have to be delivered to
+     */
+    ContentHandler getHandler()
+    {
+        return new Interceptor();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext()
+    {
+        while ( completed.isEmpty() && !finished )
+        {
+            try
+            {
+                if ( !source.next() )
+                {
+                    close();
+                }
+            }
+            catch ( final SAXException e )
+            {
+                closeQuietly();
+                throw new DigesterIterationException( e );
+            }
+            catch ( final IOException e )
+            {
+                closeQuietly();
+                throw new DigesterIterationException( e );
+            }
+            catch ( final RuntimeException e )
+            {
+                closeQuietly();
+                throw e;
+            }
+        }
+        return !completed.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        return completed.poll();
+    }
+
+    /**
+     * Not supported.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops reading the document, releasing the parser. When the document has not been read to its end, the state of
+     * the Digester is cleared, without firing the <code>finish()</code> events.
+     *
+     * @throws IOException if the document can not be closed
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( finished )
+        {
+            return;
+        }
+        finished = true;
+        completed.clear();
+        try
+        {
+            source.close();
+        }
+        finally
+        {
+            // clears the state of a document not read to its end, does nothing otherwise
+            digester.clear();
+            digester.cleanup();
+        }
+    }
+
+    private void closeQuietly()
+    {
+        try
+        {
+            close();
+        }
+        catch ( final IOException e )
+        {
+            digester.getLogger().warn( "An error occurred while closing the document", e );
+        }
+    }
+
+    /**
+     * Delivers the events to the digester, collecting the objects completed at the pattern.
+     */
+    private final class Interceptor
+        implements ContentHandler
+    {
+
+        @Override
+        public void setDocumentLocator( final Locator locator )
+        {
+            digester.setDocumentLocator( locator );
+        }
+
+        @Override
+        public void startDocument()
+            throws SAXException
+        {
+            digester.startDocument();
+        }
+
+        @Override
+        public void endDocument()
+            throws SAXException
+        {
+            digester.endDocument();
+        }
+
+        @Override
+        public void startPrefixMapping( final String prefix, final String uri )
+            throws SAXException
+        {
+            digester.startPrefixMapping( prefix, uri );
+        }
+
+        @Override
+        public void endPrefixMapping( final String prefix )
+            throws SAXException
+        {
+            digester.endPrefixMapping( prefix );
+        }
+
+        @Override
+        public void startElement( final String uri, final String localName, final String qName,
+                                  final Attributes atts )
+            throws SAXException
+        {
+            digester.startElement( uri, localName, qName, atts );
+        }
+
+        @Override
+        public void endElement( final String uri, final String localName, final String qName )
+            throws SAXException
+        {
+            // the object created for the element, if any, is on the top of the stack until the element ends
+            final int count = digester.getCount();
+            final Object top = count > 0 ? digester.peek() : null;
+            final boolean matched = top != null && !pattern.match( uri, digester.getMatch(), localName, null ).isEmpty();
+
+            digester.endElement( uri, localName, qName );
+
+            if ( matched && digester.getCount() < count )
+            {
+                final Object object = DeferredObject.resolve( top );
+                if ( type.isInstance( object ) )
+                {
+                    completed.add( type.cast( object ) );
+                }
+            }
+        }
+
+        @Override
+        public void characters( final char[] ch, final int start, final int length )
+            throws SAXException
+        {
+            digester.characters( ch, start, length );
+        }
+
+        @Override
+        public void ignorableWhitespace( final char[] ch, final int start, final int length )
+            throws SAXException
+        {
+            digester.ignorableWhitespace( ch, start, length );
+        }
+
+        @Override
+        public void processingInstruction( final String target, final String data )
+            throws SAXException
+        {
+            digester.processingInstruction( target, data );
+        }
+
+        @Override
+        public void skippedEntity( final String name )
+            throws SAXException
+        {
+            digester.skippedEntity( name );
+        }
+
+    }
+
+}
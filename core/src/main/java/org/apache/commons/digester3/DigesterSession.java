@@ -0,0 +1,163 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Parses a document with a {@link Digester} as its bytes are received, for instance from a non blocking channel:
+ * every call to {@link #feed(ByteBuffer)} fires the rules of the complete markups received so far and returns
+ * immediately, keeping the incomplete ones until the next bytes arrive. No thread is held between two calls, so a
+ * few threads can digest many documents received slowly and concurrently, each with its own Digester, for instance
+ * created by the same {@link org.apache.commons.digester3.binder.DigesterLoader}.
+ * </p>
+ * <p>
+ * The document is scanned by a non validating parser that checks that it is well formed and processes the
+ * namespaces if the Digester is namespace aware. Document type declarations are not processed, so the external
+ * entities are never read: the references to the entities other than the predefined ones, and the internal ones
+ * declared with plain text, are reported as skipped. Parse errors are thrown, not reported to the error handler of the
+ * Digester. The encoding is detected from the byte order mark or the XML declaration, UTF-8 by default.
+ * </p>
+ * <p>
+ * Sessions are not thread safe, and the Digester must not be used for anything else until the session is over.
+ * </p>
+ *
+ * @see Digester#newSession()
+ * @since 3.3
+ */
+public final class DigesterSession
+    implements Closeable
+{
+
+    private final Digester digester;
+
+    private final IncrementalXmlScanner scanner;
+
+    private boolean closed;
+
+    /**
+     * Creates a new session parsing a document with the given digester.
+     *
+     * @param digester the digester the document is parsed with
+     * @param namespaceAware true, if the document has to be read in a namespace aware manner
+     */
+    DigesterSession( final Digester digester, final boolean namespaceAware )
+    {
+        this.digester = digester;
+        this.scanner = new IncrementalXmlScanner( digester, namespaceAware );
+    }
+
+    /**
+     * Parses the next bytes of the document, firing the rules of the complete markups received so far. All the
+     * remaining bytes of the buffer are consumed.
+     *
+     * @param input the next bytes of the document
+     * @throws SAXException if the document is not well formed, or a rule fails; the session is then closed
+     */
+    public void feed( final ByteBuffer input )
+        throws SAXException
+    {
+        if ( input == null )
+        {
+            throw new IllegalArgumentException( "ByteBuffer to feed is null" );
+        }
+        checkOpen();
+
+        boolean failed = true;
+        try
+        {
+            scanner.feed( input );
+            failed = false;
+        }
+        finally
+        {
+            if ( failed )
+            {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Signals that the whole document has been received, firing the rules of the markups left and the end of the
+     * document, and returns the root element from the object stack (if any). The session is then closed.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @return the root element from the object stack (if any)
+     * @throws SAXException if the document is not well formed or incomplete, or a rule fails
+     */
+    public <T> T endOfInput()
+        throws SAXException
+    {
+        checkOpen();
+
+        try
+        {
+            scanner.end();
+        }
+        finally
+        {
+            close();
+        }
+        return digester.<T> getRoot();
+    }
+
+    /**
+     * Returns true if the session is over, because the end of the input has been signaled, an error occurred or it
+     * has been closed.
+     *
+     * @return true if the session is over
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Ends the session. When the end of the document has not been reached, the state of the Digester is cleared,
+     * without firing the <code>finish()</code> events.
+     */
+    @Override
+    public void close()
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        // clears the state of a document not read to its end, does nothing otherwise
+        digester.clear();
+        digester.cleanup();
+    }
+
+    private void checkOpen()
+    {
+        if ( closed )
+        {
+            throw new IllegalStateException( "The session is closed" );
+        }
+    }
+
+}
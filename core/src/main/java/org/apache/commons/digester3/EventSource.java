@@ -0,0 +1,49 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Delivers the events of a document to a SAX {@link org.xml.sax.ContentHandler}, the {@link Digester} itself or an
+ * handler delegating to it. A SAX parser pushes the whole document at once, while a pull parser lets the caller decide
+ * when the next events are delivered, and stop at any time.
+ *
+ * @since 3.3
+ */
+interface EventSource
+    extends Closeable
+{
+
+    /**
+     * Delivers the next events of the document to the handler.
+     *
+     * @return false, if the end of the document has been reached and no more events will be delivered
+     * @throws IOException if the document can not be read
+     * @throws SAXException if the document is not well formed, or the handler fails
+     */
+    boolean next()
+        throws IOException, SAXException;
+
+}
@@ -20,10 +20,10 @@ package org.apache.commons.digester3;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -140,6 +140,22 @@ import org.xml.sax.Attributes;
  * using non-universal rules. But by using universal rules as your backbone, these additions should not break your
  * existing rules.
  * </p>
+ * <h4>Performances</h4>
+ * <p>
+ * Wildcard patterns are compiled, the first time a match is performed after they have been registered, into indexes
+ * keyed by the last element name of the patterns (and by the first element name of the universal ancestor patterns),
+ * so that only the patterns that can possibly match an element are tested. The entry numbers of the rules of every
+ * pattern are recorded as well, so that the rules of the matching patterns are merged in the order they were added
+ * rather than sorted.
+ * </p>
+ * <p>
+ * When used by a {@link Digester} through the {@link IncrementalRules} interface, the rules matching a given path and
+ * namespace are computed only once: they are memoized, already sorted, in an unmodifiable <code>List</code> which is
+ * returned every time the same path is met again. The lists returned by
+ * {@link #match(String, String, String, Attributes)} are instead computed every time and can be modified by the
+ * caller. As the memoized matches are recorded while parsing, an instance must not be shared by digesters parsing at
+ * the same time.
+ * </p>
  */
 public class ExtendedBaseRules
     extends RulesBase
@@ -158,6 +174,71 @@ public class ExtendedBaseRules
      */
     private final Map<Rule, Integer> order = new HashMap<Rule, Integer>();
 
+    /**
+     * Orders the rules by entry number, rules without entry number first.
+     */
+    private final Comparator<Rule> orderComparator = new Comparator<Rule>()
+    {
+
+        @Override
+        public int compare( final Rule r1, final Rule r2 )
+        {
+            // Get the entry order from the map
+            final Integer i1 = order.get( r1 );
+            final Integer i2 = order.get( r2 );
+
+            // and use that to perform the comparison
+            if ( i1 == null )
+            {
+                if ( i2 == null )
+                {
+
+                    return 0;
+
+                }
+                return -1;
+            }
+            else if ( i2 == null )
+            {
+                return 1;
+            }
+
+            return ( i1.intValue() - i2.intValue() );
+        }
+
+    };
+
+    /**
+     * The compiled wildcard patterns, <code>null</code> if they have to be compiled again.
+     */
+    private CompiledPatterns compiledPatterns;
+
+    /**
+     * Incremented every time the set of registered patterns changes, to invalidate the memoized matches.
+     */
+    private int patternsVersion;
+
+    /**
+     * The memoized matches, indexed by element state.
+     */
+    private StateMatches[] stateMatches = new StateMatches[16];
+
+    /**
+     * Whether the descendants of a pattern can be matched, keyed by pattern.
+     */
+    private final Map<String, Boolean> descendantMatches = new HashMap<String, Boolean>();
+
+    /**
+     * The value of {@link #patternsVersion} when {@link #descendantMatches} was computed.
+     */
+    private int descendantMatchesVersion;
+
+    /**
+     * Whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the first
+     * time it is needed.
+     */
+    private Boolean ownMatch;
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -169,6 +250,19 @@ public class ExtendedBaseRules
         super.registerRule( pattern, rule );
         counter++;
         order.put( rule, counter );
+        compiledPatterns = null;
+        patternsVersion++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        super.clear();
+        compiledPatterns = null;
+        patternsVersion++;
     }
 
     /**
@@ -176,6 +270,154 @@ public class ExtendedBaseRules
      */
     @Override
     public List<Rule> match( final String namespaceURI, final String pattern, final String name, final Attributes attributes )
+    {
+        return findMatches( namespaceURI, pattern );
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean isAttributesIndependent()
+    {
+        return isOwnMatch();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Universal and tail wildcard patterns can match elements nested anywhere, while exact, parent and ancestor
+     * patterns can only match elements nested in the element they are anchored to.
+     * </p>
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean canMatchDescendants( final String pattern )
+    {
+        if ( !isOwnMatch() )
+        {
+            return true;
+        }
+
+        if ( descendantMatchesVersion != patternsVersion )
+        {
+            descendantMatches.clear();
+            descendantMatchesVersion = patternsVersion;
+        }
+        Boolean result = descendantMatches.get( pattern );
+        if ( result == null )
+        {
+            result = Boolean.FALSE;
+            for ( final String key : cache.keySet() )
+            {
+                if ( canMatchDescendants( key, pattern ) )
+                {
+                    result = Boolean.TRUE;
+                    break;
+                }
+            }
+            descendantMatches.put( pattern, result );
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> match( final int state, final String namespaceURI, final String name, final Attributes attributes )
+    {
+        final String pattern = getStatePattern( state );
+
+        if ( state >= stateMatches.length )
+        {
+            stateMatches = Arrays.copyOf( stateMatches, Math.max( state + 1, stateMatches.length * 2 ) );
+        }
+        StateMatches matches = stateMatches[state];
+        if ( matches == null || matches.version != patternsVersion )
+        {
+            matches = new StateMatches( patternsVersion );
+            stateMatches[state] = matches;
+        }
+
+        List<Rule> rulesList = matches.byNamespace.get( namespaceURI );
+        if ( rulesList == null )
+        {
+            rulesList = Collections.unmodifiableList( findMatches( namespaceURI, pattern ) );
+            matches.byNamespace.put( namespaceURI, rulesList );
+        }
+        return rulesList;
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Checks whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the
+     * first time it is needed.
+     *
+     * @return true, if the <code>match</code> method is implemented by this class
+     */
+    private boolean isOwnMatch()
+    {
+        if ( ownMatch == null )
+        {
+            ownMatch = isMatchDeclaredBy( ExtendedBaseRules.class );
+        }
+        return ownMatch;
+    }
+
+    /**
+     * Checks whether the given registered pattern can match an element nested in the element with the given pattern.
+     *
+     * @param key the registered pattern
+     * @param pattern the nesting pattern of the element
+     * @return false only if the registered pattern can not match any element nested in the given element
+     */
+    private static boolean canMatchDescendants( final String key, final String pattern )
+    {
+        final int start = key.startsWith( "!" ) ? 1 : 0;
+        final boolean parentMatch = key.endsWith( "/?" );
+        final boolean ancestorMatch = key.endsWith( "/*" );
+        final String anchor = key.substring( start, ( parentMatch || ancestorMatch ) ? key.length() - 2 : key.length() );
+
+        if ( anchor.indexOf( '*' ) != -1 || anchor.indexOf( '?' ) != -1 )
+        {
+            // universal or tail wildcards, can match anywhere
+            return true;
+        }
+        if ( anchor.length() > pattern.length() && anchor.startsWith( pattern )
+            && anchor.charAt( pattern.length() ) == '/' )
+        {
+            // anchored to a descendant
+            return true;
+        }
+        if ( parentMatch )
+        {
+            // children of the element itself
+            return anchor.equals( pattern );
+        }
+        if ( ancestorMatch )
+        {
+            // descendants of the element itself or of one of its ancestors
+            return anchor.equals( pattern )
+                || ( pattern.length() > anchor.length() && pattern.startsWith( anchor )
+                    && pattern.charAt( anchor.length() ) == '/' );
+        }
+        return false;
+    }
+
+    /**
+     * Computes the rules matching the given pattern, in the order they were added.
+     *
+     * @param namespaceURI Namespace URI for which to select matching rules, or <code>null</code> to match regardless of
+     *            namespace URI
+     * @param pattern Nesting pattern to be matched
+     * @return a new List of all registered Rule instances that match the specified nesting pattern
+     */
+    private List<Rule> findMatches( final String namespaceURI, final String pattern )
     {
         // calculate the pattern of the parent
         // (if the element has one)
@@ -194,11 +436,13 @@ public class ExtendedBaseRules
             parentPattern = pattern.substring( 0, lastIndex );
         }
 
+        final CompiledPatterns patterns = getCompiledPatterns();
+
         // we keep the list of universal matches separate
-        final List<Rule> universalList = new ArrayList<Rule>( counter );
+        final List<RankedRules> universalList = new ArrayList<RankedRules>();
 
         // Universal wildcards ('*') in the middle of the pattern-string
-        List<Rule> recList = null;
+        RankedRules recList = null;
         // temporary parentPattern
         // we don't want to change anything....
         String tempParentPattern = parentPattern;
@@ -207,13 +451,13 @@ public class ExtendedBaseRules
         // parent. Not ideal, but does the thing....
         while ( parentLastIndex > -1 && recList == null )
         {
-            recList = this.cache.get( tempParentPattern + "/*/" + pattern.substring( lastIndex + 1 ) );
+            recList = patterns.byKey.get( tempParentPattern + "/*/" + pattern.substring( lastIndex + 1 ) );
             if ( recList != null )
             {
                 // when /*/-pattern-string is found, add method
                 // list to universalList.
                 // Digester will do the rest
-                universalList.addAll( recList );
+                universalList.add( recList );
             }
             else
             {
@@ -229,18 +473,18 @@ public class ExtendedBaseRules
 
         // Universal all wildards ('!*')
         // These are always matched so always add them
-        List<Rule> tempList = this.cache.get( "!*" );
+        RankedRules tempList = patterns.byKey.get( "!*" );
         if ( tempList != null )
         {
-            universalList.addAll( tempList );
+            universalList.add( tempList );
         }
 
         // Universal exact parent match
         // need to get this now since only wildcards are considered later
-        tempList = this.cache.get( "!" + parentPattern + "/?" );
+        tempList = patterns.byKey.get( "!" + parentPattern + "/?" );
         if ( tempList != null )
         {
-            universalList.addAll( tempList );
+            universalList.add( tempList );
         }
 
         // base behaviour means that if we certain matches, we don't continue
@@ -249,7 +493,7 @@ public class ExtendedBaseRules
         boolean ignoreBasicMatches = false;
 
         // see if we have an exact basic pattern match
-        List<Rule> rulesList = this.cache.get( pattern );
+        RankedRules rulesList = patterns.byKey.get( pattern );
         if ( rulesList != null )
         {
             // we have a match!
@@ -264,7 +508,7 @@ public class ExtendedBaseRules
             if ( hasParent )
             {
                 // matching children takes preference
-                rulesList = this.cache.get( parentPattern + "/?" );
+                rulesList = patterns.byKey.get( parentPattern + "/?" );
                 if ( rulesList != null )
                 {
                     // we have a match!
@@ -276,7 +520,7 @@ public class ExtendedBaseRules
                 {
                     // we don't have a match yet - so try exact ancester
                     //
-                    rulesList = findExactAncesterMatch( pattern );
+                    rulesList = findExactAncesterMatch( patterns, pattern );
                     if ( rulesList != null )
                     {
                         // we have a match!
@@ -290,123 +534,44 @@ public class ExtendedBaseRules
         // OK - we're ready for the big loop!
         // Unlike the basic rules case,
         // we have to go through for all those universal rules in all cases.
+        // Only the wildcard patterns that can match the pattern are visited, in the same order the keys of the cache
+        // are iterated, so that patterns with the same length are chosen exactly as when all the keys are visited.
 
         // Find the longest key, ie more discriminant
         int longKeyLength = 0;
 
-        for ( String key : this.cache.keySet() )
-        {
-
-            // find out if it's a univeral pattern
-            // set a flag
-            final boolean isUniversal = key.startsWith( "!" );
-            if ( isUniversal )
-            {
-                // and find the underlying key
-                key = key.substring( 1, key.length() );
-            }
+        final int firstSlash = pattern.indexOf( '/' );
+        final WildcardPattern[] byLastSegment = patterns.byLastSegment.get( pattern, lastIndex + 1, pattern.length() );
+        final WildcardPattern[] byParentLastSegment =
+            patterns.byParentLastSegment.get( parentPattern, parentPattern.lastIndexOf( '/' ) + 1,
+                                              parentPattern.length() );
+        final WildcardPattern[] byFirstSegment =
+            patterns.byFirstSegment.get( pattern, 0, ( firstSlash == -1 ) ? pattern.length() : firstSlash );
+        final WildcardPattern[][] candidates = { byLastSegment, byParentLastSegment, byFirstSegment,
+            patterns.unindexed };
+        final int[] indexes = new int[candidates.length];
 
-            // don't need to check exact matches
-            final boolean wildcardMatchStart = key.startsWith( "*/" );
-            final boolean wildcardMatchEnd = key.endsWith( "/*" );
-            if ( wildcardMatchStart || ( isUniversal && wildcardMatchEnd ) )
+        WildcardPattern key;
+        while ( ( key = nextCandidate( candidates, indexes ) ) != null )
+        {
+            if ( key.matches( pattern, parentPattern ) )
             {
-
-                boolean parentMatched = false;
-                boolean basicMatched = false;
-                boolean ancesterMatched = false;
-
-                final boolean parentMatchEnd = key.endsWith( "/?" );
-                if ( parentMatchEnd )
+                if ( key.universal )
                 {
-                    // try for a parent match
-                    parentMatched = parentMatch( key, parentPattern );
-
-                }
-                else if ( wildcardMatchEnd )
-                {
-                    // check for ancester match
-                    if ( wildcardMatchStart )
-                    {
-                        final String patternBody = key.substring( 2, key.length() - 2 );
-                        if ( pattern.endsWith( patternBody ) )
-                        {
-                            ancesterMatched = true;
-                        }
-                        else
-                        {
-                            ancesterMatched = ( pattern.indexOf( patternBody + "/" ) > -1 );
-                        }
-                    }
-                    else
-                    {
-                        final String bodyPattern = key.substring( 0, key.length() - 2 );
-                        if ( pattern.startsWith( bodyPattern ) )
-                        {
-                            if ( pattern.length() == bodyPattern.length() )
-                            {
-                                // exact match
-                                ancesterMatched = true;
-                            }
-                            else
-                            {
-                                ancesterMatched = ( pattern.charAt( bodyPattern.length() ) == '/' );
-                            }
-                        }
-                        else
-                        {
-                            ancesterMatched = false;
-                        }
-                    }
+                    // universal rules go straight in
+                    // (no longest matching rule)
+                    universalList.add( key.rules );
                 }
                 else
                 {
-                    // try for a base match
-                    basicMatched = basicMatch( key, pattern );
-                }
-
-                if ( parentMatched || basicMatched || ancesterMatched )
-                {
-                    if ( isUniversal )
+                    if ( !ignoreBasicMatches )
                     {
-                        // universal rules go straight in
-                        // (no longest matching rule)
-                        tempList = this.cache.get( "!" + key );
-                        if ( tempList != null )
+                        // ensure that all parent matches are SHORTER
+                        // than rules with same level of matching.
+                        if ( key.length > longKeyLength )
                         {
-                            universalList.addAll( tempList );
-                        }
-
-                    }
-                    else
-                    {
-                        if ( !ignoreBasicMatches )
-                        {
-                            // ensure that all parent matches are SHORTER
-                            // than rules with same level of matching.
-                            //
-                            // the calculations below don't work for universal
-                            // matching, but we don't care because in that case
-                            // this if-stmt is not entered.
-                            int keyLength = key.length();
-                            if ( wildcardMatchStart )
-                            {
-                                --keyLength;
-                            }
-                            if ( wildcardMatchEnd )
-                            {
-                                --keyLength;
-                            }
-                            else if ( parentMatchEnd )
-                            {
-                                --keyLength;
-                            }
-
-                            if ( keyLength > longKeyLength )
-                            {
-                                rulesList = this.cache.get( key );
-                                longKeyLength = keyLength;
-                            }
+                            rulesList = key.rules;
+                            longKeyLength = key.length;
                         }
                     }
                 }
@@ -417,106 +582,146 @@ public class ExtendedBaseRules
         // (this is because anything is a deeper match!)
         if ( rulesList == null )
         {
-            rulesList = this.cache.get( "*" );
+            rulesList = patterns.byKey.get( "*" );
         }
 
         // if we've matched a basic pattern, then add to the universal list
         if ( rulesList != null )
         {
-            universalList.addAll( rulesList );
+            universalList.add( rulesList );
         }
 
-        // don't filter if namespace is null
-        if ( namespaceURI != null )
+        // need to make sure that the collection is sort in the order
+        // of addition: the lists are merged by entry number
+        return merge( universalList, namespaceURI );
+    }
+
+    /**
+     * Merges the given lists of rules into a new list sorted by entry number, keeping the rules of the first lists
+     * first on equal entry numbers, as a stable sort of their concatenation would. The rules of other namespaces are
+     * left out.
+     *
+     * @param matchedRules the lists of rules to be merged
+     * @param namespaceURI the namespace URI of the rules to be kept, or <code>null</code> to keep all the rules
+     * @return a new List of the given rules, in the order they were added
+     */
+    private List<Rule> merge( final List<RankedRules> matchedRules, final String namespaceURI )
+    {
+        int size = 0;
+        boolean ordered = true;
+        for ( final RankedRules rules : matchedRules )
+        {
+            size += rules.ranks.length;
+            ordered &= rules.ordered;
+        }
+        final List<Rule> mergedList = new ArrayList<Rule>( size );
+
+        if ( !ordered )
         {
-            // remove invalid namespaces
-            final Iterator<Rule> it = universalList.iterator();
-            while ( it.hasNext() )
+            // a rule has been registered again later, its last entry number applies to all its occurrences
+            for ( final RankedRules rules : matchedRules )
             {
-                final Rule rule = it.next();
-                final String nsUri = rule.getNamespaceURI();
-                if ( nsUri != null && !nsUri.equals( namespaceURI ) )
+                for ( final Rule rule : rules.rules )
                 {
-                    it.remove();
+                    addIfInNamespace( mergedList, rule, namespaceURI );
                 }
             }
+            Collections.sort( mergedList, orderComparator );
+            return mergedList;
         }
 
-        // need to make sure that the collection is sort in the order
-        // of addition. We use a custom comparator for this
-        Collections.sort( universalList, new Comparator<Rule>()
+        final int[] indexes = new int[matchedRules.size()];
+        while ( true )
         {
-
-            @Override
-            public int compare( final Rule r1, final Rule r2 )
+            int next = -1;
+            int nextRank = 0;
+            for ( int i = 0; i < indexes.length; i++ )
             {
-                // Get the entry order from the map
-                final Integer i1 = order.get( r1 );
-                final Integer i2 = order.get( r2 );
-
-                // and use that to perform the comparison
-                if ( i1 == null )
+                final int[] ranks = matchedRules.get( i ).ranks;
+                if ( indexes[i] < ranks.length && ( next == -1 || ranks[indexes[i]] < nextRank ) )
                 {
-                    if ( i2 == null )
-                    {
-
-                        return 0;
-
-                    }
-                    return -1;
-                }
-                else if ( i2 == null )
-                {
-                    return 1;
+                    next = i;
+                    nextRank = ranks[indexes[i]];
                 }
-
-                return ( i1.intValue() - i2.intValue() );
             }
-        } );
+            if ( next == -1 )
+            {
+                return mergedList;
+            }
+            addIfInNamespace( mergedList, matchedRules.get( next ).rules.get( indexes[next]++ ), namespaceURI );
+        }
+    }
 
-        return universalList;
+    /**
+     * Adds the given rule to the given list, unless it belongs to another namespace.
+     */
+    private static void addIfInNamespace( final List<Rule> rules, final Rule rule, final String namespaceURI )
+    {
+        // don't filter if namespace is null
+        final String nsUri = rule.getNamespaceURI();
+        if ( namespaceURI == null || nsUri == null || nsUri.equals( namespaceURI ) )
+        {
+            rules.add( rule );
+        }
     }
 
     /**
-     * Checks the input parentPattern contains the input key at the end.
+     * Returns the next wildcard pattern to be tested, merging the given candidate arrays (each one sorted by position)
+     * in position order.
      *
-     * @param key The key to be found
-     * @param parentPattern The pattern where looking for the key
-     * @return true, if {@code key} is found inside {@code parentPattern}, false otherwise
+     * @param candidates the candidate arrays, possibly <code>null</code>
+     * @param indexes the index of the next candidate in each array
+     * @return the next wildcard pattern to be tested, <code>null</code> if there are no more candidates
      */
-    private boolean parentMatch( final String key, final String parentPattern )
+    private static WildcardPattern nextCandidate( final WildcardPattern[][] candidates, final int[] indexes )
     {
-        return parentPattern.endsWith( key.substring( 1, key.length() - 2 ) );
+        int next = -1;
+        for ( int i = 0; i < candidates.length; i++ )
+        {
+            if ( candidates[i] != null && indexes[i] < candidates[i].length
+                && ( next == -1 || candidates[i][indexes[i]].position < candidates[next][indexes[next]].position ) )
+            {
+                next = i;
+            }
+        }
+        if ( next == -1 )
+        {
+            return null;
+        }
+        return candidates[next][indexes[next]++];
     }
 
     /**
-     * Standard match. Matches the end of the pattern to the key.
+     * Returns the wildcard patterns compiled from the current cache keys, compiling them if needed.
      *
-     * @param key The key to be found
-     * @param pattern The pattern where looking for the key
-     * @return true, if {@code key} is found inside {@code pattern}, false otherwise
+     * @return the wildcard patterns compiled from the current cache keys
      */
-    private boolean basicMatch( final String key, final String pattern )
+    private CompiledPatterns getCompiledPatterns()
     {
-        return ( pattern.equals( key.substring( 2 ) ) || pattern.endsWith( key.substring( 1 ) ) );
+        if ( compiledPatterns == null )
+        {
+            compiledPatterns = new CompiledPatterns( this.cache, order );
+        }
+        return compiledPatterns;
     }
 
     /**
      * Finds an exact ancester match for given pattern
      *
+     * @param patterns The compiled patterns
      * @param parentPattern The input pattern
      * @return A list of {@code Rule} related to the input pattern
      */
-    private List<Rule> findExactAncesterMatch( final String parentPattern )
+    private static RankedRules findExactAncesterMatch( final CompiledPatterns patterns, final String parentPattern )
     {
-        List<Rule> matchingRules = null;
+        RankedRules matchingRules = null;
         int lastIndex = parentPattern.length();
         while ( lastIndex-- > 0 )
         {
             lastIndex = parentPattern.lastIndexOf( '/', lastIndex );
             if ( lastIndex > 0 )
             {
-                matchingRules = this.cache.get( parentPattern.substring( 0, lastIndex ) + "/*" );
+                matchingRules = patterns.byKey.get( parentPattern.substring( 0, lastIndex ) + "/*" );
                 if ( matchingRules != null )
                 {
                     return matchingRules;
@@ -526,4 +731,300 @@ public class ExtendedBaseRules
         return null;
     }
 
+    /**
+     * The registered patterns with the entry numbers of their rules, and the wildcard patterns indexed by the element
+     * names that an element has to have in order to be matched.
+     */
+    private static final class CompiledPatterns
+    {
+
+        /** The rules of all the registered patterns, by pattern. */
+        final Map<String, RankedRules> byKey = new HashMap<String, RankedRules>();
+
+        /** Basic tail patterns, by last element name. */
+        final SegmentTable<WildcardPattern[]> byLastSegment = new SegmentTable<WildcardPattern[]>();
+
+        /** Parent patterns, by the last element name of the parent. */
+        final SegmentTable<WildcardPattern[]> byParentLastSegment = new SegmentTable<WildcardPattern[]>();
+
+        /** Universal ancestor patterns without leading wildcard, by first element name. */
+        final SegmentTable<WildcardPattern[]> byFirstSegment = new SegmentTable<WildcardPattern[]>();
+
+        /** Patterns that can not be indexed. */
+        final WildcardPattern[] unindexed;
+
+        CompiledPatterns( final Map<String, List<Rule>> cache, final Map<Rule, Integer> order )
+        {
+            final Map<String, List<WildcardPattern>> byLast = new HashMap<String, List<WildcardPattern>>();
+            final Map<String, List<WildcardPattern>> byParentLast = new HashMap<String, List<WildcardPattern>>();
+            final Map<String, List<WildcardPattern>> byFirst = new HashMap<String, List<WildcardPattern>>();
+            final List<WildcardPattern> others = new ArrayList<WildcardPattern>();
+
+            int position = 0;
+            for ( final Map.Entry<String, List<Rule>> entry : cache.entrySet() )
+            {
+                final RankedRules rules = new RankedRules( entry.getValue(), order );
+                byKey.put( entry.getKey(), rules );
+                final WildcardPattern pattern = WildcardPattern.compile( position++, entry.getKey(), rules );
+                if ( pattern == null )
+                {
+                    continue;
+                }
+
+                final String segment = pattern.indexSegment();
+                if ( segment == null )
+                {
+                    others.add( pattern );
+                }
+                else if ( pattern.kind == WildcardPattern.PARENT )
+                {
+                    add( byParentLast, segment, pattern );
+                }
+                else if ( pattern.kind == WildcardPattern.BASIC )
+                {
+                    add( byLast, segment, pattern );
+                }
+                else
+                {
+                    add( byFirst, segment, pattern );
+                }
+            }
+
+            fill( byLastSegment, byLast );
+            fill( byParentLastSegment, byParentLast );
+            fill( byFirstSegment, byFirst );
+            unindexed = others.toArray( new WildcardPattern[others.size()] );
+        }
+
+        private static void add( final Map<String, List<WildcardPattern>> index, final String segment,
+                                 final WildcardPattern pattern )
+        {
+            List<WildcardPattern> patterns = index.get( segment );
+            if ( patterns == null )
+            {
+                patterns = new ArrayList<WildcardPattern>();
+                index.put( segment, patterns );
+            }
+            patterns.add( pattern );
+        }
+
+        private static void fill( final SegmentTable<WildcardPattern[]> table,
+                                  final Map<String, List<WildcardPattern>> index )
+        {
+            for ( final Map.Entry<String, List<WildcardPattern>> entry : index.entrySet() )
+            {
+                table.put( entry.getKey(), entry.getValue().toArray( new WildcardPattern[entry.getValue().size()] ) );
+            }
+        }
+
+    }
+
+    /**
+     * A wildcard pattern, with the substrings needed to test it precomputed.
+     */
+    private static final class WildcardPattern
+    {
+
+        /** Tail match pattern, like <code>*&#47;a/b</code>. */
+        static final int BASIC = 0;
+
+        /** Parent match pattern, like <code>*&#47;a/b/?</code>. */
+        static final int PARENT = 1;
+
+        /** Ancestor match pattern, like <code>*&#47;a/b/*</code>. */
+        static final int TAIL_ANCESTOR = 2;
+
+        /** Universal ancestor match pattern without leading wildcard, like <code>!a/b/*</code>. */
+        static final int HEAD_ANCESTOR = 3;
+
+        /** The position of the key in the cache iteration order. */
+        final int position;
+
+        final int kind;
+
+        final boolean universal;
+
+        /** The length used to choose the longest pattern. */
+        final int length;
+
+        /** The rules registered for the key. */
+        final RankedRules rules;
+
+        /** The substring of the key the element (or its parent) pattern is tested against. */
+        final String body;
+
+        /** The alternative substring of the key the element pattern is tested against. */
+        final String alternativeBody;
+
+        private WildcardPattern( final int position, final int kind, final boolean universal, final int length,
+                                 final RankedRules rules, final String body, final String alternativeBody )
+        {
+            this.position = position;
+            this.kind = kind;
+            this.universal = universal;
+            this.length = length;
+            this.rules = rules;
+            this.body = body;
+            this.alternativeBody = alternativeBody;
+        }
+
+        /**
+         * Compiles the given cache key, <code>null</code> if it is not a wildcard pattern to be tested.
+         */
+        static WildcardPattern compile( final int position, String key, final RankedRules rules )
+        {
+            // find out if it's a univeral pattern
+            final boolean isUniversal = key.startsWith( "!" );
+            if ( isUniversal )
+            {
+                // and find the underlying key
+                key = key.substring( 1, key.length() );
+            }
+
+            // don't need to check exact matches
+            final boolean wildcardMatchStart = key.startsWith( "*/" );
+            final boolean wildcardMatchEnd = key.endsWith( "/*" );
+            if ( !wildcardMatchStart && !( isUniversal && wildcardMatchEnd ) )
+            {
+                return null;
+            }
+
+            final boolean parentMatchEnd = key.endsWith( "/?" );
+
+            int keyLength = key.length();
+            if ( wildcardMatchStart )
+            {
+                --keyLength;
+            }
+            if ( wildcardMatchEnd )
+            {
+                --keyLength;
+            }
+            else if ( parentMatchEnd )
+            {
+                --keyLength;
+            }
+
+            if ( parentMatchEnd )
+            {
+                return new WildcardPattern( position, PARENT, isUniversal, keyLength, rules,
+                                            key.substring( 1, key.length() - 2 ), null );
+            }
+            if ( wildcardMatchEnd )
+            {
+                if ( wildcardMatchStart )
+                {
+                    final String patternBody = key.substring( 2, key.length() - 2 );
+                    return new WildcardPattern( position, TAIL_ANCESTOR, isUniversal, keyLength, rules, patternBody,
+                                                patternBody + "/" );
+                }
+                return new WildcardPattern( position, HEAD_ANCESTOR, isUniversal, keyLength, rules,
+                                            key.substring( 0, key.length() - 2 ), null );
+            }
+            return new WildcardPattern( position, BASIC, isUniversal, keyLength, rules, key.substring( 2 ),
+                                        key.substring( 1 ) );
+        }
+
+        /**
+         * Returns the element name an element (or its parent, for parent match patterns) must have to be matched by
+         * this pattern, <code>null</code> if there is no such a constraint.
+         */
+        String indexSegment()
+        {
+            switch ( kind )
+            {
+                case BASIC:
+                    return body.substring( body.lastIndexOf( '/' ) + 1 );
+                case PARENT:
+                    // a parent pattern matches when the parent pattern ends with "/" + body
+                    final int slash = body.lastIndexOf( '/' );
+                    return ( slash == -1 ) ? null : body.substring( slash + 1 );
+                case HEAD_ANCESTOR:
+                    if ( body.length() == 0 )
+                    {
+                        return null;
+                    }
+                    final int firstSlash = body.indexOf( '/' );
+                    return ( firstSlash == -1 ) ? body : body.substring( 0, firstSlash );
+                default:
+                    return null;
+            }
+        }
+
+        boolean matches( final String pattern, final String parentPattern )
+        {
+            switch ( kind )
+            {
+                case PARENT:
+                    // try for a parent match
+                    return parentPattern.endsWith( body );
+                case TAIL_ANCESTOR:
+                    // check for ancester match
+                    return pattern.endsWith( body ) || ( pattern.indexOf( alternativeBody ) > -1 );
+                case HEAD_ANCESTOR:
+                    if ( pattern.startsWith( body ) )
+                    {
+                        if ( pattern.length() == body.length() )
+                        {
+                            // exact match
+                            return true;
+                        }
+                        return ( pattern.charAt( body.length() ) == '/' );
+                    }
+                    return false;
+                default:
+                    // try for a base match
+                    return ( pattern.equals( body ) || pattern.endsWith( alternativeBody ) );
+            }
+        }
+
+    }
+
+    /**
+     * The rules registered for a pattern, with their entry numbers.
+     */
+    private static final class RankedRules
+    {
+
+        final List<Rule> rules;
+
+        /** The entry numbers of the rules, 0 for the rules without entry number. */
+        final int[] ranks;
+
+        /** True if the entry numbers never decrease, false if a rule has been registered again later. */
+        final boolean ordered;
+
+        RankedRules( final List<Rule> rules, final Map<Rule, Integer> order )
+        {
+            this.rules = rules;
+            this.ranks = new int[rules.size()];
+            boolean increasing = true;
+            for ( int i = 0; i < ranks.length; i++ )
+            {
+                final Integer rank = order.get( rules.get( i ) );
+                ranks[i] = ( rank == null ) ? 0 : rank.intValue();
+                increasing &= ( i == 0 || ranks[i - 1] <= ranks[i] );
+            }
+            this.ordered = increasing;
+        }
+
+    }
+
+    /**
+     * The memoized matches of an element state, by namespace URI.
+     */
+    private static final class StateMatches
+    {
+
+        final int version;
+
+        final Map<String, List<Rule>> byNamespace = new HashMap<String, List<Rule>>( 4 );
+
+        StateMatches( final int version )
+        {
+            this.version = version;
+        }
+
+    }
+
 }
@@ -0,0 +1,86 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.xml.sax.Attributes;
+
+/**
+ * <p>
+ * Optional extension of the {@link Rules} interface for matching policies that can be evaluated incrementally, while
+ * elements are entered and left.
+ * </p>
+ * <p>
+ * Instead of building the whole nesting pattern of every element and matching it from scratch, the {@link Digester}
+ * keeps a stack of <code>int</code> states: when an element is entered, its state is computed from the state of its
+ * parent and the element name only, and when the element is left the state of the parent is simply restored.
+ * </p>
+ * <p>
+ * States are opaque values, only meaningful for the <code>IncrementalRules</code> instance that returned them.
+ * Implementations may return {@link #UNKNOWN_STATE} whenever they are not able to track an element, in that case the
+ * element and all its descendants are matched through {@link Rules#match(String, String, String, Attributes)}.
+ * </p>
+ * <p>
+ * Computing the states usually records them, so implementations are modified while matching, not only while rules are
+ * registered: unless an implementation states otherwise, an instance must not be shared by digesters parsing at the
+ * same time, even though its rules are not changed.
+ * </p>
+ *
+ * @since 3.3
+ */
+public interface IncrementalRules
+    extends Rules
+{
+
+    /**
+     * The state of the document itself, which is the parent of the root element.
+     */
+    int ROOT_STATE = 0;
+
+    /**
+     * The state returned when an element can not be matched incrementally.
+     */
+    int UNKNOWN_STATE = -1;
+
+    /**
+     * Return the state of the element with the given name, nested in the element having the given state.
+     *
+     * @param parentState the state of the parent element, {@link #ROOT_STATE} for the root element
+     * @param name the local name if the parser is namespace aware, or just the element name otherwise
+     * @return the state of the element, or {@link #UNKNOWN_STATE} if the element can not be matched incrementally
+     */
+    int nextState( int parentState, String name );
+
+    /**
+     * Return a List of all registered Rule instances that match the element in the specified state, or a zero-length
+     * List if there are no matches. The returned rules <strong>must</strong> be the same that
+     * {@link Rules#match(String, String, String, Attributes)} would return for the nesting pattern of the element.
+     *
+     * @param state the element state, as returned by {@link #nextState(int, String)}
+     * @param namespaceURI Namespace URI for which to select matching rules, or <code>null</code> to match regardless of
+     *            namespace URI
+     * @param name the local name if the parser is namespace aware, or just the element name otherwise
+     * @param attributes The attribute list of the current matching element
+     * @return a List of all registered Rule instances that match the element in the specified state
+     */
+    List<Rule> match( int state, String namespaceURI, String name, Attributes attributes );
+
+}
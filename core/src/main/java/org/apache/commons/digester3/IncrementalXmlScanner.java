@@ -0,0 +1,1366 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.NamespaceSupport;
+
+/**
+ * <p>
+ * A non blocking XML scanner: the bytes of a document are pushed as they are received, and every complete markup is
+ * delivered at once to a SAX {@link ContentHandler}, while an incomplete one is kept until the next bytes arrive.
+ * Text is delivered as soon as it is received, possibly in several pieces.
+ * </p>
+ * <p>
+ * The scanner checks that the document is well formed, and processes the namespaces exactly as a SAX parser would,
+ * with the <code>namespace-prefixes</code> feature disabled. Document type declarations are skipped: the document can
+ * not be validated, and the external entities are never read. Only the internal entities whose replacement text is
+ * plain text are expanded, the references to the other ones are reported as skipped entities when the document has a
+ * document type declaration, and are errors otherwise.
+ * </p>
+ * <p>
+ * As the JDK parsers, the scanner limits the number of entity references expanded in a document and the total length
+ * of their replacement text, 64000 and 50000000 by default. The limits can be changed with the
+ * <code>jdk.xml.entityExpansionLimit</code> and <code>jdk.xml.totalEntitySizeLimit</code> system properties, 0 meaning
+ * no limit.
+ * </p>
+ * <p>
+ * The encoding is detected from the byte order mark or the XML declaration, UTF-8 by default.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class IncrementalXmlScanner
+    implements Locator
+{
+
+    /**
+     * The maximum number of bytes read to find the end of the XML declaration.
+     */
+    private static final int MAX_DECLARATION_LENGTH = 1024;
+
+    /**
+     * The declaration of an internal general entity, with its replacement text in the second or third group.
+     */
+    private static final Pattern ENTITY =
+        Pattern.compile( "<!ENTITY\\s+([^\\s%]+)\\s+(?:\"([^\"]*)\"|'([^']*)')\\s*>" );
+
+    private static final int DEFAULT_ENTITY_EXPANSION_LIMIT = 64000;
+
+    private static final int DEFAULT_TOTAL_ENTITY_SIZE_LIMIT = 50000000;
+
+    private static final Pattern ENCODING = Pattern.compile( "encoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._-]*)[\"']" );
+
+    private final ContentHandler handler;
+
+    private final boolean namespaceAware;
+
+    private final NamespaceSupport namespaces = new NamespaceSupport();
+
+    private final String[] nameParts = new String[3];
+
+    /** The prefixes declared by the current start tag, each followed by its namespace URI. */
+    private final ArrayList<String> declaredPrefixes = new ArrayList<String>();
+
+    /** The replacement text of the internal entities declared with plain text. */
+    private final Map<String, String> entities = new HashMap<String, String>();
+
+    /** The maximum number of entity references expanded in the document. */
+    private final int entityExpansionLimit;
+
+    /** The maximum total length of the replacement text of the entity references expanded in the document. */
+    private final int totalEntitySizeLimit;
+
+    private int entityExpansions;
+
+    private long totalEntitySize;
+
+    /** The attributes of the current start tag, reused for every start tag. */
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    /** The qualified names of the open elements. */
+    private final ArrayStack<String> elements = new ArrayStack<String>();
+
+    /** The bytes received and not decoded yet, in write mode. */
+    private ByteBuffer bytes = ByteBuffer.allocate( 256 );
+
+    private CharsetDecoder decoder;
+
+    /** The characters decoded and not scanned yet are in [start, end). */
+    private char[] chars = new char[1024];
+
+    private int start;
+
+    private int end;
+
+    /**
+     * How many characters of the incomplete markup at <code>start</code> have already been searched for its end, with
+     * the quote and the internal subset depth reached, so that the search resumes there when more characters arrive.
+     */
+    private int markupSearched;
+
+    private char markupQuote;
+
+    private int markupBrackets;
+
+    /** Where the references in text and attribute values are expanded. */
+    private char[] scratch = new char[256];
+
+    /** True if the last character decoded is a carriage return, to normalize the line ends. */
+    private boolean pendingCarriageReturn;
+
+    /** The position of the character at <code>start</code>. */
+    private int lineNumber = 1;
+
+    private int columnNumber = 1;
+
+    private boolean started;
+
+    private boolean markupSeen;
+
+    private boolean doctypeSeen;
+
+    private boolean rootSeen;
+
+    private boolean finished;
+
+    /**
+     * Creates a new scanner.
+     *
+     * @param handler the handler the events of the document are delivered to
+     * @param namespaceAware true, if the document has to be read in a namespace aware manner
+     */
+    IncrementalXmlScanner( final ContentHandler handler, final boolean namespaceAware )
+    {
+        this.handler = handler;
+        this.namespaceAware = namespaceAware;
+        this.entityExpansionLimit = getLimit( "jdk.xml.entityExpansionLimit", DEFAULT_ENTITY_EXPANSION_LIMIT );
+        this.totalEntitySizeLimit = getLimit( "jdk.xml.totalEntitySizeLimit", DEFAULT_TOTAL_ENTITY_SIZE_LIMIT );
+    }
+
+    private static int getLimit( final String property, final int defaultLimit )
+    {
+        final int limit = Integer.getInteger( property, defaultLimit );
+        return limit > 0 ? limit : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Scans the given bytes of the document, delivering all the complete events. The bytes are all consumed, the ones
+     * that can not be scanned yet are retained.
+     *
+     * @param input the next bytes of the document
+     * @throws SAXException if the document is not well formed, or the handler fails
+     */
+    void feed( final ByteBuffer input )
+        throws SAXException
+    {
+        checkNotFinished();
+        start();
+
+        if ( bytes.remaining() < input.remaining() )
+        {
+            final ByteBuffer grown = ByteBuffer.allocate( Math.max( bytes.capacity() * 2,
+                                                                    bytes.position() + input.remaining() ) );
+            bytes.flip();
+            grown.put( bytes );
+            bytes = grown;
+        }
+        bytes.put( input );
+
+        bytes.flip();
+        try
+        {
+            if ( decoder != null || detectEncoding( false ) )
+            {
+                decode( false );
+            }
+        }
+        finally
+        {
+            bytes.compact();
+        }
+        scan( false );
+    }
+
+    /**
+     * Scans all the bytes retained, then checks that the document is complete and delivers its end.
+     *
+     * @throws SAXException if the document is not well formed, or the handler fails
+     */
+    void end()
+        throws SAXException
+    {
+        checkNotFinished();
+        start();
+
+        bytes.flip();
+        if ( decoder != null || detectEncoding( true ) )
+        {
+            decode( true );
+        }
+        bytes.clear();
+        scan( true );
+
+        if ( !rootSeen )
+        {
+            throw error( "Premature end of file." );
+        }
+        if ( !elements.isEmpty() )
+        {
+            throw error( "The element type \"" + elements.peek() + "\" must be terminated by the matching end-tag." );
+        }
+        finished = true;
+        handler.endDocument();
+    }
+
+    private void checkNotFinished()
+    {
+        if ( finished )
+        {
+            throw new IllegalStateException( "The end of the document has already been reached" );
+        }
+    }
+
+    private void start()
+        throws SAXException
+    {
+        if ( !started )
+        {
+            started = true;
+            handler.setDocumentLocator( this );
+            handler.startDocument();
+        }
+    }
+
+    // ------------------------------------------------------- Decoding
+
+    /**
+     * Detects the encoding of the document from its first bytes, skipping the byte order mark if any.
+     *
+     * @param endOfInput true, if no more bytes will be received
+     * @return false, if more bytes are needed
+     */
+    private boolean detectEncoding( final boolean endOfInput )
+        throws SAXException
+    {
+        final int length = bytes.remaining();
+        if ( length < 4 && !endOfInput )
+        {
+            return false;
+        }
+
+        final int b0 = length > 0 ? bytes.get( 0 ) & 0xFF : -1;
+        final int b1 = length > 1 ? bytes.get( 1 ) & 0xFF : -1;
+        final int b2 = length > 2 ? bytes.get( 2 ) & 0xFF : -1;
+        final int b3 = length > 3 ? bytes.get( 3 ) & 0xFF : -1;
+
+        String encoding = "UTF-8";
+        if ( b0 == 0xEF && b1 == 0xBB && b2 == 0xBF )
+        {
+            bytes.position( 3 );
+        }
+        else if ( b0 == 0xFE && b1 == 0xFF )
+        {
+            bytes.position( 2 );
+            encoding = "UTF-16BE";
+        }
+        else if ( b0 == 0xFF && b1 == 0xFE )
+        {
+            bytes.position( 2 );
+            encoding = "UTF-16LE";
+        }
+        else if ( b0 == 0x00 && b1 == 0x3C && b2 == 0x00 && b3 == 0x3F )
+        {
+            encoding = "UTF-16BE";
+        }
+        else if ( b0 == 0x3C && b1 == 0x00 && b2 == 0x3F && b3 == 0x00 )
+        {
+            encoding = "UTF-16LE";
+        }
+        else if ( b0 == '<' && b1 == '?' && b2 == 'x' && b3 == 'm' )
+        {
+            // an ASCII compatible encoding, named by the XML declaration
+            int declarationEnd = -1;
+            for ( int i = 4; i + 1 < length && i < MAX_DECLARATION_LENGTH; i++ )
+            {
+                if ( bytes.get( i ) == '?' && bytes.get( i + 1 ) == '>' )
+                {
+                    declarationEnd = i;
+                    break;
+                }
+            }
+            if ( declarationEnd < 0 )
+            {
+                if ( !endOfInput && length < MAX_DECLARATION_LENGTH )
+                {
+                    return false;
+                }
+                throw error( "The XML declaration must end with \"?>\"." );
+            }
+
+            final char[] declaration = new char[declarationEnd];
+            for ( int i = 0; i < declarationEnd; i++ )
+            {
+                declaration[i] = (char) ( bytes.get( i ) & 0xFF );
+            }
+            final Matcher matcher = ENCODING.matcher( CharBuffer.wrap( declaration ) );
+            if ( matcher.find() )
+            {
+                encoding = matcher.group( 1 );
+            }
+        }
+
+        try
+        {
+            decoder = Charset.forName( encoding ).newDecoder()
+                                              .onMalformedInput( CodingErrorAction.REPORT )
+                                              .onUnmappableCharacter( CodingErrorAction.REPORT );
+        }
+        catch ( final IllegalCharsetNameException e )
+        {
+            throw error( "Invalid encoding name \"" + encoding + "\"." );
+        }
+        catch ( final UnsupportedCharsetException e )
+        {
+            throw error( "Unsupported encoding \"" + encoding + "\"." );
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the bytes received, normalizing the line ends, and appends them to the characters to be scanned.
+     */
+    private void decode( final boolean endOfInput )
+        throws SAXException
+    {
+        compact( bytes.remaining() + 2 );
+        boolean flushing = false;
+        while ( true )
+        {
+            final CharBuffer out = CharBuffer.wrap( chars, end, chars.length - end );
+            final CoderResult result = flushing ? decoder.flush( out ) : decoder.decode( bytes, out, endOfInput );
+            normalizeLineEnds( out.position() );
+
+            if ( result.isOverflow() )
+            {
+                compact( chars.length );
+            }
+            else if ( result.isError() )
+            {
+                try
+                {
+                    result.throwException();
+                }
+                catch ( final CharacterCodingException e )
+                {
+                    throw error( "Invalid byte sequence for the encoding " + decoder.charset().name() + "." );
+                }
+            }
+            else if ( endOfInput && !flushing )
+            {
+                flushing = true;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    private void normalizeLineEnds( final int limit )
+    {
+        int write = end;
+        for ( int read = end; read < limit; read++ )
+        {
+            final char c = chars[read];
+            if ( c == '\n' && pendingCarriageReturn )
+            {
+                pendingCarriageReturn = false;
+                continue;
+            }
+            pendingCarriageReturn = c == '\r';
+            chars[write++] = pendingCarriageReturn ? '\n' : c;
+        }
+        end = write;
+    }
+
+    /**
+     * Makes room for at least the given number of characters after the ones to be scanned.
+     */
+    private void compact( final int room )
+    {
+        if ( chars.length - end >= room )
+        {
+            return;
+        }
+        // the characters are moved or copied only when the room is lacking, the buffer growing geometrically
+        final int length = end - start;
+        final char[] target = chars.length - length >= room ? chars : new char[Math.max( chars.length * 2, length + room )];
+        System.arraycopy( chars, start, target, 0, length );
+        chars = target;
+        start = 0;
+        end = length;
+    }
+
+    // ------------------------------------------------------- Scanning
+
+    /**
+     * Delivers the events of all the complete markups and text received.
+     *
+     * @param endOfInput true, if no more characters will be received
+     */
+    private void scan( final boolean endOfInput )
+        throws SAXException
+    {
+        while ( start < end )
+        {
+            if ( chars[start] == '<' )
+            {
+                final int markupEnd = findMarkupEnd( endOfInput );
+                if ( markupEnd < 0 )
+                {
+                    if ( endOfInput )
+                    {
+                        throw error( "XML document structures must start and end within the same entity." );
+                    }
+                    return;
+                }
+                checkCharacters( markupEnd );
+                scanMarkup( markupEnd );
+                markupSeen = true;
+                advance( markupEnd );
+            }
+            else
+            {
+                int textEnd = indexOf( '<', start );
+                if ( textEnd < 0 )
+                {
+                    textEnd = end;
+                    if ( !endOfInput )
+                    {
+                        // a reference is delivered once complete
+                        final int ampersand = lastIndexOf( '&', start );
+                        if ( ampersand >= 0 && indexOf( ';', ampersand ) < 0 )
+                        {
+                            textEnd = ampersand;
+                        }
+                        // and a "]]>", that is not allowed in text, is detected once complete
+                        while ( textEnd > start && textEnd > end - 2 && chars[textEnd - 1] == ']' )
+                        {
+                            textEnd--;
+                        }
+                        if ( textEnd == start )
+                        {
+                            return;
+                        }
+                    }
+                }
+                checkCharacters( textEnd );
+                scanText( textEnd );
+                advance( textEnd );
+            }
+        }
+    }
+
+    /**
+     * Returns the end of the markup at <code>start</code>, or -1 if it is incomplete.
+     */
+    private int findMarkupEnd( final boolean endOfInput )
+    {
+        if ( end - start < 2 || ( chars[start + 1] == '!' && end - start < 9 && !endOfInput ) )
+        {
+            // too short to know which markup it is
+            return -1;
+        }
+
+        if ( startsWith( "<!--" ) )
+        {
+            return findDelimiter( "-->", 4 );
+        }
+        if ( startsWith( "<![CDATA[" ) )
+        {
+            return findDelimiter( "]]>", 9 );
+        }
+        if ( startsWith( "<?" ) )
+        {
+            return findDelimiter( "?>", 2 );
+        }
+
+        // tags and declarations end at the first '>' outside a quoted value, or the internal subset
+        char quote = markupQuote;
+        int brackets = markupBrackets;
+        int searched = end - start;
+        for ( int i = start + Math.max( 1, markupSearched ); i < end; i++ )
+        {
+            final char c = chars[i];
+            if ( quote != 0 )
+            {
+                if ( c == quote )
+                {
+                    quote = 0;
+                }
+            }
+            else if ( c == '"' || c == '\'' )
+            {
+                quote = c;
+            }
+            else if ( c == '[' && chars[start + 1] == '!' )
+            {
+                brackets++;
+            }
+            else if ( c == ']' && brackets > 0 )
+            {
+                brackets--;
+            }
+            else if ( c == '>' && brackets == 0 )
+            {
+                return i + 1;
+            }
+            else if ( c == '<' && brackets > 0 )
+            {
+                // the comments and processing instructions of the internal subset can contain quotes and brackets
+                final int skipped = end - i < 4 ? -1 : skipSubsetMarkup( i, end );
+                if ( skipped < 0 )
+                {
+                    // searched again once received
+                    searched = i - start;
+                    break;
+                }
+                i = Math.max( i, skipped - 1 );
+            }
+        }
+        markupSearched = searched;
+        markupQuote = quote;
+        markupBrackets = brackets;
+        return -1;
+    }
+
+    /**
+     * Returns the position after the given delimiter ending the markup at <code>start</code>, or -1 if it has not been
+     * received yet.
+     */
+    private int findDelimiter( final String delimiter, final int openingLength )
+    {
+        // a delimiter can overlap the characters already searched
+        final int from = start + Math.max( openingLength, markupSearched - delimiter.length() + 1 );
+        final int markupEnd = indexOf( delimiter, from );
+        if ( markupEnd < 0 )
+        {
+            markupSearched = end - start;
+        }
+        return markupEnd;
+    }
+
+    private void scanMarkup( final int markupEnd )
+        throws SAXException
+    {
+        if ( startsWith( "<!--" ) )
+        {
+            // comments are not delivered to content handlers, but "--" must not occur inside of them
+            if ( indexOf( "--", start + 4, markupEnd - 2 ) >= 0 )
+            {
+                throw error( "The string \"--\" is not permitted within comments." );
+            }
+            return;
+        }
+
+        if ( startsWith( "<![CDATA[" ) )
+        {
+            if ( elements.isEmpty() )
+            {
+                throw error( "CDATA sections are only allowed inside the root element." );
+            }
+            handler.characters( chars, start + 9, markupEnd - 3 - start - 9 );
+            return;
+        }
+
+        if ( startsWith( "<?" ) )
+        {
+            scanProcessingInstruction( markupEnd );
+            return;
+        }
+
+        if ( startsWith( "<!DOCTYPE" ) )
+        {
+            if ( doctypeSeen || rootSeen )
+            {
+                throw error( "The document type declaration must appear once, before the root element." );
+            }
+            doctypeSeen = true;
+            declareEntities( markupEnd );
+            return;
+        }
+
+        if ( chars[start + 1] == '!' )
+        {
+            throw error( "The markup declarations are only allowed in the document type declaration." );
+        }
+
+        if ( chars[start + 1] == '/' )
+        {
+            scanEndTag( markupEnd );
+        }
+        else
+        {
+            scanStartTag( markupEnd );
+        }
+    }
+
+    /**
+     * Declares the internal entities of the document type declaration whose replacement text is plain text, the
+     * other references are skipped. The declarations are only looked for in the internal subset, outside of the
+     * comments, processing instructions and quoted literals.
+     */
+    private void declareEntities( final int markupEnd )
+    {
+        int i = start + 9;
+        while ( i < markupEnd && chars[i] != '[' )
+        {
+            i = skipLiteral( i, markupEnd );
+        }
+
+        final Matcher matcher = ENTITY.matcher( CharBuffer.wrap( chars, 0, markupEnd ) );
+        while ( i < markupEnd )
+        {
+            if ( chars[i] != '<' )
+            {
+                i = skipLiteral( i, markupEnd );
+                continue;
+            }
+            final int skipped = skipSubsetMarkup( i, markupEnd );
+            if ( skipped != i )
+            {
+                i = skipped < 0 ? markupEnd : skipped;
+            }
+            else if ( matcher.region( i, markupEnd ).lookingAt() )
+            {
+                final String value = matcher.group( 2 ) != null ? matcher.group( 2 ) : matcher.group( 3 );
+                if ( value.indexOf( '<' ) < 0 && value.indexOf( '&' ) < 0
+                    && !entities.containsKey( matcher.group( 1 ) ) )
+                {
+                    // the first declaration is binding
+                    entities.put( matcher.group( 1 ), value );
+                }
+                i = matcher.end();
+            }
+            else
+            {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns the position after the quoted literal at the given position, or after the character at the given
+     * position if it does not open a literal.
+     */
+    private int skipLiteral( final int from, final int to )
+    {
+        final char c = chars[from];
+        if ( c != '"' && c != '\'' )
+        {
+            return from + 1;
+        }
+        final int closing = indexOf( c, from + 1, to );
+        return closing < 0 ? to : closing + 1;
+    }
+
+    /**
+     * Returns the position after the comment or the processing instruction of the internal subset at the given
+     * position, the position itself if there is none, or -1 if its end has not been received yet.
+     */
+    private int skipSubsetMarkup( final int from, final int to )
+    {
+        if ( startsWith( "<!--", from, to ) )
+        {
+            return indexOf( "-->", from + 4, to );
+        }
+        if ( startsWith( "<?", from, to ) )
+        {
+            return indexOf( "?>", from + 2, to );
+        }
+        return from;
+    }
+
+    private void scanProcessingInstruction( final int markupEnd )
+        throws SAXException
+    {
+        final int contentEnd = markupEnd - 2;
+        final int targetEnd = skipName( start + 2, contentEnd );
+        final String target = new String( chars, start + 2, targetEnd - start - 2 );
+        if ( target.length() == 0 )
+        {
+            throw error( "The processing instruction must begin with the name of the target." );
+        }
+        if ( "xml".equalsIgnoreCase( target ) )
+        {
+            if ( markupSeen || lineNumber > 1 || columnNumber > 1 || !"xml".equals( target ) )
+            {
+                throw error( "The processing instruction target matching \"[xX][mM][lL]\" is not allowed." );
+            }
+            // the XML declaration
+            return;
+        }
+
+        final int dataStart = skipWhitespace( targetEnd, contentEnd );
+        if ( dataStart == targetEnd && dataStart < contentEnd )
+        {
+            throw error( "White space is required between the processing instruction target and data." );
+        }
+        handler.processingInstruction( target, new String( chars, dataStart, contentEnd - dataStart ) );
+    }
+
+    private void scanStartTag( final int markupEnd )
+        throws SAXException
+    {
+        if ( rootSeen && elements.isEmpty() )
+        {
+            throw error( "The markup in the document following the root element must be well-formed." );
+        }
+
+        final boolean empty = chars[markupEnd - 2] == '/';
+        final int contentEnd = empty ? markupEnd - 2 : markupEnd - 1;
+        final int nameEnd = skipName( start + 1, contentEnd );
+        if ( nameEnd == start + 1 )
+        {
+            throw error( "The markup in the document must be well-formed." );
+        }
+        final String qName = new String( chars, start + 1, nameEnd - start - 1 );
+
+        attributes.clear();
+        int i = nameEnd;
+        while ( true )
+        {
+            final int attributeStart = skipWhitespace( i, contentEnd );
+            if ( attributeStart == contentEnd )
+            {
+                break;
+            }
+            if ( attributeStart == i )
+            {
+                throw error( "Element type \"" + qName
+                    + "\" must be followed by either attribute specifications, \">\" or \"/>\"." );
+            }
+            i = scanAttribute( qName, attributeStart, contentEnd );
+        }
+
+        rootSeen = true;
+        elements.push( qName );
+        if ( namespaceAware )
+        {
+            startElementNamespaces( qName );
+        }
+        else
+        {
+            handler.startElement( "", "", qName, attributes );
+        }
+
+        if ( empty )
+        {
+            endElement( qName );
+        }
+    }
+
+    /**
+     * Scans the attribute starting at the given position, and adds it to the attributes.
+     *
+     * @return the position after the attribute
+     */
+    private int scanAttribute( final String elementName, final int attributeStart, final int contentEnd )
+        throws SAXException
+    {
+        final int nameEnd = skipName( attributeStart, contentEnd );
+        if ( nameEnd == attributeStart )
+        {
+            throw error( "Element type \"" + elementName
+                + "\" must be followed by either attribute specifications, \">\" or \"/>\"." );
+        }
+        final String name = new String( chars, attributeStart, nameEnd - attributeStart );
+
+        int i = skipWhitespace( nameEnd, contentEnd );
+        if ( i == contentEnd || chars[i] != '=' )
+        {
+            throw error( "Attribute name \"" + name + "\" associated with an element type \"" + elementName
+                + "\" must be followed by the ' = ' character." );
+        }
+        i = skipWhitespace( i + 1, contentEnd );
+        if ( i == contentEnd || ( chars[i] != '"' && chars[i] != '\'' ) )
+        {
+            throw error( "Open quote is expected for attribute \"" + name + "\" associated with an element type \""
+                + elementName + "\"." );
+        }
+        final char quote = chars[i];
+        final int valueStart = i + 1;
+        int valueEnd = valueStart;
+        while ( valueEnd < contentEnd && chars[valueEnd] != quote )
+        {
+            if ( chars[valueEnd] == '<' )
+            {
+                throw error( "The value of attribute \"" + name + "\" associated with an element type \""
+                    + elementName + "\" must not contain the '<' character." );
+            }
+            valueEnd++;
+        }
+        if ( valueEnd == contentEnd )
+        {
+            throw error( "The value of attribute \"" + name + "\" associated with an element type \"" + elementName
+                + "\" must end with the matching quote character." );
+        }
+
+        if ( attributes.getIndex( name ) >= 0 )
+        {
+            throw error( "Attribute \"" + name + "\" was already specified for element \"" + elementName + "\"." );
+        }
+        final int length = expand( valueStart, valueEnd, true );
+        // as SAX parsers do, the local name is the qualified one unless the namespaces are processed
+        attributes.addAttribute( "", name, name, "CDATA", new String( scratch, 0, length ) );
+        return valueEnd + 1;
+    }
+
+    private void startElementNamespaces( final String qName )
+        throws SAXException
+    {
+        namespaces.pushContext();
+        declaredPrefixes.clear();
+        for ( int i = 0; i < attributes.getLength(); i++ )
+        {
+            final String name = attributes.getQName( i );
+            if ( "xmlns".equals( name ) || name.startsWith( "xmlns:" ) )
+            {
+                final String prefix = name.length() == 5 ? "" : name.substring( 6 );
+                final String uri = attributes.getValue( i );
+                if ( prefix.length() > 0 && uri.length() == 0 )
+                {
+                    throw error( "The value of the namespace prefix \"" + prefix + "\" must not be empty." );
+                }
+                namespaces.declarePrefix( prefix, uri );
+                declaredPrefixes.add( prefix );
+                declaredPrefixes.add( uri );
+                // namespace declarations are not reported as attributes
+                attributes.removeAttribute( i-- );
+            }
+        }
+
+        for ( int i = 0; i < attributes.getLength(); i++ )
+        {
+            final String name = attributes.getQName( i );
+            if ( namespaces.processName( name, nameParts, true ) == null )
+            {
+                throw error( "The prefix of the attribute \"" + name + "\" is not bound." );
+            }
+            attributes.setURI( i, nameParts[0] );
+            attributes.setLocalName( i, nameParts[1] );
+        }
+        for ( int i = 0; i < attributes.getLength(); i++ )
+        {
+            for ( int j = 0; j < i; j++ )
+            {
+                if ( attributes.getURI( i ).length() > 0 && attributes.getURI( i ).equals( attributes.getURI( j ) )
+                    && attributes.getLocalName( i ).equals( attributes.getLocalName( j ) ) )
+                {
+                    throw error( "Attribute \"" + attributes.getLocalName( i ) + "\" bound to namespace \""
+                        + attributes.getURI( i ) + "\" was already specified." );
+                }
+            }
+        }
+
+        if ( namespaces.processName( qName, nameParts, false ) == null )
+        {
+            throw error( "The prefix of the element \"" + qName + "\" is not bound." );
+        }
+
+        // the element is well formed, its events can be delivered
+        for ( int i = 0; i < declaredPrefixes.size(); i += 2 )
+        {
+            handler.startPrefixMapping( declaredPrefixes.get( i ), declaredPrefixes.get( i + 1 ) );
+        }
+        handler.startElement( nameParts[0], nameParts[1], qName, attributes );
+    }
+
+    private void scanEndTag( final int markupEnd )
+        throws SAXException
+    {
+        final int nameEnd = skipName( start + 2, markupEnd - 1 );
+        final String qName = new String( chars, start + 2, nameEnd - start - 2 );
+        if ( skipWhitespace( nameEnd, markupEnd - 1 ) != markupEnd - 1 )
+        {
+            throw error( "The end-tag for element type \"" + qName + "\" must end with a '>' delimiter." );
+        }
+        if ( elements.isEmpty() || !elements.peek().equals( qName ) )
+        {
+            throw error( elements.isEmpty() ? "The markup in the document following the root element must be well-formed."
+                            : "The element type \"" + elements.peek()
+                                + "\" must be terminated by the matching end-tag \"</" + elements.peek() + ">\"." );
+        }
+        endElement( qName );
+    }
+
+    private void endElement( final String qName )
+        throws SAXException
+    {
+        elements.pop();
+        if ( namespaceAware )
+        {
+            namespaces.processName( qName, nameParts, false );
+            handler.endElement( nameParts[0], nameParts[1], qName );
+            final Enumeration<?> prefixes = namespaces.getDeclaredPrefixes();
+            while ( prefixes.hasMoreElements() )
+            {
+                handler.endPrefixMapping( (String) prefixes.nextElement() );
+            }
+            namespaces.popContext();
+        }
+        else
+        {
+            handler.endElement( "", "", qName );
+        }
+    }
+
+    private void scanText( final int textEnd )
+        throws SAXException
+    {
+        if ( elements.isEmpty() )
+        {
+            if ( skipWhitespace( start, textEnd ) != textEnd )
+            {
+                throw error( rootSeen ? "Content is not allowed in trailing section."
+                                : "Content is not allowed in prolog." );
+            }
+            // white space outside the root element is not delivered to content handlers
+            return;
+        }
+
+        if ( indexOf( "]]>", start, textEnd ) >= 0 )
+        {
+            throw error( "The character sequence \"]]>\" must not appear in content unless used to mark the end of a "
+                + "CDATA section." );
+        }
+        if ( indexOf( '&', start, textEnd ) < 0 )
+        {
+            handler.characters( chars, start, textEnd - start );
+            return;
+        }
+        final int length = expand( start, textEnd, false );
+        if ( length > 0 )
+        {
+            handler.characters( scratch, 0, length );
+        }
+    }
+
+    /**
+     * Expands the references in the given range into the scratch buffer; in attribute values, the white space
+     * characters are normalized to spaces. The references to undeclared entities in text are reported as skipped,
+     * delivering the text before them.
+     *
+     * @return the length of the expanded range in the scratch buffer
+     */
+    private int expand( final int from, final int to, final boolean attribute )
+        throws SAXException
+    {
+        if ( scratch.length < to - from )
+        {
+            scratch = new char[Math.max( scratch.length * 2, to - from )];
+        }
+
+        int length = 0;
+        int i = from;
+        while ( i < to )
+        {
+            final char c = chars[i];
+            if ( c != '&' )
+            {
+                scratch[length++] = attribute && ( c == '\n' || c == '\t' ) ? ' ' : c;
+                i++;
+                continue;
+            }
+
+            final int semicolon = indexOf( ';', i, to );
+            if ( semicolon < 0 )
+            {
+                throw error( "The entity reference must end with the ';' delimiter." );
+            }
+            final String name = new String( chars, i + 1, semicolon - i - 1 );
+            if ( !name.startsWith( "#" ) && ( name.length() == 0 || !isXmlName( chars, i + 1, semicolon ) ) )
+            {
+                throw error( "The entity name must immediately follow the '&' in the entity reference." );
+            }
+            i = semicolon + 1;
+
+            if ( name.startsWith( "#" ) )
+            {
+                final int codePoint = parseCharacterReference( name );
+                length += Character.toChars( codePoint, scratch, length );
+            }
+            else if ( "lt".equals( name ) )
+            {
+                scratch[length++] = '<';
+            }
+            else if ( "gt".equals( name ) )
+            {
+                scratch[length++] = '>';
+            }
+            else if ( "amp".equals( name ) )
+            {
+                scratch[length++] = '&';
+            }
+            else if ( "apos".equals( name ) )
+            {
+                scratch[length++] = '\'';
+            }
+            else if ( "quot".equals( name ) )
+            {
+                scratch[length++] = '"';
+            }
+            else if ( entities.containsKey( name ) )
+            {
+                final String value = entities.get( name );
+                if ( ++entityExpansions > entityExpansionLimit )
+                {
+                    throw error( "The parser has encountered more than \"" + entityExpansionLimit
+                        + "\" entity expansions in this document." );
+                }
+                totalEntitySize += value.length();
+                if ( totalEntitySize > totalEntitySizeLimit )
+                {
+                    throw error( "The accumulated size of entities is \"" + totalEntitySize
+                        + "\" that exceeded the \"" + totalEntitySizeLimit + "\" limit." );
+                }
+                if ( scratch.length < length + value.length() + to - i )
+                {
+                    scratch = Arrays.copyOf( scratch, Math.max( scratch.length * 2, length + value.length() + to - i ) );
+                }
+                for ( int j = 0; j < value.length(); j++ )
+                {
+                    final char v = value.charAt( j );
+                    scratch[length++] = attribute && ( v == '\n' || v == '\t' || v == '\r' ) ? ' ' : v;
+                }
+            }
+            else if ( doctypeSeen && !attribute )
+            {
+                // the entity could be declared in the document type declaration, that is not read
+                if ( length > 0 )
+                {
+                    handler.characters( scratch, 0, length );
+                    length = 0;
+                }
+                handler.skippedEntity( name );
+            }
+            else
+            {
+                throw error( "The entity \"" + name + "\" was referenced, but not declared." );
+            }
+        }
+        return length;
+    }
+
+    private int parseCharacterReference( final String name )
+        throws SAXParseException
+    {
+        final boolean hexadecimal = name.startsWith( "#x" );
+        final int digitsStart = hexadecimal ? 2 : 1;
+        boolean digits = name.length() > digitsStart;
+        for ( int i = digitsStart; digits && i < name.length(); i++ )
+        {
+            // only ASCII digits, without any sign
+            final char c = name.charAt( i );
+            digits = ( c >= '0' && c <= '9' )
+                || ( hexadecimal && ( ( c >= 'a' && c <= 'f' ) || ( c >= 'A' && c <= 'F' ) ) );
+        }
+        if ( digits )
+        {
+            try
+            {
+                final int codePoint = Integer.parseInt( name.substring( digitsStart ), hexadecimal ? 16 : 10 );
+                if ( isXmlCharacter( codePoint ) )
+                {
+                    return codePoint;
+                }
+            }
+            catch ( final NumberFormatException e )
+            {
+                // too large, reported below
+            }
+        }
+        throw error( "The character reference \"&" + name + ";\" is invalid." );
+    }
+
+    // ------------------------------------------------------- Characters utilities
+
+    /**
+     * Moves the start after the given position, updating the line and column numbers.
+     */
+    private void advance( final int to )
+    {
+        for ( int i = start; i < to; i++ )
+        {
+            if ( chars[i] == '\n' )
+            {
+                lineNumber++;
+                columnNumber = 1;
+            }
+            else
+            {
+                columnNumber++;
+            }
+        }
+        start = to;
+        markupSearched = 0;
+        markupQuote = 0;
+        markupBrackets = 0;
+    }
+
+    private boolean startsWith( final String prefix )
+    {
+        return startsWith( prefix, start, end );
+    }
+
+    private boolean startsWith( final String prefix, final int from, final int to )
+    {
+        if ( to - from < prefix.length() )
+        {
+            return false;
+        }
+        for ( int i = 0; i < prefix.length(); i++ )
+        {
+            if ( chars[from + i] != prefix.charAt( i ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf( final char c, final int from )
+    {
+        return indexOf( c, from, end );
+    }
+
+    private int indexOf( final char c, final int from, final int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            if ( chars[i] == c )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf( final char c, final int from )
+    {
+        for ( int i = end - 1; i >= from; i-- )
+        {
+            if ( chars[i] == c )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position after the end of the given string, or -1 if it is not found.
+     */
+    private int indexOf( final String s, final int from )
+    {
+        return indexOf( s, from, end );
+    }
+
+    /**
+     * Returns the position after the end of the given string in the given range, or -1 if it is not found.
+     */
+    private int indexOf( final String s, final int from, final int to )
+    {
+        final char first = s.charAt( 0 );
+        for ( int i = from; i <= to - s.length(); i++ )
+        {
+            if ( chars[i] == first )
+            {
+                int j = 1;
+                while ( j < s.length() && chars[i + j] == s.charAt( j ) )
+                {
+                    j++;
+                }
+                if ( j == s.length() )
+                {
+                    return i + j;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the end of the name starting at the given position, checking that it is a valid XML name if not empty.
+     */
+    private int skipName( final int from, final int to )
+        throws SAXParseException
+    {
+        int i = from;
+        while ( i < to && !isWhitespace( chars[i] ) && chars[i] != '=' && chars[i] != '/' && chars[i] != '>'
+            && chars[i] != '?' && chars[i] != '"' && chars[i] != '\'' && chars[i] != '<' )
+        {
+            i++;
+        }
+        if ( i > from && !isXmlName( chars, from, i ) )
+        {
+            throw error( "\"" + new String( chars, from, i - from ) + "\" is not a valid XML name." );
+        }
+        return i;
+    }
+
+    /**
+     * Checks that the given range only holds characters allowed in XML documents.
+     */
+    private void checkCharacters( final int to )
+        throws SAXParseException
+    {
+        for ( int i = start; i < to; i++ )
+        {
+            final char c = chars[i];
+            if ( c < 0x20 ? c != '\t' && c != '\n' : c >= 0xFFFE )
+            {
+                throw error( "An invalid XML character (Unicode: 0x" + Integer.toHexString( c )
+                    + ") was found in the element content of the document." );
+            }
+        }
+    }
+
+    private static boolean isXmlCharacter( final int codePoint )
+    {
+        return codePoint == '\t' || codePoint == '\n' || codePoint == '\r'
+            || ( codePoint >= 0x20 && codePoint <= 0xD7FF ) || ( codePoint >= 0xE000 && codePoint <= 0xFFFD )
+            || ( codePoint >= 0x10000 && codePoint <= Character.MAX_CODE_POINT );
+    }
+
+    private static boolean isXmlName( final char[] name, final int from, final int to )
+    {
+        if ( !isNameStartChar( name[from] ) )
+        {
+            return false;
+        }
+        for ( int i = from + 1; i < to; i++ )
+        {
+            final char c = name[i];
+            if ( !isNameStartChar( c ) && !( c == '-' || c == '.' || ( c >= '0' && c <= '9' ) || c == 0xB7
+                || ( c >= 0x300 && c <= 0x36F ) || c == 0x203F || c == 0x2040 ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameStartChar( final char c )
+    {
+        if ( c < 0x80 )
+        {
+            return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || c == '_' || c == ':';
+        }
+        // the surrogates encode the characters from #x10000 to #xEFFFF
+        return ( c >= 0xC0 && c <= 0xD6 ) || ( c >= 0xD8 && c <= 0xF6 ) || ( c >= 0xF8 && c <= 0x2FF )
+            || ( c >= 0x370 && c <= 0x37D ) || ( c >= 0x37F && c <= 0x1FFF ) || c == 0x200C || c == 0x200D
+            || ( c >= 0x2070 && c <= 0x218F ) || ( c >= 0x2C00 && c <= 0x2FEF ) || ( c >= 0x3001 && c <= 0xDFFF )
+            || ( c >= 0xF900 && c <= 0xFDCF ) || ( c >= 0xFDF0 && c <= 0xFFFD );
+    }
+
+    private int skipWhitespace( final int from, final int to )
+    {
+        int i = from;
+        while ( i < to && isWhitespace( chars[i] ) )
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace( final char c )
+    {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+    }
+
+    private SAXParseException error( final String message )
+    {
+        finished = true;
+        return new SAXParseException( message, this );
+    }
+
+    // ------------------------------------------------------- Locator Methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPublicId()
+    {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSystemId()
+    {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getColumnNumber()
+    {
+        return columnNumber;
+    }
+
+}
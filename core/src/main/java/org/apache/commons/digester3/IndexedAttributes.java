@@ -0,0 +1,301 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Arrays;
+
+import org.xml.sax.Attributes;
+
+/**
+ * <p>
+ * A view of the attributes of an element, that finds an attribute by name in constant time instead of scanning the
+ * whole list as most parsers do, and holds the name of each attribute precomputed.
+ * </p>
+ * <p>
+ * The view is filled again for every element, reusing its tables, so it is valid only while the element it has been
+ * filled for is being processed, exactly as the attributes passed by the parser; rules must not keep a reference to it
+ * after {@link Rule#begin(String, String, Attributes)} returned. The values are read from the wrapped attributes.
+ * </p>
+ *
+ * @see Digester#setAttributeIndexing(boolean)
+ * @since 3.3
+ */
+public final class IndexedAttributes
+    implements Attributes
+{
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The wrapped attributes. */
+    private Attributes attributes;
+
+    /** The number of attributes. */
+    private int length;
+
+    private String[] qNames = new String[INITIAL_CAPACITY];
+
+    private String[] uris = new String[INITIAL_CAPACITY];
+
+    private String[] localNames = new String[INITIAL_CAPACITY];
+
+    /** The local names, or the qualified names when the local names are not available. */
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    /**
+     * Open addressing table of the indexes, plus one, of the attributes by qualified name; 0 marks a free slot.
+     */
+    private int[] qNameSlots = new int[2 * INITIAL_CAPACITY];
+
+    /**
+     * Open addressing table of the indexes, plus one, of the attributes by local name; 0 marks a free slot.
+     */
+    private int[] localNameSlots = new int[2 * INITIAL_CAPACITY];
+
+    /** The number of slots in use of the tables, a power of two. */
+    private int slots;
+
+    /**
+     * Fills this view with the given attributes, replacing the previous ones.
+     *
+     * @param attributes the attributes of the current element
+     * @return this view
+     */
+    IndexedAttributes index( final Attributes attributes )
+    {
+        // previous slots are cleared even if there are no attributes now
+        Arrays.fill( qNameSlots, 0, slots, 0 );
+        Arrays.fill( localNameSlots, 0, slots, 0 );
+
+        this.attributes = attributes;
+        length = attributes.getLength();
+        if ( length > names.length )
+        {
+            final int capacity = Integer.highestOneBit( length - 1 ) << 1;
+            qNames = new String[capacity];
+            uris = new String[capacity];
+            localNames = new String[capacity];
+            names = new String[capacity];
+            qNameSlots = new int[2 * capacity];
+            localNameSlots = new int[2 * capacity];
+        }
+        slots = length == 0 ? 0 : Math.min( qNameSlots.length, Integer.highestOneBit( length ) << 2 );
+
+        for ( int i = 0; i < length; i++ )
+        {
+            final String localName = attributes.getLocalName( i );
+            String qName = attributes.getQName( i );
+            if ( qName == null || qName.length() == 0 )
+            {
+                // the parser does not report qualified names, the local name is the closest match
+                qName = localName;
+            }
+            qNames[i] = qName;
+            uris[i] = attributes.getURI( i );
+            localNames[i] = localName;
+            names[i] = localName == null || localName.length() == 0 ? qName : localName;
+
+            if ( qName != null && find( qNameSlots, qNames, qName, null ) == -1 )
+            {
+                store( qNameSlots, qName, i );
+            }
+            if ( localName != null && find( localNameSlots, localNames, localName, uris[i] ) == -1 )
+            {
+                store( localNameSlots, localName, i );
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Look up an attribute's name, which is its local name or, when it is not available, its qualified name, as
+     * rules mapping attributes to properties expect it.
+     *
+     * @param index The attribute index (zero-based)
+     * @return The attribute's name, or null if the index is out of range
+     */
+    public String getName( final int index )
+    {
+        return index < 0 || index >= length ? null : names[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getURI( final int index )
+    {
+        return attributes.getURI( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLocalName( final int index )
+    {
+        return attributes.getLocalName( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getQName( final int index )
+    {
+        return attributes.getQName( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType( final int index )
+    {
+        return attributes.getType( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getValue( final int index )
+    {
+        return attributes.getValue( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIndex( final String uri, final String localName )
+    {
+        if ( uri == null || localName == null )
+        {
+            return -1;
+        }
+        return find( localNameSlots, localNames, localName, uri );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIndex( final String qName )
+    {
+        if ( qName == null )
+        {
+            return -1;
+        }
+        return find( qNameSlots, qNames, qName, null );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType( final String uri, final String localName )
+    {
+        final int index = getIndex( uri, localName );
+        return index == -1 ? null : attributes.getType( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType( final String qName )
+    {
+        final int index = getIndex( qName );
+        return index == -1 ? null : attributes.getType( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getValue( final String uri, final String localName )
+    {
+        final int index = getIndex( uri, localName );
+        return index == -1 ? null : attributes.getValue( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getValue( final String qName )
+    {
+        final int index = getIndex( qName );
+        return index == -1 ? null : attributes.getValue( index );
+    }
+
+    /**
+     * Finds the index of the attribute with the given key, and namespace URI if not null, in the given table.
+     */
+    private int find( final int[] table, final String[] keys, final String key, final String uri )
+    {
+        if ( slots == 0 )
+        {
+            return -1;
+        }
+        final int mask = slots - 1;
+        for ( int slot = hash( key ) & mask;; slot = ( slot + 1 ) & mask )
+        {
+            final int entry = table[slot];
+            if ( entry == 0 )
+            {
+                return -1;
+            }
+            final int index = entry - 1;
+            if ( key.equals( keys[index] ) && ( uri == null || uri.equals( uris[index] ) ) )
+            {
+                return index;
+            }
+        }
+    }
+
+    private void store( final int[] table, final String key, final int index )
+    {
+        final int mask = slots - 1;
+        int slot = hash( key ) & mask;
+        while ( table[slot] != 0 )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private static int hash( final String key )
+    {
+        final int h = key.hashCode();
+        return h ^ ( h >>> 16 );
+    }
+
+}
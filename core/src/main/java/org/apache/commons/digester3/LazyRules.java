@@ -0,0 +1,48 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+/**
+ * <p>
+ * Optional extension of the {@link Rules} interface for rule sets creating each rule the first time one of its
+ * elements is met.
+ * </p>
+ * <p>
+ * At the end of the document, the {@link Digester} fires the <code>finish</code> events of the rules created so far
+ * only: the other ones took no part in the parse, and are not created just to be finished.
+ * </p>
+ *
+ * @since 3.3
+ */
+public interface LazyRules
+    extends Rules
+{
+
+    /**
+     * Return a List of the Rule instances created so far, in the order originally registered, or a zero-length List
+     * if no rule has been created.
+     *
+     * @return a List of the Rule instances created so far
+     */
+    List<Rule> createdRules();
+
+}
@@ -0,0 +1,205 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+
+/**
+ * Sets a simple property invoking its setter. The property can also be set to a value already converted to its
+ * type, and the <code>int</code>, <code>long</code> and <code>double</code> properties without boxing the value.
+ *
+ * @since 3.3
+ */
+final class MethodPropertySetter
+    extends PropertySetter
+{
+
+    private final Method writeMethod;
+
+    private final Class<?> type;
+
+    /**
+     * The setter, adapted to take an <code>Object</code> target and a primitive value, resolved the first time it is
+     * needed.
+     */
+    private MethodHandle primitiveHandle;
+
+    /**
+     * Creates a new setter invoking the given method.
+     *
+     * @param writeMethod the accessible setter of the property
+     * @param type the type of the property
+     */
+    MethodPropertySetter( final Method writeMethod, final Class<?> type )
+    {
+        this.writeMethod = writeMethod;
+        this.type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean isWriteable( final Object bean, final String name )
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void set( final BeanUtilsBean beanUtils, final ConversionRegistry conversions, final Object bean, final String name, final String value )
+        throws Exception
+    {
+        // converters may be registered at any time, so they are not resolved in advance
+        final Object converted;
+        if ( conversions != null )
+        {
+            converted = conversions.convert( value, type );
+        }
+        else
+        {
+            converted = beanUtils.getConvertUtils().convert( value, type );
+        }
+        writeMethod.invoke( bean, converted );
+    }
+
+    /**
+     * Returns the type of the property.
+     *
+     * @return the type of the property
+     */
+    Class<?> getPropertyType()
+    {
+        return type;
+    }
+
+    /**
+     * Sets the property to the given value, already converted to the {@link #getPropertyType() property type}.
+     *
+     * @param bean the object whose property has to be set
+     * @param value the property value
+     * @throws Exception if any error occurs
+     */
+    void setValue( final Object bean, final Object value )
+        throws Exception
+    {
+        writeMethod.invoke( bean, value );
+    }
+
+    /**
+     * Sets the property, whose {@link #getPropertyType() type} is <code>int</code>, without boxing the value.
+     *
+     * @param bean the object whose property has to be set
+     * @param value the property value
+     * @throws Exception if any error occurs
+     */
+    void setInt( final Object bean, final int value )
+        throws Exception
+    {
+        final MethodHandle handle = getPrimitiveHandle( int.class );
+        try
+        {
+            handle.invokeExact( bean, value );
+        }
+        catch ( final Throwable t )
+        {
+            throw wrap( t );
+        }
+    }
+
+    /**
+     * Sets the property, whose {@link #getPropertyType() type} is <code>long</code>, without boxing the value.
+     *
+     * @param bean the object whose property has to be set
+     * @param value the property value
+     * @throws Exception if any error occurs
+     */
+    void setLong( final Object bean, final long value )
+        throws Exception
+    {
+        final MethodHandle handle = getPrimitiveHandle( long.class );
+        try
+        {
+            handle.invokeExact( bean, value );
+        }
+        catch ( final Throwable t )
+        {
+            throw wrap( t );
+        }
+    }
+
+    /**
+     * Sets the property, whose {@link #getPropertyType() type} is <code>double</code>, without boxing the value.
+     *
+     * @param bean the object whose property has to be set
+     * @param value the property value
+     * @throws Exception if any error occurs
+     */
+    void setDouble( final Object bean, final double value )
+        throws Exception
+    {
+        final MethodHandle handle = getPrimitiveHandle( double.class );
+        try
+        {
+            handle.invokeExact( bean, value );
+        }
+        catch ( final Throwable t )
+        {
+            throw wrap( t );
+        }
+    }
+
+    private MethodHandle getPrimitiveHandle( final Class<?> primitiveType )
+        throws IllegalAccessException
+    {
+        if ( type != primitiveType )
+        {
+            throw new IllegalArgumentException( "Property of type " + type.getName() + " can't be set to a "
+                + primitiveType.getName() );
+        }
+        if ( primitiveHandle == null )
+        {
+            primitiveHandle = MethodHandles.publicLookup().unreflect( writeMethod )
+                .asType( MethodType.methodType( void.class, Object.class, type ) );
+        }
+        return primitiveHandle;
+    }
+
+    /**
+     * Reports the exceptions thrown by the setter as <code>Method.invoke()</code> does.
+     */
+    private static Exception wrap( final Throwable t )
+    {
+        if ( t instanceof Error )
+        {
+            throw (Error) t;
+        }
+        return new InvocationTargetException( t );
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+/**
+ * Receives the objects completed at a pattern by a {@link ConsumeObjectRule}, one at a time, while the document is
+ * being parsed.
+ *
+ * @param <T> the type of the objects consumed
+ * @since 3.3
+ */
+public interface ObjectConsumer<T>
+{
+
+    /**
+     * Invoked when the end of the element the object has been created for is reached, once all the nested elements
+     * have been processed.
+     *
+     * @param object the completed object
+     * @throws Exception if any error occurs while consuming the object; the parse is then aborted
+     */
+    void consume( T object )
+        throws Exception;
+
+}
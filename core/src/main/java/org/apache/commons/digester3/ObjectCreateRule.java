@@ -22,7 +22,6 @@ package org.apache.commons.digester3;
 import static java.lang.System.arraycopy;
 import static java.lang.String.format;
 import static org.apache.commons.beanutils.ConstructorUtils.getAccessibleConstructor;
-import static org.apache.commons.beanutils.ConvertUtils.convert;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -51,11 +50,14 @@ public class ObjectCreateRule
         Object[] constructorArgs;
         ArrayList<RecordedInvocation> invocations = new ArrayList<RecordedInvocation>();
         Object delegate;
+        ConversionRegistry conversions;
 
-        DeferredConstructionCallback( final Constructor<?> constructor, final Object[] constructorArgs )
+        DeferredConstructionCallback( final Constructor<?> constructor, final Object[] constructorArgs,
+                                      final ConversionRegistry conversions )
         {
             this.constructor = constructor;
             this.constructorArgs = constructorArgs;
+            this.conversions = conversions;
         }
 
         @Override
@@ -77,7 +79,7 @@ public class ObjectCreateRule
         void establishDelegate()
             throws Exception
         {
-            convertTo( constructor.getParameterTypes(), constructorArgs );
+            convertTo( constructor.getParameterTypes(), constructorArgs, conversions );
             delegate = constructor.newInstance( constructorArgs );
             for ( final RecordedInvocation invocation : invocations )
             {
@@ -86,6 +88,7 @@ public class ObjectCreateRule
             constructor = null;
             constructorArgs = null;
             invocations = null;
+            conversions = null;
         }
     }
 
@@ -103,36 +106,8 @@ public class ObjectCreateRule
             this.clazz = clazz;
             hasDefaultConstructor = getAccessibleConstructor( clazz, new Class[0] ) != null;
             this.constructor = constructor;
-            final Class<?>[] argTypes = constructor.getParameterTypes();
-            templateConstructorArguments = new Object[argTypes.length];
-            if ( constructorArguments == null )
-            {
-                for ( int i = 0; i < templateConstructorArguments.length; i++ )
-                {
-                    if ( argTypes[i].equals( boolean.class ) )
-                    {
-                        templateConstructorArguments[i] = Boolean.FALSE;
-                        continue;
-                    }
-                    if ( argTypes[i].isPrimitive() )
-                    {
-                        templateConstructorArguments[i] = convert( "0", argTypes[i] );
-                        continue;
-                    }
-                    templateConstructorArguments[i] = null;
-                }
-            }
-            else
-            {
-                if ( constructorArguments.length != argTypes.length )
-                {
-                    throw new IllegalArgumentException(
-                        format( "wrong number of constructor arguments specified: %s instead of %s",
-                        constructorArguments.length, argTypes.length ) );
-                }
-                arraycopy( constructorArguments, 0, templateConstructorArguments, 0, constructorArguments.length );
-            }
-            convertTo( argTypes, templateConstructorArguments );
+            templateConstructorArguments =
+                newTemplateArguments( constructor, constructorArguments, digester.getConversionRegistry() );
             this.digester = digester;
         }
 
@@ -143,7 +118,8 @@ public class ObjectCreateRule
             digester.pushParams( constructorArguments );
 
             final DeferredConstructionCallback callback =
-                new DeferredConstructionCallback( constructor, constructorArguments );
+                new DeferredConstructionCallback( constructor, constructorArguments,
+                                                  digester.getConversionRegistry() );
 
             Object result;
 
@@ -272,6 +248,41 @@ public class ObjectCreateRule
      */
     private ProxyManager proxyManager;
 
+    /**
+     * Whether a proxy is created, as long as the constructor arguments are collected, or a placeholder.
+     *
+     * @since 3.3
+     */
+    private boolean usingProxy = true;
+
+    /**
+     * The class of the objects created without a proxy so far.
+     *
+     * @since 3.3
+     */
+    private Class<?> deferredType;
+
+    /**
+     * The constructor of {@link #deferredType}.
+     *
+     * @since 3.3
+     */
+    private Constructor<?> deferredConstructor;
+
+    /**
+     * The constructor arguments of {@link #deferredType} when no {@link CallParamRule} overrides them.
+     *
+     * @since 3.3
+     */
+    private Object[] deferredArguments;
+
+    /**
+     * The setters of the properties of the objects created without a proxy.
+     *
+     * @since 3.3
+     */
+    private final PropertySetterCache deferredSetters = new PropertySetterCache();
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -309,6 +320,38 @@ public class ObjectCreateRule
         this.defaultConstructorArguments = constructorArguments;
     }
 
+    /**
+     * Returns true if a proxy is created as long as the constructor arguments are collected, true by default.
+     *
+     * @return true if a proxy is created as long as the constructor arguments are collected
+     * @since 3.3
+     */
+    public boolean isUsingProxy()
+    {
+        return usingProxy;
+    }
+
+    /**
+     * Sets whether a proxy is created as long as the constructor arguments are collected, when constructor argument
+     * types have been specified.
+     * <p>
+     * The proxy is a subclass generated at runtime, so it can not be created for final classes, and records every
+     * method invoked on it to replay them once the actual object has been created. When no proxy is used, a
+     * placeholder is pushed onto the stack instead: the properties set by {@link SetPropertiesRule},
+     * {@link SetPropertyRule}, {@link BeanPropertySetterRule} and {@link SetNestedPropertiesRule}, and the methods
+     * invoked by {@link CallMethodRule}, {@link SetNextRule}, {@link SetTopRule} and {@link SetRootRule}, are buffered
+     * and applied once the object has been constructed, when this rule ends. Custom rules can not invoke methods on the
+     * placeholder, and the results of the buffered method calls are not available.
+     * </p>
+     *
+     * @param usingProxy true if a proxy has to be created, false if a placeholder has to be used instead
+     * @since 3.3
+     */
+    public void setUsingProxy( final boolean usingProxy )
+    {
+        this.usingProxy = usingProxy;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -338,7 +381,7 @@ public class ObjectCreateRule
             }
 
             // Instantiate the new object and push it on the context stack
-            clazz = getDigester().getClassLoader().loadClass( realClassName );
+            clazz = ClassCache.loadClass( getDigester().getClassLoader(), realClassName );
         }
         Object instance;
         if ( constructorArgumentTypes == null || constructorArgumentTypes.length == 0 )
@@ -354,6 +397,30 @@ public class ObjectCreateRule
 
             instance = clazz.newInstance();
         }
+        else if ( !usingProxy )
+        {
+            if ( clazz != deferredType )
+            {
+                final Constructor<?> constructor = getAccessibleConstructor( clazz, constructorArgumentTypes );
+
+                if ( constructor == null )
+                {
+                    throw new SAXException(
+                                   format( "[ObjectCreateRule]{%s} Class '%s' does not have a construcor with types %s",
+                                           getDigester().getMatch(),
+                                           clazz.getName(),
+                                           Arrays.toString( constructorArgumentTypes ) ) );
+                }
+                deferredArguments = newTemplateArguments( constructor, defaultConstructorArguments,
+                                                          getDigester().getConversionRegistry() );
+                deferredConstructor = constructor;
+                deferredType = clazz;
+            }
+            final Object[] constructorArguments = deferredArguments.clone();
+            getDigester().pushParams( constructorArguments );
+            instance = new DeferredObject( deferredConstructor, constructorArguments, deferredSetters,
+                                           getDigester().getConversionRegistry() );
+        }
         else
         {
             if ( proxyManager == null )
@@ -382,9 +449,16 @@ public class ObjectCreateRule
     public void end( final String namespace, final String name )
         throws Exception
     {
-        final Object top = getDigester().pop();
+        Object top = getDigester().pop();
 
-        if ( proxyManager != null )
+        if ( top instanceof DeferredObject )
+        {
+            getDigester().popParams();
+            final Object instance = ( (DeferredObject) top ).construct();
+            getDigester().replaceRoot( top, instance );
+            top = instance;
+        }
+        else if ( proxyManager != null )
         {
             proxyManager.finalize( top );
         }
@@ -406,7 +480,54 @@ public class ObjectCreateRule
         return format( "ObjectCreateRule[className=%s, attributeName=%s]", className, attributeName );
     }
 
-    private static void convertTo( final Class<?>[] types, final Object[] array )
+    /**
+     * Returns the constructor arguments to be used when no {@link CallParamRule} overrides them: the default
+     * constructor arguments, if any, or else <code>null</code>, <code>false</code> or zero, as converted to the
+     * constructor argument types.
+     *
+     * @param constructor the constructor to be invoked
+     * @param constructorArguments the default constructor arguments, may be null
+     * @param conversions the registry the arguments are converted with, may be null
+     * @return the constructor arguments to be copied for each new object
+     */
+    private static Object[] newTemplateArguments( final Constructor<?> constructor,
+                                                  final Object[] constructorArguments,
+                                                  final ConversionRegistry conversions )
+    {
+        final Class<?>[] argTypes = constructor.getParameterTypes();
+        final Object[] templateConstructorArguments = new Object[argTypes.length];
+        if ( constructorArguments == null )
+        {
+            for ( int i = 0; i < templateConstructorArguments.length; i++ )
+            {
+                if ( argTypes[i].equals( boolean.class ) )
+                {
+                    templateConstructorArguments[i] = Boolean.FALSE;
+                    continue;
+                }
+                if ( argTypes[i].isPrimitive() )
+                {
+                    templateConstructorArguments[i] = ConversionRegistry.convert( conversions, "0", argTypes[i] );
+                    continue;
+                }
+                templateConstructorArguments[i] = null;
+            }
+        }
+        else
+        {
+            if ( constructorArguments.length != argTypes.length )
+            {
+                throw new IllegalArgumentException(
+                    format( "wrong number of constructor arguments specified: %s instead of %s",
+                    constructorArguments.length, argTypes.length ) );
+            }
+            arraycopy( constructorArguments, 0, templateConstructorArguments, 0, constructorArguments.length );
+        }
+        convertTo( argTypes, templateConstructorArguments, conversions );
+        return templateConstructorArguments;
+    }
+
+    static void convertTo( final Class<?>[] types, final Object[] array, final ConversionRegistry conversions )
     {
         if ( array.length != types.length )
         {
@@ -419,7 +540,7 @@ public class ObjectCreateRule
             if ( array[i] == null
                     || ( array[i] instanceof String && !String.class.isAssignableFrom( types[i] ) ) )
             {
-                array[i] = convert( (String) array[i], types[i] );
+                array[i] = ConversionRegistry.convert( conversions, (String) array[i], types[i] );
             }
         }
     }
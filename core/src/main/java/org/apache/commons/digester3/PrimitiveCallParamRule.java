@@ -0,0 +1,179 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static java.lang.String.format;
+
+import java.math.BigDecimal;
+
+/**
+ * <p>
+ * A {@link CallParamRule} that saves the body text of the element as a parameter value already parsed, straight from
+ * the characters accumulated by the {@link Digester}, as an <code>int</code>, <code>long</code>, <code>double</code>
+ * or <code>BigDecimal</code>, so that the surrounding {@link CallMethodRule} does not have to convert it.
+ * </p>
+ * <p>
+ * The body text is trimmed, and substituted if a {@link Substitutor} is set, as the {@link CallParamRule} does. Values
+ * are parsed as the default BeanUtils converters do: any value they can not parse is saved as text, to be converted by
+ * the {@link CallMethodRule}, as well as any value whose type has a converter registered on the
+ * {@link Digester#getConversionRegistry() ConversionRegistry} of the digester.
+ * </p>
+ *
+ * @since 3.3
+ */
+public class PrimitiveCallParamRule
+    extends CallParamRule
+    implements CharacterBodyRule
+{
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Construct a "call parameter" rule that will save the body text of this element, parsed as the given type, as
+     * the parameter value.
+     *
+     * @param paramIndex The zero-relative parameter number
+     * @param type the type the body text is parsed as: <code>int</code>, <code>long</code>, <code>double</code>, their
+     *            wrappers, or <code>BigDecimal</code>
+     */
+    public PrimitiveCallParamRule( final int paramIndex, final Class<?> type )
+    {
+        super( paramIndex );
+        if ( !canParse( type ) )
+        {
+            throw new IllegalArgumentException( format( "Type %s can not be parsed, only int, long, double, their "
+                + "wrappers or BigDecimal are allowed", type ) );
+        }
+        this.type = type;
+    }
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The type the body text is parsed as.
+     */
+    private final Class<?> type;
+
+    /**
+     * The parsed values, a stack allows nested body text to be processed.
+     */
+    private final ArrayStack<Object> values = new ArrayStack<Object>();
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * Checks whether the body text can be parsed as the given type.
+     *
+     * @param type the type the body text has to be parsed as
+     * @return true if the given type is <code>int</code>, <code>long</code>, <code>double</code>, their wrappers, or
+     *         <code>BigDecimal</code>
+     */
+    public static boolean canParse( final Class<?> type )
+    {
+        return type == int.class || type == Integer.class || type == long.class || type == Long.class
+            || type == double.class || type == Double.class || type == BigDecimal.class;
+    }
+
+    /**
+     * Returns the type the body text is parsed as.
+     *
+     * @return the type the body text is parsed as
+     */
+    public Class<?> getType()
+    {
+        return type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void body( final String namespace, final String name, final char[] text, final int start,
+                      final int length )
+        throws Exception
+    {
+        if ( attributeName != null || fromStack )
+        {
+            return;
+        }
+
+        final int end = start + length;
+        final ConversionRegistry conversions = getDigester().getConversionRegistry();
+        Object value = null;
+        if ( conversions == null || !conversions.isRegistered( type ) )
+        {
+            try
+            {
+                if ( type == int.class || type == Integer.class )
+                {
+                    value = Integer.valueOf( PrimitiveParser.parseInt( text, start, end ) );
+                }
+                else if ( type == long.class || type == Long.class )
+                {
+                    value = Long.valueOf( PrimitiveParser.parseLong( text, start, end ) );
+                }
+                else if ( type == double.class || type == Double.class )
+                {
+                    value = Double.valueOf( PrimitiveParser.parseDouble( text, start, end ) );
+                }
+                else
+                {
+                    value = PrimitiveParser.parseDecimal( text, start, end );
+                }
+            }
+            catch ( final NumberFormatException e )
+            {
+                // CallMethodRule converts it
+            }
+        }
+        if ( value == null )
+        {
+            final int from = PrimitiveParser.trimStart( text, start, end );
+            value = new String( text, from, PrimitiveParser.trimEnd( text, from, end ) - from );
+        }
+        values.push( value );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void end( final String namespace, final String name )
+    {
+        if ( values.isEmpty() )
+        {
+            super.end( namespace, name );
+            return;
+        }
+
+        final Object parameters[] = getDigester().peekParams();
+        parameters[paramIndex] = values.pop();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return format( "PrimitiveCallParamRule[paramIndex=%s, type=%s]", paramIndex, type.getName() );
+    }
+
+}
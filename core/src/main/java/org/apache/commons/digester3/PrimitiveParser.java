@@ -0,0 +1,251 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.math.BigDecimal;
+
+/**
+ * <p>
+ * Parses numbers straight from a range of characters, without creating a <code>String</code> first.
+ * </p>
+ * <p>
+ * The accepted syntax is the same as <code>Integer.parseInt()</code>, <code>Long.parseLong()</code>,
+ * <code>Double.parseDouble()</code> and <code>new BigDecimal()</code>: a <code>NumberFormatException</code> is thrown
+ * for any value they reject. Like <code>String.trim()</code>, the leading and trailing characters up to the space
+ * character are ignored.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class PrimitiveParser
+{
+
+    /** The powers of ten exactly representable as a double. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The largest integer all the smaller ones of are exactly representable as a double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private PrimitiveParser()
+    {
+        // static methods only
+    }
+
+    /**
+     * Returns the index of the first character of the given range not ignored by <code>String.trim()</code>.
+     *
+     * @param text the characters
+     * @param start the index of the first character of the range
+     * @param end the index after the last character of the range
+     * @return the index of the first character not to be trimmed, <code>end</code> if all of them are
+     */
+    static int trimStart( final char[] text, final int start, final int end )
+    {
+        int i = start;
+        while ( i < end && text[i] <= ' ' )
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index after the last character of the given range not ignored by <code>String.trim()</code>.
+     *
+     * @param text the characters
+     * @param start the index of the first character of the range
+     * @param end the index after the last character of the range
+     * @return the index after the last character not to be trimmed, <code>start</code> if all of them are
+     */
+    static int trimEnd( final char[] text, final int start, final int end )
+    {
+        int i = end;
+        while ( i > start && text[i - 1] <= ' ' )
+        {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Parses an <code>int</code> as <code>Integer.parseInt()</code> does, after trimming the given range.
+     *
+     * @param text the characters
+     * @param start the index of the first character of the range
+     * @param end the index after the last character of the range
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed range is not a valid <code>int</code>
+     */
+    static int parseInt( final char[] text, final int start, final int end )
+    {
+        final long value = parseLong( text, start, end );
+        if ( value < Integer.MIN_VALUE || value > Integer.MAX_VALUE )
+        {
+            throw invalid( text, start, end );
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a <code>long</code> as <code>Long.parseLong()</code> does, after trimming the given range.
+     *
+     * @param text the characters
+     * @param start the index of the first character of the range
+     * @param end the index after the last character of the range
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed range is not a valid <code>long</code>
+     */
+    static long parseLong( final char[] text, final int start, final int end )
+    {
+        final int from = trimStart( text, start, end );
+        final int to = trimEnd( text, from, end );
+        if ( from == to )
+        {
+            throw invalid( text, start, end );
+        }
+
+        int i = from;
+        boolean negative = false;
+        if ( text[i] == '-' || text[i] == '+' )
+        {
+            negative = text[i] == '-';
+            if ( ++i == to )
+            {
+                throw invalid( text, start, end );
+            }
+        }
+
+        // accumulated negatively, as Long.parseLong() does, to reach Long.MIN_VALUE
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multiplyLimit = limit / 10;
+        long result = 0;
+        for ( ; i < to; i++ )
+        {
+            final int digit = Character.digit( text[i], 10 );
+            if ( digit < 0 || result < multiplyLimit )
+            {
+                throw invalid( text, start, end );
+            }
+            result *= 10;
+            if ( result < limit + digit )
+            {
+                throw invalid( text, start, end );
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses a <code>double</code> as <code>Double.parseDouble()</code> does, after trimming the given range. Plain
+     * decimal values with up to 15 significant digits are computed directly, any other value is parsed by
+     * <code>Double.parseDouble()</code>.
+     *
+     * @param text the characters
+     * @param start the index of the first character of the range
+     * @param end the index after the last character of the range
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed range is not a valid <code>double</code>
+     */
+    static double parseDouble( final char[] text, final int start, final int end )
+    {
+        final int from = trimStart( text, start, end );
+        final int to = trimEnd( text, from, end );
+
+        int i = from;
+        boolean negative = false;
+        if ( i < to && ( text[i] == '-' || text[i] == '+' ) )
+        {
+            negative = text[i] == '-';
+            i++;
+        }
+        final int first = i;
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean exact = i < to;
+        for ( ; i < to && exact; i++ )
+        {
+            final char c = text[i];
+            if ( c >= '0' && c <= '9' )
+            {
+                mantissa = mantissa * 10 + ( c - '0' );
+                if ( mantissa != 0 )
+                {
+                    digits++;
+                }
+                if ( point )
+                {
+                    scale++;
+                }
+                exact = digits <= 15;
+            }
+            else if ( c == '.' && !point )
+            {
+                point = true;
+            }
+            else
+            {
+                // exponents, suffixes, hexadecimal values, special values or invalid characters
+                exact = false;
+            }
+        }
+
+        // at least one digit, besides the decimal point
+        if ( exact && i - first > ( point ? 1 : 0 ) && mantissa < MAX_EXACT_MANTISSA && scale < POWERS_OF_TEN.length )
+        {
+            // both the mantissa and the power of ten are exact, so is their quotient
+            final double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble( new String( text, from, to - from ) );
+    }
+
+    /**
+     * Parses a <code>BigDecimal</code> as <code>new BigDecimal( String )</code> does, after trimming the given range.
+     *
+     * @param text the characters
+     * @param start the index of the first character of the range
+     * @param end the index after the last character of the range
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed range is not a valid <code>BigDecimal</code>
+     */
+    static BigDecimal parseDecimal( final char[] text, final int start, final int end )
+    {
+        final int from = trimStart( text, start, end );
+        final int to = trimEnd( text, from, end );
+        if ( from == to )
+        {
+            throw invalid( text, start, end );
+        }
+        return new BigDecimal( text, from, to - from );
+    }
+
+    private static NumberFormatException invalid( final char[] text, final int start, final int end )
+    {
+        return new NumberFormatException( "For input string: \"" + new String( text, start, end - start ) + "\"" );
+    }
+
+}
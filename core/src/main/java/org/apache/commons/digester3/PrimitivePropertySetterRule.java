@@ -0,0 +1,232 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static java.lang.String.format;
+
+import java.math.BigDecimal;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+
+/**
+ * <p>
+ * A {@link BeanPropertySetterRule} that parses the body text straight from the characters accumulated by the
+ * {@link Digester}, when the property to be set is a simple property of type <code>int</code>, <code>long</code>,
+ * <code>double</code>, their wrappers or <code>BigDecimal</code>. Primitive values are passed to the setter without
+ * being boxed.
+ * </p>
+ * <p>
+ * The body text is trimmed, and substituted if a {@link Substitutor} is set, as the {@link BeanPropertySetterRule}
+ * does. Values are parsed as the default BeanUtils converters do: any value they can not parse, as well as any other
+ * property, is set by the {@link BeanPropertySetterRule}, through BeanUtils.
+ * </p>
+ *
+ * @since 3.3
+ */
+public class PrimitivePropertySetterRule
+    extends BeanPropertySetterRule
+    implements CharacterBodyRule
+{
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Construct rule that sets the given property from the body text.
+     *
+     * @param propertyName name of property to set
+     */
+    public PrimitivePropertySetterRule( final String propertyName )
+    {
+        super( propertyName );
+    }
+
+    /**
+     * Construct rule that sets the property on the top object named the same as the current element.
+     */
+    public PrimitivePropertySetterRule()
+    {
+        this( null );
+    }
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The setters of the properties, per class of the top object.
+     */
+    private final PropertySetterCache setters = new PropertySetterCache();
+
+    /**
+     * The setter of the property, if the body text has been parsed, <code>null</code> otherwise.
+     */
+    private MethodPropertySetter parsedSetter;
+
+    /**
+     * The name of the property the body text has been parsed for.
+     */
+    private String parsedProperty;
+
+    /**
+     * The parsed <code>int</code> or <code>long</code> value.
+     */
+    private long longValue;
+
+    /**
+     * The parsed <code>double</code> value.
+     */
+    private double doubleValue;
+
+    /**
+     * The parsed value, if the property type is not primitive.
+     */
+    private Object objectValue;
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void body( final String namespace, final String name, final char[] text, final int start,
+                      final int length )
+        throws Exception
+    {
+        parsedSetter = null;
+
+        final Object top = getDigester().peek();
+        final String property = getPropertyName() != null ? getPropertyName() : name;
+        if ( top != null && property != null && !( top instanceof DeferredObject ) )
+        {
+            final MethodPropertySetter setter = setters.getMethodSetter( BeanUtilsBean.getInstance(), top, property );
+            final Class<?> type = setter != null ? setter.getPropertyType() : null;
+            final int end = start + length;
+            try
+            {
+                if ( type == int.class )
+                {
+                    longValue = PrimitiveParser.parseInt( text, start, end );
+                }
+                else if ( type == long.class )
+                {
+                    longValue = PrimitiveParser.parseLong( text, start, end );
+                }
+                else if ( type == double.class )
+                {
+                    doubleValue = PrimitiveParser.parseDouble( text, start, end );
+                }
+                else if ( type == Integer.class )
+                {
+                    objectValue = Integer.valueOf( PrimitiveParser.parseInt( text, start, end ) );
+                }
+                else if ( type == Long.class )
+                {
+                    objectValue = Long.valueOf( PrimitiveParser.parseLong( text, start, end ) );
+                }
+                else if ( type == Double.class )
+                {
+                    objectValue = Double.valueOf( PrimitiveParser.parseDouble( text, start, end ) );
+                }
+                else if ( type == BigDecimal.class )
+                {
+                    objectValue = PrimitiveParser.parseDecimal( text, start, end );
+                }
+                else
+                {
+                    body( namespace, name, new String( text, start, length ) );
+                    return;
+                }
+                parsedSetter = setter;
+                parsedProperty = property;
+                return;
+            }
+            catch ( final NumberFormatException e )
+            {
+                // BeanUtils decides
+            }
+        }
+
+        body( namespace, name, new String( text, start, length ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void end( final String namespace, final String name )
+        throws Exception
+    {
+        final MethodPropertySetter setter = parsedSetter;
+        if ( setter == null )
+        {
+            super.end( namespace, name );
+            return;
+        }
+        parsedSetter = null;
+
+        final Object top = getDigester().peek();
+        if ( getDigester().getLogger().isDebugEnabled() )
+        {
+            getDigester().getLogger().debug( format( "[PrimitivePropertySetterRule]{%s} Set %s property %s",
+                                                     getDigester().getMatch(),
+                                                     top.getClass().getName(),
+                                                     parsedProperty ) );
+        }
+
+        final Class<?> type = setter.getPropertyType();
+        if ( type == int.class )
+        {
+            setter.setInt( top, (int) longValue );
+        }
+        else if ( type == long.class )
+        {
+            setter.setLong( top, longValue );
+        }
+        else if ( type == double.class )
+        {
+            setter.setDouble( top, doubleValue );
+        }
+        else
+        {
+            setter.setValue( top, objectValue );
+            objectValue = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish()
+        throws Exception
+    {
+        super.finish();
+        parsedSetter = null;
+        objectValue = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return format( "PrimitivePropertySetterRule[propertyName=%s]", getPropertyName() );
+    }
+
+}
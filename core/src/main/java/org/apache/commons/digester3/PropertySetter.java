@@ -0,0 +1,151 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.apache.commons.beanutils.MethodUtils.getAccessibleMethod;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.MappedPropertyDescriptor;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.beanutils.PropertyUtilsBean;
+import org.apache.commons.beanutils.expression.Resolver;
+
+/**
+ * <p>
+ * How a property of a given class is set, resolved once through the same introspection
+ * {@link org.apache.commons.beanutils.BeanUtils#populate(Object, java.util.Map)} relies on.
+ * </p>
+ * <p>
+ * Simple properties with an accessible setter are set converting the value and invoking the setter directly, the
+ * properties that do not exist or can not be written are skipped, as <code>populate</code> does; any other
+ * property (nested, indexed, mapped...) is still set through <code>BeanUtils</code>.
+ * </p>
+ *
+ * @since 3.3
+ */
+class PropertySetter
+{
+
+    /** Set through BeanUtils. */
+    static final PropertySetter DELEGATING = new PropertySetter();
+
+    /** Not existing or read only, skipped. */
+    static final PropertySetter MISSING = new PropertySetter()
+    {
+
+        @Override
+        boolean isWriteable( final Object bean, final String name )
+        {
+            return false;
+        }
+
+        @Override
+        void set( final BeanUtilsBean beanUtils, final ConversionRegistry conversions, final Object bean, final String name, final String value )
+        {
+            // BeanUtils silently skips it
+        }
+
+    };
+
+    /**
+     * Resolves how the given property of the given object, and of any other instance of its class, is set.
+     *
+     * @param propertyUtils the introspection to be used
+     * @param bean the object whose property has to be set
+     * @param name the property name
+     * @return how the given property is set
+     */
+    static PropertySetter resolve( final PropertyUtilsBean propertyUtils, final Object bean, final String name )
+    {
+        final Resolver resolver = propertyUtils.getResolver();
+        if ( resolver.hasNested( name ) || resolver.isIndexed( name ) || resolver.isMapped( name ) )
+        {
+            return DELEGATING;
+        }
+
+        final PropertyDescriptor descriptor;
+        try
+        {
+            descriptor = propertyUtils.getPropertyDescriptor( bean, name );
+        }
+        catch ( final NoSuchMethodException e )
+        {
+            return MISSING;
+        }
+        catch ( final Exception e )
+        {
+            return DELEGATING;
+        }
+
+        if ( descriptor == null )
+        {
+            return MISSING;
+        }
+        if ( descriptor instanceof IndexedPropertyDescriptor || descriptor instanceof MappedPropertyDescriptor )
+        {
+            return DELEGATING;
+        }
+        if ( descriptor.getWriteMethod() == null )
+        {
+            return MISSING;
+        }
+
+        final Method writeMethod = getAccessibleMethod( bean.getClass(), descriptor.getWriteMethod() );
+        if ( writeMethod == null )
+        {
+            // BeanUtils reports the error
+            return DELEGATING;
+        }
+        return new MethodPropertySetter( writeMethod, descriptor.getPropertyType() );
+    }
+
+    /**
+     * Checks whether the given property can be set, as <code>PropertyUtils.isWriteable()</code> does.
+     *
+     * @param bean the object whose property has to be set
+     * @param name the property name
+     * @return true, if the given property can be set
+     */
+    boolean isWriteable( final Object bean, final String name )
+    {
+        return PropertyUtils.isWriteable( bean, name );
+    }
+
+    /**
+     * Sets the given property, converting the value as <code>BeanUtils.setProperty()</code> does.
+     *
+     * @param beanUtils the BeanUtils instance of the current context class loader
+     * @param conversions the registry simple properties are converted with, if null BeanUtils is used
+     * @param bean the object whose property has to be set
+     * @param name the property name
+     * @param value the property value, to be converted
+     * @throws Exception if any error occurs
+     */
+    void set( final BeanUtilsBean beanUtils, final ConversionRegistry conversions, final Object bean, final String name, final String value )
+        throws Exception
+    {
+        beanUtils.setProperty( bean, name, value );
+    }
+
+}
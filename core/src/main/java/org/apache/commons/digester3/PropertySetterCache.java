@@ -0,0 +1,112 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+
+/**
+ * The {@link PropertySetter}s resolved for the classes of the objects a rule has been applied to, keyed by property
+ * name. They are resolved again when the BeanUtils instance of the context class loader, with its own introspection
+ * and conversion settings, changes.
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class PropertySetterCache
+{
+
+    private final Map<Class<?>, Map<String, PropertySetter>> setters =
+        new HashMap<Class<?>, Map<String, PropertySetter>>();
+
+    /**
+     * The BeanUtils instance the setters have been resolved with.
+     */
+    private BeanUtilsBean settersBeanUtils;
+
+    /**
+     * The class of the object the setters were last asked for.
+     */
+    private Class<?> lastType;
+
+    /**
+     * The setters of {@link #lastType}.
+     */
+    private Map<String, PropertySetter> lastSetters;
+
+    /**
+     * Returns the setter of the given property of the given object, resolving it the first time it is needed.
+     *
+     * @param beanUtils the BeanUtils instance of the current context class loader
+     * @param bean the object whose property has to be set
+     * @param name the property name
+     * @return the setter of the given property
+     */
+    PropertySetter get( final BeanUtilsBean beanUtils, final Object bean, final String name )
+    {
+        if ( beanUtils != settersBeanUtils )
+        {
+            setters.clear();
+            settersBeanUtils = beanUtils;
+            lastType = null;
+        }
+
+        final Class<?> type = bean.getClass();
+        if ( type != lastType )
+        {
+            lastSetters = setters.get( type );
+            if ( lastSetters == null )
+            {
+                lastSetters = new HashMap<String, PropertySetter>();
+                setters.put( type, lastSetters );
+            }
+            lastType = type;
+        }
+
+        PropertySetter setter = lastSetters.get( name );
+        if ( setter == null )
+        {
+            setter = PropertySetter.resolve( beanUtils.getPropertyUtils(), bean, name );
+            lastSetters.put( name, setter );
+        }
+        return setter;
+    }
+
+    /**
+     * Returns the setter of the given property of the given object, if it is a simple property set invoking its setter
+     * directly.
+     *
+     * @param beanUtils the BeanUtils instance of the current context class loader
+     * @param bean the object whose property has to be set
+     * @param name the property name
+     * @return the setter of the given property, <code>null</code> if the property is not set invoking its setter
+     *         directly
+     */
+    MethodPropertySetter getMethodSetter( final BeanUtilsBean beanUtils, final Object bean, final String name )
+    {
+        final PropertySetter setter = get( beanUtils, bean, name );
+        return setter instanceof MethodPropertySetter ? (MethodPropertySetter) setter : null;
+    }
+
+}
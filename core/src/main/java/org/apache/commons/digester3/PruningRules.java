@@ -0,0 +1,51 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * <p>
+ * Optional extension of the {@link Rules} interface for matching policies that can tell when no rule can match any
+ * element nested in a given element.
+ * </p>
+ * <p>
+ * When {@link Digester#setSubtreePruning(boolean) subtree pruning} is enabled, the {@link Digester} asks this question
+ * for every element, and skips altogether the content of the elements whose descendants can not be matched: no
+ * pattern is computed, no rule is fired and no body text is collected for the nested elements.
+ * </p>
+ * <p>
+ * Implementations have to be conservative: when in doubt, {@link #canMatchDescendants(String)} must return true.
+ * </p>
+ *
+ * @since 3.3
+ */
+public interface PruningRules
+    extends Rules
+{
+
+    /**
+     * Return true if some rule may match an element nested, at any depth, in the element with the given nesting
+     * pattern.
+     *
+     * @param pattern the nesting pattern of the element
+     * @return false only if no rule can match any element nested in the element with the given nesting pattern
+     */
+    boolean canMatchDescendants( String pattern );
+
+}
@@ -20,7 +20,10 @@ package org.apache.commons.digester3;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.xml.sax.Attributes;
 
@@ -33,11 +36,21 @@ import org.xml.sax.Attributes;
  * does not vary. All patterns are tested to see if they match the path using the regex matcher. All those that do are
  * return in the order which the rules were added.
  * </p>
+ * <p>
+ * When the strategy is a plain {@link SimpleRegexMatcher}, all the patterns are compiled in a single automaton, so that
+ * each path is tested against all of them in one pass instead of once per registered rule.
+ * </p>
+ * <p>
+ * Paths are often met again and again in the same document, so the matches can also be memoized setting a
+ * {@link #setMatchCacheSize(int) match cache size}: at most that number of paths, the most recently used ones, are
+ * retained with their matching rules. When the cache is enabled the returned lists are shared, and cannot be modified.
+ * </p>
  * 
  * @since 1.5
  */
 public class RegexRules
     extends AbstractRulesImpl
+    implements AttributesIndependentRules, PruningRules
 {
 
     // --------------------------------------------------------- Fields
@@ -48,6 +61,21 @@ public class RegexRules
     /** The regex strategy used by this RegexRules */
     private RegexMatcher matcher;
 
+    /** The automaton compiled from the registered patterns, when the strategy allows it */
+    private SimpleRegexAutomaton automaton;
+
+    /** The maximum number of paths whose matches are memoized, 0 to disable the memoization */
+    private int matchCacheSize = 0;
+
+    /** The memoized matches, keyed by path, in access order */
+    private LinkedHashMap<String, List<Rule>> matchCache;
+
+    /**
+     * Whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the first
+     * time it is needed.
+     */
+    private Boolean ownMatch;
+
     // --------------------------------------------------------- Constructor
 
     /**
@@ -84,6 +112,35 @@ public class RegexRules
             throw new IllegalArgumentException( "RegexMatcher must not be null." );
         }
         this.matcher = matcher;
+        invalidate();
+    }
+
+    /**
+     * Gets the maximum number of paths whose matching rules are memoized.
+     *
+     * @return the maximum number of paths whose matching rules are memoized, 0 if memoization is disabled
+     * @since 3.3
+     */
+    public int getMatchCacheSize()
+    {
+        return matchCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of paths whose matching rules are memoized; when the limit is reached the least recently
+     * used path is evicted. The regex strategy is expected to always return the same result for the same arguments.
+     *
+     * @param matchCacheSize the maximum number of paths whose matching rules are memoized, 0 to disable memoization
+     * @since 3.3
+     */
+    public void setMatchCacheSize( final int matchCacheSize )
+    {
+        if ( matchCacheSize < 0 )
+        {
+            throw new IllegalArgumentException( "Match cache size must not be negative." );
+        }
+        this.matchCacheSize = matchCacheSize;
+        this.matchCache = null;
     }
 
     // --------------------------------------------------------- Public Methods
@@ -95,6 +152,7 @@ public class RegexRules
     protected void registerRule( final String pattern, final Rule rule )
     {
         registeredRules.add( new RegisteredRule( pattern, rule ) );
+        invalidate();
     }
 
     /**
@@ -104,6 +162,7 @@ public class RegexRules
     public void clear()
     {
         registeredRules.clear();
+        invalidate();
     }
 
     /**
@@ -112,21 +171,33 @@ public class RegexRules
     @Override
     public List<Rule> match( final String namespaceURI, final String pattern, final String name, final Attributes attributes )
     {
-        //
-        // not a particularly quick implementation
-        // regex is probably going to be slower than string equality
-        // so probably should have a set of strings
-        // and test each only once
-        //
-        // XXX FIX ME - Time And Optimize
-        //
-        final ArrayList<Rule> rules = new ArrayList<Rule>( registeredRules.size() );
-        for ( final RegisteredRule rr : registeredRules )
+        if ( matchCacheSize == 0 )
         {
-            if ( matcher.match( pattern, rr.pattern ) )
+            return findMatches( pattern );
+        }
+
+        if ( matchCache == null )
+        {
+            matchCache = new LinkedHashMap<String, List<Rule>>( 16, 0.75f, true )
             {
-                rules.add( rr.rule );
-            }
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry( final Map.Entry<String, List<Rule>> eldest )
+                {
+                    return size() > matchCacheSize;
+                }
+
+            };
+        }
+
+        // namespaces do not take part in regex matching, the path is enough
+        List<Rule> rules = matchCache.get( pattern );
+        if ( rules == null )
+        {
+            rules = Collections.unmodifiableList( findMatches( pattern ) );
+            matchCache.put( pattern, rules );
         }
         return rules;
     }
@@ -145,6 +216,116 @@ public class RegexRules
         return rules;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The regex strategy is only given the element path, so this is true unless a subclass redefines
+     * {@link #match(String, String, String, Attributes)}.
+     * </p>
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean isAttributesIndependent()
+    {
+        return isOwnMatch();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the patterns compiled for a plain {@link SimpleRegexMatcher} can be analyzed, with any other strategy, or if
+     * a subclass redefines {@link #match(String, String, String, Attributes)}, descendants can always be matched.
+     * </p>
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean canMatchDescendants( final String pattern )
+    {
+        if ( !isOwnMatch() )
+        {
+            return true;
+        }
+        final SimpleRegexAutomaton compiled = getAutomaton();
+        return compiled == null || compiled.canMatchLonger( pattern + '/' );
+    }
+
+    /**
+     * Finds all the rules whose pattern matches the given path, in the order they were added.
+     *
+     * @param pattern the path to be matched
+     * @return a new List of the rules whose pattern matches the given path
+     */
+    private ArrayList<Rule> findMatches( final String pattern )
+    {
+        final SimpleRegexAutomaton compiled = getAutomaton();
+        if ( compiled != null )
+        {
+            final int[] matches = compiled.match( pattern );
+            final ArrayList<Rule> rules = new ArrayList<Rule>( matches.length );
+            for ( final int match : matches )
+            {
+                rules.add( registeredRules.get( match ).rule );
+            }
+            return rules;
+        }
+
+        final ArrayList<Rule> rules = new ArrayList<Rule>( registeredRules.size() );
+        for ( final RegisteredRule rr : registeredRules )
+        {
+            if ( matcher.match( pattern, rr.pattern ) )
+            {
+                rules.add( rr.rule );
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Checks whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the
+     * first time it is needed.
+     *
+     * @return true, if the <code>match</code> method is implemented by this class
+     */
+    private boolean isOwnMatch()
+    {
+        if ( ownMatch == null )
+        {
+            ownMatch = isMatchDeclaredBy( RegexRules.class );
+        }
+        return ownMatch;
+    }
+
+    /**
+     * Returns the automaton compiled from the registered patterns, building it if needed.
+     *
+     * @return the automaton compiled from the registered patterns, or <code>null</code> if the regex strategy is not a
+     *         plain {@link SimpleRegexMatcher}
+     */
+    private SimpleRegexAutomaton getAutomaton()
+    {
+        if ( automaton == null && matcher.getClass() == SimpleRegexMatcher.class )
+        {
+            final List<String> patterns = new ArrayList<String>( registeredRules.size() );
+            for ( final RegisteredRule rr : registeredRules )
+            {
+                patterns.add( rr.pattern );
+            }
+            automaton = new SimpleRegexAutomaton( patterns );
+        }
+        return automaton;
+    }
+
+    /**
+     * Discards the compiled automaton and the memoized matches, after the patterns or the strategy changed.
+     */
+    private void invalidate()
+    {
+        automaton = null;
+        matchCache = null;
+    }
+
     /** Used to associate rules with paths in the rules list */
     private static class RegisteredRule
     {
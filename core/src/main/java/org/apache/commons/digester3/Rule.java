@@ -64,6 +64,11 @@ import org.xml.sax.Attributes;
      */
     private String namespaceURI = null;
 
+    /**
+     * The class implementing the {@link #body(String, String, String)} method, evaluated the first time it is needed.
+     */
+    private Class<?> bodyDeclaringClass;
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -142,6 +147,46 @@ import org.xml.sax.Attributes;
         // The default implementation does nothing
     }
 
+    /**
+     * Return true if this rule consumes the body text of the matching elements. When none of the rules matching an
+     * element consumes its body text, the <code>Digester</code> does not collect it at all, and
+     * {@link #body(String, String, String)} is called with an empty string.
+     * <p>
+     * The default implementation returns true if {@link #body(String, String, String)} is redefined by a subclass;
+     * subclasses may redefine this method to tell more precisely when they use the body text.
+     *
+     * @return true if this rule consumes the body text of the matching elements
+     * @since 3.3
+     */
+    public boolean isBodyTextConsumer()
+    {
+        return getBodyDeclaringClass() != Rule.class;
+    }
+
+    /**
+     * Return the class implementing the {@link #body(String, String, String)} method of this rule.
+     *
+     * @return the class implementing the <code>body</code> method of this rule
+     * @since 3.3
+     */
+    final Class<?> getBodyDeclaringClass()
+    {
+        if ( bodyDeclaringClass == null )
+        {
+            try
+            {
+                bodyDeclaringClass =
+                    getClass().getMethod( "body", String.class, String.class, String.class ).getDeclaringClass();
+            }
+            catch ( final NoSuchMethodException e )
+            {
+                // can not happen, body is public
+                bodyDeclaringClass = getClass();
+            }
+        }
+        return bodyDeclaringClass;
+    }
+
     /**
      * This method is called when the end of a matching XML element is encountered.
      *
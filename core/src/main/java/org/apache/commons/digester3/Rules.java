@@ -81,7 +81,12 @@ public interface Rules
      * Return a List of all registered Rule instances that match the specified nesting pattern, or a zero-length List if
      * there are no matches. If more than one Rule instance matches, they <strong>must</strong> be returned in the order
      * originally registered through the <code>add()</code> method.
-     * 
+     * <p>
+     * The returned List may be shared by all the elements matching the same pattern, and may not be modifiable: since
+     * 3.3, {@link RulesBase} returns such unmodifiable Lists when a namespace URI is given, and so do the Rules
+     * memoizing their matches. Callers must not modify the returned List, and should copy it if they need to.
+     * </p>
+     *
      * @param namespaceURI Namespace URI for which to select matching rules, or <code>null</code> to match regardless of
      *            namespace URI
      * @param pattern Nesting pattern to be matched
@@ -20,7 +20,9 @@ package org.apache.commons.digester3;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -45,24 +47,61 @@ import org.xml.sax.Attributes;
  * only the longest, ie most explicit, pattern is considered a match).
  * </p>
  * <p>
+ * Wildcard patterns are compiled, as they are registered, into a trie of reversed pattern segments, so the longest
+ * matching wildcard pattern is found walking the current element path backwards, in a time proportional to the depth
+ * of the element rather than to the number of registered wildcard patterns.
+ * </p>
+ * <p>
+ * Rules are also indexed by namespace URI as they are registered, so that selecting the rules of a namespace aware
+ * element does not allocate any list: the lists returned by {@link #match(String, String, String, Attributes)} are
+ * shared by all the elements matching the same pattern and namespace URI, and must not be modified.
+ * </p>
+ * <p>
+ * This class also implements {@link IncrementalRules}: the distinct element paths met while parsing are tracked as
+ * states, so the patterns matched by an element are only computed the first time its path is met. Subclasses that
+ * redefine {@link #match(String, String, String, Attributes)} are always matched through that method, unless they
+ * redefine {@link #match(int, String, String, Attributes)} as well. Subclasses must register their rules through
+ * {@link #registerRule(String, Rule)}: the <code>cache</code> and <code>wildcardCache</code> fields can only be read.
+ * </p>
+ * <p>
+ * The states are recorded by {@link #nextState(int, String)} as the elements are met, so an instance is modified by
+ * the parse itself: it must not be shared by digesters parsing at the same time. Use a new instance for every
+ * Digester, or the rules of a {@link org.apache.commons.digester3.binder.CompiledRules CompiledRules}.
+ * </p>
+ * <p>
  * See the package documentation for package org.apache.commons.digester3 for more information.
  * </p>
  */
 
 public class RulesBase
     extends AbstractRulesImpl
+    implements IncrementalRules, AttributesIndependentRules, PruningRules
 {
 
+    /**
+     * The maximum number of distinct element paths tracked for incremental matching.
+     */
+    private static final int MAX_PATH_STATES = 4096;
+
     // ----------------------------------------------------- Instance Variables
 
     /**
      * The set of registered Rule instances, keyed by the matching pattern. Each value is a List containing the Rules
      * for that pattern, in the order that they were orginally registered.
+     * <p>
+     * Since 3.3, the matching goes through indexes updated by {@link #registerRule(String, Rule)} and
+     * {@link #clear()}, so this map is a read-only view for subclasses: the rules put in it directly are never matched.
+     * </p>
      */
     protected HashMap<String, List<Rule>> cache = new HashMap<String, List<Rule>>();
 
     /**
      * The subset of registered Rule instances with wildcard pattern.
+     * <p>
+     * Since 3.3, the wildcard patterns are matched through a trie updated by {@link #registerRule(String, Rule)} and
+     * {@link #clear()}, so this list is a read-only view for subclasses: the patterns added to it directly are never
+     * matched.
+     * </p>
      */
     protected List<String> wildcardCache = new LinkedList<String>();
 
@@ -71,6 +110,70 @@ public class RulesBase
      */
     protected ArrayList<Rule> rules = new ArrayList<Rule>();
 
+    /**
+     * The registered Rule instances without namespace URI, keyed by pattern, in the order that they were originally
+     * registered.
+     *
+     * @since 3.3
+     */
+    private final HashMap<String, RuleList> anyNamespaceRules = new HashMap<String, RuleList>();
+
+    /**
+     * For each namespace URI of the registered Rule instances, the rules selected by that namespace URI (that is, the
+     * rules with the same namespace URI or without namespace URI), keyed by pattern, in the order that they were
+     * originally registered.
+     *
+     * @since 3.3
+     */
+    private final HashMap<String, HashMap<String, RuleList>> namespaceRules =
+        new HashMap<String, HashMap<String, RuleList>>();
+
+    /**
+     * The patterns of all the ancestors of the elements matched by exact patterns, that is, the patterns whose
+     * descendants can be matched when there are no wildcard patterns.
+     *
+     * @since 3.3
+     */
+    private final HashSet<String> exactAncestors = new HashSet<String>();
+
+    /**
+     * The root of the trie where the wildcard patterns are indexed by their segments, from the last to the first one.
+     *
+     * @since 3.3
+     */
+    private final WildcardNode wildcardRoot = new WildcardNode();
+
+    /**
+     * The distinct element paths met during incremental matching, indexed by their state; the first one is the
+     * document itself.
+     *
+     * @since 3.3
+     */
+    private PathState[] pathStates = { new PathState( ROOT_STATE, "" ) };
+
+    /**
+     * The number of used entries in {@link #pathStates}.
+     */
+    private int pathStatesCount = 1;
+
+    /**
+     * Incremented every time the set of registered patterns changes, so that the matches cached in the path states
+     * are computed again.
+     */
+    private int patternsVersion;
+
+    /**
+     * Whether incremental matching is enabled, that is, the subclass does not redefine the matching policy. Evaluated
+     * the first time it is needed.
+     */
+    private Boolean incrementalMatching;
+
+    /**
+     * Whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the first
+     * time it is needed.
+     */
+    private Boolean ownMatch;
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -108,11 +211,21 @@ public class RulesBase
             if ( pattern.startsWith( "*/" ) )
             {
                 wildcardCache.add( pattern.substring( 1 ) );
+                addWildcard( pattern );
+            }
+            else
+            {
+                for ( int slash = pattern.lastIndexOf( '/' ); slash > 0; slash = pattern.lastIndexOf( '/', slash - 1 ) )
+                {
+                    exactAncestors.add( pattern.substring( 0, slash ) );
+                }
             }
             cache.put( pattern, list );
+            patternsVersion++;
         }
         list.add( rule );
         rules.add( rule );
+        indexNamespace( pattern, rule );
     }
 
     /**
@@ -122,8 +235,13 @@ public class RulesBase
     public void clear()
     {
         wildcardCache.clear();
+        wildcardRoot.clear();
         cache.clear();
         rules.clear();
+        anyNamespaceRules.clear();
+        namespaceRules.clear();
+        exactAncestors.clear();
+        patternsVersion++;
     }
 
     /**
@@ -137,23 +255,114 @@ public class RulesBase
         if ( ( rulesList == null ) || ( rulesList.size() < 1 ) )
         {
             // Find the longest key, ie more discriminant
-            String longKey = "";
-            for ( final String key : wildcardCache )
+            final String longKey = findLongestWildcard( pattern );
+            if ( longKey != null )
             {
-                if ( ( pattern.equals( key.substring( 1 ) ) || pattern.endsWith( key ) )
-                    && key.length() > longKey.length() )
-                {
-                    longKey = key;
-                }
+                rulesList = lookup( namespaceURI, longKey );
+            }
+        }
+        if ( rulesList == null )
+        {
+            rulesList = Collections.emptyList();
+        }
+        return ( rulesList );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Rules are selected by namespace URI and pattern only, so this is true unless a subclass redefines
+     * {@link #match(String, String, String, Attributes)}.
+     * </p>
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean isAttributesIndependent()
+    {
+        return isOwnMatch();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Wildcard patterns can match elements nested anywhere, so descendants can not be matched only when there are no
+     * wildcard patterns and no exact pattern is nested in the given pattern. Subclasses redefining
+     * {@link #match(String, String, String, Attributes)} can always match descendants, unless they redefine this method
+     * as well.
+     * </p>
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean canMatchDescendants( final String pattern )
+    {
+        if ( !isOwnMatch() || !wildcardCache.isEmpty() )
+        {
+            return true;
+        }
+        return exactAncestors.contains( pattern );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int nextState( final int parentState, final String name )
+    {
+        if ( !isIncrementalMatching() || parentState < 0 || parentState >= pathStatesCount )
+        {
+            return UNKNOWN_STATE;
+        }
+
+        final PathState parent = pathStates[parentState];
+        PathState state = parent.children.get( name );
+        if ( state == null )
+        {
+            if ( pathStatesCount == MAX_PATH_STATES )
+            {
+                return UNKNOWN_STATE;
             }
-            if ( longKey.length() > 0 )
+            if ( pathStatesCount == pathStates.length )
             {
-                rulesList = lookup( namespaceURI, "*" + longKey );
+                final PathState[] newPathStates = new PathState[pathStatesCount * 2];
+                System.arraycopy( pathStates, 0, newPathStates, 0, pathStatesCount );
+                pathStates = newPathStates;
             }
+            final String path = ( parentState == ROOT_STATE ) ? name : parent.path + '/' + name;
+            state = new PathState( pathStatesCount, path );
+            pathStates[pathStatesCount++] = state;
+            parent.children.put( name, state );
+        }
+        return state.id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> match( final int state, final String namespaceURI, final String name, final Attributes attributes )
+    {
+        final PathState pathState = getPathState( state );
+        if ( pathState.version != patternsVersion )
+        {
+            pathState.exactKey = cache.containsKey( pathState.path ) ? pathState.path : null;
+            pathState.wildcardKey = findLongestWildcard( pathState.path );
+            pathState.version = patternsVersion;
+        }
+
+        List<Rule> rulesList = null;
+        if ( pathState.exactKey != null )
+        {
+            rulesList = lookup( namespaceURI, pathState.exactKey );
+        }
+        if ( ( ( rulesList == null ) || ( rulesList.size() < 1 ) ) && pathState.wildcardKey != null )
+        {
+            rulesList = lookup( namespaceURI, pathState.wildcardKey );
         }
         if ( rulesList == null )
         {
-            rulesList = new ArrayList<Rule>();
+            rulesList = Collections.emptyList();
         }
         return ( rulesList );
     }
@@ -169,9 +378,56 @@ public class RulesBase
 
     // ------------------------------------------------------ Protected Methods
 
+    /**
+     * Return the nesting pattern of the element in the given state, as returned by {@link #nextState(int, String)}.
+     *
+     * @param state the element state
+     * @return the nesting pattern of the element in the given state
+     * @since 3.3
+     */
+    protected String getStatePattern( final int state )
+    {
+        return getPathState( state ).path;
+    }
+
+    /**
+     * Return the longest registered wildcard pattern (including the leading <code>*&#47;</code>) that matches the
+     * specified element path, or <code>null</code> if none matches.
+     *
+     * @param pattern the element path to be matched
+     * @return the longest registered wildcard pattern that matches the specified element path, if any
+     * @since 3.3
+     */
+    protected String findLongestWildcard( final String pattern )
+    {
+        String longKey = null;
+        WildcardNode node = wildcardRoot;
+        int end = pattern.length();
+        while ( true )
+        {
+            final int slash = pattern.lastIndexOf( '/', end - 1 );
+            node = node.children.get( pattern, slash + 1, end );
+            if ( node == null )
+            {
+                return longKey;
+            }
+            if ( node.pattern != null )
+            {
+                // deeper nodes are always longer suffixes of the element path
+                longKey = node.pattern;
+            }
+            if ( slash < 0 )
+            {
+                return longKey;
+            }
+            end = slash;
+        }
+    }
+
     /**
      * Return a List of Rule instances for the specified pattern that also match the specified namespace URI (if any).
-     * If there are no such rules, return <code>null</code>.
+     * If there are no such rules, return <code>null</code>. Rules are selected by the namespace URI they had when they
+     * were registered, and the lists selected for a namespace URI are shared and cannot be modified.
      *
      * @param namespaceURI Namespace URI to match, or <code>null</code> to select matching rules regardless of namespace
      *            URI
@@ -191,16 +447,247 @@ public class RulesBase
             return ( list );
         }
 
-        // Select only Rules that match on the specified namespace URI
-        final ArrayList<Rule> results = new ArrayList<Rule>();
-        for ( final Rule item : list )
+        // Select only Rules that match on the specified namespace URI, already indexed at registration time
+        final HashMap<String, RuleList> patterns = namespaceRules.get( namespaceURI );
+        RuleList results = ( patterns != null ) ? patterns.get( pattern ) : null;
+        if ( results == null )
+        {
+            results = anyNamespaceRules.get( pattern );
+        }
+        if ( results == null )
+        {
+            return Collections.emptyList();
+        }
+        return results.freeze();
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+    /**
+     * Adds the given rule, just registered, to the lists of the rules selected by namespace URI.
+     *
+     * @param pattern the pattern of the rule
+     * @param rule the registered rule
+     */
+    private void indexNamespace( final String pattern, final Rule rule )
+    {
+        final String ruleNamespaceURI = rule.getNamespaceURI();
+        if ( ruleNamespaceURI == null )
+        {
+            RuleList list = anyNamespaceRules.get( pattern );
+            if ( list == null )
+            {
+                list = new RuleList( null );
+                anyNamespaceRules.put( pattern, list );
+            }
+            list.add( rule );
+            // rules without namespace URI are selected by any namespace URI
+            for ( final HashMap<String, RuleList> patterns : namespaceRules.values() )
+            {
+                final RuleList namespaceList = patterns.get( pattern );
+                if ( namespaceList != null )
+                {
+                    namespaceList.add( rule );
+                }
+            }
+        }
+        else
+        {
+            HashMap<String, RuleList> patterns = namespaceRules.get( ruleNamespaceURI );
+            if ( patterns == null )
+            {
+                patterns = new HashMap<String, RuleList>();
+                namespaceRules.put( ruleNamespaceURI, patterns );
+            }
+            RuleList list = patterns.get( pattern );
+            if ( list == null )
+            {
+                list = new RuleList( anyNamespaceRules.get( pattern ) );
+                patterns.put( pattern, list );
+            }
+            list.add( rule );
+        }
+    }
+
+    private PathState getPathState( final int state )
+    {
+        if ( state <= ROOT_STATE || state >= pathStatesCount )
+        {
+            throw new IllegalArgumentException( "Unknown element state " + state );
+        }
+        return pathStates[state];
+    }
+
+    /**
+     * Checks whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the
+     * first time it is needed, since it is checked for every element.
+     *
+     * @return true, if the <code>match</code> method is implemented by this class
+     */
+    private boolean isOwnMatch()
+    {
+        if ( ownMatch == null )
+        {
+            ownMatch = isMatchDeclaredBy( RulesBase.class );
+        }
+        return ownMatch;
+    }
+
+    /**
+     * Incremental matching has to mirror the {@link #match(String, String, String, Attributes)} policy, so it can be
+     * used only when both the <code>match</code> methods are implemented by the same class.
+     *
+     * @return true, if the <code>match</code> method is not overridden
+     */
+    private boolean isIncrementalMatching()
+    {
+        if ( incrementalMatching == null )
+        {
+            try
+            {
+                final Class<?> patternMatchClass =
+                    getClass().getMethod( "match", String.class, String.class, String.class, Attributes.class )
+                              .getDeclaringClass();
+                final Class<?> stateMatchClass =
+                    getClass().getMethod( "match", int.class, String.class, String.class, Attributes.class )
+                              .getDeclaringClass();
+                incrementalMatching = patternMatchClass == stateMatchClass;
+            }
+            catch ( final NoSuchMethodException e )
+            {
+                incrementalMatching = false;
+            }
+        }
+        return incrementalMatching;
+    }
+
+    /**
+     * Indexes the given wildcard pattern, starting with <code>*&#47;</code>, in the reversed segments trie.
+     *
+     * @param pattern the wildcard pattern to be indexed
+     */
+    private void addWildcard( final String pattern )
+    {
+        WildcardNode node = wildcardRoot;
+        // skip the leading "*/"
+        int end = pattern.length();
+        while ( true )
+        {
+            final int slash = pattern.lastIndexOf( '/', end - 1 );
+            final int start = Math.max( slash, 1 ) + 1;
+            final String segment = pattern.substring( start, end );
+            WildcardNode child = node.children.get( segment );
+            if ( child == null )
+            {
+                child = new WildcardNode();
+                node.children.put( segment, child );
+            }
+            node = child;
+            if ( slash <= 1 )
+            {
+                break;
+            }
+            end = slash;
+        }
+        node.pattern = pattern;
+    }
+
+    /**
+     * A distinct element path met during incremental matching, with the patterns it matches.
+     */
+    private static final class PathState
+    {
+
+        final int id;
+
+        final String path;
+
+        final SegmentTable<PathState> children = new SegmentTable<PathState>();
+
+        /** The {@link RulesBase#patternsVersion} the matched patterns below have been computed for. */
+        int version = -1;
+
+        /** The path itself, if it is a registered pattern. */
+        String exactKey;
+
+        /** The longest registered wildcard pattern matching the path, if any. */
+        String wildcardKey;
+
+        PathState( final int id, final String path )
+        {
+            this.id = id;
+            this.path = path;
+        }
+
+    }
+
+    /**
+     * A node of the trie where wildcard patterns are indexed by their segments, from the last to the first one.
+     */
+    private static final class WildcardNode
+    {
+
+        final SegmentTable<WildcardNode> children = new SegmentTable<WildcardNode>();
+
+        /** The wildcard pattern whose first segment is this node, if any. */
+        String pattern;
+
+        void clear()
+        {
+            children.clear();
+            pattern = null;
+        }
+
+    }
+
+    /**
+     * The rules registered for a pattern, in the order they were registered. The list is built in place, and frozen
+     * the first time it is matched: a list once returned is never modified, the rules registered afterwards are added
+     * to a copy.
+     */
+    private static final class RuleList
+    {
+
+        private ArrayList<Rule> rules;
+
+        /**
+         * The unmodifiable view of {@link #rules} returned by the matches, if any. Once no more rules are registered,
+         * as in the patterns template of the compiled rules, the list may be matched by several threads at once: they
+         * may then create distinct but equivalent views of a list that is no longer modified.
+         */
+        private volatile List<Rule> frozen;
+
+        /**
+         * Creates a new list, holding the rules of the given list.
+         *
+         * @param list the list to be copied, may be null
+         */
+        RuleList( final RuleList list )
+        {
+            rules = list != null ? new ArrayList<Rule>( list.rules ) : new ArrayList<Rule>( 2 );
+        }
+
+        void add( final Rule rule )
         {
-            if ( ( namespaceURI.equals( item.getNamespaceURI() ) ) || ( item.getNamespaceURI() == null ) )
+            if ( frozen != null )
             {
-                results.add( item );
+                rules = new ArrayList<Rule>( rules );
+                frozen = null;
             }
+            rules.add( rule );
         }
-        return ( results );
+
+        List<Rule> freeze()
+        {
+            List<Rule> view = frozen;
+            if ( view == null )
+            {
+                view = Collections.unmodifiableList( rules );
+                frozen = view;
+            }
+            return view;
+        }
+
     }
 
 }
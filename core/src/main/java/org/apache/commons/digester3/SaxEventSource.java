@@ -0,0 +1,81 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * The {@link EventSource} delivering the events of a document with a SAX {@link XMLReader}, already configured with
+ * its handlers: the whole document is delivered by the first call to {@link #next()}.
+ *
+ * @since 3.3
+ */
+final class SaxEventSource
+    implements EventSource
+{
+
+    private final XMLReader reader;
+
+    private final InputSource input;
+
+    private boolean finished;
+
+    /**
+     * Creates a new source reading the given document.
+     *
+     * @param reader the reader of the document, configured with its handlers
+     * @param input the document to be read
+     */
+    SaxEventSource( final XMLReader reader, final InputSource input )
+    {
+        this.reader = reader;
+        this.input = input;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next()
+        throws IOException, SAXException
+    {
+        if ( !finished )
+        {
+            finished = true;
+            reader.parse( input );
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        finished = true;
+    }
+
+}
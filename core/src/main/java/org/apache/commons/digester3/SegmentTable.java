@@ -0,0 +1,175 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Small open addressing hash table keyed by pattern segments (the element names between two '/' characters).
+ * Lookups can be performed against a region of a larger path <code>String</code>, so that matching engines can walk
+ * a path segment by segment without allocating a <code>substring</code> for every step.
+ *
+ * @param <V> the type of the mapped values
+ * @since 3.3
+ */
+final class SegmentTable<V>
+{
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Returns the value mapped to the given segment, or <code>null</code> if there is none.
+     *
+     * @param segment the segment to look up
+     * @return the value mapped to the given segment, or <code>null</code> if there is none
+     */
+    public V get( final String segment )
+    {
+        return get( segment, 0, segment.length() );
+    }
+
+    /**
+     * Returns the value mapped to the segment <code>path.substring( start, end )</code>, or <code>null</code> if there
+     * is none.
+     *
+     * @param path the path containing the segment
+     * @param start the index of the first character of the segment
+     * @param end the index after the last character of the segment
+     * @return the value mapped to the given segment, or <code>null</code> if there is none
+     */
+    public V get( final String path, final int start, final int end )
+    {
+        if ( size == 0 )
+        {
+            return null;
+        }
+
+        final int length = end - start;
+        final int mask = keys.length - 1;
+        int index = spread( hash( path, start, end ) ) & mask;
+        String key;
+        while ( ( key = keys[index] ) != null )
+        {
+            if ( key.length() == length && key.regionMatches( 0, path, start, length ) )
+            {
+                @SuppressWarnings( "unchecked" ) // only V instances are stored
+                final V value = (V) values[index];
+                return value;
+            }
+            index = ( index + 1 ) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Maps the given segment to the given value, replacing any previous mapping.
+     *
+     * @param segment the segment, not null
+     * @param value the value to be associated to the segment
+     */
+    public void put( final String segment, final V value )
+    {
+        if ( ( size + 1 ) * 2 > keys.length )
+        {
+            resize();
+        }
+        if ( insert( keys, values, segment, value ) )
+        {
+            size++;
+        }
+    }
+
+    /**
+     * Returns the number of mapped segments.
+     *
+     * @return the number of mapped segments
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes all the mappings.
+     */
+    public void clear()
+    {
+        keys = new String[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    private void resize()
+    {
+        final String[] newKeys = new String[keys.length * 2];
+        final Object[] newValues = new Object[values.length * 2];
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            if ( keys[i] != null )
+            {
+                insert( newKeys, newValues, keys[i], values[i] );
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    private static boolean insert( final String[] keys, final Object[] values, final String segment,
+                                   final Object value )
+    {
+        final int mask = keys.length - 1;
+        int index = spread( segment.hashCode() ) & mask;
+        while ( keys[index] != null )
+        {
+            if ( keys[index].equals( segment ) )
+            {
+                values[index] = value;
+                return false;
+            }
+            index = ( index + 1 ) & mask;
+        }
+        keys[index] = segment;
+        values[index] = value;
+        return true;
+    }
+
+    /**
+     * Computes the same value as <code>path.substring( start, end ).hashCode()</code>, without the substring.
+     */
+    private static int hash( final String path, final int start, final int end )
+    {
+        int h = 0;
+        for ( int i = start; i < end; i++ )
+        {
+            h = 31 * h + path.charAt( i );
+        }
+        return h;
+    }
+
+    private static int spread( final int h )
+    {
+        return h ^ ( h >>> 16 );
+    }
+
+}
@@ -500,6 +500,14 @@ public class SetNestedPropertiesRule
                 text = text.trim();
             }
 
+            if ( top instanceof DeferredObject )
+            {
+                // the property is checked and set once the object has been constructed
+                ( (DeferredObject) top ).setProperty( propName, text, allowUnknownChildElements
+                                ? DeferredObject.PropertyCheck.NONE : DeferredObject.PropertyCheck.EXISTING );
+                return;
+            }
+
             if ( !allowUnknownChildElements )
             {
                 // Force an exception if the property does not exist
@@ -26,6 +26,8 @@ import static org.apache.commons.beanutils.PropertyUtils.isWriteable;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.DynaBean;
 import org.xml.sax.Attributes;
 
 /**
@@ -143,6 +145,11 @@ public class SetPropertiesRule
      */
     private boolean ignoreMissingProperty = true;
 
+    /**
+     * The setters resolved for the classes of the objects this rule has been applied to.
+     */
+    private final PropertySetterCache setters = new PropertySetterCache();
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -152,23 +159,86 @@ public class SetPropertiesRule
     public void begin( final String namespace, final String name, final Attributes attributes )
         throws Exception
     {
-        // Build a set of attribute names and corresponding values
-        final Map<String, String> values = new HashMap<String, String>();
+        final Object top = getDigester().peek();
+        if ( top == null || top instanceof DynaBean || top instanceof Map )
+        {
+            populateProperties( top, attributes );
+            return;
+        }
 
+        if ( top instanceof DeferredObject )
+        {
+            // the properties are checked and set once the object has been constructed
+            final DeferredObject.PropertyCheck check =
+                ignoreMissingProperty ? DeferredObject.PropertyCheck.NONE : DeferredObject.PropertyCheck.WRITEABLE;
+            for ( int i = 0; i < attributes.getLength(); i++ )
+            {
+                final String attributeName = getPropertyName( attributes, i );
+                if ( attributeName != null )
+                {
+                    ( (DeferredObject) top ).setProperty( attributeName, attributes.getValue( i ), check );
+                }
+            }
+            return;
+        }
+
+        final BeanUtilsBean beanUtils = BeanUtilsBean.getInstance();
+        final ConversionRegistry conversions = getDigester().getConversionRegistry();
         for ( int i = 0; i < attributes.getLength(); i++ )
         {
-            String attributeName = attributes.getLocalName( i );
-            if ( "".equals( attributeName ) )
+            final String attributeName = getPropertyName( attributes, i );
+
+            if ( getDigester().getLogger().isDebugEnabled() )
             {
-                attributeName = attributes.getQName( i );
+                getDigester().getLogger().debug( format( "[SetPropertiesRule]{%s} Setting property '%s' to '%s'",
+                                                         getDigester().getMatch(),
+                                                         attributeName,
+                                                         attributeName ) );
             }
-            final String value = attributes.getValue( i );
 
-            // alias lookup has complexity O(1)
-            if ( aliases.containsKey( attributeName ) )
+            // all the properties are checked before setting any of them
+            if ( ( !ignoreMissingProperty ) && ( attributeName != null )
+                && !setters.get( beanUtils, top, attributeName ).isWriteable( top, attributeName ) )
+            {
+                throw new NoSuchMethodException( "Property " + attributeName + " can't be set" );
+            }
+        }
+
+        if ( getDigester().getLogger().isDebugEnabled() )
+        {
+            getDigester().getLogger().debug( format( "[SetPropertiesRule]{%s} Set '%s' properties",
+                                                     getDigester().getMatch(),
+                                                     top.getClass().getName() ) );
+        }
+        for ( int i = 0; i < attributes.getLength(); i++ )
+        {
+            final String attributeName = getPropertyName( attributes, i );
+            if ( attributeName != null )
             {
-                attributeName = aliases.get( attributeName );
+                setters.get( beanUtils, top, attributeName ).set( beanUtils, conversions, top, attributeName,
+                                                                  attributes.getValue( i ) );
             }
+        }
+    }
+
+    /**
+     * Sets the properties of the given object, that can not be resolved in advance, through
+     * {@link org.apache.commons.beanutils.BeanUtils#populate(Object, Map)}.
+     *
+     * @param top the object whose properties have to be set, may be null
+     * @param attributes The attribute list of this element
+     * @throws Exception if any error occurs
+     */
+    private void populateProperties( final Object top, final Attributes attributes )
+        throws Exception
+    {
+        // Build a set of attribute names and corresponding values
+        final Map<String, String> values = new HashMap<String, String>();
+
+        for ( int i = 0; i < attributes.getLength(); i++ )
+        {
+            final String attributeName = getPropertyName( attributes, i );
+            final String value = attributes.getValue( i );
 
             if ( getDigester().getLogger().isDebugEnabled() )
             {
@@ -199,7 +269,6 @@ public class SetPropertiesRule
                 // compared and the PropertyUtils functionality does appear
                 // compatible so we'll accept the risk here.
 
-                final Object top = getDigester().peek();
                 final boolean test = isWriteable( top, attributeName );
                 if ( !test )
                 {
@@ -214,7 +283,6 @@ public class SetPropertiesRule
         }
 
         // Populate the corresponding properties of the top object
-        final Object top = getDigester().peek();
         if ( getDigester().getLogger().isDebugEnabled() )
         {
             if ( top != null )
@@ -232,6 +300,37 @@ public class SetPropertiesRule
         populate( top, values );
     }
 
+    /**
+     * Returns the name of the property the given attribute is mapped to.
+     *
+     * @param attributes The attribute list of this element
+     * @param index the index of the attribute
+     * @return the name of the property the given attribute is mapped to, null if the attribute is ignored
+     */
+    private String getPropertyName( final Attributes attributes, final int index )
+    {
+        String attributeName;
+        if ( attributes instanceof IndexedAttributes )
+        {
+            attributeName = ( (IndexedAttributes) attributes ).getName( index );
+        }
+        else
+        {
+            attributeName = attributes.getLocalName( index );
+            if ( "".equals( attributeName ) )
+            {
+                attributeName = attributes.getQName( index );
+            }
+        }
+
+        // alias lookup has complexity O(1)
+        if ( aliases.containsKey( attributeName ) )
+        {
+            attributeName = aliases.get( attributeName );
+        }
+        return attributeName;
+    }
+
     /**
      * Add an additional attribute name to property name mapping. This is intended to be used from the xml rules.
      *
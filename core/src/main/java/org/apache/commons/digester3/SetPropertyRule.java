@@ -80,12 +80,22 @@ public class SetPropertyRule
         // Identify the actual property name and value to be used
         String actualName = null;
         String actualValue = null;
+        final IndexedAttributes indexed =
+            attributes instanceof IndexedAttributes ? (IndexedAttributes) attributes : null;
         for ( int i = 0; i < attributes.getLength(); i++ )
         {
-            String attributeName = attributes.getLocalName( i );
-            if ( "".equals( attributeName ) )
+            String attributeName;
+            if ( indexed != null )
             {
-                attributeName = attributes.getQName( i );
+                attributeName = indexed.getName( i );
+            }
+            else
+            {
+                attributeName = attributes.getLocalName( i );
+                if ( "".equals( attributeName ) )
+                {
+                    attributeName = attributes.getQName( i );
+                }
             }
             final String value = attributes.getValue( i );
             if ( attributeName.equals( this.name ) )
@@ -111,6 +121,13 @@ public class SetPropertyRule
                                                      actualValue ) );
         }
 
+        if ( top instanceof DeferredObject )
+        {
+            // the property is checked and set once the object has been constructed
+            ( (DeferredObject) top ).setProperty( actualName, actualValue, DeferredObject.PropertyCheck.EXISTING );
+            return;
+        }
+
         // Force an exception if the property does not exist
         // (BeanUtils.setProperty() silently returns in this case)
         //
@@ -0,0 +1,418 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Matches a path against a whole set of {@link SimpleRegexMatcher} patterns in a single pass.
+ * </p>
+ * <p>
+ * Every pattern is turned into a non deterministic automaton whose states are the positions in the pattern, and all
+ * of them are run together through a deterministic automaton whose states are built lazily, the first time they are
+ * reached. The automaton reproduces exactly the semantic of {@link SimpleRegexMatcher#match(String, String)}, in
+ * particular:
+ * </p>
+ * <ul>
+ * <li>a trailing <code>*</code> matches one or more characters;</li>
+ * <li>any other <code>*</code> matches none, one or more characters, up to an occurrence of the character that follows
+ * it in the pattern, that character being compared literally even if it is a <code>?</code> or a <code>*</code>.</li>
+ * </ul>
+ * <p>
+ * Instances are not thread safe.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class SimpleRegexAutomaton
+{
+
+    /**
+     * The maximum number of deterministic states kept; when reached, all the states are discarded and built again.
+     */
+    private static final int MAX_STATES = 1024;
+
+    private static final int[] NO_MATCHES = new int[0];
+
+    /** The distinct patterns. */
+    private final String[] patterns;
+
+    /** For each input pattern, the index of the related distinct pattern. */
+    private final int[] inputPatterns;
+
+    /** The id of the first state of each distinct pattern. */
+    private final int[] offsets;
+
+    /** For each state id, the index of the pattern it belongs to. */
+    private final int[] owners;
+
+    /** The deterministic states, keyed by the set of the non deterministic states they are made of. */
+    private final Map<StateKey, State> states = new HashMap<StateKey, State>();
+
+    /** Marks the non deterministic states already collected while computing a transition. */
+    private final boolean[] collected;
+
+    /** The non deterministic states collected while computing a transition. */
+    private final int[] collectedIds;
+
+    private State start;
+
+    /**
+     * Creates a new automaton for the given patterns.
+     *
+     * @param inputs the patterns, <code>null</code> elements never match
+     */
+    SimpleRegexAutomaton( final List<String> inputs )
+    {
+        final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        inputPatterns = new int[inputs.size()];
+        int count = 0;
+        for ( int i = 0; i < inputPatterns.length; i++ )
+        {
+            final String pattern = inputs.get( i );
+            if ( pattern == null )
+            {
+                inputPatterns[i] = -1;
+                continue;
+            }
+            Integer index = indexes.get( pattern );
+            if ( index == null )
+            {
+                index = count++;
+                indexes.put( pattern, index );
+            }
+            inputPatterns[i] = index;
+        }
+
+        patterns = new String[count];
+        for ( final Map.Entry<String, Integer> entry : indexes.entrySet() )
+        {
+            patterns[entry.getValue()] = entry.getKey();
+        }
+
+        // every pattern of length n has the states 0..n, plus the "matches anything left" state n + 1
+        offsets = new int[count];
+        int ids = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            offsets[i] = ids;
+            ids += patterns[i].length() + 2;
+        }
+        owners = new int[ids];
+        for ( int i = 0; i < count; i++ )
+        {
+            Arrays.fill( owners, offsets[i], offsets[i] + patterns[i].length() + 2, i );
+        }
+        collected = new boolean[ids];
+        collectedIds = new int[ids];
+    }
+
+    /**
+     * Returns the indexes, in ascending order, of the input patterns matching the given path.
+     *
+     * @param path the path to be matched
+     * @return the indexes of the input patterns matching the given path
+     */
+    int[] match( final String path )
+    {
+        if ( path == null || patterns.length == 0 )
+        {
+            return NO_MATCHES;
+        }
+
+        State state = getStart();
+        for ( int i = 0; i < path.length() && state.ids.length > 0; i++ )
+        {
+            state = state.next( this, path.charAt( i ) );
+        }
+        return state.getMatches( this );
+    }
+
+    /**
+     * Returns true if some pattern may match a path starting with the given prefix and longer than it.
+     *
+     * @param prefix the start of the paths to be matched
+     * @return false only if no pattern can match a path starting with the given prefix and longer than it
+     */
+    boolean canMatchLonger( final String prefix )
+    {
+        if ( patterns.length == 0 )
+        {
+            return false;
+        }
+
+        State state = getStart();
+        for ( int i = 0; i < prefix.length() && state.ids.length > 0; i++ )
+        {
+            state = state.next( this, prefix.charAt( i ) );
+        }
+        for ( final int id : state.ids )
+        {
+            // every state can reach the end of its pattern, except the ones already there
+            final int owner = owners[id];
+            if ( id - offsets[owner] != patterns[owner].length() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private State getStart()
+    {
+        if ( start == null )
+        {
+            final int[] ids = new int[patterns.length];
+            for ( int i = 0; i < ids.length; i++ )
+            {
+                ids[i] = offsets[i];
+            }
+            start = intern( ids );
+        }
+        return start;
+    }
+
+    /**
+     * Computes the state reached from the given state reading the given character.
+     */
+    private State transition( final State from, final char c )
+    {
+        int count = 0;
+        // the worklist is the list of the states at the current position: the ones of the source state, plus the ones
+        // reached skipping a '*' because the current character is the one that follows it
+        final int[] current = Arrays.copyOf( from.ids, collected.length );
+        final boolean[] inCurrent = new boolean[collected.length];
+        int currentCount = from.ids.length;
+        for ( int i = 0; i < currentCount; i++ )
+        {
+            inCurrent[current[i]] = true;
+        }
+
+        for ( int i = 0; i < currentCount; i++ )
+        {
+            final int id = current[i];
+            final int owner = owners[id];
+            final String pattern = patterns[owner];
+            final int position = id - offsets[owner];
+
+            if ( position == pattern.length() + 1 )
+            {
+                // matches anything left
+                count = collect( id, count );
+            }
+            else if ( position < pattern.length() )
+            {
+                final char p = pattern.charAt( position );
+                if ( p == '*' )
+                {
+                    if ( position + 1 == pattern.length() )
+                    {
+                        // trailing '*', matches anything left
+                        count = collect( offsets[owner] + pattern.length() + 1, count );
+                    }
+                    else
+                    {
+                        // the '*' consumes the character...
+                        count = collect( id, count );
+                        // ...or ends here, if the character is the next one in the pattern
+                        if ( pattern.charAt( position + 1 ) == c && !inCurrent[id + 1] )
+                        {
+                            inCurrent[id + 1] = true;
+                            current[currentCount++] = id + 1;
+                        }
+                    }
+                }
+                else if ( p == '?' || p == c )
+                {
+                    count = collect( id + 1, count );
+                }
+            }
+            // else the pattern has been fully consumed, but there are characters left
+        }
+
+        final int[] ids = Arrays.copyOf( collectedIds, count );
+        for ( final int id : ids )
+        {
+            collected[id] = false;
+        }
+        Arrays.sort( ids );
+        return intern( ids );
+    }
+
+    private int collect( final int id, final int count )
+    {
+        if ( collected[id] )
+        {
+            return count;
+        }
+        collected[id] = true;
+        collectedIds[count] = id;
+        return count + 1;
+    }
+
+    private State intern( final int[] ids )
+    {
+        final StateKey key = new StateKey( ids );
+        State state = states.get( key );
+        if ( state == null )
+        {
+            if ( states.size() >= MAX_STATES )
+            {
+                // states already reached by pending matches are still valid, they are just no longer shared
+                states.clear();
+                start = null;
+            }
+            state = new State( ids );
+            states.put( key, state );
+        }
+        return state;
+    }
+
+    private int[] computeMatches( final State state )
+    {
+        final boolean[] matched = new boolean[patterns.length];
+        boolean any = false;
+        for ( final int id : state.ids )
+        {
+            final int owner = owners[id];
+            final int position = id - offsets[owner];
+            if ( position >= patterns[owner].length() )
+            {
+                matched[owner] = true;
+                any = true;
+            }
+        }
+        if ( !any )
+        {
+            return NO_MATCHES;
+        }
+
+        int count = 0;
+        final int[] matches = new int[inputPatterns.length];
+        for ( int i = 0; i < inputPatterns.length; i++ )
+        {
+            if ( inputPatterns[i] != -1 && matched[inputPatterns[i]] )
+            {
+                matches[count++] = i;
+            }
+        }
+        return Arrays.copyOf( matches, count );
+    }
+
+    /**
+     * A deterministic state, made of a set of non deterministic states.
+     */
+    private static final class State
+    {
+
+        /** The non deterministic states, sorted. */
+        final int[] ids;
+
+        /** Transitions for ASCII characters. */
+        private State[] asciiTransitions;
+
+        /** Transitions for any other character. */
+        private Map<Character, State> otherTransitions;
+
+        private int[] matches;
+
+        State( final int[] ids )
+        {
+            this.ids = ids;
+        }
+
+        State next( final SimpleRegexAutomaton automaton, final char c )
+        {
+            State next;
+            if ( c < 128 )
+            {
+                if ( asciiTransitions == null )
+                {
+                    asciiTransitions = new State[128];
+                }
+                next = asciiTransitions[c];
+                if ( next == null )
+                {
+                    next = automaton.transition( this, c );
+                    asciiTransitions[c] = next;
+                }
+            }
+            else
+            {
+                if ( otherTransitions == null )
+                {
+                    otherTransitions = new HashMap<Character, State>();
+                }
+                next = otherTransitions.get( c );
+                if ( next == null )
+                {
+                    next = automaton.transition( this, c );
+                    otherTransitions.put( c, next );
+                }
+            }
+            return next;
+        }
+
+        int[] getMatches( final SimpleRegexAutomaton automaton )
+        {
+            if ( matches == null )
+            {
+                matches = automaton.computeMatches( this );
+            }
+            return matches;
+        }
+
+    }
+
+    /**
+     * Wraps the non deterministic states of a deterministic state, to be used as a map key.
+     */
+    private static final class StateKey
+    {
+
+        private final int[] ids;
+
+        private final int hash;
+
+        StateKey( final int[] ids )
+        {
+            this.ids = ids;
+            this.hash = Arrays.hashCode( ids );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals( final Object obj )
+        {
+            return obj instanceof StateKey && Arrays.equals( ids, ( (StateKey) obj ).ids );
+        }
+
+    }
+
+}
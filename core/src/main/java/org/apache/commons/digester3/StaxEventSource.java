@@ -0,0 +1,524 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * The {@link EventSource} pulling the events of a document from a StAX {@link XMLStreamReader}, and delivering them
+ * one at a time to a SAX {@link ContentHandler}, exactly as a SAX parser would.
+ * <p>
+ * The handler is notified of the namespace prefix mappings and receives the namespace URI and local names only if the
+ * reader is namespace aware, otherwise it receives the qualified names only. The reader is also the {@link Locator}
+ * of the document.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class StaxEventSource
+    implements EventSource, Locator
+{
+
+    private final XMLStreamReader reader;
+
+    private final ContentHandler handler;
+
+    private final boolean namespaceAware;
+
+    /** The resolver of the external entities, bound to the current thread while the events are pulled. */
+    private final EntityResolver entityResolver;
+
+    /** The stream opened to read the document, if not provided by the caller. */
+    private final Closeable openedStream;
+
+    /** True if the reader has been created by this source, and has to be closed with it. */
+    private final boolean ownsReader;
+
+    /** The attributes of the current element, reused for every element. */
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    private boolean started;
+
+    private boolean finished;
+
+    /**
+     * Configures the given factory to create the readers of the sources: it is set up once, and can then be shared by
+     * several digesters, even on several threads. The external entities are resolved through the resolver of the
+     * source pulling the events on the current thread.
+     *
+     * @param factory the factory to be configured
+     * @param namespaceAware true, if the documents have to be read in a namespace aware manner
+     * @return the given factory
+     */
+    static XMLInputFactory configure( final XMLInputFactory factory, final boolean namespaceAware )
+    {
+        factory.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, namespaceAware );
+        factory.setProperty( XMLInputFactory.IS_COALESCING, Boolean.FALSE );
+        factory.setXMLResolver( CurrentEntityResolver.INSTANCE );
+        return factory;
+    }
+
+    /**
+     * Creates a new source reading the document from the given input source.
+     *
+     * @param factory the factory of the reader, {@link #configure(XMLInputFactory, boolean) configured}
+     * @param input the document to be read
+     * @param entityResolver the resolver of the external entities, if any
+     * @param handler the handler the events are delivered to
+     * @throws IOException if the document can not be opened
+     * @throws SAXException if the reader can not be created
+     */
+    StaxEventSource( final XMLInputFactory factory, final InputSource input, final EntityResolver entityResolver,
+                     final ContentHandler handler )
+        throws IOException, SAXException
+    {
+        InputStream opened = null;
+        final EntityResolver previous = CurrentEntityResolver.bind( entityResolver );
+        try
+        {
+            if ( input.getCharacterStream() != null )
+            {
+                reader = factory.createXMLStreamReader( input.getSystemId(), input.getCharacterStream() );
+            }
+            else if ( input.getByteStream() != null )
+            {
+                reader = input.getEncoding() != null
+                                ? factory.createXMLStreamReader( input.getByteStream(), input.getEncoding() )
+                                : factory.createXMLStreamReader( input.getSystemId(), input.getByteStream() );
+            }
+            else if ( input.getSystemId() != null )
+            {
+                opened = new URL( input.getSystemId() ).openStream();
+                reader = factory.createXMLStreamReader( input.getSystemId(), opened );
+            }
+            else
+            {
+                throw new IllegalArgumentException( "InputSource has no stream nor system id" );
+            }
+        }
+        catch ( final XMLStreamException e )
+        {
+            if ( opened != null )
+            {
+                opened.close();
+            }
+            throw new SAXException( e );
+        }
+        finally
+        {
+            CurrentEntityResolver.bind( previous );
+        }
+
+        this.openedStream = opened;
+        this.ownsReader = true;
+        this.entityResolver = entityResolver;
+        this.namespaceAware = isNamespaceAware( reader );
+        this.handler = handler;
+    }
+
+    /**
+     * Creates a new source reading the document from the given reader, from its current event on. The reader is not
+     * closed with the source, it belongs to the caller. The given resolver resolves the external entities if the
+     * reader has been created by a {@link #configure(XMLInputFactory, boolean) configured} factory.
+     *
+     * @param reader the reader of the document
+     * @param entityResolver the resolver of the external entities, if any
+     * @param handler the handler the events are delivered to
+     */
+    StaxEventSource( final XMLStreamReader reader, final EntityResolver entityResolver, final ContentHandler handler )
+    {
+        this.reader = reader;
+        this.handler = handler;
+        this.namespaceAware = isNamespaceAware( reader );
+        this.entityResolver = entityResolver;
+        this.openedStream = null;
+        this.ownsReader = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every call delivers a single event.
+     * </p>
+     */
+    @Override
+    public boolean next()
+        throws SAXException
+    {
+        if ( finished )
+        {
+            return false;
+        }
+
+        final EntityResolver previous = CurrentEntityResolver.bind( entityResolver );
+        try
+        {
+            if ( !started )
+            {
+                started = true;
+                handler.setDocumentLocator( this );
+                handler.startDocument();
+                if ( reader.getEventType() != XMLStreamConstants.START_DOCUMENT )
+                {
+                    // the reader has been positioned inside the document
+                    dispatch( reader.getEventType() );
+                }
+                return true;
+            }
+
+            if ( !reader.hasNext() )
+            {
+                // the reader stopped before the end of the document, as fragments readers do
+                dispatch( XMLStreamConstants.END_DOCUMENT );
+            }
+            else
+            {
+                dispatch( reader.next() );
+            }
+        }
+        catch ( final XMLStreamException e )
+        {
+            finished = true;
+            throw new SAXParseException( e.getMessage(), this, e );
+        }
+        finally
+        {
+            CurrentEntityResolver.bind( previous );
+        }
+        return !finished;
+    }
+
+    /**
+     * Closes the reader if it has been created by this source, and the stream opened to read the document if any.
+     *
+     * @throws IOException if the stream can not be closed
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        finished = true;
+        try
+        {
+            if ( ownsReader )
+            {
+                reader.close();
+            }
+        }
+        catch ( final XMLStreamException e )
+        {
+            throw new IOException( e );
+        }
+        finally
+        {
+            if ( openedStream != null )
+            {
+                openedStream.close();
+            }
+        }
+    }
+
+    private static boolean isNamespaceAware( final XMLStreamReader reader )
+    {
+        return !Boolean.FALSE.equals( reader.getProperty( XMLInputFactory.IS_NAMESPACE_AWARE ) );
+    }
+
+    private void dispatch( final int event )
+        throws XMLStreamException, SAXException
+    {
+        switch ( event )
+        {
+            case XMLStreamConstants.START_ELEMENT:
+                if ( namespaceAware )
+                {
+                    for ( int i = 0; i < reader.getNamespaceCount(); i++ )
+                    {
+                        handler.startPrefixMapping( nonNull( reader.getNamespacePrefix( i ) ),
+                                                    nonNull( reader.getNamespaceURI( i ) ) );
+                    }
+                }
+                fillAttributes();
+                handler.startElement( getElementURI(), getElementLocalName(), getElementQName(), attributes );
+                break;
+
+            case XMLStreamConstants.END_ELEMENT:
+                handler.endElement( getElementURI(), getElementLocalName(), getElementQName() );
+                if ( namespaceAware )
+                {
+                    for ( int i = 0; i < reader.getNamespaceCount(); i++ )
+                    {
+                        handler.endPrefixMapping( nonNull( reader.getNamespacePrefix( i ) ) );
+                    }
+                }
+                break;
+
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                handler.characters( reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength() );
+                break;
+
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                handler.processingInstruction( reader.getPITarget(), nonNull( reader.getPIData() ) );
+                break;
+
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                handler.skippedEntity( reader.getLocalName() );
+                break;
+
+            case XMLStreamConstants.END_DOCUMENT:
+                finished = true;
+                handler.endDocument();
+                break;
+
+            default:
+                // comments, DTD and declarations are not delivered to content handlers
+                break;
+        }
+    }
+
+    private void fillAttributes()
+    {
+        attributes.clear();
+        for ( int i = 0; i < reader.getAttributeCount(); i++ )
+        {
+            final String localName = reader.getAttributeLocalName( i );
+            final String qName = qualify( reader.getAttributePrefix( i ), localName );
+            if ( namespaceAware )
+            {
+                attributes.addAttribute( nonNull( reader.getAttributeNamespace( i ) ), localName, qName,
+                                         reader.getAttributeType( i ), reader.getAttributeValue( i ) );
+            }
+            else
+            {
+                // as SAX parsers do, the local name is the qualified one unless the namespaces are processed
+                attributes.addAttribute( "", qName, qName, reader.getAttributeType( i ),
+                                         reader.getAttributeValue( i ) );
+            }
+        }
+    }
+
+    private String getElementURI()
+    {
+        return namespaceAware ? nonNull( reader.getNamespaceURI() ) : "";
+    }
+
+    private String getElementLocalName()
+    {
+        return namespaceAware ? reader.getLocalName() : "";
+    }
+
+    private String getElementQName()
+    {
+        return qualify( reader.getPrefix(), reader.getLocalName() );
+    }
+
+    private static String qualify( final String prefix, final String localName )
+    {
+        return prefix == null || prefix.length() == 0 ? localName : prefix + ':' + localName;
+    }
+
+    private static String nonNull( final String value )
+    {
+        return value == null ? "" : value;
+    }
+
+    // ------------------------------------------------------- Locator Methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPublicId()
+    {
+        final Location location = reader.getLocation();
+        return location == null ? null : location.getPublicId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSystemId()
+    {
+        final Location location = reader.getLocation();
+        return location == null ? null : location.getSystemId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLineNumber()
+    {
+        final Location location = reader.getLocation();
+        return location == null ? -1 : location.getLineNumber();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getColumnNumber()
+    {
+        final Location location = reader.getLocation();
+        return location == null ? -1 : location.getColumnNumber();
+    }
+
+    /**
+     * Resolves the external entities through the SAX {@link EntityResolver} of the source pulling the events on the
+     * current thread, if any.
+     */
+    private static final class CurrentEntityResolver
+        implements XMLResolver
+    {
+
+        static final CurrentEntityResolver INSTANCE = new CurrentEntityResolver();
+
+        private static final ThreadLocal<EntityResolver> CURRENT = new ThreadLocal<EntityResolver>();
+
+        private static final String XML_WHITESPACE = " \t\r\n";
+
+        /**
+         * Binds the given resolver to the current thread.
+         *
+         * @param entityResolver the resolver of the source pulling the events, or <code>null</code>
+         * @return the resolver previously bound to the current thread, to be bound again once the events are pulled
+         */
+        static EntityResolver bind( final EntityResolver entityResolver )
+        {
+            final EntityResolver previous = CURRENT.get();
+            if ( entityResolver == null )
+            {
+                CURRENT.remove();
+            }
+            else
+            {
+                CURRENT.set( entityResolver );
+            }
+            return previous;
+        }
+
+        @Override
+        public Object resolveEntity( final String publicID, final String systemID, final String baseURI,
+                                     final String namespace )
+            throws XMLStreamException
+        {
+            final EntityResolver entityResolver = CURRENT.get();
+            if ( entityResolver == null )
+            {
+                // the default resolution
+                return null;
+            }
+            try
+            {
+                final InputSource source = entityResolver.resolveEntity( publicID, systemID );
+                if ( source == null )
+                {
+                    // the default resolution
+                    return null;
+                }
+                // once the resolver returned a source, the entity is never resolved by default, as with SAX
+                if ( source.getByteStream() != null )
+                {
+                    return source.getByteStream();
+                }
+                if ( source.getCharacterStream() != null )
+                {
+                    return toByteStream( source.getCharacterStream() );
+                }
+                if ( source.getSystemId() != null )
+                {
+                    return new URL( source.getSystemId() ).openStream();
+                }
+                // an empty source, nothing to read
+                return new ByteArrayInputStream( new byte[0] );
+            }
+            catch ( final IOException e )
+            {
+                throw new XMLStreamException( e );
+            }
+            catch ( final SAXException e )
+            {
+                throw new XMLStreamException( e );
+            }
+        }
+
+        /**
+         * Reads the characters of an entity, the only input the StAX resolvers do not accept, as UTF-8 bytes.
+         * The characters are already decoded, so their text declaration, if any, is dropped.
+         *
+         * @param characters the characters of the entity
+         * @return the bytes of the entity
+         * @throws IOException if the characters cannot be read
+         */
+        private static InputStream toByteStream( final Reader characters )
+            throws IOException
+        {
+            final StringBuilder text = new StringBuilder();
+            try
+            {
+                final char[] buffer = new char[4096];
+                int read;
+                while ( ( read = characters.read( buffer ) ) != -1 )
+                {
+                    text.append( buffer, 0, read );
+                }
+            }
+            finally
+            {
+                characters.close();
+            }
+            if ( text.length() > 5 && "<?xml".equals( text.substring( 0, 5 ) )
+                && XML_WHITESPACE.indexOf( text.charAt( 5 ) ) != -1 )
+            {
+                final int end = text.indexOf( "?>" );
+                if ( end != -1 )
+                {
+                    text.delete( 0, end + 2 );
+                }
+            }
+            return new ByteArrayInputStream( text.toString().getBytes( "UTF-8" ) );
+        }
+
+    }
+
+}
@@ -56,7 +56,7 @@ import org.xml.sax.Attributes;
  * @since 1.6
  */
 public class WithDefaultsRulesWrapper
-    implements Rules
+    implements AttributesIndependentRules, PruningRules
 {
 
     // --------------------------------------------------------- Fields
@@ -70,6 +70,12 @@ public class WithDefaultsRulesWrapper
     /** All rules (preserves order in which they were originally added) */
     private final List<Rule> allRules = new ArrayList<Rule>();
 
+    /**
+     * Whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the first
+     * time it is needed.
+     */
+    private Boolean ownMatch;
+
     // --------------------------------------------------------- Constructor
 
     /**
@@ -156,6 +162,39 @@ public class WithDefaultsRulesWrapper
         return matches;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Default rules do not depend on the element attributes, so this is true when the wrapped implementation declares
+     * its matches independent of the attributes, unless a subclass redefines
+     * {@link #match(String, String, String, Attributes)}.
+     * </p>
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean isAttributesIndependent()
+    {
+        return isOwnMatch() && ( wrappedRules instanceof AttributesIndependentRules )
+            && ( (AttributesIndependentRules) wrappedRules ).isAttributesIndependent();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Default rules can match any element, so descendants can not be matched only when there are no default rules and
+     * the wrapped implementation tells so.
+     * </p>
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean canMatchDescendants( final String pattern )
+    {
+        return !isOwnMatch() || !defaultRules.isEmpty() || !( wrappedRules instanceof PruningRules )
+            || ( (PruningRules) wrappedRules ).canMatchDescendants( pattern );
+    }
+
     /**
      * Adds a rule to be fired when wrapped implementation returns no matches
      *
@@ -208,4 +247,21 @@ public class WithDefaultsRulesWrapper
         allRules.add( rule );
     }
 
+    // --------------------------------------------------------- Private Methods
+
+    /**
+     * Checks whether {@link #match(String, String, String, Attributes)} is not redefined by a subclass. Evaluated the
+     * first time it is needed.
+     *
+     * @return true, if the <code>match</code> method is implemented by this class
+     */
+    private boolean isOwnMatch()
+    {
+        if ( ownMatch == null )
+        {
+            ownMatch = AbstractRulesImpl.isMatchDeclaredBy( this, WithDefaultsRulesWrapper.class );
+        }
+        return ownMatch;
+    }
+
 }
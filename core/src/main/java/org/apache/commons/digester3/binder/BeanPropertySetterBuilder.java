@@ -20,6 +20,7 @@ package org.apache.commons.digester3.binder;
  */
 
 import org.apache.commons.digester3.BeanPropertySetterRule;
+import org.apache.commons.digester3.PrimitivePropertySetterRule;
 
 /**
  * Builder chained when invoking {@link LinkedRuleBuilder#setBeanProperty()}.
@@ -32,6 +33,8 @@ public final class BeanPropertySetterBuilder
 
     private String attribute;
 
+    private boolean parsingPrimitives;
+
     BeanPropertySetterBuilder( final String keyPattern, final String namespaceURI, final RulesBinder mainBinder,
                                final LinkedRuleBuilder mainBuilder )
     {
@@ -67,13 +70,38 @@ public final class BeanPropertySetterBuilder
         return this;
     }
 
+    /**
+     * Parses the body text straight from the characters accumulated by the digester, for the properties of numeric
+     * types.
+     *
+     * @return this builder instance
+     * @see PrimitivePropertySetterRule
+     * @since 3.3
+     */
+    public BeanPropertySetterBuilder parsingPrimitives()
+    {
+        this.parsingPrimitives = true;
+        return this;
+    }
+
+    final String getPropertyName()
+    {
+        return propertyName;
+    }
+
+    final String getAttribute()
+    {
+        return attribute;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected BeanPropertySetterRule createRule()
     {
-        final BeanPropertySetterRule rule = new BeanPropertySetterRule( propertyName );
+        final BeanPropertySetterRule rule = parsingPrimitives ? new PrimitivePropertySetterRule( propertyName )
+                        : new BeanPropertySetterRule( propertyName );
         rule.setPropertyNameFromAttribute( attribute );
         return rule;
     }
@@ -0,0 +1,96 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} reading the bytes of a {@link ByteBuffer}, from its position to its limit, without copying
+ * them first. The buffer position is advanced as the bytes are read.
+ *
+ * @since 3.3
+ */
+final class ByteBufferInputStream
+    extends InputStream
+{
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new stream reading the given buffer.
+     *
+     * @param buffer the buffer to read, from its position to its limit
+     */
+    ByteBufferInputStream( final ByteBuffer buffer )
+    {
+        this.buffer = buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read()
+    {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read( final byte[] b, final int off, final int len )
+    {
+        if ( len == 0 )
+        {
+            return 0;
+        }
+        if ( !buffer.hasRemaining() )
+        {
+            return -1;
+        }
+        final int count = Math.min( len, buffer.remaining() );
+        buffer.get( b, off, count );
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long skip( final long n )
+    {
+        final int count = (int) Math.max( 0, Math.min( n, buffer.remaining() ) );
+        buffer.position( buffer.position() + count );
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int available()
+    {
+        return buffer.remaining();
+    }
+
+}
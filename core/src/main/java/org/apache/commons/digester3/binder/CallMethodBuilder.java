@@ -184,6 +184,31 @@ public final class CallMethodBuilder
         return withParamCount( 0 );
     }
 
+    final String getMethodName()
+    {
+        return methodName;
+    }
+
+    final int getTargetOffset()
+    {
+        return targetOffset;
+    }
+
+    final int getParamCount()
+    {
+        return paramCount;
+    }
+
+    final Class<?>[] getParamTypes()
+    {
+        return paramTypes;
+    }
+
+    final boolean isUseExactMatch()
+    {
+        return useExactMatch;
+    }
+
     /**
      * {@inheritDoc}
      */
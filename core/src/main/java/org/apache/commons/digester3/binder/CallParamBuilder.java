@@ -20,6 +20,7 @@ package org.apache.commons.digester3.binder;
  */
 
 import org.apache.commons.digester3.CallParamRule;
+import org.apache.commons.digester3.PrimitiveCallParamRule;
 
 /**
  * Builder chained when invoking {@link LinkedRuleBuilder#callParam()}.
@@ -38,6 +39,8 @@ public final class CallParamBuilder
 
     private String attributeName;
 
+    private Class<?> parsedType;
+
     CallParamBuilder( final String keyPattern, final String namespaceURI, final RulesBinder mainBinder, final LinkedRuleBuilder mainBuilder )
     {
         super( keyPattern, namespaceURI, mainBinder, mainBuilder );
@@ -97,6 +100,32 @@ public final class CallParamBuilder
         return this;
     }
 
+    /**
+     * Parses the body text as the given type, straight from the characters accumulated by the digester.
+     *
+     * @param type the type the body text is parsed as: <code>int</code>, <code>long</code>, <code>double</code>, their
+     *            wrappers, or <code>BigDecimal</code>
+     * @return this builder instance
+     * @see PrimitiveCallParamRule
+     * @since 3.3
+     */
+    public CallParamBuilder parsedAs( final Class<?> type )
+    {
+        if ( type == null )
+        {
+            reportError( "callParam().parsedAs( Class<?> )", "NULL Java type not allowed" );
+            return this;
+        }
+        if ( !PrimitiveCallParamRule.canParse( type ) )
+        {
+            reportError( "callParam().parsedAs( Class<?> )",
+                         String.format( "type '%s' can not be parsed", type.getName() ) );
+            return this;
+        }
+        this.parsedType = type;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -109,6 +138,10 @@ public final class CallParamBuilder
         {
             rule = new CallParamRule( paramIndex, stackIndex );
         }
+        else if ( parsedType != null && attributeName == null )
+        {
+            rule = new PrimitiveCallParamRule( paramIndex, parsedType );
+        }
         else
         {
             rule = new CallParamRule( paramIndex );
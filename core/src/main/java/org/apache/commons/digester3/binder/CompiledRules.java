@@ -0,0 +1,291 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.digester3.AbstractRulesImpl;
+import org.apache.commons.digester3.AttributesIndependentRules;
+import org.apache.commons.digester3.Digester;
+import org.apache.commons.digester3.LazyRules;
+import org.apache.commons.digester3.PruningRules;
+import org.apache.commons.digester3.Rule;
+import org.apache.commons.digester3.Rules;
+import org.apache.commons.digester3.RulesBase;
+import org.xml.sax.Attributes;
+
+/**
+ * The rules bound by the modules of a {@link DigesterLoader}, compiled once and shared by all the {@link Digester}
+ * instances they are used for.
+ * <p>
+ * Rule instances hold the state of the parse they take part in, so every Digester needs its own ones. Instances of
+ * this class only keep, immutable, the patterns of the bound rules indexed with the {@link RulesBase} matching
+ * policy; the {@link Rules} returned by {@link #newRules()} just select the matching rules through that index, and
+ * create each rule the first time one of its elements is met. Creating a new Digester does not need to create nor
+ * to register any rule in advance, and the rules never matched are never created: they are {@link LazyRules}.
+ * <p>
+ * Each rule is created by the {@link RuleProvider} it was bound with, on the thread parsing the document, the first
+ * time one of its elements is met. The Digesters created with these rules may run on any thread, so the providers,
+ * including the ones given to {@link LinkedRuleBuilder#addRuleCreatedBy(RuleProvider)}, have to be thread safe, as the
+ * providers of the built-in rules are: {@link RuleProvider#get()} may be invoked concurrently.
+ * <p>
+ * Instances of this class are thread safe, while the {@link Rules} they create are not and must not be shared.
+ *
+ * @see DigesterLoader#compileRules()
+ * @since 3.3
+ */
+public final class CompiledRules
+{
+
+    /**
+     * The providers of the bound rules, in the order they were bound.
+     */
+    private final AbstractBackToLinkedRuleBuilder<?>[] providers;
+
+    /**
+     * The index of the bound rule patterns, only holding {@link Placeholder} instances; never modified once built.
+     */
+    private final RulesBase template = new RulesBase();
+
+    /**
+     * Creates a new instance compiling the rules registered in the given rule set.
+     *
+     * @param ruleSet the rule set where the rule providers have been registered
+     */
+    CompiledRules( final FromBinderRuleSet ruleSet )
+    {
+        providers = ruleSet.getProviders().toArray( new AbstractBackToLinkedRuleBuilder<?>[0] );
+        for ( int i = 0; i < providers.length; i++ )
+        {
+            final Placeholder placeholder = new Placeholder( i );
+            placeholder.setNamespaceURI( providers[i].getNamespaceURI() );
+            template.add( providers[i].getPattern(), placeholder );
+        }
+    }
+
+    /**
+     * Creates a new {@link Rules} instance, holding the compiled rules, to be set to a new {@link Digester}.
+     * <p>
+     * Adding or removing rules is supported as well: in that case, the returned instance creates all the compiled
+     * rules and falls back to a {@link RulesBase} holding them.
+     *
+     * @return a new {@link Rules} instance holding the compiled rules
+     */
+    public Rules newRules()
+    {
+        return new SharedRules( this );
+    }
+
+    /**
+     * Checks whether the given rules have been created by this instance.
+     *
+     * @param rules the rules to be checked
+     * @return true, if the given rules have been created by this instance
+     */
+    boolean isSourceOf( final Rules rules )
+    {
+        return rules instanceof SharedRules && ( (SharedRules) rules ).compiledRules == this;
+    }
+
+    /**
+     * Stands for a bound rule in the patterns index.
+     */
+    private static final class Placeholder
+        extends Rule
+    {
+
+        final int index;
+
+        Placeholder( final int index )
+        {
+            this.index = index;
+        }
+
+    }
+
+    /**
+     * The rules of a single Digester, created the first time they are matched.
+     */
+    private static final class SharedRules
+        extends AbstractRulesImpl
+        implements AttributesIndependentRules, LazyRules, PruningRules
+    {
+
+        private final CompiledRules compiledRules;
+
+        /** The rules created so far, indexed as their providers. */
+        private final Rule[] instances;
+
+        /** The lists of rules already returned, keyed by the list of placeholders they stand for. */
+        private final Map<List<Rule>, List<Rule>> matches = new IdentityHashMap<List<Rule>, List<Rule>>();
+
+        /** The rules all the calls are delegated to, once a rule is added or removed. */
+        private RulesBase delegate;
+
+        SharedRules( final CompiledRules compiledRules )
+        {
+            this.compiledRules = compiledRules;
+            this.instances = new Rule[compiledRules.providers.length];
+        }
+
+        @Override
+        public void setDigester( final Digester digester )
+        {
+            super.setDigester( digester );
+            if ( delegate != null )
+            {
+                delegate.setDigester( digester );
+                return;
+            }
+            for ( final Rule rule : instances )
+            {
+                if ( rule != null )
+                {
+                    rule.setDigester( digester );
+                }
+            }
+        }
+
+        @Override
+        protected void registerRule( final String pattern, final Rule rule )
+        {
+            getDelegate().add( pattern, rule );
+        }
+
+        @Override
+        public void clear()
+        {
+            delegate = new RulesBase();
+            delegate.setDigester( getDigester() );
+            matches.clear();
+        }
+
+        @Override
+        public List<Rule> match( final String namespaceURI, final String pattern, final String name,
+                                 final Attributes attributes )
+        {
+            if ( delegate != null )
+            {
+                return delegate.match( namespaceURI, pattern, name, attributes );
+            }
+
+            final List<Rule> placeholders = compiledRules.template.match( namespaceURI, pattern, name, attributes );
+            if ( placeholders.isEmpty() )
+            {
+                return placeholders;
+            }
+            List<Rule> rules = matches.get( placeholders );
+            if ( rules == null )
+            {
+                final ArrayList<Rule> list = new ArrayList<Rule>( placeholders.size() );
+                for ( final Rule placeholder : placeholders )
+                {
+                    list.add( getInstance( ( (Placeholder) placeholder ).index ) );
+                }
+                rules = Collections.unmodifiableList( list );
+                matches.put( placeholders, rules );
+            }
+            return rules;
+        }
+
+        @Override
+        public List<Rule> rules()
+        {
+            if ( delegate != null )
+            {
+                return delegate.rules();
+            }
+
+            final List<Rule> rules = new ArrayList<Rule>( instances.length );
+            for ( int i = 0; i < instances.length; i++ )
+            {
+                rules.add( getInstance( i ) );
+            }
+            return rules;
+        }
+
+        @Override
+        public List<Rule> createdRules()
+        {
+            if ( delegate != null )
+            {
+                return delegate.rules();
+            }
+
+            final List<Rule> rules = new ArrayList<Rule>();
+            for ( final Rule rule : instances )
+            {
+                if ( rule != null )
+                {
+                    rules.add( rule );
+                }
+            }
+            return rules;
+        }
+
+        @Override
+        public boolean isAttributesIndependent()
+        {
+            return delegate == null || delegate.isAttributesIndependent();
+        }
+
+        @Override
+        public boolean canMatchDescendants( final String pattern )
+        {
+            return ( delegate != null ? delegate : compiledRules.template ).canMatchDescendants( pattern );
+        }
+
+        private Rule getInstance( final int index )
+        {
+            Rule rule = instances[index];
+            if ( rule == null )
+            {
+                rule = compiledRules.providers[index].get();
+                if ( getDigester() != null )
+                {
+                    rule.setDigester( getDigester() );
+                }
+                instances[index] = rule;
+            }
+            return rule;
+        }
+
+        private RulesBase getDelegate()
+        {
+            if ( delegate == null )
+            {
+                delegate = new RulesBase();
+                delegate.setDigester( getDigester() );
+                for ( int i = 0; i < instances.length; i++ )
+                {
+                    delegate.add( compiledRules.providers[i].getPattern(), getInstance( i ) );
+                }
+                matches.clear();
+            }
+            return delegate;
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.commons.digester3.ConsumeObjectRule;
+import org.apache.commons.digester3.ObjectConsumer;
+
+/**
+ * Builder chained when invoking {@link LinkedRuleBuilder#consumeObject(Class, ObjectConsumer)}.
+ *
+ * @param <T> The type of the objects consumed
+ * @since 3.3
+ */
+public final class ConsumeObjectBuilder<T>
+    extends AbstractBackToLinkedRuleBuilder<ConsumeObjectRule>
+{
+
+    private final Class<T> type;
+
+    private final ObjectConsumer<? super T> consumer;
+
+    ConsumeObjectBuilder( final String keyPattern, final String namespaceURI, final RulesBinder mainBinder,
+                          final LinkedRuleBuilder mainBuilder, final Class<T> type,
+                          final ObjectConsumer<? super T> consumer )
+    {
+        super( keyPattern, namespaceURI, mainBinder, mainBuilder );
+        this.type = type;
+        this.consumer = consumer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ConsumeObjectRule createRule()
+    {
+        return new ConsumeObjectRule( type, consumer );
+    }
+
+}
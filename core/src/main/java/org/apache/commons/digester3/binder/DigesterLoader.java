@@ -37,6 +37,7 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
 
+import org.apache.commons.digester3.ConversionRegistry;
 import org.apache.commons.digester3.Digester;
 import org.apache.commons.digester3.RuleSet;
 import org.apache.commons.digester3.Rules;
@@ -125,6 +126,11 @@ public final class DigesterLoader
      */
     private Substitutor substitutor;
 
+    /**
+     * The registry converting the strings taken from the document, if null <code>ConvertUtils</code> is used.
+     */
+    private ConversionRegistry conversionRegistry;
+
     /**
      * The EntityResolver used by the SAX parser. By default it use this class
      */
@@ -153,6 +159,42 @@ public final class DigesterLoader
      */
     private Locator locator = null;
 
+    /**
+     * Whether the created digesters skip the content of the elements whose descendants can not be matched.
+     * @since 3.3
+     */
+    private boolean subtreePruning = false;
+
+    /**
+     * Whether the created digesters index the attributes of the elements their rules are fired for.
+     * @since 3.3
+     */
+    private boolean attributeIndexing = false;
+
+    /**
+     * Whether the created digesters read the input sources with a StAX parser.
+     * @since 3.3
+     */
+    private boolean pullParsing = false;
+
+    /**
+     * Whether the invocation targets of the bound rules are resolved before the rules are returned.
+     * @since 3.3
+     */
+    private boolean eagerBinding = false;
+
+    /**
+     * Whether the invocation targets of the currently bound rules have already been resolved.
+     * @since 3.3
+     */
+    private volatile boolean eagerlyBound = false;
+
+    /**
+     * The rules compiled from the modules, built the first time they are requested.
+     * @since 3.3
+     */
+    private volatile CompiledRules compiledRules;
+
     /**
      * Creates a new {@link DigesterLoader} instance given a collection of {@link RulesModule} instance.
      *
@@ -207,6 +249,8 @@ public final class DigesterLoader
         {
             rulesModule.configure( rulesBinder );
         }
+        compiledRules = null;
+        eagerlyBound = false;
 
         return this;
     }
@@ -224,6 +268,34 @@ public final class DigesterLoader
         return this;
     }
 
+    /**
+     * Sets the <code>ConversionRegistry</code> the rules convert the strings taken from the document with, shared by
+     * all the digesters created by this loader.
+     *
+     * @param conversionRegistry the <code>ConversionRegistry</code> the rules convert the strings taken from the
+     *        document with, or null if <code>ConvertUtils</code> has to be used
+     * @return This loader instance, useful to chain methods.
+     * @see Digester#setConversionRegistry(ConversionRegistry)
+     * @since 3.3
+     */
+    public DigesterLoader setConversionRegistry( final ConversionRegistry conversionRegistry )
+    {
+        this.conversionRegistry = conversionRegistry;
+        return this;
+    }
+
+    /**
+     * Returns the <code>ConversionRegistry</code> the rules convert the strings taken from the document with.
+     *
+     * @return the <code>ConversionRegistry</code> the rules convert the strings taken from the document with, null if
+     *         <code>ConvertUtils</code> is used
+     * @since 3.3
+     */
+    public ConversionRegistry getConversionRegistry()
+    {
+        return conversionRegistry;
+    }
+
     /**
      * Set the "namespace aware" flag for parsers we create.
      *
@@ -482,6 +554,131 @@ public final class DigesterLoader
         return this;
     }
 
+    /**
+     * Set the subtree pruning flag of the digesters we create.
+     *
+     * @param subtreePruning The new subtree pruning flag
+     * @return This loader instance, useful to chain methods.
+     * @see Digester#setSubtreePruning(boolean)
+     * @since 3.3
+     */
+    public DigesterLoader setSubtreePruning( final boolean subtreePruning )
+    {
+        this.subtreePruning = subtreePruning;
+        return this;
+    }
+
+    /**
+     * Return the subtree pruning flag of the digesters we create.
+     *
+     * @return true, if the digesters we create skip the content of the elements whose descendants can not be matched
+     * @since 3.3
+     */
+    public boolean isSubtreePruning()
+    {
+        return subtreePruning;
+    }
+
+    /**
+     * Set the attribute indexing flag of the digesters we create.
+     *
+     * @param attributeIndexing The new attribute indexing flag
+     * @return This loader instance, useful to chain methods.
+     * @see Digester#setAttributeIndexing(boolean)
+     * @since 3.3
+     */
+    public DigesterLoader setAttributeIndexing( final boolean attributeIndexing )
+    {
+        this.attributeIndexing = attributeIndexing;
+        return this;
+    }
+
+    /**
+     * Return the attribute indexing flag of the digesters we create.
+     *
+     * @return true, if the digesters we create index the attributes of the elements their rules are fired for
+     * @since 3.3
+     */
+    public boolean isAttributeIndexing()
+    {
+        return attributeIndexing;
+    }
+
+    /**
+     * Set the pull parsing flag of the digesters we create.
+     *
+     * @param pullParsing The new pull parsing flag
+     * @return This loader instance, useful to chain methods.
+     * @see Digester#setPullParsing(boolean)
+     * @since 3.3
+     */
+    public DigesterLoader setPullParsing( final boolean pullParsing )
+    {
+        this.pullParsing = pullParsing;
+        return this;
+    }
+
+    /**
+     * Return the pull parsing flag of the digesters we create.
+     *
+     * @return true, if the digesters we create read the input sources with a StAX parser
+     * @since 3.3
+     */
+    public boolean isPullParsing()
+    {
+        return pullParsing;
+    }
+
+    /**
+     * Set whether the constructors, methods and properties the bound rules invoke are resolved once, the first time
+     * the rules are requested, instead of during the first parse.
+     * <p>
+     * The types of the objects the rules are applied to are inferred from the {@code createObject()} rules matching
+     * the literal patterns, so the targets that can not be resolved are reported as errors in the
+     * {@link DigesterLoadingException} thrown by {@link #createRuleSet()}, while the resolved ones populate the
+     * BeanUtils introspection caches, so that the first parse does not have to.
+     * <p>
+     * Only the validation and the shared BeanUtils caches are eager: each rule instance still resolves its own
+     * property setters and methods, and the classes named in the documents are still loaded, the first time the rule
+     * is applied, since the rule instances are created for every {@link Digester}.
+     *
+     * @param eagerBinding true, to resolve the invocation targets of the bound rules in advance
+     * @return This loader instance, useful to chain methods.
+     * @since 3.3
+     */
+    public DigesterLoader setEagerBinding( final boolean eagerBinding )
+    {
+        this.eagerBinding = eagerBinding;
+        return this;
+    }
+
+    /**
+     * Return whether the invocation targets of the bound rules are resolved in advance.
+     *
+     * @return true, if the invocation targets of the bound rules are resolved the first time the rules are requested
+     * @since 3.3
+     */
+    public boolean isEagerBinding()
+    {
+        return eagerBinding;
+    }
+
+    /**
+     * Creates a new {@link ParallelDigester} that parses large flat documents on several threads, with digesters
+     * created by this loader.
+     *
+     * @param <T> the type of the results
+     * @param recordPattern the path of the records the documents are split between, from the root element, as
+     *        <code>catalog/item</code>
+     * @param combiner merges in order the results of the parts of the documents
+     * @return a new {@link ParallelDigester} instance
+     * @since 3.3
+     */
+    public <T> ParallelDigester<T> newParallelDigester( final String recordPattern, final ResultCombiner<T> combiner )
+    {
+        return new ParallelDigester<T>( this, recordPattern, combiner );
+    }
+
     /**
      * Creates a new {@link Digester} instance that relies on the default {@link Rules} implementation.
      *
@@ -573,6 +770,9 @@ public final class DigesterLoader
      * <b>WARNING</b> Input {@link XMLReader} and {@link Rules} will be linked to built Digester instance,
      * so it is recommended to <b>NOT</b> share same {@link XMLReader} and {@link Rules} instance to produce the Digester.
      *
+     * The rules bound by the modules are added to the given {@link Rules}, unless they have been created by the
+     * {@link CompiledRules} of this loader, that already hold them.
+     *
      * @param reader The user defined {@code XMLReader}
      * @param rules The custom user define {@link Rules} implementation
      * @return a new {@link Digester} instance
@@ -593,6 +793,7 @@ public final class DigesterLoader
         digester.setClassLoader( classLoader.getAdaptedClassLoader() );
         digester.setRules( rules );
         digester.setSubstitutor( substitutor );
+        digester.setConversionRegistry( conversionRegistry );
         digester.registerAll( entityValidator );
         digester.setEntityResolver( entityResolver );
         digester.setStackAction( stackAction );
@@ -600,8 +801,15 @@ public final class DigesterLoader
         digester.setExecutorService( executorService );
         digester.setErrorHandler( errorHandler );
         digester.setDocumentLocator( locator );
+        digester.setSubtreePruning( subtreePruning );
+        digester.setAttributeIndexing( attributeIndexing );
+        digester.setPullParsing( pullParsing );
 
-        addRules( digester );
+        final CompiledRules compiled = compiledRules;
+        if ( compiled == null || !compiled.isSourceOf( rules ) )
+        {
+            addRules( digester );
+        }
 
         return digester;
     }
@@ -617,6 +825,42 @@ public final class DigesterLoader
         ruleSet.addRuleInstances( digester );
     }
 
+    /**
+     * Compiles the rules bound by the modules in an immutable, thread safe, {@link CompiledRules} instance, that can be
+     * shared to create any number of digesters without creating and registering all the rules every time:
+     *
+     * <pre>
+     * CompiledRules compiledRules = loader.compileRules(); // once
+     * Digester digester = loader.newDigester( compiledRules.newRules() ); // every time
+     * </pre>
+     *
+     * The rules are compiled once, the first time this method is invoked, unless the class loader is changed. The
+     * rules are then created by their {@link RuleProvider}s on the threads using the digesters, which requires the
+     * providers to be thread safe.
+     *
+     * @return the rules bound by the modules, compiled
+     * @since 3.3
+     */
+    public CompiledRules compileRules()
+    {
+        CompiledRules compiled = compiledRules;
+        if ( compiled == null )
+        {
+            synchronized ( this )
+            {
+                compiled = compiledRules;
+                if ( compiled == null )
+                {
+                    // reports the binding errors, if any
+                    createRuleSet();
+                    compiled = new CompiledRules( rulesBinder.getFromBinderRuleSet() );
+                    compiledRules = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+
     /**
      * Creates a new {@link RuleSet} instance based on the current configuration.
      *
@@ -624,6 +868,11 @@ public final class DigesterLoader
      */
     public RuleSet createRuleSet()
     {
+        if ( eagerBinding && !eagerlyBound )
+        {
+            bindEagerly();
+        }
+
         if ( rulesBinder.hasError() )
         {
             final Formatter fmt = new Formatter().format( HEADING );
@@ -659,4 +908,20 @@ public final class DigesterLoader
         return rulesBinder.getFromBinderRuleSet();
     }
 
+    /**
+     * Resolves the invocation targets of the bound rules, once, reporting the unresolvable ones to the rules binder.
+     */
+    private synchronized void bindEagerly()
+    {
+        if ( !eagerlyBound )
+        {
+            // binding errors would make the inferred types unreliable
+            if ( !rulesBinder.hasError() )
+            {
+                new EagerBinder( rulesBinder, rulesBinder.getFromBinderRuleSet() ).bind();
+            }
+            eagerlyBound = true;
+        }
+    }
+
 }
@@ -0,0 +1,443 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import static org.apache.commons.beanutils.ConstructorUtils.getAccessibleConstructor;
+import static org.apache.commons.beanutils.MethodUtils.getAccessibleMethod;
+import static org.apache.commons.beanutils.MethodUtils.getMatchingAccessibleMethod;
+import static org.apache.commons.beanutils.PropertyUtils.getPropertyDescriptors;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.digester3.Rule;
+import org.apache.commons.digester3.RulesBase;
+
+/**
+ * Resolves, when the rules are bound, the constructors, methods and properties the bound rules will invoke, so that
+ * the BeanUtils introspection caches are already populated before the first parse, and the ones that can not be
+ * resolved are reported as binding errors.
+ * <p>
+ * The types of the objects on the stack are inferred following, element by element, the rules matching every literal
+ * pattern, with the {@link RulesBase} matching policy: only the objects created by {@link ObjectCreateBuilder} rules
+ * with a known type are followed, while any other rule that may change the stack, such as factories or custom rules,
+ * stops the analysis of that pattern. Patterns containing wildcards are not analyzed, nor the objects pushed by the
+ * application before the parse.
+ * <p>
+ * Only the rule providers are known when the rules are bound, so the caches of the rule instances, such as their
+ * property setters and methods, and the classes loaded by name at parse time, are not populated here.
+ *
+ * @see DigesterLoader#setEagerBinding(boolean)
+ * @since 3.3
+ */
+final class EagerBinder
+{
+
+    /**
+     * The rules binder where unresolvable invocation targets are reported.
+     */
+    private final RulesBinder rulesBinder;
+
+    /**
+     * The bound rule providers, in the order they were bound.
+     */
+    private final AbstractBackToLinkedRuleBuilder<?>[] providers;
+
+    /**
+     * The index of the bound rule patterns, only holding {@link Marker} instances.
+     */
+    private final RulesBase template = new RulesBase();
+
+    /**
+     * Creates a new instance for the rules registered in the given rule set.
+     *
+     * @param rulesBinder the rules binder where unresolvable invocation targets are reported
+     * @param ruleSet the rule set where the rule providers have been registered
+     */
+    EagerBinder( final RulesBinder rulesBinder, final FromBinderRuleSet ruleSet )
+    {
+        this.rulesBinder = rulesBinder;
+        providers = ruleSet.getProviders().toArray( new AbstractBackToLinkedRuleBuilder<?>[0] );
+        for ( int i = 0; i < providers.length; i++ )
+        {
+            final Marker marker = new Marker( i );
+            marker.setNamespaceURI( providers[i].getNamespaceURI() );
+            template.add( providers[i].getPattern(), marker );
+        }
+    }
+
+    /**
+     * Resolves the invocation targets of all the bound rules with a literal pattern.
+     */
+    void bind()
+    {
+        for ( final AbstractBackToLinkedRuleBuilder<?> provider : providers )
+        {
+            final String pattern = provider.getPattern();
+            if ( pattern == null || pattern.length() == 0 || isWildcard( pattern ) )
+            {
+                continue;
+            }
+            final List<Class<?>> stack = inferStack( provider );
+            if ( stack != null )
+            {
+                bind( provider, stack );
+            }
+        }
+    }
+
+    /**
+     * Infers the types of the objects on the stack when the given provider rule is fired, the top being the last one.
+     *
+     * @param provider the rule provider
+     * @return the inferred types, <code>null</code> if they can not be inferred
+     */
+    private List<Class<?>> inferStack( final AbstractBackToLinkedRuleBuilder<?> provider )
+    {
+        final String pattern = provider.getPattern();
+        final String namespaceURI = provider.getNamespaceURI();
+        final List<Class<?>> stack = new ArrayList<Class<?>>();
+
+        int end = -1;
+        do
+        {
+            end = pattern.indexOf( '/', end + 1 );
+            final String path = end == -1 ? pattern : pattern.substring( 0, end );
+            final String name = path.substring( path.lastIndexOf( '/' ) + 1 );
+            for ( final Rule rule : template.match( namespaceURI, path, name, null ) )
+            {
+                final AbstractBackToLinkedRuleBuilder<?> matched = providers[( (Marker) rule ).index];
+                if ( !push( matched, stack ) )
+                {
+                    return null;
+                }
+                if ( matched == provider )
+                {
+                    return stack;
+                }
+            }
+        }
+        while ( end != -1 );
+
+        return null;
+    }
+
+    /**
+     * Simulates the effect on the stack of the given rule provider.
+     *
+     * @param provider the rule provider
+     * @param stack the inferred types of the objects on the stack
+     * @return true, if the effect of the rule on the stack is known
+     */
+    private static boolean push( final AbstractBackToLinkedRuleBuilder<?> provider, final List<Class<?>> stack )
+    {
+        if ( provider instanceof ObjectCreateBuilder )
+        {
+            final ObjectCreateBuilder builder = (ObjectCreateBuilder) provider;
+            // the class name in the attribute, if any, is known only at parse time
+            stack.add( builder.getAttributeName() == null ? builder.getType() : null );
+            return true;
+        }
+        return provider instanceof BeanPropertySetterBuilder
+            || provider instanceof CallMethodBuilder
+            || provider instanceof ConsumeObjectBuilder
+            || provider instanceof CallParamBuilder
+            || provider instanceof ObjectParamBuilder
+            || provider instanceof PathCallParamBuilder
+            || provider instanceof AbstractParamTypeBuilder
+            || provider instanceof SetPropertiesBuilder
+            || provider instanceof SetPropertyBuilder
+            || provider instanceof NestedPropertiesBuilder;
+    }
+
+    /**
+     * Resolves the invocation targets of the given rule provider.
+     *
+     * @param provider the rule provider
+     * @param stack the inferred types of the objects on the stack when the rule is fired
+     */
+    private void bind( final AbstractBackToLinkedRuleBuilder<?> provider, final List<Class<?>> stack )
+    {
+        if ( provider instanceof ObjectCreateBuilder )
+        {
+            bindObjectCreate( (ObjectCreateBuilder) provider, peek( stack, 0 ) );
+        }
+        else if ( provider instanceof CallMethodBuilder )
+        {
+            bindCallMethod( (CallMethodBuilder) provider, stack );
+        }
+        else if ( provider instanceof SetNextBuilder )
+        {
+            bindMethod( (AbstractParamTypeBuilder<?>) provider, peek( stack, 1 ), peek( stack, 0 ) );
+        }
+        else if ( provider instanceof SetTopBuilder )
+        {
+            bindMethod( (AbstractParamTypeBuilder<?>) provider, peek( stack, 0 ), peek( stack, 1 ) );
+        }
+        else if ( provider instanceof BeanPropertySetterBuilder )
+        {
+            bindBeanPropertySetter( (BeanPropertySetterBuilder) provider, peek( stack, 0 ) );
+        }
+        else if ( provider instanceof SetPropertiesBuilder )
+        {
+            bindSetProperties( (SetPropertiesBuilder) provider, peek( stack, 0 ) );
+        }
+    }
+
+    private void bindObjectCreate( final ObjectCreateBuilder provider, final Class<?> type )
+    {
+        if ( type == null )
+        {
+            return;
+        }
+        if ( type.isInterface() || Modifier.isAbstract( type.getModifiers() ) )
+        {
+            addError( provider, "class '%s' cannot be instantiated", type.getName() );
+            return;
+        }
+
+        final Class<?>[] constructorArgumentsType = provider.getConstructorArgumentsType();
+        if ( constructorArgumentsType == null || constructorArgumentsType.length == 0 )
+        {
+            try
+            {
+                type.getDeclaredConstructor();
+            }
+            catch ( final NoSuchMethodException e )
+            {
+                addError( provider, "class '%s' does not have a default constructor", type.getName() );
+            }
+        }
+        else if ( getAccessibleConstructor( type, constructorArgumentsType ) == null )
+        {
+            addError( provider, "class '%s' does not have an accessible constructor with types %s", type.getName(),
+                      Arrays.toString( constructorArgumentsType ) );
+        }
+    }
+
+    private void bindCallMethod( final CallMethodBuilder provider, final List<Class<?>> stack )
+    {
+        // negative offsets are relative to the bottom of the stack, that is not known
+        if ( provider.getTargetOffset() < 0 )
+        {
+            return;
+        }
+        final Class<?> targetType = peek( stack, provider.getTargetOffset() );
+        if ( targetType == null )
+        {
+            return;
+        }
+
+        Class<?>[] paramTypes = provider.getParamTypes();
+        if ( paramTypes == null )
+        {
+            paramTypes = new Class<?>[provider.getParamCount()];
+            Arrays.fill( paramTypes, String.class );
+        }
+        resolveMethod( provider, targetType, provider.getMethodName(), paramTypes, provider.isUseExactMatch() );
+    }
+
+    private void bindMethod( final AbstractParamTypeBuilder<?> provider, final Class<?> targetType,
+                             final Class<?> argumentType )
+    {
+        if ( targetType == null )
+        {
+            return;
+        }
+
+        Class<?> paramType = provider.getParamType();
+        if ( paramType == null )
+        {
+            // the exact match is done at parse time against the class of the argument, that may be a subclass
+            if ( argumentType == null || provider.isUseExactMatch() )
+            {
+                return;
+            }
+            paramType = argumentType;
+        }
+        resolveMethod( provider, targetType, provider.getMethodName(), new Class<?>[] { paramType },
+                       provider.isUseExactMatch() );
+    }
+
+    private void resolveMethod( final AbstractBackToLinkedRuleBuilder<?> provider, final Class<?> targetType,
+                                final String methodName, final Class<?>[] paramTypes, final boolean useExactMatch )
+    {
+        // populates the MethodUtils cache as well
+        if ( useExactMatch )
+        {
+            if ( getAccessibleMethod( targetType, methodName, paramTypes ) == null )
+            {
+                addError( provider, "no accessible method %s%s on class '%s'", methodName,
+                          toString( paramTypes ), targetType.getName() );
+            }
+        }
+        else if ( getMatchingAccessibleMethod( targetType, methodName, paramTypes ) == null )
+        {
+            addError( provider, "no matching accessible method %s%s on class '%s'", methodName,
+                      toString( paramTypes ), targetType.getName() );
+        }
+    }
+
+    private void bindBeanPropertySetter( final BeanPropertySetterBuilder provider, final Class<?> type )
+    {
+        if ( type == null || provider.getAttribute() != null || !isIntrospected( type ) )
+        {
+            return;
+        }
+
+        String propertyName = provider.getPropertyName();
+        if ( propertyName == null )
+        {
+            // the element name
+            final String pattern = provider.getPattern();
+            propertyName = pattern.substring( pattern.lastIndexOf( '/' ) + 1 );
+        }
+        if ( isSimpleName( propertyName ) && getPropertyDescriptor( type, propertyName ) == null )
+        {
+            addError( provider, "class '%s' has no property named '%s'", type.getName(), propertyName );
+        }
+    }
+
+    private void bindSetProperties( final SetPropertiesBuilder provider, final Class<?> type )
+    {
+        if ( type == null || !isIntrospected( type ) )
+        {
+            return;
+        }
+
+        // populates the PropertyUtils cache as well
+        final PropertyDescriptor[] descriptors = getPropertyDescriptors( type );
+        if ( provider.isIgnoreMissingProperty() )
+        {
+            return;
+        }
+        for ( final Map.Entry<String, String> alias : provider.getAliases().entrySet() )
+        {
+            final String propertyName = alias.getValue();
+            if ( propertyName != null && isSimpleName( propertyName )
+                && findWriteable( descriptors, propertyName ) == null )
+            {
+                addError( provider, "class '%s' has no writeable property named '%s' for the attribute '%s'",
+                          type.getName(), propertyName, alias.getKey() );
+            }
+        }
+    }
+
+    private void addError( final AbstractBackToLinkedRuleBuilder<?> provider, final String messagePattern,
+                           final Object... arguments )
+    {
+        final Object[] patternArguments = new Object[arguments.length + 1];
+        patternArguments[0] = provider.getPattern();
+        System.arraycopy( arguments, 0, patternArguments, 1, arguments.length );
+        rulesBinder.addError( "Eager binding of the rule at pattern '%s': " + messagePattern, patternArguments );
+    }
+
+    private static Class<?> peek( final List<Class<?>> stack, final int n )
+    {
+        final int index = stack.size() - 1 - n;
+        return index < 0 ? null : stack.get( index );
+    }
+
+    private static boolean isWildcard( final String pattern )
+    {
+        return pattern.indexOf( '*' ) != -1 || pattern.indexOf( '?' ) != -1 || pattern.indexOf( '!' ) != -1;
+    }
+
+    /**
+     * Properties of dynamic beans and maps are known only at parse time.
+     */
+    private static boolean isIntrospected( final Class<?> type )
+    {
+        return !DynaBean.class.isAssignableFrom( type ) && !Map.class.isAssignableFrom( type );
+    }
+
+    /**
+     * Nested, indexed and mapped properties are resolved only at parse time.
+     */
+    private static boolean isSimpleName( final String propertyName )
+    {
+        for ( int i = 0; i < propertyName.length(); i++ )
+        {
+            final char c = propertyName.charAt( i );
+            if ( c == '.' || c == '[' || c == '(' || c == ':' )
+            {
+                return false;
+            }
+        }
+        return propertyName.length() > 0;
+    }
+
+    private static PropertyDescriptor getPropertyDescriptor( final Class<?> type, final String propertyName )
+    {
+        for ( final PropertyDescriptor descriptor : getPropertyDescriptors( type ) )
+        {
+            if ( propertyName.equals( descriptor.getName() ) )
+            {
+                return descriptor;
+            }
+        }
+        return null;
+    }
+
+    private static PropertyDescriptor findWriteable( final PropertyDescriptor[] descriptors, final String propertyName )
+    {
+        for ( final PropertyDescriptor descriptor : descriptors )
+        {
+            if ( propertyName.equals( descriptor.getName() ) && descriptor.getWriteMethod() != null )
+            {
+                return descriptor;
+            }
+        }
+        return null;
+    }
+
+    private static String toString( final Class<?>[] types )
+    {
+        final List<String> names = new ArrayList<String>( types.length );
+        for ( final Class<?> type : types )
+        {
+            names.add( type == null ? "?" : type.getName() );
+        }
+        return names.toString().replace( '[', '(' ).replace( ']', ')' );
+    }
+
+    /**
+     * Stands for a bound rule in the patterns index.
+     */
+    private static final class Marker
+        extends Rule
+    {
+
+        final int index;
+
+        Marker( final int index )
+        {
+            this.index = index;
+        }
+
+    }
+
+}
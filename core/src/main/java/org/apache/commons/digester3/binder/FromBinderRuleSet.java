@@ -21,6 +21,7 @@ package org.apache.commons.digester3.binder;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -113,6 +114,16 @@ final class FromBinderRuleSet
         return null;
     }
 
+    /**
+     * Returns the registered rule builders, in the order they were registered.
+     *
+     * @return the registered rule builders, in the order they were registered
+     */
+    public Collection<AbstractBackToLinkedRuleBuilder<? extends Rule>> getProviders()
+    {
+        return Collections.unmodifiableCollection( providers );
+    }
+
     /**
      * Clean the provider index.
      */
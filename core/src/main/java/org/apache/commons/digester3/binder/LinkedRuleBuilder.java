@@ -19,6 +19,7 @@ package org.apache.commons.digester3.binder;
  * under the License.
  */
 
+import org.apache.commons.digester3.ObjectConsumer;
 import org.apache.commons.digester3.Rule;
 
 /**
@@ -170,6 +171,32 @@ public final class LinkedRuleBuilder
                                                      classLoader ) );
     }
 
+    /**
+     * Hands the object at the top of the stack to the given consumer when the end of the element is reached, instead
+     * of linking it to its parent, so that it can be released as soon as it has been consumed.
+     *
+     * @param <T> The type of the objects consumed
+     * @param type The type of the objects consumed
+     * @param consumer The consumer the completed objects are handed to
+     * @return a new {@link ConsumeObjectBuilder} instance.
+     * @since 3.3
+     */
+    public <T> ConsumeObjectBuilder<T> consumeObject( final Class<T> type, final ObjectConsumer<? super T> consumer )
+    {
+        if ( type == null )
+        {
+            mainBinder.addError( "{ forPattern( \"%s\" ).consumeObject( Class<?>, ObjectConsumer<?> ) } "
+                                     + "NULL type not allowed", keyPattern );
+        }
+        if ( consumer == null )
+        {
+            mainBinder.addError( "{ forPattern( \"%s\" ).consumeObject( Class<?>, ObjectConsumer<?> ) } "
+                                     + "NULL consumer not allowed", keyPattern );
+        }
+        return addProvider( new ConsumeObjectBuilder<T>( keyPattern, namespaceURI, mainBinder, this, type,
+                                                         consumer ) );
+    }
+
     /**
      * Sets properties on the object at the top of the stack, based on attributes with corresponding names.
      *
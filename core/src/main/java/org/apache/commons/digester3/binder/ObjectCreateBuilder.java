@@ -54,6 +54,13 @@ public final class ObjectCreateBuilder
      */
     private Object[] defaultConstructorArguments;
 
+    /**
+     * Whether a proxy is created as long as the constructor arguments are collected.
+     *
+     * @since 3.3
+     */
+    private boolean usingProxy = true;
+
     ObjectCreateBuilder( final String keyPattern, final String namespaceURI, final RulesBinder mainBinder, final LinkedRuleBuilder mainBuilder,
                          final ClassLoader classLoader )
     {
@@ -194,6 +201,36 @@ public final class ObjectCreateBuilder
 
     }
 
+    /**
+     * Allows users to specify whether a proxy is created as long as the constructor arguments are collected, or a
+     * placeholder buffering the properties set and the methods invoked until the object can be constructed.
+     *
+     * @param usingProxy true if a proxy has to be created, the default, false if a placeholder has to be used
+     * @return this builder instance
+     * @see ObjectCreateRule#setUsingProxy(boolean)
+     * @since 3.3
+     */
+    public ObjectCreateBuilder usingProxy( final boolean usingProxy )
+    {
+        this.usingProxy = usingProxy;
+        return this;
+    }
+
+    final Class<?> getType()
+    {
+        return type;
+    }
+
+    final String getAttributeName()
+    {
+        return attributeName;
+    }
+
+    final Class<?>[] getConstructorArgumentsType()
+    {
+        return constructorArgumentsType;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -210,6 +247,7 @@ public final class ObjectCreateBuilder
         {
             objectCreateRule.setDefaultConstructorArguments( defaultConstructorArguments );
         }
+        objectCreateRule.setUsingProxy( usingProxy );
 
         return objectCreateRule;
     }
@@ -0,0 +1,312 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.commons.digester3.Digester;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Parses a large flat document on several threads: the document is split, between the records found at a given
+ * path, into smaller documents that are digested in parallel on a {@link ForkJoinPool}, each worker thread using its
+ * own {@link Digester} created by the same {@link DigesterLoader}. The results of the smaller documents, the roots of
+ * their object stacks, are then merged in order by a {@link ResultCombiner}.
+ * </p>
+ * <p>
+ * Every smaller document holds consecutive records, with all the document before and after the content of their
+ * parent, so the rules of the ancestors of the records are fired once per smaller document: for instance the root
+ * object is created again for every part, and the combiner has to merge those objects. The rules must not rely on the
+ * records of the other parts.
+ * </p>
+ * <p>
+ * The document is split only if all the records are children of a single parent element, if nothing but the
+ * ancestors of the records is found outside that parent, and if its encoding is ASCII compatible, as UTF-8. Otherwise,
+ * or if the document is too small to be split, it is parsed as a whole on the calling thread, and its result returned
+ * without being combined.
+ * </p>
+ * <p>
+ * Instances are thread safe as long as they are not reconfigured.
+ * </p>
+ *
+ * @param <T> the type of the results
+ * @see DigesterLoader#newParallelDigester(String, ResultCombiner)
+ * @since 3.3
+ */
+public final class ParallelDigester<T>
+{
+
+    /**
+     * The default minimum size of the parts of the documents.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private final DigesterLoader loader;
+
+    private final String[] path;
+
+    private final ResultCombiner<T> combiner;
+
+    private ForkJoinPool pool;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Creates a new parallel digester.
+     *
+     * @param loader the loader creating the digesters of the worker threads
+     * @param recordPattern the path of the records, from the root element
+     * @param combiner merges the results of the parts of the documents
+     */
+    ParallelDigester( final DigesterLoader loader, final String recordPattern, final ResultCombiner<T> combiner )
+    {
+        if ( recordPattern == null || recordPattern.indexOf( '*' ) >= 0 || recordPattern.indexOf( '?' ) >= 0
+            || recordPattern.startsWith( "/" ) || recordPattern.endsWith( "/" ) || recordPattern.indexOf( '/' ) < 0 )
+        {
+            throw new IllegalArgumentException( "The record pattern must be the path of the records from the root "
+                + "element, as 'root/record', '" + recordPattern + "' given" );
+        }
+        if ( combiner == null )
+        {
+            throw new IllegalArgumentException( "ResultCombiner must not be null" );
+        }
+        this.loader = loader;
+        this.path = recordPattern.split( "/" );
+        this.combiner = combiner;
+    }
+
+    /**
+     * Returns the pool the parts of the documents are parsed on.
+     *
+     * @return the pool the parts of the documents are parsed on, <code>null</code> if a new pool is created for every
+     *         document
+     */
+    public ForkJoinPool getForkJoinPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Sets the pool the parts of the documents are parsed on. By default, a new pool using all the available
+     * processors is created for every document, and shut down once it has been parsed.
+     *
+     * @param pool the pool the parts of the documents are parsed on
+     * @return This parallel digester instance, useful to chain methods.
+     */
+    public ParallelDigester<T> setForkJoinPool( final ForkJoinPool pool )
+    {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Returns the minimum size of the parts of the documents.
+     *
+     * @return the minimum size, in bytes, of the parts of the documents
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the minimum size of the parts of the documents, {@link #DEFAULT_CHUNK_SIZE} by default. Smaller parts
+     * balance the load better, larger ones fire the rules of the ancestors of the records less often.
+     *
+     * @param chunkSize the minimum size, in bytes, of the parts of the documents
+     * @return This parallel digester instance, useful to chain methods.
+     */
+    public ParallelDigester<T> setChunkSize( final int chunkSize )
+    {
+        if ( chunkSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Chunk size must be positive." );
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Parses the content of the given file, mapping it in memory: the parts of the document are read from the
+     * mapping, they are not copied on the heap.
+     *
+     * @param file the file containing the XML data to be parsed
+     * @return the merged results of the parts of the document
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     */
+    public T parse( final File file )
+        throws IOException, SAXException
+    {
+        if ( file == null )
+        {
+            throw new IllegalArgumentException( "File to parse is null" );
+        }
+
+        final FileInputStream input = new FileInputStream( file );
+        try
+        {
+            final FileChannel channel = input.getChannel();
+            return parse( channel.map( MapMode.READ_ONLY, 0, channel.size() ) );
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+     * Parses the content of the given buffer, from its position to its limit. The buffer is not modified.
+     *
+     * @param document the bytes of the XML data to be parsed
+     * @return the merged results of the parts of the document
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     */
+    public T parse( final ByteBuffer document )
+        throws IOException, SAXException
+    {
+        if ( document == null )
+        {
+            throw new IllegalArgumentException( "ByteBuffer to parse is null" );
+        }
+
+        final RecordSplitter splitter = new RecordSplitter( document, path, loader.isNamespaceAware() );
+        final int[] cuts = splitter.split( chunkSize );
+        if ( cuts == null )
+        {
+            return newDigester().<T> parse( new ByteBufferInputStream( document.duplicate() ) );
+        }
+
+        // every worker thread reuses its own digester
+        final ThreadLocal<Digester> digesters = new ThreadLocal<Digester>()
+        {
+
+            @Override
+            protected Digester initialValue()
+            {
+                return newDigester();
+            }
+
+        };
+        final List<Callable<T>> tasks = new ArrayList<Callable<T>>( cuts.length - 1 );
+        for ( int i = 0; i < cuts.length - 1; i++ )
+        {
+            final int from = cuts[i];
+            final int to = cuts[i + 1];
+            tasks.add( new Callable<T>()
+            {
+
+                @Override
+                public T call()
+                    throws Exception
+                {
+                    final Digester digester = digesters.get();
+                    digester.clear();
+                    digester.resetRoot();
+                    return digester.<T> parse( splitter.openPart( from, to ) );
+                }
+
+            } );
+        }
+
+        final ForkJoinPool executor = pool != null ? pool : new ForkJoinPool();
+        try
+        {
+            T result = null;
+            boolean first = true;
+            for ( final Future<T> future : executor.invokeAll( tasks ) )
+            {
+                final T next = getResult( future );
+                result = first ? next : combiner.combine( result, next );
+                first = false;
+            }
+            return result;
+        }
+        finally
+        {
+            if ( pool == null )
+            {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private Digester newDigester()
+    {
+        // the loader lazily binds and compiles the rules
+        synchronized ( loader )
+        {
+            return loader.newDigester();
+        }
+    }
+
+    private T getResult( final Future<T> future )
+        throws IOException, SAXException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException interrupted = new InterruptedIOException( "Parallel parse interrupted" );
+            interrupted.initCause( e );
+            throw interrupted;
+        }
+        catch ( final ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof SAXException )
+            {
+                throw (SAXException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new SAXException( (Exception) cause );
+        }
+    }
+
+}
@@ -0,0 +1,402 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Finds the records of a document, the elements at a given path, scanning its bytes without parsing it, and splits
+ * the document into smaller documents holding consecutive records that can be parsed independently.
+ * </p>
+ * <p>
+ * A document can be split only if all its records are children of a single parent element, and nothing but the
+ * ancestors of the records, white space, comments and processing instructions appear outside that parent. Every
+ * smaller document is made of all the bytes before the content of the parent, so that the XML and document type
+ * declarations and the ancestors start tags, with their namespace declarations, are preserved, then a range of the
+ * content of the parent starting with a record, then all the bytes after the content of the parent. Each part of the
+ * content of the parent is then parsed exactly once. The smaller documents are read from the
+ * document, they are not copied.
+ * </p>
+ * <p>
+ * Only the encodings where the markup characters are single ASCII bytes, as UTF-8, can be scanned.
+ * </p>
+ *
+ * @since 3.3
+ */
+final class RecordSplitter
+{
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final ByteBuffer document;
+
+    private final String[] path;
+
+    private final boolean namespaceAware;
+
+    /** The size of the document. */
+    private final int length;
+
+    private int parentContentStart = -1;
+
+    private int parentContentEnd = -1;
+
+    /** The start offsets of the records. */
+    private int[] recordStarts = new int[64];
+
+    private int recordCount;
+
+    /**
+     * Creates a new splitter.
+     *
+     * @param document the bytes of the document, from its position to its limit
+     * @param path the names of the elements from the root element to the records
+     * @param namespaceAware true, if the local names of the elements are compared to the path
+     */
+    RecordSplitter( final ByteBuffer document, final String[] path, final boolean namespaceAware )
+    {
+        this.document = document.slice();
+        this.path = path;
+        this.namespaceAware = namespaceAware;
+        this.length = this.document.limit();
+    }
+
+    /**
+     * Splits the content of the parent in ranges of at least the given size, except the last one, every range
+     * starting with a record.
+     *
+     * @param chunkSize the minimum size of the content of the parent in every smaller document
+     * @return the offsets delimiting the ranges, in order, the first one being the start of the content of the parent
+     *         and the last one its end, or <code>null</code> if the document can not be split in more than one
+     *         document
+     */
+    int[] split( final int chunkSize )
+    {
+        if ( !scan() )
+        {
+            return null;
+        }
+
+        // the ranges of the content of the parent start at the records, at most every chunkSize bytes
+        int[] cuts = new int[16];
+        int cutCount = 0;
+        cuts[cutCount++] = parentContentStart;
+        for ( int i = 1; i < recordCount; i++ )
+        {
+            if ( recordStarts[i] - cuts[cutCount - 1] >= chunkSize
+                && parentContentEnd - recordStarts[i] >= chunkSize / 2 )
+            {
+                if ( cutCount + 1 == cuts.length )
+                {
+                    cuts = Arrays.copyOf( cuts, cutCount * 2 );
+                }
+                cuts[cutCount++] = recordStarts[i];
+            }
+        }
+        if ( cutCount < 2 )
+        {
+            return null;
+        }
+        cuts[cutCount++] = parentContentEnd;
+        return Arrays.copyOf( cuts, cutCount );
+    }
+
+    /**
+     * Opens the smaller document holding the given range of the content of the parent. Its bytes are read from the
+     * document as the stream is consumed, they are not copied.
+     *
+     * @param from the start of the range, as returned by {@link #split(int)}
+     * @param to the end of the range, as returned by {@link #split(int)}
+     * @return the smaller document made of the bytes before the content of the parent, the range, and the bytes
+     *         after the content of the parent
+     */
+    InputStream openPart( final int from, final int to )
+    {
+        final List<InputStream> parts = new ArrayList<InputStream>( 3 );
+        parts.add( new ByteBufferInputStream( slice( 0, parentContentStart ) ) );
+        parts.add( new ByteBufferInputStream( slice( from, to ) ) );
+        parts.add( new ByteBufferInputStream( slice( parentContentEnd, length ) ) );
+        return new SequenceInputStream( Collections.enumeration( parts ) );
+    }
+
+    private ByteBuffer slice( final int from, final int to )
+    {
+        final ByteBuffer range = document.duplicate();
+        range.limit( to ).position( from );
+        return range;
+    }
+
+    /**
+     * Scans the document, finding the content of the parent and the start of the records.
+     *
+     * @return false, if the document can not be split
+     */
+    private boolean scan()
+    {
+        if ( length >= 2 )
+        {
+            final int b0 = document.get( 0 ) & 0xFF;
+            final int b1 = document.get( 1 ) & 0xFF;
+            if ( b0 == 0xFE || b0 == 0xFF || b0 == 0x00 || b1 == 0x00 )
+            {
+                // UTF-16 or UTF-32
+                return false;
+            }
+        }
+
+        final int parentDepth = path.length - 1;
+        // the depth of the current element, and how many of its ancestors, including itself, are on the path
+        int depth = 0;
+        int matching = 0;
+
+        int i = 0;
+        if ( length >= 3 && ( document.get( 0 ) & 0xFF ) == 0xEF && ( document.get( 1 ) & 0xFF ) == 0xBB
+            && ( document.get( 2 ) & 0xFF ) == 0xBF )
+        {
+            // the UTF-8 byte order mark
+            i = 3;
+        }
+        while ( i < length )
+        {
+            final int markupStart = indexOf( '<', i );
+            if ( depth < parentDepth && !isWhitespace( i, markupStart < 0 ? length : markupStart ) )
+            {
+                // text outside the parent
+                return false;
+            }
+            if ( markupStart < 0 )
+            {
+                break;
+            }
+
+            if ( startsWith( markupStart, "<!--" ) )
+            {
+                i = indexOf( "-->", markupStart + 4 );
+            }
+            else if ( startsWith( markupStart, "<![CDATA[" ) )
+            {
+                if ( depth < parentDepth )
+                {
+                    return false;
+                }
+                i = indexOf( "]]>", markupStart + 9 );
+            }
+            else if ( startsWith( markupStart, "<?" ) )
+            {
+                i = indexOf( "?>", markupStart + 2 );
+            }
+            else if ( startsWith( markupStart, "<!" ) )
+            {
+                i = findTagEnd( markupStart, true );
+            }
+            else if ( startsWith( markupStart, "</" ) )
+            {
+                i = findTagEnd( markupStart, false );
+                if ( depth == parentDepth && matching == depth )
+                {
+                    parentContentEnd = markupStart;
+                }
+                depth--;
+                matching = Math.min( matching, depth );
+            }
+            else
+            {
+                i = findTagEnd( markupStart, false );
+                if ( i < 0 )
+                {
+                    return false;
+                }
+                depth++;
+                final boolean empty = document.get( i - 2 ) == '/';
+                final boolean onPath = matching == depth - 1 && nameAt( markupStart + 1 ).equals( path[depth - 1] );
+                if ( depth <= parentDepth )
+                {
+                    if ( !onPath || ( depth == parentDepth && ( parentContentStart >= 0 || empty ) ) )
+                    {
+                        // an element outside the parent, or a second parent
+                        return false;
+                    }
+                    matching = depth;
+                    if ( depth == parentDepth )
+                    {
+                        parentContentStart = i;
+                    }
+                }
+                else if ( depth == parentDepth + 1 && onPath )
+                {
+                    addRecord( markupStart );
+                }
+                if ( empty )
+                {
+                    depth--;
+                    matching = Math.min( matching, depth );
+                }
+            }
+
+            if ( i < 0 )
+            {
+                return false;
+            }
+        }
+
+        return depth == 0 && parentContentStart >= 0 && parentContentEnd >= parentContentStart && recordCount > 1;
+    }
+
+    private void addRecord( final int start )
+    {
+        if ( recordCount == recordStarts.length )
+        {
+            recordStarts = Arrays.copyOf( recordStarts, recordCount * 2 );
+        }
+        recordStarts[recordCount++] = start;
+    }
+
+    /**
+     * Returns the name of the element starting at the given offset, its local part if namespace aware.
+     */
+    private String nameAt( final int start )
+    {
+        int nameStart = start;
+        int end = start;
+        while ( end < length && !isWhitespace( document.get( end ) ) && document.get( end ) != '/'
+            && document.get( end ) != '>' )
+        {
+            if ( namespaceAware && document.get( end ) == ':' )
+            {
+                nameStart = end + 1;
+            }
+            end++;
+        }
+        final byte[] name = new byte[end - nameStart];
+        for ( int j = 0; j < name.length; j++ )
+        {
+            name[j] = document.get( nameStart + j );
+        }
+        return new String( name, UTF_8 );
+    }
+
+    /**
+     * Returns the offset after the end of the tag or the declaration starting at the given offset, skipping the
+     * quoted values and the internal subset of the document type declaration, or -1 if it does not end.
+     */
+    private int findTagEnd( final int start, final boolean declaration )
+    {
+        byte quote = 0;
+        int brackets = 0;
+        for ( int i = start + 1; i < length; i++ )
+        {
+            final byte b = document.get( i );
+            if ( quote != 0 )
+            {
+                if ( b == quote )
+                {
+                    quote = 0;
+                }
+            }
+            else if ( b == '"' || b == '\'' )
+            {
+                quote = b;
+            }
+            else if ( declaration && b == '[' )
+            {
+                brackets++;
+            }
+            else if ( declaration && b == ']' )
+            {
+                brackets--;
+            }
+            else if ( b == '>' && brackets <= 0 )
+            {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith( final int offset, final String prefix )
+    {
+        if ( length - offset < prefix.length() )
+        {
+            return false;
+        }
+        for ( int i = 0; i < prefix.length(); i++ )
+        {
+            if ( document.get( offset + i ) != prefix.charAt( i ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf( final char c, final int from )
+    {
+        for ( int i = from; i < length; i++ )
+        {
+            if ( document.get( i ) == c )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset after the end of the given string, or -1 if it is not found.
+     */
+    private int indexOf( final String s, final int from )
+    {
+        for ( int i = from; i <= length - s.length(); i++ )
+        {
+            if ( startsWith( i, s ) )
+            {
+                return i + s.length();
+            }
+        }
+        return -1;
+    }
+
+    private boolean isWhitespace( final int from, final int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            if ( !isWhitespace( document.get( i ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace( final byte b )
+    {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+/**
+ * Merges the results of the parts of a document parsed independently by a {@link ParallelDigester}.
+ *
+ * @param <T> the type of the results
+ * @since 3.3
+ */
+public interface ResultCombiner<T>
+{
+
+    /**
+     * Merges the results of two consecutive parts of a document; the results are merged in the order of the parts,
+     * the first argument being the merge of all the previous parts.
+     *
+     * @param first the result of the previous parts of the document
+     * @param second the result of the next part of the document
+     * @return the result of both parts of the document, can be one of the arguments
+     */
+    T combine( T first, T second );
+
+}
@@ -32,6 +32,10 @@ public interface RuleProvider<R extends Rule>
 
     /**
      * Provides an instance of {@link Rule}. Must never return null.
+     * <p>
+     * When the rules are {@link DigesterLoader#compileRules() compiled}, the rules are provided lazily by the threads
+     * parsing the documents, so this method may be invoked concurrently and has to be thread safe.
+     * </p>
      *
      * @return an instance of {@link Rule}.
      */
@@ -102,6 +102,16 @@ public final class SetPropertiesBuilder
         return this;
     }
 
+    final Map<String, String> getAliases()
+    {
+        return aliases;
+    }
+
+    final boolean isIgnoreMissingProperty()
+    {
+        return ignoreMissingProperty;
+    }
+
     /**
      * {@inheritDoc}
      */
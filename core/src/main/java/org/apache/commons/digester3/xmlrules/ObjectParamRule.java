@@ -20,8 +20,8 @@ package org.apache.commons.digester3.xmlrules;
  */
 
 import static java.lang.Integer.parseInt;
-import static org.apache.commons.beanutils.ConvertUtils.convert;
 
+import org.apache.commons.digester3.ConversionRegistry;
 import org.apache.commons.digester3.binder.LinkedRuleBuilder;
 import org.apache.commons.digester3.binder.ObjectParamBuilder;
 import org.apache.commons.digester3.binder.RulesBinder;
@@ -63,7 +63,7 @@ final class ObjectParamRule
         Object param;
         if ( value != null )
         {
-            param = convert( value, clazz );
+            param = ConversionRegistry.convert( getDigester().getConversionRegistry(), value, clazz );
         }
         else
         {
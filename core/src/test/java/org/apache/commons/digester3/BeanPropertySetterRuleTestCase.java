@@ -33,6 +33,7 @@ import java.util.List;
 
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.junit.Test;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 /**
@@ -53,6 +54,69 @@ public class BeanPropertySetterRuleTestCase
 
     // ------------------------------------------------ Individual Test Methods
 
+    /**
+     * Test that the numeric properties are parsed straight from the body characters, trimmed and substituted, as the
+     * plain rule sets them.
+     */
+    @Test
+    public void testPrimitivePropertySetter()
+        throws Exception
+    {
+        final String xml = "<bean><intProperty> -42 </intProperty><longProperty>9876543210</longProperty>"
+            + "<doubleProperty>\n 2.75\n</doubleProperty><floatProperty>1.5</floatProperty>"
+            + "<shortProperty>$</shortProperty></bean>";
+
+        final TestBean plain = parseBean( xml, new BeanPropertySetterRule(), null );
+        final TestBean parsed = parseBean( xml, new PrimitivePropertySetterRule(), null );
+        assertEquals( -42, parsed.getIntProperty() );
+        assertEquals( 9876543210L, parsed.getLongProperty() );
+        assertEquals( 2.75D, parsed.getDoubleProperty(), 0 );
+        assertEquals( plain.getFloatProperty(), parsed.getFloatProperty(), 0 );
+        assertEquals( plain.getShortProperty(), parsed.getShortProperty() );
+
+        final Substitutor substitutor = new Substitutor()
+        {
+
+            @Override
+            public Attributes substitute( final Attributes attributes )
+            {
+                return attributes;
+            }
+
+            @Override
+            public String substitute( final String bodyText )
+            {
+                return bodyText.replace( '$', '7' );
+            }
+
+        };
+        final TestBean substituted = parseBean( xml, new PrimitivePropertySetterRule(), substitutor );
+        assertEquals( -42, substituted.getIntProperty() );
+        assertEquals( 7, substituted.getShortProperty() );
+
+        // invalid values are converted by BeanUtils
+        final String invalid = "<bean><intProperty>x</intProperty><doubleProperty>1e</doubleProperty></bean>";
+        assertEquals( parseBean( invalid, new BeanPropertySetterRule(), null ).getIntProperty(),
+                      parseBean( invalid, new PrimitivePropertySetterRule(), null ).getIntProperty() );
+        assertEquals( parseBean( invalid, new BeanPropertySetterRule(), null ).getDoubleProperty(),
+                      parseBean( invalid, new PrimitivePropertySetterRule(), null ).getDoubleProperty(), 0 );
+    }
+
+    private static TestBean parseBean( final String xml, final BeanPropertySetterRule rule,
+                                       final Substitutor substitutor )
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.setSubstitutor( substitutor );
+        digester.addObjectCreate( "bean", TestBean.class );
+        for ( final String property : new String[] { "intProperty", "longProperty", "doubleProperty",
+            "floatProperty", "shortProperty" } )
+        {
+            digester.addRule( "bean/" + property, rule );
+        }
+        return digester.parse( new StringReader( xml ) );
+    }
+
     /**
      * This is a general digester test but it fits into here pretty well. This tests that the rule calling order is
      * properly enforced.
@@ -0,0 +1,178 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+
+/**
+ * Test case for CachingRules
+ */
+public class CachingRulesTestCase
+{
+
+    @Test
+    public void testMatch()
+    {
+        final CachingRules rules = new CachingRules( new ExtendedBaseRules(), 2 );
+        assertTrue( rules.isCaching() );
+        rules.add( "*/alpha", new TestRule( "Tom" ) );
+        rules.add( "alpha/beta", new TestRule( "Dick" ) );
+        rules.add( "!*/beta", new TestRule( "Harry" ) );
+
+        List<Rule> matches = rules.match( null, "root/alpha", null, null );
+        assertEquals( "Wrong size (1)", 1, matches.size() );
+        assertEquals( "Wrong match (1)", "Tom", ( (TestRule) matches.get( 0 ) ).getIdentifier() );
+        assertSame( "Not memoized", matches, rules.match( null, "root/alpha", null, null ) );
+
+        matches = rules.match( null, "alpha/beta", null, null );
+        assertEquals( "Wrong size (2)", 2, matches.size() );
+        assertEquals( "Wrong order (1)", "Dick", ( (TestRule) matches.get( 0 ) ).getIdentifier() );
+        assertEquals( "Wrong order (2)", "Harry", ( (TestRule) matches.get( 1 ) ).getIdentifier() );
+
+        assertEquals( "Hits", 1, rules.getHitCount() );
+        assertEquals( "Misses", 2, rules.getMissCount() );
+        assertEquals( "Evictions", 0, rules.getEvictionCount() );
+
+        // "root/alpha" is the least recently used entry
+        rules.match( null, "gamma", null, null );
+        assertEquals( "Evictions", 1, rules.getEvictionCount() );
+        assertEquals( "Size", 2, rules.getSize() );
+        rules.match( null, "alpha/beta", null, null );
+        rules.match( null, "root/alpha", null, null );
+        assertEquals( "Hits", 2, rules.getHitCount() );
+        assertEquals( "Misses", 4, rules.getMissCount() );
+
+        rules.resetStatistics();
+        assertEquals( "Hits", 0, rules.getHitCount() );
+        assertEquals( "Misses", 0, rules.getMissCount() );
+        assertEquals( "Evictions", 0, rules.getEvictionCount() );
+    }
+
+    @Test
+    public void testNamespaces()
+    {
+        final CachingRules rules = new CachingRules( new RulesBase() );
+        rules.setNamespaceURI( "urn:a" );
+        rules.add( "alpha", new TestRule( "Tom" ) );
+        rules.setNamespaceURI( "urn:b" );
+        rules.add( "alpha", new TestRule( "Dick" ) );
+
+        assertEquals( 2, rules.match( null, "alpha", null, null ).size() );
+        assertEquals( 1, rules.match( "urn:a", "alpha", null, null ).size() );
+        assertEquals( "Dick", ( (TestRule) rules.match( "urn:b", "alpha", null, null ).get( 0 ) ).getIdentifier() );
+        assertEquals( 3, rules.getSize() );
+    }
+
+    @Test
+    public void testInvalidation()
+    {
+        final CachingRules rules = new CachingRules( new RulesBase() );
+        rules.add( "alpha", new TestRule( "Tom" ) );
+        assertEquals( 1, rules.match( null, "alpha", null, null ).size() );
+
+        rules.add( "alpha", new TestRule( "Dick" ) );
+        assertEquals( 0, rules.getSize() );
+        assertEquals( 2, rules.match( null, "alpha", null, null ).size() );
+
+        rules.clear();
+        assertEquals( 0, rules.match( null, "alpha", null, null ).size() );
+        assertEquals( 0, rules.rules().size() );
+    }
+
+    @Test
+    public void testAttributesDependentRules()
+    {
+        final RulesBase wrapped = new RulesBase()
+        {
+            @Override
+            public List<Rule> match( final String namespaceURI, final String pattern, final String name,
+                                     final Attributes attributes )
+            {
+                return super.match( namespaceURI, pattern, name, attributes );
+            }
+        };
+        assertFalse( wrapped.isAttributesIndependent() );
+        assertTrue( new RulesBase().isAttributesIndependent() );
+        assertTrue( new RegexRules( new SimpleRegexMatcher() ).isAttributesIndependent() );
+        assertTrue( new WithDefaultsRulesWrapper( new ExtendedBaseRules() ).isAttributesIndependent() );
+
+        // the wrappers redefined by a subclass are not independent either, whatever they wrap
+        assertFalse( new WithDefaultsRulesWrapper( new RulesBase() )
+        {
+            @Override
+            public List<Rule> match( final String namespaceURI, final String pattern, final String name,
+                                     final Attributes attributes )
+            {
+                return super.match( namespaceURI, pattern, name, attributes );
+            }
+        }.isAttributesIndependent() );
+        final CachingRules redefined = new CachingRules( new RulesBase() )
+        {
+            @Override
+            public List<Rule> match( final String namespaceURI, final String pattern, final String name,
+                                     final Attributes attributes )
+            {
+                return super.match( namespaceURI, pattern, name, attributes );
+            }
+        };
+        assertTrue( redefined.isCaching() );
+        assertFalse( redefined.isAttributesIndependent() );
+        assertTrue( redefined.canMatchDescendants( "unknown" ) );
+
+        final CachingRules rules = new CachingRules( wrapped );
+        assertFalse( rules.isCaching() );
+        rules.add( "alpha", new TestRule( "Tom" ) );
+        rules.match( null, "alpha", null, null );
+        rules.match( null, "alpha", null, null );
+        assertEquals( 0, rules.getSize() );
+        assertEquals( 0, rules.getHitCount() );
+        assertEquals( 0, rules.getMissCount() );
+    }
+
+    @Test
+    public void testDigester()
+        throws Exception
+    {
+        final CachingRules rules = new CachingRules( new RulesBase() );
+        final Digester digester = new Digester();
+        digester.setRules( rules );
+        digester.addObjectCreate( "employee", Employee.class );
+        digester.addObjectCreate( "employee/address", Address.class );
+        digester.addSetProperties( "employee/address" );
+        digester.addSetNext( "employee/address", "addAddress" );
+
+        final Employee employee =
+            digester.parse( new StringReader( "<employee><address type='home' city='a'/>"
+                + "<address type='office' city='b'/></employee>" ) );
+        assertEquals( "a", employee.getAddress( "home" ).getCity() );
+        assertEquals( "b", employee.getAddress( "office" ).getCity() );
+        // the second address is matched from the cache
+        assertEquals( 1, rules.getHitCount() );
+    }
+
+}
@@ -21,6 +21,9 @@ package org.apache.commons.digester3;
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -29,10 +32,16 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.junit.Test;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 //import org.apache.commons.logging.impl.SimpleLog;
@@ -699,6 +708,175 @@ public class CallMethodRuleTestCase
         assertEquals( "OfZip", office.getZipCode() );
     }
 
+    /**
+     * Test invoking the same method on targets of different classes, with the same rule instance.
+     */
+    @Test
+    public void testCallOnDifferentTargetTypes()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "root/item", HashMap.class.getName(), "class" );
+        digester.addCallMethod( "root/item", "put", 2 );
+        digester.addCallParam( "root/item", 0, "key" );
+        digester.addCallParam( "root/item", 1, "value" );
+        digester.addSetNext( "root/item", "add" );
+
+        final ArrayList<Map<String, String>> items = new ArrayList<Map<String, String>>();
+        digester.push( items );
+        digester.parse( new StringReader( "<root><item key='a' value='1'/>"
+            + "<item class='java.util.TreeMap' key='b' value='2'/><item key='c' value='3'/></root>" ) );
+
+        assertEquals( 3, items.size() );
+        assertEquals( HashMap.class, items.get( 0 ).getClass() );
+        assertEquals( "1", items.get( 0 ).get( "a" ) );
+        assertEquals( TreeMap.class, items.get( 1 ).getClass() );
+        assertEquals( "2", items.get( 1 ).get( "b" ) );
+        assertEquals( "3", items.get( 2 ).get( "c" ) );
+
+        digester.push( new ArrayList<Object>() );
+        try
+        {
+            digester.parse( new StringReader( "<root><item class='java.lang.Object' key='d' value='4'/></root>" ) );
+            fail( "Exception should be thrown for a missing method" );
+        }
+        catch ( final SAXException e )
+        {
+            assertTrue( e.getException() instanceof NoSuchMethodException );
+        }
+    }
+
+    /**
+     * Test that the parameters are converted through the conversion registry of the digester, when set.
+     */
+    @Test
+    public void testConversionRegistry()
+        throws Exception
+    {
+        final ConversionRegistry conversions = new ConversionRegistry().register( int.class, new Converter()
+        {
+
+            @Override
+            public <T> T convert( final Class<T> type, final Object value )
+            {
+                @SuppressWarnings( "unchecked" ) // Class.cast() does not work with primitive types
+                final T result = (T) Integer.valueOf( Integer.decode( (String) value ) );
+                return result;
+            }
+
+        } );
+
+        final Digester digester = new Digester();
+        digester.setConversionRegistry( conversions );
+        digester.addObjectCreate( "bean", TestBean.class );
+        digester.addCallMethod( "bean/int", "setIntProperty", 0, new Class<?>[] { int.class } );
+        digester.addCallMethod( "bean/long", "setLongProperty", 0, new Class<?>[] { long.class } );
+        digester.addCallMethod( "bean/double", "setDoubleProperty", 0, new Class<?>[] { double.class } );
+        digester.addCallMethod( "bean/boolean", "setBooleanProperty", 0, new Class<?>[] { boolean.class } );
+
+        final TestBean bean = digester.parse( new StringReader( "<bean><int>0x10</int><long> 9876543210 </long>"
+            + "<double>2.5</double><boolean>yes</boolean></bean>" ) );
+
+        assertEquals( 16, bean.getIntProperty() );
+        assertEquals( 9876543210L, bean.getLongProperty() );
+        assertEquals( 2.5D, bean.getDoubleProperty(), 0 );
+        assertTrue( bean.getBooleanProperty() );
+
+        // values the built-in parsers do not accept are converted as ConvertUtils does
+        assertEquals( 0, new ConversionRegistry().toInt( null ) );
+        assertEquals( ConvertUtils.convert( "x", int.class ), new ConversionRegistry().convert( "x", int.class ) );
+        assertEquals( ConvertUtils.convert( "on", Boolean.class ),
+                      new ConversionRegistry().convert( "on", Boolean.class ) );
+        assertEquals( 16, conversions.toInt( "0x10" ) );
+    }
+
+    /**
+     * Test that the recycled parameter arrays are not shared by nested invocations.
+     */
+    @Test
+    public void testRecycledParameters()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.addCallMethod( "*/entry", "put", 2 );
+        digester.addCallParam( "*/entry", 0, "key" );
+        digester.addCallParam( "*/entry", 1, "value" );
+        digester.addCallMethod( "*/entry/note", "put", 2 );
+        digester.addCallParam( "*/entry/note", 0, "key" );
+        digester.addCallParam( "*/entry/note", 1 );
+        final List<Object[]> frames = new ArrayList<Object[]>();
+        digester.addRule( "*/entry", new Rule()
+        {
+
+            @Override
+            public void begin( final String namespace, final String name, final Attributes attributes )
+            {
+                frames.add( getDigester().peekParams() );
+            }
+
+        } );
+
+        final Map<String, String> map = new TreeMap<String, String>();
+        digester.push( map );
+        digester.parse( new StringReader( "<map><entry key='a' value='1'><entry key='b' value='2'/>"
+            + "<note key='n'>text</note></entry><entry key='c'/><entry key='d' value='4'/></map>" ) );
+
+        final Map<String, String> expected = new TreeMap<String, String>();
+        expected.put( "a", "1" );
+        expected.put( "b", "2" );
+        expected.put( "c", null );
+        expected.put( "d", "4" );
+        expected.put( "n", "text" );
+        assertEquals( expected, map );
+
+        // the sibling entries are given the same array, the nested one its own
+        assertEquals( 4, frames.size() );
+        assertNotSame( frames.get( 0 ), frames.get( 1 ) );
+        assertSame( frames.get( 0 ), frames.get( 2 ) );
+        assertSame( frames.get( 0 ), frames.get( 3 ) );
+
+        // an array popped is reused, cleared, by the next array of the same size pushed at the same depth
+        final Object[] parameters = digester.pushNewParams( 2 );
+        parameters[0] = "x";
+        assertSame( parameters, digester.popParams() );
+        assertSame( parameters, digester.pushNewParams( 2 ) );
+        assertNull( parameters[0] );
+        assertEquals( 3, digester.pushNewParams( 3 ).length );
+    }
+
+    /**
+     * Test that the parameters can be parsed straight from the body characters.
+     */
+    @Test
+    public void testPrimitiveCallParam()
+        throws Exception
+    {
+        final Digester digester = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "bean" ).createObject().ofType( TestBean.class );
+                forPattern( "bean/int" ).callMethod( "setIntProperty" ).withParamTypes( int.class )
+                    .then().callParam().parsedAs( int.class );
+                forPattern( "bean/double" ).callMethod( "setDoubleProperty" ).withParamTypes( double.class )
+                    .then().callParam().parsedAs( double.class );
+                forPattern( "bean/long" ).callMethod( "setLongProperty" ).withParamTypes( long.class )
+                    .then().callParam().parsedAs( long.class );
+            }
+
+        } ).newDigester();
+
+        final TestBean bean = digester.parse( new StringReader( "<bean><int> 12 </int><double>0.25</double>"
+            + "<long>not a number</long></bean>" ) );
+
+        assertEquals( 12, bean.getIntProperty() );
+        assertEquals( 0.25D, bean.getDoubleProperty(), 0 );
+        assertEquals( ( (Long) ConvertUtils.convert( "not a number", long.class ) ).longValue(),
+                      bean.getLongProperty() );
+    }
+
     // ------------------------------------------------ Utility Support Methods
 
     /**
@@ -0,0 +1,254 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Test case for the classes loaded through ClassCache.
+ */
+public class ClassCacheTestCase
+{
+
+    @Test
+    public void testCachedClasses()
+        throws Exception
+    {
+        final CountingClassLoader classLoader = new CountingClassLoader( Integer.class );
+
+        assertSame( Integer.class, ClassCache.loadClass( classLoader, "test.Cached" ) );
+        assertSame( Integer.class, ClassCache.loadClass( classLoader, "test.Cached" ) );
+        assertEquals( 1, classLoader.getLoads( "test.Cached" ) );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction()
+        throws Exception
+    {
+        final CountingClassLoader classLoader = new CountingClassLoader( Integer.class );
+
+        for ( int i = 0; i < ClassCache.MAX_CLASSES; i++ )
+        {
+            ClassCache.loadClass( classLoader, "test.Class" + i );
+        }
+        // the first class is used again, the second one becomes the least recently used
+        ClassCache.loadClass( classLoader, "test.Class0" );
+        ClassCache.loadClass( classLoader, "test.Class" + ClassCache.MAX_CLASSES );
+
+        ClassCache.loadClass( classLoader, "test.Class0" );
+        assertEquals( 1, classLoader.getLoads( "test.Class0" ) );
+        ClassCache.loadClass( classLoader, "test.Class2" );
+        assertEquals( 1, classLoader.getLoads( "test.Class2" ) );
+        ClassCache.loadClass( classLoader, "test.Class1" );
+        assertEquals( "Evicted class loaded again", 2, classLoader.getLoads( "test.Class1" ) );
+    }
+
+    @Test
+    public void testClassLoadersIsolation()
+        throws Exception
+    {
+        final CountingClassLoader integers = new CountingClassLoader( Integer.class );
+        final CountingClassLoader longs = new CountingClassLoader( Long.class );
+
+        assertSame( Integer.class, ClassCache.loadClass( integers, "test.Number" ) );
+        assertSame( Long.class, ClassCache.loadClass( longs, "test.Number" ) );
+        assertSame( Integer.class, ClassCache.loadClass( integers, "test.Number" ) );
+        assertSame( Long.class, ClassCache.loadClass( longs, "test.Number" ) );
+        assertEquals( 1, integers.getLoads( "test.Number" ) );
+        assertEquals( 1, longs.getLoads( "test.Number" ) );
+    }
+
+    @Test
+    public void testFailedLoadNotCached()
+        throws Exception
+    {
+        final CountingClassLoader classLoader = new CountingClassLoader( Integer.class );
+        classLoader.missing = true;
+
+        try
+        {
+            ClassCache.loadClass( classLoader, "test.Late" );
+            fail( "test.Late loaded" );
+        }
+        catch ( final ClassNotFoundException e )
+        {
+            // expected
+        }
+
+        classLoader.missing = false;
+        assertSame( Integer.class, ClassCache.loadClass( classLoader, "test.Late" ) );
+        assertEquals( 2, classLoader.getLoads( "test.Late" ) );
+    }
+
+    @Test
+    public void testConcurrentLoads()
+        throws Exception
+    {
+        final CountingClassLoader classLoader = new CountingClassLoader( Integer.class );
+        final int threads = 8;
+        // more names than cached, so that the classes are evicted while being looked up
+        final int names = ClassCache.MAX_CLASSES * 2;
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            final int offset = i;
+            tasks.add( new Callable<Void>()
+            {
+
+                @Override
+                public Void call()
+                    throws Exception
+                {
+                    for ( int j = 0; j < 20 * names; j++ )
+                    {
+                        // every thread keeps looking up a hot class between the others
+                        final String name = ( j % 2 == 0 ) ? "test.Hot" : "test.Class" + ( ( j + offset ) % names );
+                        assertSame( Integer.class, ClassCache.loadClass( classLoader, name ) );
+                    }
+                    return null;
+                }
+
+            } );
+        }
+        runConcurrently( tasks );
+
+        // the hot class has never been evicted
+        assertTrue( classLoader.getLoads( "test.Hot" ) <= threads );
+        final int loads = classLoader.getLoads( "test.Hot" );
+        ClassCache.loadClass( classLoader, "test.Hot" );
+        assertEquals( loads, classLoader.getLoads( "test.Hot" ) );
+    }
+
+    @Test
+    public void testConcurrentClassLoaders()
+        throws Exception
+    {
+        final CountingClassLoader integers = new CountingClassLoader( Integer.class );
+        final CountingClassLoader longs = new CountingClassLoader( Long.class );
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for ( int i = 0; i < 8; i++ )
+        {
+            final boolean alternate = i % 2 == 0;
+            tasks.add( new Callable<Void>()
+            {
+
+                @Override
+                public Void call()
+                    throws Exception
+                {
+                    for ( int j = 0; j < 10000; j++ )
+                    {
+                        // the threads keep switching the class loader used last
+                        if ( alternate || j % 2 == 0 )
+                        {
+                            assertSame( Integer.class, ClassCache.loadClass( integers, "test.Number" ) );
+                        }
+                        else
+                        {
+                            assertSame( Long.class, ClassCache.loadClass( longs, "test.Number" ) );
+                        }
+                    }
+                    return null;
+                }
+
+            } );
+        }
+        runConcurrently( tasks );
+
+        // at most one load by thread, before the class is cached
+        assertTrue( integers.getLoads( "test.Number" ) <= tasks.size() );
+        assertTrue( longs.getLoads( "test.Number" ) <= tasks.size() );
+    }
+
+    private static void runConcurrently( final List<Callable<Void>> tasks )
+        throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool( tasks.size() );
+        try
+        {
+            for ( final Future<Void> future : executor.invokeAll( tasks ) )
+            {
+                // rethrows the failures of the tasks
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Loads the same class for all the names starting with <code>test.</code>, counting the loads of every name.
+     */
+    private static final class CountingClassLoader
+        extends ClassLoader
+    {
+
+        private final Class<?> testClass;
+
+        private final Map<String, Integer> loads = new HashMap<String, Integer>();
+
+        boolean missing;
+
+        CountingClassLoader( final Class<?> testClass )
+        {
+            super( CountingClassLoader.class.getClassLoader() );
+            this.testClass = testClass;
+        }
+
+        synchronized int getLoads( final String name )
+        {
+            final Integer count = loads.get( name );
+            return count != null ? count : 0;
+        }
+
+        @Override
+        public synchronized Class<?> loadClass( final String name )
+            throws ClassNotFoundException
+        {
+            if ( !name.startsWith( "test." ) )
+            {
+                return super.loadClass( name );
+            }
+            loads.put( name, getLoads( name ) + 1 );
+            if ( missing )
+            {
+                throw new ClassNotFoundException( name );
+            }
+            return testClass;
+        }
+
+    }
+
+}
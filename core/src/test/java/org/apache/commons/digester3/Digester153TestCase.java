@@ -24,6 +24,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.digester3.annotations.FromAnnotationsRuleModule;
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.apache.commons.digester3.binder.RulesModule;
@@ -88,6 +92,94 @@ public final class Digester153TestCase
         assertEquals( Float.valueOf( 5.5f ), Float.valueOf( bean.getFloatProperty() ) );
     }
 
+    @Test
+    public void constructorWithAttributeAndElementWithoutProxy()
+        throws Exception
+    {
+        final ObjectCreateRule createRule = new ObjectCreateRule( TestBean.class );
+        createRule.setConstructorArgumentTypes( boolean.class, double.class );
+        createRule.setUsingProxy( false );
+
+        final Digester digester = new Digester();
+        digester.addRule( "toplevel/bean", createRule );
+        digester.addCallParam( "toplevel/bean", 0, "boolean" );
+        digester.addCallParam( "toplevel/bean/double", 1 );
+        digester.addBeanPropertySetter( "toplevel/bean/float", "floatProperty" );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            final TestBean bean =
+                digester.parse( getClass().getResourceAsStream( "ConstructorWithAttributeAndElement.xml" ) );
+
+            assertTrue( bean.getBooleanProperty() );
+            assertEquals( 9.99D, bean.getDoubleProperty(), 0 );
+            assertEquals( Float.valueOf( 5.5f ), Float.valueOf( bean.getFloatProperty() ) );
+        }
+    }
+
+    @Test
+    public void finalClassConstructorWithoutProxy()
+        throws Exception
+    {
+        final Digester digester = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "points/point" )
+                    .createObject().ofType( Point.class ).usingConstructor( int.class, int.class ).usingProxy( false )
+                    .then()
+                    .callParam().fromAttribute( "x" ).ofIndex( 0 )
+                    .then()
+                    .callParam().fromAttribute( "y" ).ofIndex( 1 )
+                    .then()
+                    .setNext( "add" );
+                forPattern( "points/point/label" ).setBeanProperty();
+            }
+
+        } ).newDigester();
+
+        final List<Point> points = new ArrayList<Point>();
+        digester.push( points );
+        digester.parse( new StringReader( "<points><point x='1' y='2'><label>a</label></point>"
+            + "<point x='3' y='4'/></points>" ) );
+
+        assertEquals( 2, points.size() );
+        assertEquals( 1, points.get( 0 ).x );
+        assertEquals( 2, points.get( 0 ).y );
+        assertEquals( "a", points.get( 0 ).getLabel() );
+        assertEquals( 3, points.get( 1 ).x );
+        assertEquals( 4, points.get( 1 ).y );
+    }
+
+    public static final class Point
+    {
+
+        private final int x;
+
+        private final int y;
+
+        private String label;
+
+        public Point( final int x, final int y )
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+
+        public void setLabel( final String label )
+        {
+            this.label = label;
+        }
+
+    }
+
     @Test
     public void basicConstructorViaBinder()
         throws Exception
@@ -35,7 +35,9 @@ import java.math.BigDecimal;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.EmptyStackException;
+import java.util.List;
 import java.util.Map;
+import java.util.Stack;
 
 import org.apache.commons.digester3.Digester;
 import org.apache.commons.digester3.ObjectCreateRule;
@@ -482,6 +484,112 @@ public class DigesterTestCase
         assertEquals( "Substituted python attribute value", "Cleese", tsr.attributes.getValue( "", "python" ) );
     }
 
+    /** Tests that body text is collected and substituted only for elements matched by rules consuming it */
+    @Test
+    public void testBodyTextConsumers()
+        throws Exception
+    {
+        class BodyRule
+            extends Rule
+        {
+            public final ArrayList<String> bodies = new ArrayList<String>();
+
+            @Override
+            public void body( final String namespace, final String name, final String text )
+            {
+                bodies.add( text );
+            }
+        }
+
+        final BodyRule bodyRule = new BodyRule();
+        final BodyRule ignoringRule = new BodyRule()
+        {
+            @Override
+            public boolean isBodyTextConsumer()
+            {
+                return false;
+            }
+        };
+        final ArrayList<String> substituted = new ArrayList<String>();
+
+        final Digester digester = new Digester();
+        digester.addRule( "*/beta", bodyRule );
+        digester.addRule( "*/gamma", ignoringRule );
+        digester.addRule( "alpha", new Rule()
+        {
+        } );
+        digester.setSubstitutor( new Substitutor()
+        {
+            @Override
+            public Attributes substitute( final Attributes attributes )
+            {
+                return attributes;
+            }
+
+            @Override
+            public String substitute( final String bodyText )
+            {
+                substituted.add( bodyText );
+                return bodyText;
+            }
+        } );
+
+        digester.parse( new StringReader( "<alpha>one<beta>two<gamma>three</gamma>four</beta>five"
+            + "<gamma>six<beta>seven</beta></gamma></alpha>" ) );
+
+        assertFalse( new Rule()
+        {
+        }.isBodyTextConsumer() );
+        assertTrue( bodyRule.isBodyTextConsumer() );
+        assertEquals( "[twofour, seven]", bodyRule.bodies.toString() );
+        assertEquals( "[, ]", ignoringRule.bodies.toString() );
+        assertEquals( "[twofour, seven]", substituted.toString() );
+    }
+
+    /** Tests that the content of the elements whose descendants can not be matched is skipped */
+    @Test
+    public void testSubtreePruning()
+        throws Exception
+    {
+        final ArrayList<String> checked = new ArrayList<String>();
+        final Digester digester = new Digester();
+        digester.setRules( new RulesBase()
+        {
+            @Override
+            public boolean canMatchDescendants( final String pattern )
+            {
+                checked.add( pattern );
+                return super.canMatchDescendants( pattern );
+            }
+        } );
+        final StringBuilder bodies = new StringBuilder();
+        final Rule bodyRule = new Rule()
+        {
+            @Override
+            public void body( final String namespace, final String name, final String text )
+            {
+                bodies.append( name ).append( '=' ).append( text ).append( ';' );
+            }
+        };
+        digester.addRule( "doc/skip", bodyRule );
+        digester.addRule( "doc/keep/item", bodyRule );
+
+        final String xml =
+            "<doc><skip>one<x><y>two</y></x>three</skip><keep><item>four</item><z>five</z></keep></doc>";
+
+        digester.parse( new StringReader( xml ) );
+        assertEquals( "skip=onethree;item=four;", bodies.toString() );
+        assertEquals( "[]", checked.toString() );
+
+        bodies.setLength( 0 );
+        digester.setSubtreePruning( true );
+        assertTrue( digester.getSubtreePruning() );
+        digester.parse( new StringReader( xml ) );
+        assertEquals( "skip=onethree;item=four;", bodies.toString() );
+        // nothing is computed for the elements nested in skipped elements
+        assertEquals( "[doc, doc/skip, doc/keep, doc/keep/item, doc/keep/z]", checked.toString() );
+    }
+
     /** Tests the push-peek-pop cycle for a named stack */
     @Test
     public void testNamedStackPushPeekPop()
@@ -592,6 +700,46 @@ public class DigesterTestCase
         assertTrue( "A named stack that has it's last object popped is empty", digester.isEmpty( testStackName ) );
     }
 
+    /** Tests popping a named stack whose objects have all been popped already */
+    @Test
+    public void testPopNamedStackEmptied()
+    {
+        final String testStackName = "org.apache.commons.digester3.tests.testPopNamedStackEmptied";
+        final Digester digester = new Digester();
+        digester.push( testStackName, "Some test value" );
+        digester.pop( testStackName );
+        try
+        {
+            digester.pop( testStackName );
+            fail( "Expected an EmptyStackException" );
+        }
+        catch ( final EmptyStackException e )
+        {
+            // expected
+        }
+    }
+
+    /** Tests that null objects can be pushed and popped, and are told apart from an empty stack */
+    @Test
+    public void testNullStackElements()
+    {
+        digester.push( "First Item" );
+        digester.push( null );
+        assertEquals( "Pushed null item size", 2, digester.getCount() );
+        assertNull( "Peeked null item", digester.peek() );
+        assertEquals( "Peeked first item", "First Item", digester.peek( 1 ) );
+        assertNull( "Peeked out of range", digester.peek( 2 ) );
+        assertNull( "Peeked negative index", digester.peek( -1 ) );
+        assertNull( "Popped null item", digester.pop() );
+        assertEquals( "Popped first item", "First Item", digester.pop() );
+        assertEquals( "Emptied stack size", 0, digester.getCount() );
+
+        digester.pushParams( (Object[]) null );
+        assertNull( "Peeked null params", digester.peekParams() );
+        assertNull( "Popped null params", digester.popParams() );
+        assertNull( "Popped empty params", digester.popParams() );
+    }
+
     /**
      * Test the Digester.getRoot method.
      */
@@ -715,4 +863,42 @@ public class DigesterTestCase
         assertEquals( "pop:stack1:obj9", action.events.get( 10 ) );
         assertEquals( "pop:stack1:obj8", action.events.get( 11 ) );
     }
+
+    /**
+     * Test the Stack of the matches follows the parse once it has been requested.
+     */
+    @Test
+    public void testGetMatches()
+        throws Exception
+    {
+        final List<Stack<List<Rule>>> stacks = new ArrayList<Stack<List<Rule>>>();
+        final List<Integer> depths = new ArrayList<Integer>();
+        final Rule rule = new Rule()
+        {
+
+            @Override
+            public void begin( final String namespace, final String name, final Attributes attributes )
+            {
+                stacks.add( getDigester().getMatches() );
+                depths.add( getDigester().getMatches().size() );
+                assertSame( getDigester().getMatches().peek(), getDigester().getCurrentMatches() );
+            }
+
+            @Override
+            public void end( final String namespace, final String name )
+            {
+                // the matches of the element have already been popped
+                depths.add( getDigester().getMatches().size() );
+            }
+
+        };
+        digester.addRule( "a/b", rule );
+        digester.addRule( "a/b/c", rule );
+
+        digester.parse( new StringReader( "<a><b><c/></b></a>" ) );
+
+        assertSame( stacks.get( 0 ), stacks.get( 1 ) );
+        assertEquals( "[2, 3, 2, 1]", depths.toString() );
+        assertTrue( stacks.get( 0 ).isEmpty() );
+    }
 }
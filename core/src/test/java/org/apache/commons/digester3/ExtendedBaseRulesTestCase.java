@@ -19,7 +19,12 @@
 package org.apache.commons.digester3;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -412,4 +417,152 @@ public class ExtendedBaseRulesTestCase
         assertEquals( "No matches expected", 0, list.size() );
 
     }
+
+    @Test
+    public void testCanMatchDescendantsOfAnchoredPatterns()
+    {
+        final PruningRules rules = (PruningRules) digester.getRules();
+        rules.clear();
+
+        digester.addRule( "alpha/beta/*", new TestRule( "ancestor" ) );
+        digester.addRule( "!gamma/?", new TestRule( "parent" ) );
+
+        assertTrue( rules.canMatchDescendants( "alpha" ) );
+        assertTrue( rules.canMatchDescendants( "alpha/beta" ) );
+        assertTrue( rules.canMatchDescendants( "alpha/beta/delta/epsilon" ) );
+        assertFalse( rules.canMatchDescendants( "alpha/delta" ) );
+        assertTrue( rules.canMatchDescendants( "gamma" ) );
+        assertFalse( rules.canMatchDescendants( "gamma/delta" ) );
+        assertFalse( rules.canMatchDescendants( "delta" ) );
+
+        // universal patterns can match anywhere
+        digester.addRule( "!*", new TestRule( "universal" ) );
+        assertTrue( rules.canMatchDescendants( "delta" ) );
+    }
+
+    /**
+     * Exact patterns take precedence over parent match patterns, which take precedence over ancestor match patterns,
+     * while the universal patterns are always selected.
+     */
+    @Test
+    public void testParentMatchPrecedence()
+    {
+        digester.getRules().clear();
+
+        addRules( "!a/b/*", "a/b/?", "*/b/*" );
+
+        assertMatch( "a" );
+        assertMatch( "a/b", "!a/b/*", "*/b/*" );
+        assertMatch( "a/b/c", "!a/b/*", "a/b/?" );
+        assertMatch( "a/b/c/d", "!a/b/*", "*/b/*" );
+        assertMatch( "x/b/c", "*/b/*" );
+        assertMatch( "a/x/b/q", "*/b/*" );
+
+        addRules( "a/b/c", "*/c" );
+
+        assertMatch( "a/b/c", "!a/b/*", "a/b/c" );
+        assertMatch( "a/b/d", "!a/b/*", "a/b/?" );
+        assertMatch( "x/b/c", "*/b/*" );
+        assertMatch( "q/x/c", "*/c" );
+    }
+
+    /**
+     * The longest ancestor and tail match patterns are selected, the universal patterns following in the order they
+     * were added.
+     */
+    @Test
+    public void testLongestMatchOrdering()
+    {
+        digester.getRules().clear();
+
+        addRules( "*/b/*", "*/a/b/*", "a/b/*", "*", "!*", "*/x/?" );
+
+        assertMatch( "a", "*", "!*" );
+        assertMatch( "a/b", "*/a/b/*", "!*" );
+        assertMatch( "a/b/c/d", "a/b/*", "!*" );
+        assertMatch( "x/a/b/c", "*/a/b/*", "!*" );
+        assertMatch( "x/b/y/z", "*/b/*", "!*" );
+        assertMatch( "q/x/c", "!*", "*/x/?" );
+
+        digester.getRules().clear();
+
+        addRules( "*", "*/c", "*/b/c", "a/*", "a/b/*", "!*/c", "!*/b/c", "!a/*" );
+
+        assertMatch( "a", "*", "!a/*" );
+        assertMatch( "a/b", "a/*", "!a/*" );
+        assertMatch( "a/b/c", "a/b/*", "!*/c", "!*/b/c", "!a/*" );
+        assertMatch( "x/a/b/c", "*/b/c", "!*/c", "!*/b/c" );
+        assertMatch( "x/b/y/z", "*" );
+        assertMatch( "q/x/c", "*/c", "!*/c" );
+    }
+
+    /**
+     * The matches of the element states are memoized, and computed again once the registered patterns change.
+     */
+    @Test
+    public void testMemoizedMatches()
+    {
+        digester.getRules().clear();
+        final ExtendedBaseRules rules = (ExtendedBaseRules) digester.getRules();
+
+        addRules( "!a/b/*", "a/b/?", "*/b/*" );
+
+        final int c = nextStates( rules, "a/b/c" );
+        final int d = nextStates( rules, "a/b/d" );
+        final List<Rule> matchesOfC = rules.match( c, null, "c", null );
+        assertEquals( rules.match( null, "a/b/c", "c", null ), matchesOfC );
+        assertSame( "Memoized matches", matchesOfC, rules.match( c, null, "c", null ) );
+        assertEquals( "Same element, same state", c, nextStates( rules, "a/b/c" ) );
+
+        // registering a pattern invalidates the memoized matches
+        addRules( "a/b/c" );
+        assertEquals( identifiers( "!a/b/*", "a/b/c" ), identifiers( rules.match( c, null, "c", null ) ) );
+        assertEquals( identifiers( "!a/b/*", "a/b/?" ), identifiers( rules.match( d, null, "d", null ) ) );
+        assertSame( rules.match( c, null, "c", null ), rules.match( c, null, "c", null ) );
+
+        // and so does clearing the rules
+        rules.clear();
+        assertEquals( 0, rules.match( c, null, "c", null ).size() );
+        assertEquals( 0, rules.match( d, null, "d", null ).size() );
+    }
+
+    private void addRules( final String... patterns )
+    {
+        for ( final String pattern : patterns )
+        {
+            digester.addRule( pattern, new TestRule( pattern ) );
+        }
+    }
+
+    private void assertMatch( final String pattern, final String... expected )
+    {
+        assertEquals( "Matches of " + pattern, identifiers( expected ),
+                      identifiers( digester.getRules().match( null, pattern, null, null ) ) );
+    }
+
+    private static List<String> identifiers( final String... identifiers )
+    {
+        return Arrays.asList( identifiers );
+    }
+
+    private static List<String> identifiers( final List<Rule> rules )
+    {
+        final List<String> identifiers = new ArrayList<String>();
+        for ( final Rule rule : rules )
+        {
+            identifiers.add( ( (TestRule) rule ).getIdentifier() );
+        }
+        return identifiers;
+    }
+
+    private static int nextStates( final IncrementalRules rules, final String pattern )
+    {
+        int state = IncrementalRules.ROOT_STATE;
+        for ( final String name : pattern.split( "/" ) )
+        {
+            state = rules.nextState( state, name );
+        }
+        return state;
+    }
+
 }
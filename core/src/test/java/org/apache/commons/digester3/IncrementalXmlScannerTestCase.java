@@ -0,0 +1,347 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Test case for IncrementalXmlScanner, comparing its events with the ones of the SAX parser of the platform.
+ */
+public class IncrementalXmlScannerTestCase
+{
+
+    private static final String[] DOCUMENTS = {
+        "<a/>",
+        "<?xml version='1.0'?>\n<a x='1' y=\"2&amp;3&#65;&#x42;\">t&lt;e&gt;xt<b/>more<![CDATA[<raw>&]]>end</a>\n",
+        "<!-- c --><?pi  data here ?><a>\r\nline\rtwo\r\n<!-- in --><?p?></a><!--after-->",
+        "<p:a xmlns:p='urn:p' xmlns='urn:d' p:x='1' y='2'><b><p:c xmlns:p='urn:q'/></b></p:a>",
+        "<!DOCTYPE a [<!ENTITY e 'v'> <!ELEMENT a ANY>]><a>&e;</a>",
+        "<a>é中😀 &#x1F600;</a>",
+        "﻿<a>bom</a>",
+        "<a x='a\tb\nc'/>",
+        "<a><b x='>'/>]</a>",
+        " <a/> ",
+        "<a\n  x = 'v' ></a >",
+        "<a>]]</a>",
+        "<a><!----></a>",
+        "<!DOCTYPE a [<!-- it's ] <!ENTITY e 'comment'> --><?pi <!ENTITY e 'pi'>?>"
+            + "<!ENTITY % p \"<!ENTITY e 'literal'>\"><!ENTITY e 'declared'>]><a>&e;</a>",
+        "<!DOCTYPE a SYSTEM 'a[b.dtd' [<!ENTITY e \"it's\">]><a x='&e;'>&e;</a>",
+        // not well formed
+        "<a><b></a>", "<a>", "text<a/>", "<a/><b/>", "<a/>x", "<a x='1' x='2'/>", "<a>&foo;</a>", "<p:a/>", "",
+        "<a>&#0;</a>", "<a>& b</a>", "<a xmlns:p='urn:p' p:x='1' xmlns:q='urn:p' q:x='2'/>",
+        "<a>]]></a>", "<a>\u0001</a>", "<a>&#x1;</a>", "<1a/>", "<a 1x='1'/>", "<a>&1x;</a>",
+        "<a><!-- a -- b --></a>", "<a><!-- a ---></a>", "<a>&#+65;</a>", "<a>&#x+41;</a>", "<a>&#-65;</a>",
+        "<a>&#x;</a>", "<a>&#6 5;</a>",
+    };
+
+    @Test
+    public void testSameEventsAsSax()
+        throws Exception
+    {
+        for ( final String document : DOCUMENTS )
+        {
+            final byte[] bytes = document.getBytes( "UTF-8" );
+            for ( final boolean namespaceAware : new boolean[] { false, true } )
+            {
+                final String expected = parseWithSax( bytes, namespaceAware );
+                for ( final int chunkSize : new int[] { 1, 2, 3, 7, 1000 } )
+                {
+                    assertEquals( "'" + document + "', namespace aware: " + namespaceAware + ", chunks of "
+                        + chunkSize + " bytes", expected, scan( bytes, namespaceAware, chunkSize ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncodings()
+        throws Exception
+    {
+        final String latin = "<?xml version='1.0' encoding='ISO-8859-1'?><a>é</a>";
+        assertEquals( parseWithSax( latin.getBytes( "ISO-8859-1" ), false ),
+                      scan( latin.getBytes( "ISO-8859-1" ), false, 1 ) );
+        final String utf16 = "<?xml version='1.0' encoding='UTF-16'?><a>sixteen</a>";
+        assertEquals( parseWithSax( utf16.getBytes( "UTF-16" ), false ), scan( utf16.getBytes( "UTF-16" ), false, 3 ) );
+    }
+
+    @Test
+    public void testLongMarkups()
+        throws Exception
+    {
+        final StringBuilder document = new StringBuilder( "<a><![CDATA[" );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            document.append( "]] > ]>" );
+        }
+        document.append( "]]><!--" );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            document.append( "- ->" );
+        }
+        document.append( "--><b x='" );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            document.append( "\">" );
+        }
+        document.append( "'/></a>" );
+        final byte[] bytes = document.toString().getBytes( "UTF-8" );
+        assertEquals( parseWithSax( bytes, true ), scan( bytes, true, 8192 ) );
+    }
+
+    @Test
+    public void testEntityExpansionLimits()
+        throws Exception
+    {
+        final StringBuilder document = new StringBuilder( "<!DOCTYPE a [<!ENTITY e 'v'>]><a>" );
+        for ( int i = 0; i < 64001; i++ )
+        {
+            document.append( "&e;" );
+        }
+        document.append( "</a>" );
+        byte[] bytes = document.toString().getBytes( "UTF-8" );
+        assertTrue( parseWithSax( bytes, false ).endsWith( "ERROR" ) );
+        assertTrue( scan( bytes, false, 8192 ).endsWith( "ERROR" ) );
+
+        final char[] value = new char[1000];
+        Arrays.fill( value, 'v' );
+        document.setLength( 0 );
+        document.append( "<!DOCTYPE a [<!ENTITY e '" ).append( value ).append( "'>]><a>" );
+        for ( int i = 0; i < 501; i++ )
+        {
+            document.append( "<b>" );
+            for ( int j = 0; j < 100; j++ )
+            {
+                document.append( "&e;" );
+            }
+            document.append( "</b>" );
+        }
+        document.append( "</a>" );
+        bytes = document.toString().getBytes( "UTF-8" );
+        assertTrue( parseWithSax( bytes, false ).endsWith( "ERROR" ) );
+        assertTrue( scan( bytes, false, 8192 ).endsWith( "ERROR" ) );
+
+        // the limits can be changed
+        final String limit = System.getProperty( "jdk.xml.entityExpansionLimit" );
+        System.setProperty( "jdk.xml.entityExpansionLimit", "10" );
+        try
+        {
+            final String expanded = "<!DOCTYPE a [<!ENTITY e 'v'>]><a>&e;&e;&e;&e;&e;&e;&e;&e;&e;&e;</a>";
+            assertEquals( "startDocument\nstartElement {} a\ncharacters vvvvvvvvvv\nendElement {} a\nendDocument\n",
+                          scan( expanded.getBytes( "UTF-8" ), false, 1000 ) );
+            assertTrue( scan( expanded.replace( "</a>", "&e;</a>" ).getBytes( "UTF-8" ), false, 1000 )
+                        .endsWith( "ERROR" ) );
+        }
+        finally
+        {
+            if ( limit == null )
+            {
+                System.clearProperty( "jdk.xml.entityExpansionLimit" );
+            }
+            else
+            {
+                System.setProperty( "jdk.xml.entityExpansionLimit", limit );
+            }
+        }
+    }
+
+    private static String scan( final byte[] document, final boolean namespaceAware, final int chunkSize )
+    {
+        final EventRecorder recorder = new EventRecorder();
+        final IncrementalXmlScanner scanner = new IncrementalXmlScanner( recorder, namespaceAware );
+        try
+        {
+            for ( int i = 0; i < document.length; i += chunkSize )
+            {
+                scanner.feed( ByteBuffer.wrap( document, i, Math.min( chunkSize, document.length - i ) ) );
+            }
+            scanner.end();
+        }
+        catch ( final SAXException e )
+        {
+            return recorder.failed();
+        }
+        return recorder.toString();
+    }
+
+    private static String parseWithSax( final byte[] document, final boolean namespaceAware )
+        throws Exception
+    {
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware( namespaceAware );
+        final XMLReader reader = factory.newSAXParser().getXMLReader();
+        final EventRecorder recorder = new EventRecorder();
+        reader.setContentHandler( recorder );
+        reader.setErrorHandler( recorder );
+        reader.setEntityResolver( new EntityResolver()
+        {
+
+            @Override
+            public InputSource resolveEntity( final String publicId, final String systemId )
+            {
+                return new InputSource( new StringReader( "" ) );
+            }
+
+        } );
+        try
+        {
+            reader.parse( new InputSource( new ByteArrayInputStream( document ) ) );
+        }
+        catch ( final SAXException e )
+        {
+            return recorder.failed();
+        }
+        return recorder.toString();
+    }
+
+    /**
+     * Records the events as text, the adjacent characters being merged.
+     */
+    private static final class EventRecorder
+        extends DefaultHandler
+    {
+
+        private final StringBuilder events = new StringBuilder();
+
+        private final StringBuilder text = new StringBuilder();
+
+        String failed()
+        {
+            flush();
+            return events + "ERROR";
+        }
+
+        @Override
+        public String toString()
+        {
+            return events.toString();
+        }
+
+        private void flush()
+        {
+            if ( text.length() > 0 )
+            {
+                events.append( "characters " ).append( text ).append( '\n' );
+                text.setLength( 0 );
+            }
+        }
+
+        @Override
+        public void startDocument()
+        {
+            events.append( "startDocument\n" );
+        }
+
+        @Override
+        public void endDocument()
+        {
+            flush();
+            events.append( "endDocument\n" );
+        }
+
+        @Override
+        public void startPrefixMapping( final String prefix, final String uri )
+        {
+            flush();
+            events.append( "startPrefixMapping " ).append( prefix ).append( '=' ).append( uri ).append( '\n' );
+        }
+
+        @Override
+        public void endPrefixMapping( final String prefix )
+        {
+            flush();
+            events.append( "endPrefixMapping " ).append( prefix ).append( '\n' );
+        }
+
+        @Override
+        public void startElement( final String uri, final String localName, final String qName,
+                                  final Attributes attributes )
+        {
+            flush();
+            events.append( "startElement {" ).append( uri ).append( '}' ).append( localName ).append( ' ' )
+                .append( qName );
+            for ( int i = 0; i < attributes.getLength(); i++ )
+            {
+                events.append( " {" ).append( attributes.getURI( i ) ).append( '}' )
+                    .append( attributes.getLocalName( i ) ).append( '|' ).append( attributes.getQName( i ) )
+                    .append( '=' ).append( attributes.getValue( i ) );
+            }
+            events.append( '\n' );
+        }
+
+        @Override
+        public void endElement( final String uri, final String localName, final String qName )
+        {
+            flush();
+            events.append( "endElement {" ).append( uri ).append( '}' ).append( localName ).append( ' ' )
+                .append( qName ).append( '\n' );
+        }
+
+        @Override
+        public void characters( final char[] ch, final int start, final int length )
+        {
+            text.append( ch, start, length );
+        }
+
+        @Override
+        public void ignorableWhitespace( final char[] ch, final int start, final int length )
+        {
+            text.append( ch, start, length );
+        }
+
+        @Override
+        public void processingInstruction( final String target, final String data )
+        {
+            flush();
+            events.append( "processingInstruction " ).append( target ).append( '|' ).append( data ).append( '\n' );
+        }
+
+        @Override
+        public void skippedEntity( final String name )
+        {
+            flush();
+            events.append( "skippedEntity " ).append( name ).append( '\n' );
+        }
+
+        @Override
+        public void fatalError( final org.xml.sax.SAXParseException e )
+            throws SAXException
+        {
+            throw e;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+/**
+ * Test case for PrimitiveParser, comparing its results with the ones of the parsing methods of the JDK.
+ */
+public class PrimitiveParserTestCase
+{
+
+    @Test
+    public void testParseInt()
+    {
+        for ( final String value : new String[] { "0", "-0", "+7", "-42", "2147483647", "-2147483648", "007" } )
+        {
+            final char[] chars = ( " " + value + "\n" ).toCharArray();
+            assertEquals( value, Integer.parseInt( value ), PrimitiveParser.parseInt( chars, 0, chars.length ) );
+        }
+        for ( final String value : new String[] { "", "-", "+", "2147483648", "-2147483649", "4294967296",
+            "99999999999", "1.0", "1 2", "0x10", "9223372036854775808" } )
+        {
+            assertInvalidInt( value );
+        }
+    }
+
+    @Test
+    public void testParseLong()
+    {
+        for ( final String value : new String[] { "0", "-0", "+7", "-42", "2147483648", "9223372036854775807",
+            "-9223372036854775808", "-9223372036854775807" } )
+        {
+            final char[] chars = ( "\t" + value + " " ).toCharArray();
+            assertEquals( value, Long.parseLong( value ), PrimitiveParser.parseLong( chars, 0, chars.length ) );
+        }
+        for ( final String value : new String[] { "", "-", "9223372036854775808", "-9223372036854775809",
+            "18446744073709551616", "99999999999999999999", "-99999999999999999999", "1e3", "--1" } )
+        {
+            assertInvalidLong( value );
+        }
+    }
+
+    @Test
+    public void testParseDouble()
+    {
+        for ( final String value : new String[] { "0", "-0", "+1.", ".5", "0.1", "123456789012345", "1234567890123456",
+            "3.141592653589793", "1e10", "0x1p3", "NaN", "-Infinity", "1d", "0.00000000000000000000000001",
+            "9223372036854775808", "-9223372036854775808" } )
+        {
+            final char[] chars = ( " " + value + " " ).toCharArray();
+            assertEquals( value, Double.parseDouble( value ), PrimitiveParser.parseDouble( chars, 0, chars.length ),
+                          0 );
+        }
+    }
+
+    @Test
+    public void testParseDecimal()
+    {
+        for ( final String value : new String[] { "0", "-1.50", "12345678901234567890.123", "1e-3" } )
+        {
+            final char[] chars = ( " " + value + " " ).toCharArray();
+            assertEquals( value, new BigDecimal( value ), PrimitiveParser.parseDecimal( chars, 0, chars.length ) );
+        }
+    }
+
+    private static void assertInvalidInt( final String value )
+    {
+        final char[] chars = value.toCharArray();
+        try
+        {
+            PrimitiveParser.parseInt( chars, 0, chars.length );
+            fail( "'" + value + "' parsed as an int" );
+        }
+        catch ( final NumberFormatException e )
+        {
+            // expected
+        }
+    }
+
+    private static void assertInvalidLong( final String value )
+    {
+        final char[] chars = value.toCharArray();
+        try
+        {
+            PrimitiveParser.parseLong( chars, 0, chars.length );
+            fail( "'" + value + "' parsed as a long" );
+        }
+        catch ( final NumberFormatException e )
+        {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the throughput of the SAX and StAX parsers digesting the same flat document. It measures, it does not
+ * check anything worth running on every build: remove the <code>Ignore</code> annotation to run it.
+ */
+@Ignore( "Benchmark, to be run manually" )
+public class PullParsingBenchmarkTestCase
+{
+
+    private static final int RECORDS = 100000;
+
+    private static final int RUNS = 30;
+
+    @Test
+    public void testThroughput()
+        throws Exception
+    {
+        final StringBuilder xml = new StringBuilder( "<root>" );
+        for ( int i = 0; i < RECORDS; i++ )
+        {
+            xml.append( "<record id='" ).append( i ).append( "' name='n" ).append( i ).append( "'><body>text " )
+                .append( i ).append( "</body></record>\n" );
+        }
+        xml.append( "</root>" );
+        final byte[] document = xml.toString().getBytes( "UTF-8" );
+
+        // alternated, so that both parsers benefit from the warm up
+        for ( int round = 0; round < 4; round++ )
+        {
+            for ( final boolean pullParsing : new boolean[] { false, true } )
+            {
+                long best = Long.MAX_VALUE;
+                for ( int run = 0; run < RUNS; run++ )
+                {
+                    final Digester digester = new Digester();
+                    digester.setPullParsing( pullParsing );
+                    digester.addObjectCreate( "root/record", Record.class );
+                    digester.addSetProperties( "root/record" );
+                    digester.addBeanPropertySetter( "root/record/body" );
+                    digester.addSetNext( "root/record", "add" );
+                    final Records records = new Records();
+                    digester.push( records );
+
+                    final long start = System.nanoTime();
+                    digester.parse( new ByteArrayInputStream( document ) );
+                    best = Math.min( best, System.nanoTime() - start );
+                    assertEquals( RECORDS, records.getCount() );
+                }
+                System.out.printf( "%s best %d ms, %d MB/s%n", pullParsing ? "StAX" : "SAX ", best / 1000000,
+                                   document.length * 1000L / best );
+            }
+        }
+    }
+
+    public static class Record
+    {
+
+        private int id;
+
+        private String name;
+
+        private String body;
+
+        public int getId()
+        {
+            return id;
+        }
+
+        public void setId( final int id )
+        {
+            this.id = id;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName( final String name )
+        {
+            this.name = name;
+        }
+
+        public String getBody()
+        {
+            return body;
+        }
+
+        public void setBody( final String body )
+        {
+            this.body = body;
+        }
+
+    }
+
+    public static class Records
+    {
+
+        private int count;
+
+        public void add( final Record record )
+        {
+            count++;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+    }
+
+}
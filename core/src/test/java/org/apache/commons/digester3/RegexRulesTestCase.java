@@ -19,6 +19,8 @@
 package org.apache.commons.digester3;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 
@@ -206,4 +208,82 @@ public class RegexRulesTestCase
         assertEquals( "Simple Regex Match '/alpha/beta/gamma/beta/epsilon/beta/gamma/epsilon' to "
             + " '*/beta/gamma/?p*no' ", false, matcher.match( "/alpha/beta/gamma", "*/beta/gamma/?p*no" ) );
     }
+
+    /** Test that all the rules are matched together, with and without memoization, as they are one by one */
+    @Test
+    public void testSimpleRegexRulesMatch()
+    {
+        final String[] patterns = { "/alpha/beta/gamma", "/alpha/*", "/alpha/*/gamma", "/alpha/*me", "*/beta/gamma",
+            "*/bet/gamma", "/alph?/beta/gamma", "/alpha/?beta/gamma", "/alpha/?eta/*", "*/?et?/?amma", "*/beta/gamma/?p*n",
+            "/alpha/*" };
+        final String[] paths = { "/alpha/beta/gamma", "/alpha", "/alpha/", "/alpha/beta", "/alpha/game",
+            "/alpha/beta/gamma/beta/epsilon/beta/gamma/epsilon", "/beta/gamma", "" };
+
+        final SimpleRegexMatcher matcher = new SimpleRegexMatcher();
+        final RegexRules rules = new RegexRules( matcher );
+        for ( int i = 0; i < patterns.length; i++ )
+        {
+            rules.add( patterns[i], new TestRule( String.valueOf( i ) ) );
+        }
+
+        for ( final int cacheSize : new int[] { 0, 2 } )
+        {
+            rules.setMatchCacheSize( cacheSize );
+            assertEquals( cacheSize, rules.getMatchCacheSize() );
+            for ( int round = 0; round < 2; round++ )
+            {
+                for ( final String path : paths )
+                {
+                    final StringBuilder expected = new StringBuilder();
+                    for ( int i = 0; i < patterns.length; i++ )
+                    {
+                        if ( matcher.match( path, patterns[i] ) )
+                        {
+                            expected.append( i ).append( ',' );
+                        }
+                    }
+                    final StringBuilder actual = new StringBuilder();
+                    for ( final Rule rule : rules.match( null, path, null, null ) )
+                    {
+                        actual.append( ( (TestRule) rule ).getIdentifier() ).append( ',' );
+                    }
+                    assertEquals( "Matches for '" + path + "'", expected.toString(), actual.toString() );
+                }
+            }
+        }
+
+        // memoized matches are discarded when rules are added or removed
+        assertEquals( 2, rules.match( null, "/alpha/beta", null, null ).size() );
+        rules.add( "/alpha/beta", new TestRule( "delta" ) );
+        assertEquals( 3, rules.match( null, "/alpha/beta", null, null ).size() );
+        rules.clear();
+        assertEquals( 0, rules.match( null, "/alpha/beta", null, null ).size() );
+    }
+
+    /** Test the detection of the elements whose descendants can not be matched */
+    @Test
+    public void testCanMatchDescendants()
+    {
+        final RegexRules rules = new RegexRules( new SimpleRegexMatcher() );
+        rules.add( "/alpha/beta", new TestRule( "alpha" ) );
+        rules.add( "/gamma/*/delta", new TestRule( "beta" ) );
+
+        assertTrue( rules.canMatchDescendants( "/alpha" ) );
+        assertFalse( rules.canMatchDescendants( "/alpha/beta" ) );
+        assertFalse( rules.canMatchDescendants( "/alpha/gamma" ) );
+        assertTrue( rules.canMatchDescendants( "/gamma/epsilon/zeta" ) );
+        assertFalse( rules.canMatchDescendants( "/epsilon" ) );
+
+        // only the simple regex strategy can be analyzed
+        rules.setRegexMatcher( new RegexMatcher()
+        {
+            @Override
+            public boolean match( final String pathPattern, final String rulePattern )
+            {
+                return false;
+            }
+        } );
+        assertTrue( rules.canMatchDescendants( "/epsilon" ) );
+    }
+
 }
@@ -19,14 +19,27 @@
 package org.apache.commons.digester3;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.digester3.Digester;
 import org.apache.commons.digester3.ExtendedBaseRules;
@@ -34,7 +47,10 @@ import org.apache.commons.digester3.RuleSet;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 /**
  * <p>
@@ -413,6 +429,41 @@ public class RuleTestCase
 
     }
 
+    @Test
+    public void testSetNextExactMatchWithParamType()
+        throws SAXException, IOException
+    {
+        final Digester digester = new Digester();
+        digester.setRules( new ExtendedBaseRules() );
+        digester.setValidating( false );
+
+        // the same rule links children of different classes to parents of different classes
+        final SetNextRule setChild = new SetNextRule( "setChild", Nameable.class );
+        setChild.setExactMatch( true );
+        digester.addObjectCreate( "!*/b", BetaBean.class );
+        digester.addObjectCreate( "!*/a", AlphaBean.class );
+        digester.addObjectCreate( "root", ArrayList.class );
+        digester.addSetProperties( "!*" );
+        digester.addRule( "!*/b/?", setChild );
+        digester.addRule( "!*/a/?", setChild );
+        digester.addSetNext( "!root/?", "add" );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            final ArrayList<?> root = digester.parse( getInputStream( "Test4.xml" ) );
+
+            assertEquals( "Wrong array size", 2, root.size() );
+            final AlphaBean one = (AlphaBean) root.get( 0 );
+            final BetaBean two = (BetaBean) one.getChild();
+            assertEquals( "Wrong name (1)", "TWO", two.getName() );
+            final AlphaBean three = (AlphaBean) two.getChild();
+            assertEquals( "Wrong name (2)", "THREE", three.getName() );
+            final BetaBean four = (BetaBean) root.get( 1 );
+            final BetaBean five = (BetaBean) four.getChild();
+            assertEquals( "Wrong name (4)", "FIVE", five.getName() );
+        }
+    }
+
     @Test
     public void testSetTop()
         throws SAXException, IOException
@@ -520,6 +571,338 @@ public class RuleTestCase
 
     }
 
+    /**
+     * Test the objects completed at a pattern are handed to the consumer instead of being linked to their parent.
+     */
+    @Test
+    public void testConsumeObject()
+        throws Exception
+    {
+        final List<Employee> employees = new ArrayList<Employee>();
+        digester.addObjectCreate( "employees/employee", Employee.class );
+        digester.addSetProperties( "employees/employee" );
+        digester.addConsumeObject( "employees/employee", Employee.class, new ObjectConsumer<Object>()
+        {
+
+            @Override
+            public void consume( final Object object )
+            {
+                // the nested elements have already been processed
+                assertNotNull( ( (Employee) object ).getAddress( "home" ) );
+                employees.add( (Employee) object );
+            }
+
+        } );
+        digester.addObjectCreate( "employees/employee/address", Address.class );
+        digester.addSetProperties( "employees/employee/address" );
+        digester.addSetNext( "employees/employee/address", "addAddress" );
+
+        final List<Object> root = new ArrayList<Object>();
+        digester.push( root );
+        digester.parse( new StringReader( "<employees><employee firstName='A'><address type='home'/></employee>"
+            + "<employee firstName='B'><address type='home'/></employee></employees>" ) );
+
+        assertEquals( 2, employees.size() );
+        assertEquals( "A", employees.get( 0 ).getFirstName() );
+        assertEquals( "B", employees.get( 1 ).getFirstName() );
+        // nothing links the consumed objects
+        assertTrue( root.isEmpty() );
+
+        // objects constructed without proxy are consumed once constructed
+        final List<Digester153TestCase.Point> points = new ArrayList<Digester153TestCase.Point>();
+        final Digester pointsDigester = new Digester();
+        final ObjectCreateRule createRule = new ObjectCreateRule( Digester153TestCase.Point.class );
+        createRule.setConstructorArgumentTypes( int.class, int.class );
+        createRule.setUsingProxy( false );
+        pointsDigester.addRule( "points/point", createRule );
+        pointsDigester.addCallParam( "points/point", 0, "x" );
+        pointsDigester.addCallParam( "points/point", 1, "y" );
+        pointsDigester.addConsumeObject( "points/point", Digester153TestCase.Point.class,
+                                         new ObjectConsumer<Digester153TestCase.Point>()
+        {
+
+            @Override
+            public void consume( final Digester153TestCase.Point point )
+            {
+                points.add( point );
+            }
+
+        } );
+        pointsDigester.addBeanPropertySetter( "points/point/label" );
+        pointsDigester.parse( new StringReader( "<points><point x='1' y='2'><label>a</label></point>"
+            + "<point x='3' y='4'><label>b</label></point></points>" ) );
+
+        assertEquals( 2, points.size() );
+        assertEquals( "a", points.get( 0 ).getLabel() );
+        assertEquals( "b", points.get( 1 ).getLabel() );
+    }
+
+    /**
+     * Test reading the documents with a StAX parser.
+     */
+    @Test
+    public void testPullParsing()
+        throws Exception
+    {
+        // the same as testRuleSet3
+        digester.setNamespaceAware( true );
+        digester.setPullParsing( true );
+        digester.addRuleSet( new TestRuleSet( null, "http://commons.apache.org/digester/Foo" ) );
+
+        Employee employee = digester.parse( getInputStream( "Test3.xml" ) );
+
+        assertEquals( "First name is correct", "First Name", employee.getFirstName() );
+        assertEquals( "Last name is correct", "Last Name", employee.getLastName() );
+        assertNull( "Can not retrieve home address", employee.getAddress( "home" ) );
+        assertNull( "Can not retrieve office address", employee.getAddress( "office" ) );
+
+        // a reader provided by the caller, positioned on the root element
+        final Digester pullDigester = new Digester();
+        pullDigester.addObjectCreate( "employee", Employee.class );
+        pullDigester.addSetProperties( "employee" );
+        pullDigester.addObjectCreate( "employee/address", Address.class );
+        pullDigester.addSetProperties( "employee/address" );
+        pullDigester.addSetNext( "employee/address", "addAddress" );
+        pullDigester.addBeanPropertySetter( "employee/address/street" );
+
+        final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(
+            new StringReader( "<employee firstName='A'><address type='home'><street>S&amp;<![CDATA[<1>]]></street>"
+                + "</address></employee>" ) );
+        reader.nextTag();
+        employee = pullDigester.parse( reader );
+
+        assertEquals( "A", employee.getFirstName() );
+        assertEquals( "S&<1>", employee.getAddress( "home" ).getStreet() );
+        reader.close();
+    }
+
+    /**
+     * Test a StAX factory shared by digesters resolving the external entities differently.
+     */
+    @Test
+    public void testPullParsingSharedFactory()
+        throws Exception
+    {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        final Digester first = newEmployeeDigester( factory, "First" );
+        final Digester second = newEmployeeDigester( factory, "Second" );
+        assertFalse( "Digester kept as the resolver", factory.getXMLResolver() instanceof Digester );
+
+        final String xml = "<!DOCTYPE employee SYSTEM 'http://commons.apache.org/digester/employee.dtd'>"
+            + "<employee firstName='&who;'/>";
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertEquals( "First", first.<Employee> parse( new StringReader( xml ) ).getFirstName() );
+            assertEquals( "Second", second.<Employee> parse( new StringReader( xml ) ).getFirstName() );
+        }
+    }
+
+    /**
+     * Test the external entities are resolved the same way by the SAX and the StAX parsers, once the resolver
+     * returned a source.
+     */
+    @Test
+    public void testPullParsingEntityResolution()
+        throws Exception
+    {
+        final File secret = File.createTempFile( "digester", ".txt" );
+        try
+        {
+            final Writer writer = new OutputStreamWriter( new FileOutputStream( secret ), "UTF-8" );
+            writer.write( "SECRET" );
+            writer.close();
+            final String xml = "<!DOCTYPE employee [<!ENTITY x SYSTEM '" + secret.toURI() + "'>]>"
+                + "<employee><firstName>&x;</firstName></employee>";
+
+            final Digester saxDigester = newEmptyEntityDigester();
+            assertEquals( "", saxDigester.<Employee> parse( new StringReader( xml ) ).getFirstName() );
+
+            final Digester pullDigester = newEmptyEntityDigester();
+            pullDigester.setPullParsing( true );
+            assertEquals( "", pullDigester.<Employee> parse( new StringReader( xml ) ).getFirstName() );
+
+            final DigesterIterator<Employee> employees =
+                newEmptyEntityDigester().iterate( new InputSource( new StringReader( xml ) ), "employee",
+                                                  Employee.class );
+            assertEquals( "", employees.next().getFirstName() );
+            employees.close();
+
+            final Digester readerDigester = newEmptyEntityDigester();
+            final XMLStreamReader reader =
+                readerDigester.getXMLInputFactory().createXMLStreamReader( new StringReader( xml ) );
+            assertEquals( "", readerDigester.<Employee> parse( reader ).getFirstName() );
+            reader.close();
+        }
+        finally
+        {
+            secret.delete();
+        }
+    }
+
+    private static Digester newEmptyEntityDigester()
+    {
+        final Digester digester = new Digester();
+        digester.setEntityResolver( new EntityResolver()
+        {
+
+            @Override
+            public InputSource resolveEntity( final String publicId, final String systemId )
+            {
+                return new InputSource( new StringReader( "" ) );
+            }
+
+        } );
+        digester.addObjectCreate( "employee", Employee.class );
+        digester.addBeanPropertySetter( "employee/firstName" );
+        return digester;
+    }
+
+    private static Digester newEmployeeDigester( final XMLInputFactory factory, final String name )
+    {
+        final Digester digester = new Digester();
+        digester.setPullParsing( true );
+        digester.setXMLInputFactory( factory );
+        digester.setEntityResolver( new EntityResolver()
+        {
+
+            @Override
+            public InputSource resolveEntity( final String publicId, final String systemId )
+            {
+                return new InputSource( new ByteArrayInputStream( ( "<!ENTITY who '" + name + "'>" ).getBytes() ) );
+            }
+
+        } );
+        digester.addObjectCreate( "employee", Employee.class );
+        digester.addSetProperties( "employee" );
+        return digester;
+    }
+
+    /**
+     * Test feeding the documents as their bytes are received.
+     */
+    @Test
+    public void testSession()
+        throws Exception
+    {
+        digester.addObjectCreate( "employees/employee", Employee.class );
+        digester.addSetProperties( "employees/employee" );
+        digester.addSetNext( "employees/employee", "add" );
+        digester.addObjectCreate( "employees/employee/address", Address.class );
+        digester.addSetProperties( "employees/employee/address" );
+        digester.addSetNext( "employees/employee/address", "addAddress" );
+        digester.addBeanPropertySetter( "employees/employee/address/street" );
+
+        final List<Employee> root = new ArrayList<Employee>();
+        digester.push( root );
+        DigesterSession session = digester.newSession();
+        final byte[] first = ( "<?xml version='1.0' encoding='UTF-8'?>\n<employees><employee firstName='A&amp;B'>"
+            + "<address type='home'><street>R\u00fcbenweg <![CDATA[<1>]]></street></address></employee>" )
+            .getBytes( "UTF-8" );
+        // the bytes are fed in small chunks, splitting the markups and the characters
+        for ( int i = 0; i < first.length; i += 3 )
+        {
+            session.feed( ByteBuffer.wrap( first, i, Math.min( 3, first.length - i ) ) );
+        }
+
+        // the rules have been fired before the end of the document
+        assertEquals( 1, root.size() );
+        assertEquals( "A&B", root.get( 0 ).getFirstName() );
+        assertEquals( "R\u00fcbenweg <1>", root.get( 0 ).getAddress( "home" ).getStreet() );
+
+        session.feed( ByteBuffer.wrap( "<employee firstName='C'/></employees>".getBytes( "UTF-8" ) ) );
+        assertSame( root, session.endOfInput() );
+        assertTrue( session.isClosed() );
+        assertEquals( 2, root.size() );
+        assertEquals( "C", root.get( 1 ).getFirstName() );
+
+        // the same as testRuleSet3
+        final Digester namespaceDigester = new Digester();
+        namespaceDigester.setNamespaceAware( true );
+        namespaceDigester.addRuleSet( new TestRuleSet( null, "http://commons.apache.org/digester/Foo" ) );
+        session = namespaceDigester.newSession();
+        final InputStream input = getInputStream( "Test3.xml" );
+        final byte[] buffer = new byte[16];
+        int read;
+        while ( ( read = input.read( buffer ) ) != -1 )
+        {
+            session.feed( ByteBuffer.wrap( buffer, 0, read ) );
+        }
+        input.close();
+        final Employee employee = session.endOfInput();
+        assertEquals( "First Name", employee.getFirstName() );
+        assertNull( employee.getAddress( "home" ) );
+
+        digester.push( new ArrayList<Employee>() );
+        session = digester.newSession();
+        try
+        {
+            session.feed( ByteBuffer.wrap( "<employees><employee></address>".getBytes( "UTF-8" ) ) );
+            fail( "Expected a SAXParseException" );
+        }
+        catch ( final SAXParseException e )
+        {
+            assertEquals( 1, e.getLineNumber() );
+        }
+        assertTrue( session.isClosed() );
+        assertEquals( 0, digester.getCount() );
+    }
+
+    /**
+     * Test iterating over the objects completed at a pattern.
+     */
+    @Test
+    public void testIterate()
+        throws Exception
+    {
+        digester.addObjectCreate( "employees/employee", Employee.class );
+        digester.addSetProperties( "employees/employee" );
+        digester.addSetNext( "employees/employee", "add" );
+        digester.addObjectCreate( "employees/employee/address", Address.class );
+        digester.addSetProperties( "employees/employee/address" );
+        digester.addSetNext( "employees/employee/address", "addAddress" );
+
+        final List<Object> root = new ArrayList<Object>();
+        digester.push( root );
+        DigesterIterator<Employee> employees =
+            digester.iterate( new InputSource( new StringReader( "<employees><employee firstName='A'>"
+                + "<address type='home'/></employee><other/><employee firstName='B'/></employees>" ) ),
+                              "employees/employee", Employee.class );
+
+        assertTrue( employees.hasNext() );
+        final Employee first = employees.next();
+        assertEquals( "A", first.getFirstName() );
+        // the nested elements have already been processed
+        assertNotNull( first.getAddress( "home" ) );
+        assertEquals( "B", employees.next().getFirstName() );
+        assertFalse( employees.hasNext() );
+        assertEquals( 2, root.size() );
+        assertSame( root, digester.getRoot() );
+
+        // the document is only read as far as needed, and can be abandoned
+        digester.push( new ArrayList<Object>() );
+        employees = digester.iterate( new InputSource( new StringReader( "<employees><employee firstName='C'/>"
+            + "<employee firstName='D'/><employee" ) ), "employees/employee", Employee.class );
+        assertEquals( "C", employees.next().getFirstName() );
+        employees.close();
+        assertFalse( employees.hasNext() );
+        assertEquals( 0, digester.getCount() );
+
+        digester.push( new ArrayList<Object>() );
+        employees = digester.iterate( new InputSource( new StringReader( "<employees><employee firstName='E'/>"
+            + "<employee" ) ), "employees/employee", Employee.class );
+        assertEquals( "E", employees.next().getFirstName() );
+        try
+        {
+            employees.hasNext();
+            fail( "Expected a DigesterIterationException" );
+        }
+        catch ( final DigesterIterationException e )
+        {
+            assertTrue( e.getCause() instanceof SAXException );
+        }
+        assertFalse( employees.hasNext() );
+    }
+
     // ------------------------------------------------ Utility Support Methods
 
     /**
@@ -19,6 +19,9 @@
 package org.apache.commons.digester3;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
 import java.util.List;
@@ -217,6 +220,110 @@ public class RulesBaseTestCase
 
     }
 
+    /**
+     * The lists already returned must not change when rules are registered afterwards.
+     */
+    @Test
+    public void testMatchedListsUnchangedByRegistration()
+    {
+        digester.getRules().clear();
+
+        digester.addRule( "alpha/beta", new TestRule( "Euclidean-Namespace", "euclidean" ) );
+        final List<Rule> first = digester.getRules().match( "euclidean", "alpha/beta", null, null );
+        assertEquals( 1, first.size() );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            digester.addRule( "alpha/beta", new TestRule( "No-Namespace-" + i ) );
+        }
+        digester.addRule( "alpha/beta", new TestRule( "Euclidean-Namespace-2", "euclidean" ) );
+
+        assertEquals( "Returned list modified", 1, first.size() );
+        final List<Rule> second = digester.getRules().match( "euclidean", "alpha/beta", null, null );
+        assertEquals( 102, second.size() );
+        assertEquals( "Euclidean-Namespace-2", ( (TestRule) second.get( 101 ) ).getIdentifier() );
+        assertEquals( 100, digester.getRules().match( "hyperbolic", "alpha/beta", null, null ).size() );
+
+        // clean up
+        digester.getRules().clear();
+    }
+
+    /**
+     * Test the detection of the elements whose descendants can not be matched.
+     */
+    @Test
+    public void testCanMatchDescendants()
+    {
+        final PruningRules rules = (PruningRules) digester.getRules();
+        rules.clear();
+
+        digester.addRule( "alpha/beta/gamma", new TestRule( "Tom" ) );
+        digester.addRule( "delta", new TestRule( "Dick" ) );
+
+        assertTrue( rules.canMatchDescendants( "alpha" ) );
+        assertTrue( rules.canMatchDescendants( "alpha/beta" ) );
+        assertFalse( rules.canMatchDescendants( "alpha/beta/gamma" ) );
+        assertFalse( rules.canMatchDescendants( "alpha/bet" ) );
+        assertFalse( rules.canMatchDescendants( "delta" ) );
+        assertFalse( rules.canMatchDescendants( "epsilon" ) );
+
+        // tail wildcards can match anywhere
+        digester.addRule( "*/omega", new TestRule( "Harry" ) );
+        assertTrue( rules.canMatchDescendants( "delta" ) );
+        assertTrue( rules.canMatchDescendants( "epsilon/zeta" ) );
+
+        rules.clear();
+        assertFalse( rules.canMatchDescendants( "alpha" ) );
+    }
+
+    /**
+     * Rules selected by namespace must keep the registration order, whatever the order namespaces are met in.
+     */
+    @Test
+    public void testInterleavedNamespaceMatching()
+    {
+        final Rules rules = digester.getRules();
+        rules.clear();
+
+        digester.addRule( "alpha/beta", new TestRule( "Euclidean-1", "euclidean" ) );
+        digester.addRule( "alpha/beta", new TestRule( "No-Namespace-1" ) );
+        digester.addRule( "alpha/beta", new TestRule( "Hyperbolic-1", "hyperbolic" ) );
+        digester.addRule( "alpha/beta", new TestRule( "No-Namespace-2" ) );
+        digester.addRule( "alpha/beta", new TestRule( "Euclidean-2", "euclidean" ) );
+        digester.addRule( "alpha/gamma", new TestRule( "No-Namespace-3" ) );
+
+        assertEquals( "Euclidean-1,No-Namespace-1,No-Namespace-2,Euclidean-2,",
+                      identifiers( rules.match( "euclidean", "alpha/beta", null, null ) ) );
+        assertEquals( "No-Namespace-1,Hyperbolic-1,No-Namespace-2,",
+                      identifiers( rules.match( "hyperbolic", "alpha/beta", null, null ) ) );
+        assertEquals( "No-Namespace-1,No-Namespace-2,",
+                      identifiers( rules.match( "elliptic", "alpha/beta", null, null ) ) );
+        assertEquals( "No-Namespace-3,", identifiers( rules.match( "euclidean", "alpha/gamma", null, null ) ) );
+        assertEquals( "", identifiers( rules.match( "euclidean", "alpha/delta", null, null ) ) );
+
+        if ( rules.getClass() == RulesBase.class )
+        {
+            // namespace selections are computed once, at registration time
+            assertSame( rules.match( "euclidean", "alpha/beta", null, null ),
+                        rules.match( "euclidean", "alpha/beta", null, null ) );
+            assertSame( rules.match( "euclidean", "alpha/delta", null, null ),
+                        rules.match( "hyperbolic", "alpha/epsilon", null, null ) );
+        }
+
+        rules.clear();
+        assertEquals( "", identifiers( rules.match( "euclidean", "alpha/beta", null, null ) ) );
+    }
+
+    private static String identifiers( final List<Rule> rules )
+    {
+        final StringBuilder identifiers = new StringBuilder();
+        for ( final Rule rule : rules )
+        {
+            identifiers.append( ( (TestRule) rule ).getIdentifier() ).append( ',' );
+        }
+        return identifiers.toString();
+    }
+
     /**
      * Rules must always be returned in the correct order.
      */
@@ -274,4 +381,117 @@ public class RulesBaseTestCase
         // clean up
         digester.getRules().clear();
     }
+
+    /**
+     * The longest wildcard pattern must win, whatever the number of registered wildcard patterns and the order they
+     * have been added, and only whole element names have to be matched.
+     */
+    @Test
+    public void testLongestWildcardMatch()
+    {
+        // clear any existing rules
+        digester.getRules().clear();
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            digester.addRule( "*/item" + i, new TestRule( "*/item" + i ) );
+        }
+        digester.addRule( "*/list/entry/value", new TestRule( "*/list/entry/value" ) );
+        digester.addRule( "*/value", new TestRule( "*/value" ) );
+        digester.addRule( "*/entry/value", new TestRule( "*/entry/value" ) );
+
+        assertEquals( "*/item42", matchIdentifier( "root/item42" ) );
+        assertEquals( "*/item42", matchIdentifier( "item42" ) );
+        assertEquals( "*/list/entry/value", matchIdentifier( "root/list/entry/value" ) );
+        assertEquals( "*/list/entry/value", matchIdentifier( "list/entry/value" ) );
+        assertEquals( "*/entry/value", matchIdentifier( "root/sublist/entry/value" ) );
+        assertEquals( "*/entry/value", matchIdentifier( "root/xlist/entry/value" ) );
+        assertEquals( "*/value", matchIdentifier( "root/list/value" ) );
+        assertEquals( "*/value", matchIdentifier( "root/anentry/value" ) );
+        assertEquals( 0, digester.getRules().match( null, "root/item", null, null ).size() );
+        assertEquals( 0, digester.getRules().match( null, "root/item42/x", null, null ).size() );
+
+        // patterns added after a match has been performed are taken in account
+        digester.addRule( "*/sublist/entry/value", new TestRule( "*/sublist/entry/value" ) );
+        assertEquals( "*/sublist/entry/value", matchIdentifier( "root/sublist/entry/value" ) );
+
+        // clean up
+        digester.getRules().clear();
+        assertEquals( 0, digester.getRules().match( null, "root/item42", null, null ).size() );
+    }
+
+    /**
+     * Incremental matching must select the same rules than matching the whole element pattern, even when patterns
+     * are added after the element states have been computed.
+     */
+    @Test
+    public void testIncrementalMatching()
+    {
+        // clear any existing rules
+        digester.getRules().clear();
+
+        if ( !( digester.getRules() instanceof IncrementalRules ) )
+        {
+            return;
+        }
+        final IncrementalRules rules = (IncrementalRules) digester.getRules();
+
+        digester.addRule( "a/b/c", new TestRule( "a/b/c" ) );
+        digester.addRule( "*/c", new TestRule( "*/c" ) );
+        digester.addRule( "*/b/c/d", new TestRule( "*/b/c/d" ) );
+        digester.addRule( "a/b/c", new TestRule( "a/b/c ns", "euclidean" ) );
+
+        final String[] path = { "a", "b", "c", "d", "c" };
+        final int[] states = new int[path.length];
+        int parentState = IncrementalRules.ROOT_STATE;
+        for ( int i = 0; i < path.length; i++ )
+        {
+            states[i] = rules.nextState( parentState, path[i] );
+            parentState = states[i];
+        }
+        if ( states[0] == IncrementalRules.UNKNOWN_STATE )
+        {
+            // the implementation does not support incremental matching
+            return;
+        }
+        assertEquals( "Same element, same state", states[2], rules.nextState( states[1], "c" ) );
+
+        assertIncrementalMatch( rules, path, states );
+
+        // states survive the registration of new patterns
+        digester.addRule( "a/b", new TestRule( "a/b" ) );
+        digester.addRule( "*/d/c", new TestRule( "*/d/c" ) );
+        assertIncrementalMatch( rules, path, states );
+
+        // clean up
+        digester.getRules().clear();
+        assertIncrementalMatch( rules, path, states );
+    }
+
+    private void assertIncrementalMatch( final IncrementalRules rules, final String[] path, final int[] states )
+    {
+        final StringBuilder pattern = new StringBuilder();
+        for ( int i = 0; i < path.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                pattern.append( '/' );
+            }
+            pattern.append( path[i] );
+            for ( final String namespaceURI : new String[] { null, "euclidean", "hyperbolic" } )
+            {
+                assertEquals( "Match of " + pattern + " in " + namespaceURI,
+                              rules.match( namespaceURI, pattern.toString(), path[i], null ),
+                              rules.match( states[i], namespaceURI, path[i], null ) );
+            }
+        }
+    }
+
+    private String matchIdentifier( final String pattern )
+    {
+        final List<Rule> list = digester.getRules().match( null, pattern, null, null );
+        assertEquals( "Wrong number of matches for " + pattern, 1, list.size() );
+        return ( (TestRule) list.get( 0 ) ).getIdentifier();
+    }
+
 }
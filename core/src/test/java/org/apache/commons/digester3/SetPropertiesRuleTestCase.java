@@ -19,17 +19,22 @@
 package org.apache.commons.digester3;
 
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Reader;
 import java.io.StringReader;
 
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.junit.Test;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 /**
  * <p>
@@ -214,6 +219,127 @@ public class SetPropertiesRuleTestCase
         assertEquals( "delta property set", "DELTA VALUE", bean.getDeltaValue() );
     }
 
+    /**
+     * Test that the setters resolved the first time are reused, still honoring the converters registered later.
+     */
+    @Test
+    public void testConvertedPropertiesOnReuse()
+        throws Exception
+    {
+        final Digester digester = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "root" ).createObject().ofType( "org.apache.commons.digester3.TestBean" )
+                    .then()
+                    .setProperties().ignoreMissingProperty( false );
+            }
+
+        }).newDigester();
+
+        final String xml = "<root intProperty='7' booleanProperty='false' stringArray='a,b'/>";
+        TestBean bean = digester.parse( xmlTestReader( xml ) );
+        assertEquals( 7, bean.getIntProperty() );
+        assertEquals( false, bean.getBooleanProperty() );
+        assertArrayEquals( new String[] { "a", "b" }, bean.getStringArray() );
+
+        ConvertUtils.register( new Converter()
+        {
+
+            @Override
+            @SuppressWarnings( "unchecked" ) // registered for int only
+            public <T> T convert( final Class<T> type, final Object value )
+            {
+                return (T) Integer.valueOf( 42 );
+            }
+
+        }, Integer.TYPE );
+        try
+        {
+            bean = digester.parse( xmlTestReader( xml ) );
+            assertEquals( 42, bean.getIntProperty() );
+        }
+        finally
+        {
+            ConvertUtils.deregister();
+        }
+
+        try
+        {
+            digester.parse( xmlTestReader( "<root intProperty='8' unknown='x'/>" ) );
+            fail( "Should have thrown NoSuchMethodException" );
+        }
+        catch ( final SAXException e )
+        {
+            assertTrue( e.getException() instanceof NoSuchMethodException );
+            // no property is set when any of them is missing
+            assertEquals( 123, ( (TestBean) digester.getRoot() ).getIntProperty() );
+        }
+    }
+
+    /**
+     * Test that the rules find the attributes through the index, when enabled.
+     */
+    @Test
+    public void testAttributeIndexing()
+        throws Exception
+    {
+        final Digester digester = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "root" ).createObject().ofType( SimpleTestBean.class )
+                    .then()
+                    .setProperties().addAlias( "a", "alpha" ).ignoreAttribute( "gamma" )
+                    .then()
+                    .callMethod( "setGamma" ).withParamCount( 1 )
+                    .then()
+                    .callParam().fromAttribute( "gamma" );
+                forPattern( "root/child" ).setProperty( "name" ).extractingValueFromAttribute( "value" );
+            }
+
+        } ).setAttributeIndexing( true ).newDigester();
+        assertTrue( digester.getAttributeIndexing() );
+
+        final StringBuilder xml = new StringBuilder( "<root" );
+        for ( int i = 0; i < 40; i++ )
+        {
+            xml.append( " attribute" ).append( i ).append( "='" ).append( i ).append( "'" );
+        }
+        xml.append( " a='ALPHA VALUE' beta='BETA VALUE' gamma='GAMMA VALUE'>" );
+        xml.append( "<child name='delta' value='DELTA VALUE'/></root>" );
+
+        final SimpleTestBean bean = digester.parse( xmlTestReader( xml.toString() ) );
+        assertEquals( "ALPHA VALUE", bean.getAlpha() );
+        assertEquals( "BETA VALUE", bean.getBeta() );
+        assertEquals( "GAMMA VALUE", bean.getGamma() );
+        assertEquals( "DELTA VALUE", bean.getDeltaValue() );
+
+        // the same view is filled again for every element
+        final IndexedAttributes indexed = new IndexedAttributes();
+        final AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute( "urn:a", "id", "a:id", "CDATA", "1" );
+        attributes.addAttribute( "", "id", "", "CDATA", "2" );
+        assertEquals( 2, indexed.index( attributes ).getLength() );
+        assertEquals( "1", indexed.getValue( "a:id" ) );
+        assertEquals( "1", indexed.getValue( "urn:a", "id" ) );
+        assertEquals( "2", indexed.getValue( "", "id" ) );
+        // the local name stands for the missing qualified name
+        assertEquals( "2", indexed.getValue( "id" ) );
+        assertEquals( "id", indexed.getName( 0 ) );
+
+        attributes.clear();
+        attributes.addAttribute( "", "other", "other", "CDATA", "3" );
+        assertEquals( 1, indexed.index( attributes ).getLength() );
+        assertNull( indexed.getValue( "a:id" ) );
+        assertEquals( -1, indexed.getIndex( "id" ) );
+        assertEquals( "3", indexed.getValue( "other" ) );
+    }
+
     /**
      * Get input stream from specified String containing XML data.
      */
@@ -19,10 +19,28 @@ package org.apache.commons.digester3.binder;
  * under the License.
  */
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.digester3.Address;
 import org.apache.commons.digester3.Digester;
+import org.apache.commons.digester3.Employee;
+import org.apache.commons.digester3.Rule;
 import org.junit.Test;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.Locator;
@@ -152,4 +170,319 @@ public final class DigesterLoaderTestCase
         assertSame( expected, actual );
     }
 
+    @Test
+    public void compiledRulesAreSharedAcrossDigesters()
+        throws Exception
+    {
+        final DigesterLoader loader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "entities/entity" ).createObject().ofType( Entity.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .setNext( "add" );
+            }
+
+        } );
+
+        final CompiledRules compiledRules = loader.compileRules();
+        assertSame( compiledRules, loader.compileRules() );
+
+        final String xml = "<entities><entity author='a'/><entity author='b'/></entities>";
+        final List<List<Rule>> parsedRules = new ArrayList<List<Rule>>();
+        for ( int i = 0; i < 2; i++ )
+        {
+            final Digester digester = loader.newDigester( compiledRules.newRules() );
+            // the compiled rules must not be added again
+            assertEquals( 3, digester.getRules().rules().size() );
+
+            final List<Entity> entities = new ArrayList<Entity>();
+            digester.push( entities );
+            digester.parse( new StringReader( xml ) );
+
+            assertEquals( 2, entities.size() );
+            assertEquals( "a", entities.get( 0 ).getAuthor() );
+            assertEquals( "b", entities.get( 1 ).getAuthor() );
+            for ( final Rule rule : digester.getRules().rules() )
+            {
+                assertSame( digester, rule.getDigester() );
+            }
+            parsedRules.add( digester.getRules().rules() );
+        }
+
+        // every digester has its own rule instances
+        assertNotSame( parsedRules.get( 0 ).get( 0 ), parsedRules.get( 1 ).get( 0 ) );
+    }
+
+    @Test
+    public void compiledRulesCreateDigestersConcurrently()
+        throws Exception
+    {
+        final AtomicInteger providedRules = new AtomicInteger();
+        final DigesterLoader loader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "entities/entity" ).createObject().ofType( Entity.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .setNext( "add" )
+                    .then()
+                    .addRuleCreatedBy( new RuleProvider<Rule>()
+                    {
+
+                        @Override
+                        public Rule get()
+                        {
+                            // invoked by the parsing threads
+                            providedRules.incrementAndGet();
+                            return new Rule()
+                            {
+                            };
+                        }
+
+                    } );
+            }
+
+        } );
+
+        final int threads = 4;
+        final int digesters = 50;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            final List<Future<CompiledRules>> futures = new ArrayList<Future<CompiledRules>>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                futures.add( executor.submit( new Callable<CompiledRules>()
+                {
+
+                    @Override
+                    public CompiledRules call()
+                        throws Exception
+                    {
+                        start.await();
+                        final CompiledRules compiledRules = loader.compileRules();
+                        for ( int j = 0; j < digesters; j++ )
+                        {
+                            final Digester digester = loader.newDigester( compiledRules.newRules() );
+                            final List<Entity> entities = new ArrayList<Entity>();
+                            digester.push( entities );
+                            digester.parse( new StringReader( "<entities><entity author='" + j
+                                + "'/><entity author='b'/></entities>" ) );
+                            assertEquals( 2, entities.size() );
+                            assertEquals( String.valueOf( j ), entities.get( 0 ).getAuthor() );
+                        }
+                        return compiledRules;
+                    }
+
+                } ) );
+            }
+            start.countDown();
+
+            final CompiledRules compiledRules = futures.get( 0 ).get();
+            for ( final Future<CompiledRules> future : futures )
+            {
+                assertSame( "Compiled once", compiledRules, future.get() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        // every digester has its own rule instance, created the first time its element is met
+        assertEquals( threads * digesters, providedRules.get() );
+    }
+
+    @Test
+    public void compiledRulesCreateTheMatchedRulesOnly()
+        throws Exception
+    {
+        final AtomicInteger providedRules = new AtomicInteger();
+        final DigesterLoader loader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                for ( int i = 0; i < 50; i++ )
+                {
+                    forPattern( "root/unmatched" + i ).addRuleCreatedBy( new RuleProvider<Rule>()
+                    {
+
+                        @Override
+                        public Rule get()
+                        {
+                            providedRules.incrementAndGet();
+                            return new Rule()
+                            {
+                            };
+                        }
+
+                    } );
+                }
+            }
+
+        } );
+
+        final Digester digester = loader.newDigester( loader.compileRules().newRules() );
+        digester.parse( new StringReader( "<root/>" ) );
+        // not even created to be finished at the end of the document
+        assertEquals( 0, providedRules.get() );
+    }
+
+    @Test
+    public void eagerBindingResolvesTheBoundRules()
+        throws Exception
+    {
+        final DigesterLoader loader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "employee" ).createObject().ofType( Employee.class )
+                    .then()
+                    .setProperties().ignoreMissingProperty( false ).addAlias( "name", "firstName" );
+                forPattern( "employee/age" ).callMethod( "setAge" ).withParamTypes( Integer.TYPE )
+                    .usingElementBodyAsArgument();
+                forPattern( "employee/lastName" ).setBeanProperty();
+                forPattern( "employee/address" ).createObject().ofType( Address.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .setBeanProperty().withName( "street" )
+                    .then()
+                    .setNext( "addAddress" )
+                    .then()
+                    .setTop( "setEmployee" );
+            }
+
+        } ).setEagerBinding( true );
+
+        assertTrue( loader.isEagerBinding() );
+        final Employee employee = loader.newDigester()
+            .parse( new StringReader( "<employee name='Jane'><lastName>Doe</lastName><age>42</age>"
+                + "<address type='home'>Main Street</address></employee>" ) );
+        assertEquals( "Jane", employee.getFirstName() );
+        assertEquals( "Doe", employee.getLastName() );
+        assertEquals( 42, employee.getAge() );
+        assertEquals( "Main Street", employee.getAddress( "home" ).getStreet() );
+    }
+
+    @Test
+    public void parallelDigesterMergesThePartsInOrder()
+        throws Exception
+    {
+        final DigesterLoader loader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "employees" ).createObject().ofType( ArrayList.class );
+                forPattern( "employees/employee" ).createObject().ofType( Employee.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .setNext( "add" );
+                forPattern( "employees/employee/address" ).createObject().ofType( Address.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .setNext( "addAddress" );
+            }
+
+        } ).setNamespaceAware( true );
+
+        final StringBuilder document = new StringBuilder( "<?xml version='1.0' encoding='UTF-8'?>\n<!-- staff -->\n"
+            + "<e:employees xmlns:e='urn:employees'>\n" );
+        for ( int i = 0; i < 100; i++ )
+        {
+            document.append( "<e:employee firstName='" ).append( i ).append( "'><!-- <e:employee> -->"
+                + "<e:address type='home' street='a &gt; b'/></e:employee>\n" );
+        }
+        document.append( "</e:employees>\n" );
+
+        final int[] combined = new int[1];
+        final ParallelDigester<List<Employee>> parallelDigester =
+            loader.newParallelDigester( "employees/employee", new ResultCombiner<List<Employee>>()
+            {
+
+                @Override
+                public List<Employee> combine( final List<Employee> first, final List<Employee> second )
+                {
+                    combined[0]++;
+                    first.addAll( second );
+                    return first;
+                }
+
+            } ).setChunkSize( 500 );
+        final List<Employee> employees =
+            parallelDigester.parse( ByteBuffer.wrap( document.toString().getBytes( "UTF-8" ) ) );
+
+        assertTrue( combined[0] > 1 );
+        assertEquals( 100, employees.size() );
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertEquals( String.valueOf( i ), employees.get( i ).getFirstName() );
+            assertEquals( "a > b", employees.get( i ).getAddress( "home" ).getStreet() );
+        }
+
+        // a single record is parsed as a whole
+        combined[0] = 0;
+        assertEquals( 1, parallelDigester.parse( ByteBuffer.wrap( ( "<e:employees xmlns:e='urn:employees'>"
+            + "<e:employee firstName='A'/></e:employees>" ).getBytes( "UTF-8" ) ) ).size() );
+        assertEquals( 0, combined[0] );
+    }
+
+    @Test
+    public void eagerBindingReportsTheUnresolvedTargets()
+    {
+        final DigesterLoader loader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "employee" ).createObject().ofType( Employee.class )
+                    .then()
+                    .setProperties().ignoreMissingProperty( false ).addAlias( "name", "fullName" );
+                forPattern( "employee/age" ).callMethod( "setAges" ).usingElementBodyAsArgument();
+                forPattern( "employee/nickName" ).setBeanProperty();
+                forPattern( "employee/address" ).createObject().ofType( Address.class )
+                    .then()
+                    .setNext( "setAddress" );
+            }
+
+        } ).setEagerBinding( true );
+
+        try
+        {
+            loader.createRuleSet();
+            fail( "The unresolved targets should have been reported" );
+        }
+        catch ( final DigesterLoadingException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "4 errors" ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "fullName" ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "setAges" ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "nickName" ) );
+            assertTrue( e.getMessage(), e.getMessage().contains( "setAddress" ) );
+        }
+
+        // without eager binding, the errors are found only parsing
+        loader.setEagerBinding( false );
+        loader.setClassLoader( getClass().getClassLoader() );
+        loader.createRuleSet();
+    }
+
 }
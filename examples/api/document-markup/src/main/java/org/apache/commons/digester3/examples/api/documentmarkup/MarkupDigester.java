@@ -140,7 +140,7 @@ public class MarkupDigester
         if ( currTextSegment.length() > 0 )
         {
             final String segment = currTextSegment.toString();
-            final List<Rule> parentMatches = getMatches().peek();
+            final List<Rule> parentMatches = getCurrentMatches();
             final int len = parentMatches.size();
             for ( int i = 0; i < len; ++i )
             {